@@ -1,36 +1,84 @@
 package BankingSystem;
 
+import BankingSystem.log.EventLog;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
+import java.time.ZoneId;
 import java.util.List;
 
-import BankingSystem.Main.TransferResult;
-
 public class BankAccount implements Serializable{
 	private static final long serialVersionUID = 1L;
 	
 	private String accountType;
 	private int accountNumber;
-	private double balance;
+	private long balanceCents;
 	private String accountHolder;
 	private LocalDate dateOpened;
 	private boolean isActive;
-	private String pin;
+	private byte[] pinHash; //===== raw SHA-256 of the PIN
+	
+	private TransactionLedger ledger;
 	
-	private List<String> transactionHistory = new ArrayList<>();
+	//====== the last snapshot this account's state was handed to, and the change window it was last changed in;
+	//====== both guarded by the account's lock in TransferEngine
+	private transient long snapshotEpoch;
+	private transient long changedEpoch;
 	
 	//====== full constructor
 	public BankAccount(String accountType, int accountNumber, String accountHolder, LocalDate dateOpened,  boolean isActive, String pin) {
 		this.accountType = accountType;
 		this.accountNumber = accountNumber;
 		this.accountHolder = accountHolder;
-		this.balance = 0.0;
+		this.balanceCents = 0;
+		this.dateOpened = dateOpened;
+		this.isActive = isActive;
+		this.pinHash = PinHash.hash(pin);
+		this.ledger = new TransactionLedger();
+	}
+	
+	//====== rebuilds an account from a snapshot, the PIN is already hashed
+	private BankAccount(String accountType, int accountNumber, String accountHolder, LocalDate dateOpened, boolean isActive, byte[] pinHash, long balanceCents, TransactionLedger ledger) {
+		this.accountType = accountType;
+		this.accountNumber = accountNumber;
+		this.accountHolder = accountHolder;
+		this.balanceCents = balanceCents;
 		this.dateOpened = dateOpened;
 		this.isActive = isActive;
-		this.pin = hashPin(pin);
+		this.pinHash = pinHash;
+		this.ledger = ledger;
+	}
+	
+	public static BankAccount restore(String accountType, int accountNumber, String accountHolder, LocalDate dateOpened, boolean isActive, byte[] pinHash, long balanceCents, TransactionLedger ledger) {
+		return new BankAccount(accountType, accountNumber, accountHolder, dateOpened, isActive, pinHash, balanceCents, ledger);
+	}
+	
+	//====== accounts saved by older versions kept a double balance, a hex PIN hash and their history as a List<String>; convert them
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		accountType = (String) fields.get("accountType", null);
+		accountNumber = fields.get("accountNumber", 0);
+		balanceCents = Money.fromDouble(fields.get("balance", 0.0));
+		accountHolder = (String) fields.get("accountHolder", null);
+		dateOpened = (LocalDate) fields.get("dateOpened", null);
+		isActive = fields.get("isActive", false);
+		String hexPin = (String) fields.get("pin", null);
+		pinHash = hexPin == null ? null : PinHash.fromHex(hexPin);
+		ledger = (TransactionLedger) fields.get("ledger", null);
+		
+		if (ledger == null) {
+			ledger = new TransactionLedger();
+			@SuppressWarnings("unchecked")
+			List<String> legacyHistory = (List<String>) fields.get("transactionHistory", null);
+			if (legacyHistory != null) {
+				for (String record : legacyHistory) {
+					ledger.appendLegacy(record, dateOpened);
+				}
+			}
+		}
+		recordOpeningBalance();
 	}
 	
 	//======= getters
@@ -44,8 +92,9 @@ public class BankAccount implements Serializable{
 	}
 
 
-	public double getBalance() {
-		return balance;
+	//======= in cents
+	public long getBalance() {
+		return balanceCents;
 	}
 
 
@@ -63,8 +112,23 @@ public class BankAccount implements Serializable{
 	}
 
 
-	public String getPin() {
-		return pin;
+	public byte[] getPinHash() {
+		return pinHash.clone();
+	}
+
+
+	public TransactionLedger getLedger() {
+		return ledger;
+	}
+
+
+	public long getSnapshotEpoch() {
+		return snapshotEpoch;
+	}
+
+
+	public long getChangedEpoch() {
+		return changedEpoch;
 	}
 
 
@@ -81,64 +145,115 @@ public class BankAccount implements Serializable{
 		this.isActive = isActive;
 	}
 
+	public void setSnapshotEpoch(long snapshotEpoch) {
+		this.snapshotEpoch = snapshotEpoch;
+	}
 
-	public boolean validatePin(String pin) {
-		return hashPin(pin).equals(this.pin);
+	public void setChangedEpoch(long changedEpoch) {
+		this.changedEpoch = changedEpoch;
+	}
+
+
+	//======= history from older versions may not add up to the balance (legacy lines carry no amounts); the difference
+	//======= goes in front of it as an OPENING entry, so from then on the ledger alone gives the balance
+	//======= returns whether an entry was needed
+	public boolean recordOpeningBalance() {
+		long unexplained = balanceCents - ledger.balance();
+		if (unexplained == 0) {
+			return false;
+		}
+		long opened = dateOpened == null ? 0L : dateOpened.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		ledger.prependOpening(unexplained, opened);
+		return true;
 	}
 	
-	private String hashPin(String pin) {
-	    try {
-	        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-	        byte[] encodedHash = digest.digest(pin.getBytes());
-	        StringBuilder hexString = new StringBuilder();
-
-	        for (byte b : encodedHash) {
-	            String hex = Integer.toHexString(0xff & b);
-	            if (hex.length() == 1) hexString.append('0');
-	            hexString.append(hex);
-	        }
-
-	        return hexString.toString();
-	    } catch (NoSuchAlgorithmException e) {
-	        throw new RuntimeException("SHA-256 algorithm not available", e);
-	    }
+	//======= sets the balance worked out from the ledger when the stored one disagrees with it
+	public void restoreBalance(long balanceCents) {
+		this.balanceCents = balanceCents;
+	}
+	
+	//======== used when replaying a journalled PIN change, the value is already hashed
+	public void restorePinHash(byte[] pinHash, long timestampMillis) {
+		this.pinHash = pinHash.clone();
+		ledger.append(TransactionLedger.PIN_CHANGE, 0, 0, timestampMillis, null);
+	}
+
+	//======== allocation-free and constant-time, see PinHash
+	public boolean validatePin(String pin) {
+		return PinHash.matches(pin, this.pinHash);
 	}
 
 	
-	public boolean depositMoney(double amount) {
-        if (amount <= 0) {
-            System.out.println("Deposit amount must be positive.");
+	//======= amounts are in cents
+	public boolean depositMoney(long amountCents) {
+		return depositMoney(amountCents, System.currentTimeMillis());
+	}
+	
+	//======= the timestamp is passed in when an operation is replayed from the journal
+	public boolean depositMoney(long amountCents, long timestampMillis) {
+        if (amountCents <= 0) {
+            EventLog.debug("Deposit into account {} refused, the amount must be positive", accountNumber);
             return false;
         }
-        balance += amount;
-        transactionHistory.add("Deposited R" + amount + " on " + LocalDate.now());
-        System.out.println("Successfully deposited R" + amount);
+        balanceCents = Math.addExact(balanceCents, amountCents);
+        ledger.append(TransactionLedger.DEPOSIT, amountCents, 0, timestampMillis, null);
+        EventLog.debug("Deposited {R} into account {}", amountCents, accountNumber);
         return true;
     }
 	
-	public boolean withdrawMoney(double amount) {
-        if (amount <= 0) {
-            System.out.println("Withdrawal amount must be positive.");
+	public boolean withdrawMoney(long amountCents) {
+		return withdrawMoney(amountCents, System.currentTimeMillis());
+	}
+	
+	//======= end-of-day batch entries, quiet because the batch runs over every account
+	//======= returns false when there is nothing to credit or the balance would overflow
+	public boolean creditInterest(long amountCents, long timestampMillis, String description) {
+		if (amountCents <= 0 || balanceCents > Long.MAX_VALUE - amountCents) {
+			return false;
+		}
+		balanceCents += amountCents;
+		ledger.append(TransactionLedger.INTEREST, amountCents, 0, timestampMillis, description);
+		return true;
+	}
+	
+	//======= never takes the balance below zero, returns what was actually charged
+	public long chargeFee(long amountCents, long timestampMillis, String description) {
+		long charged = Math.min(amountCents, balanceCents);
+		if (charged <= 0) {
+			return 0;
+		}
+		balanceCents -= charged;
+		ledger.append(TransactionLedger.FEE, charged, 0, timestampMillis, description);
+		return charged;
+	}
+	
+	public boolean withdrawMoney(long amountCents, long timestampMillis) {
+        if (amountCents <= 0) {
+            EventLog.debug("Withdrawal from account {} refused, the amount must be positive", accountNumber);
             return false;
         }
-        if (amount > balance) {
-            System.out.println("Insufficient funds. Current balance: R" + balance);
+        if (amountCents > balanceCents) {
+            EventLog.debug("Withdrawal of {R} from account {} refused, the balance is {R}", amountCents, accountNumber, balanceCents);
             return false;
         }
-        balance -= amount;
-        transactionHistory.add("Withdrew R" + amount + " on " + LocalDate.now());
-        System.out.println("Successfully withdrew R" + amount);
+        balanceCents -= amountCents;
+        ledger.append(TransactionLedger.WITHDRAWAL, amountCents, 0, timestampMillis, null);
+        EventLog.debug("Withdrew {R} from account {}", amountCents, accountNumber);
         return true;
     }
 	
-	public TransferResult transferMoneyTo(BankAccount targetAccount, double amount, String description) {
+	public TransferResult transferMoneyTo(BankAccount targetAccount, long amountCents, String description) {
+		return transferMoneyTo(targetAccount, amountCents, description, System.currentTimeMillis());
+	}
+	
+	public TransferResult transferMoneyTo(BankAccount targetAccount, long amountCents, String description, long timestampMillis) {
 	    // Input validation
-	    if (amount <= 0) {
+	    if (amountCents <= 0) {
 	        return new TransferResult(false, "Transfer amount must be positive.");
 	    }
 	    
-	    if (amount > this.balance) {
-	        return new TransferResult(false, "Insufficient funds. Current balance: R" + String.format("%.2f", this.balance));
+	    if (amountCents > this.balanceCents) {
+	        return new TransferResult(false, "Insufficient funds. Current balance: " + Money.formatRand(this.balanceCents));
 	    }
 	    
 	    if (targetAccount == null) {
@@ -155,22 +270,16 @@ public class BankAccount implements Serializable{
 	    
 	    try {
 	        // Perform the transfer
-	        this.balance -= amount;
-	        targetAccount.balance += amount;
-	        
-	        // Create transaction records
-	        String timestamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-	        String descriptionText = (description != null && !description.trim().isEmpty()) ? " - " + description.trim() : "";
-	        
-	        // Add to transaction histories
-	        this.transactionHistory.add("Transferred R" + String.format("%.2f", amount) + 
-	                                   " to Account " + targetAccount.getAccountNumber() + descriptionText + " on " + timestamp);
+	        long credited = Math.addExact(targetAccount.balanceCents, amountCents);
+	        this.balanceCents -= amountCents;
+	        targetAccount.balanceCents = credited;
 	        
-	        targetAccount.transactionHistory.add("Received R" + String.format("%.2f", amount) + 
-	                                           " from Account " + this.accountNumber + descriptionText + " on " + timestamp);
+	        // Add to both ledgers
+	        String descriptionText = description != null ? description.trim() : null;
+	        this.ledger.append(TransactionLedger.TRANSFER_OUT, amountCents, targetAccount.getAccountNumber(), timestampMillis, descriptionText);
+	        targetAccount.ledger.append(TransactionLedger.TRANSFER_IN, amountCents, this.accountNumber, timestampMillis, descriptionText);
 	        
-	        System.out.println("Successfully transferred R" + String.format("%.2f", amount) + 
-	                          " to Account " + targetAccount.getAccountNumber());
+	        EventLog.debug("Transferred {R} from account {} to account {}", amountCents, accountNumber, targetAccount.getAccountNumber());
 	        
 	        return new TransferResult(true, "Transfer completed successfully.");
 	        
@@ -180,21 +289,22 @@ public class BankAccount implements Serializable{
 	}
 	
 	public void displayTransactionHistory() {
-	    if (transactionHistory.isEmpty()) {
+	    if (ledger.isEmpty()) {
 	        System.out.println("No transactions found.");
 	        return;
 	    }
 
 	    System.out.println("Transaction History for Account " + accountNumber + ":");
-	    for (String record : transactionHistory) {
-	        System.out.println("- " + record);
+	    for (int i = 0; i < ledger.size(); i++) {
+	        System.out.println("- " + ledger.render(i));
 	    }
 	}
 	
-	public boolean changePin(String oldPin, String newPin) {
+	//======= package-private: PIN changes go through TransferEngine.changePin, which holds the account's lock and journals them
+	boolean changePin(String oldPin, String newPin) {
 	    if (validatePin(oldPin)) {
-	        this.pin = hashPin(newPin);
-	        transactionHistory.add("PIN changed on " + LocalDate.now());
+	        this.pinHash = PinHash.hash(newPin);
+	        ledger.append(TransactionLedger.PIN_CHANGE, 0, 0, System.currentTimeMillis(), null);
 	        return true;
 	    }
 	    return false;
@@ -1,6 +1,5 @@
 package BankingSystem;
 
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.List;
 import java.util.ArrayList;
 import java.time.LocalDate;
@@ -35,9 +34,8 @@ public class Customer implements Serializable {
 	//======= relationships
 	private List<BankAccount> accounts;
 	
-	//======= full constructor
+	//======= full constructor, the customer ID is assigned when the customer is registered
 	public Customer(String firstName, String lastName, String gender, String phoneNumber, String idNumber, String email, LocalDate dateOfBirth, String nationality, String streetAddress, String city, int postalCode, String country, String occupation, String employerName, double monthlyIncome) {
-		this.customerID = "C" + ThreadLocalRandom.current().nextLong(100000L, 999999L);
 		this.firstName = firstName;
 		this.lastName = lastName;
 		this.gender = gender;
@@ -61,6 +59,13 @@ public class Customer implements Serializable {
 		this(firstName, lastName, gender, phoneNumber, idNumber, null, dateOfBirth, nationality, streetAddress, city, postalCode, country, occupation, employerName, monthlyIncome);
 	}
 	
+	//======= rebuilds a customer from a snapshot, keeping the original customer ID
+	public static Customer restore(String customerID, String firstName, String lastName, String gender, String phoneNumber, String idNumber, String email, LocalDate dateOfBirth, String nationality, String streetAddress, String city, int postalCode, String country, String occupation, String employerName, double monthlyIncome) {
+		Customer customer = new Customer(firstName, lastName, gender, phoneNumber, idNumber, email, dateOfBirth, nationality, streetAddress, city, postalCode, country, occupation, employerName, monthlyIncome);
+		customer.customerID = customerID;
+		return customer;
+	}
+	
 	//======= display customer info
 	//======= don't display monthly income (POPI)
 	public void displayCustomerInfo() {
@@ -84,9 +89,21 @@ public class Customer implements Serializable {
 		accounts.add(account);
 	}
 
+	//======= called once on registration, IDs never change afterwards
+	public void assignCustomerID(String customerID) {
+		if (this.customerID != null) {
+			throw new IllegalStateException("Customer " + this.customerID + " already has an ID.");
+		}
+		this.customerID = customerID;
+	}
+
 	//======= getters
 	public String getFullName() { return firstName + " " + lastName; }
 
+	public String getFirstName() { return firstName; }
+
+	public String getLastName() { return lastName; }
+
 	public String getGender() { return gender; }
 
 	public String getPhoneNumber() { return phoneNumber; }
@@ -1,8 +1,18 @@
 package BankingSystem;
 
-import BankingSystem.data.DataManager;
+import BankingSystem.data.AccountStore;
+import BankingSystem.data.TransactionExporter;
+import BankingSystem.log.EventLog;
+import BankingSystem.service.BankService;
+import BankingSystem.service.OperationResult;
+import BankingSystem.service.RegistrationResult;
+import BankingSystem.service.RegistrationValidator;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.stage.Stage;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -13,16 +23,19 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.control.ComboBox;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.time.ZoneId;
+import java.util.AbstractList;
 import java.util.List;
-import java.util.HashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ExecutionException;
 
 
 public class Main extends Application {
-	private ArrayList<Customer> customers = new ArrayList<>();
-	private HashMap<String, BankAccount> accounts = new HashMap<>();
+	private AccountStore accountStore;
+	private LoadTask loading;
+	private CloseTask closeTask;
 	private Stage primaryStage;
 	private BankAccount currentAccount = null;
 	
@@ -31,20 +44,134 @@ public class Main extends Application {
 		this.primaryStage = primaryStage;
 		primaryStage.setTitle("BankForge");
 		
-		//======== load existing data on startup
-		DataManager.loadAllData(customers, accounts);
+		//======== the account store is only mapped, so it answers logins straight away and a dashboard opens on the
+		//======== balance it holds; the last snapshot loads and the journal written since replays in the background
+		accountStore = BankService.openAccountStore();
+		loading = new LoadTask(accountStore);
+		loading.setOnFailed(e -> {
+			EventLog.error("Could not load the bank data", loading.getException());
+			Platform.exit();
+		});
+		Thread loader = new Thread(loading, "bank-loader");
+		loader.setDaemon(true);
+		loader.start();
 		showLandingPage();
 		
-		//======== save data when application is closed
+		//======== save data when application is closed; the load may still be running and the final checkpoint takes a
+		//======== while on a large book, so both are waited for off the JavaFX thread
 		primaryStage.setOnCloseRequest(e -> {
-			System.out.println("=== SAVING DATA ON EXIT ===");
-			DataManager.saveAllData(customers, accounts);
-			System.out.println("Application closed. Data saved successfully.");
+			e.consume();
+			closeBank();
 		});
 		
 		primaryStage.show();
 	}
 	
+	//======== the loaded bank; only waits if it is needed before the background load is done
+	private BankService bank() {
+		try {
+			return loading.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading the bank data", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException("Could not load the bank data", (IOException) e.getCause());
+			}
+			throw new IllegalStateException("Could not load the bank data", e.getCause());
+		}
+	}
+	
+	// Shows a progress window while the bank saves and closes, then exits; closing again meanwhile does nothing
+	private void closeBank() {
+	    if (closeTask != null) {
+	        return;
+	    }
+	    EventLog.info("Saving data on exit");
+	    closeTask = new CloseTask(loading);
+	    
+	    Stage progressStage = new Stage();
+	    progressStage.setTitle("Saving...");
+	    progressStage.initOwner(primaryStage);
+	    progressStage.setOnCloseRequest(e -> e.consume());
+	    
+	    VBox layout = new VBox(15);
+	    layout.setPadding(new Insets(25));
+	    layout.setAlignment(Pos.CENTER);
+	    layout.setStyle("-fx-background-color: #f8f9fa;");
+	    
+	    ProgressBar progressBar = new ProgressBar();
+	    progressBar.setPrefWidth(300);
+	    
+	    Label progressLabel = new Label("Saving your data, please wait...");
+	    progressLabel.setStyle("-fx-text-fill: #666;");
+	    
+	    layout.getChildren().addAll(progressBar, progressLabel);
+	    progressStage.setScene(new Scene(layout, 380, 140));
+	    
+	    closeTask.setOnSucceeded(e -> {
+	        EventLog.info("Application closed");
+	        Platform.exit();
+	    });
+	    closeTask.setOnFailed(e -> {
+	        EventLog.error("Error saving data on exit", closeTask.getException());
+	        Platform.exit();
+	    });
+	    
+	    Thread closeThread = new Thread(closeTask, "bank-close"); // not a daemon, the save must not be cut short
+	    closeThread.start();
+	    progressStage.show();
+	}
+	
+	// Background shutdown: waits for the load if it is still running, then takes the final checkpoint
+	private static class CloseTask extends Task<Void> {
+	    private final LoadTask loading;
+	    
+	    CloseTask(LoadTask loading) {
+	        this.loading = loading;
+	    }
+	    
+	    @Override
+	    protected Void call() throws Exception {
+	        loading.get().close();
+	        return null;
+	    }
+	}
+	
+	// Background registration: waits for the load if it is still running, then for the new customer's snapshot
+	private static class RegisterTask extends Task<RegistrationResult> {
+	    private final LoadTask loading;
+	    private final Customer customer;
+	    private final String accountType;
+	    private final String pin;
+	    
+	    RegisterTask(LoadTask loading, Customer customer, String accountType, String pin) {
+	        this.loading = loading;
+	        this.customer = customer;
+	        this.accountType = accountType;
+	        this.pin = pin;
+	    }
+	    
+	    @Override
+	    protected RegistrationResult call() throws Exception {
+	        return loading.get().register(customer, accountType, pin);
+	    }
+	}
+	
+	// Background load of the snapshot and journal, keeping the account store up to date
+	private static class LoadTask extends Task<BankService> {
+	    private final AccountStore store;
+	    
+	    LoadTask(AccountStore store) {
+	        this.store = store;
+	    }
+	    
+	    @Override
+	    protected BankService call() throws Exception {
+	        return BankService.open(store);
+	    }
+	}
+	
 	//======== landing page
 	private void showLandingPage() {
         VBox landingLayout = new VBox(30);
@@ -138,13 +265,29 @@ public class Main extends Application {
             
             try {
                 int accountNumber = Integer.parseInt(accountStr);
-                if (authenticateUser(accountNumber, pin)) {
+                if (loading.isDone()) {
+                    completeLogin(loginStage, messageLabel, pinField, accountNumber, pin);
+                    return;
+                }
+                //======== while the accounts load, the store answers the login: a wrong PIN is turned away and a right
+                //======== one opens the dashboard on the store's balance, see showStoreDashboard
+                if (accountStore != null && accountStore.isCurrent()) {
+                    if (!accountStore.authenticate(accountNumber, pin)) {
+                        showError(messageLabel, "Invalid account number or PIN. Please try again.");
+                        pinField.clear();
+                        return;
+                    }
                     loginStage.close();
-                    showDashboard();
-                } else {
-                    showError(messageLabel, "Invalid account number or PIN. Please try again.");
-                    pinField.clear();
+                    showStoreDashboard(accountNumber, pin);
+                    return;
                 }
+                messageLabel.setText("Loading your account...");
+                messageLabel.setStyle("-fx-text-fill: #666;");
+                loginSubmitBtn.setDisable(true);
+                loading.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, loaded -> {
+                    loginSubmitBtn.setDisable(false);
+                    completeLogin(loginStage, messageLabel, pinField, accountNumber, pin);
+                });
             } catch (NumberFormatException ex) {
                 showError(messageLabel, "Please enter a valid account number.");
             }
@@ -159,6 +302,17 @@ public class Main extends Application {
         loginStage.show();
     }
 	
+	private void completeLogin(Stage loginStage, Label messageLabel, PasswordField pinField, int accountNumber, String pin) {
+        currentAccount = bank().authenticate(accountNumber, pin);
+        if (currentAccount != null) {
+            loginStage.close();
+            showDashboard();
+        } else {
+            showError(messageLabel, "Invalid account number or PIN. Please try again.");
+            pinField.clear();
+        }
+    }
+	
 	//======== registration page
 	private void showRegisterForm() {
 	    Stage registerStage = new Stage();
@@ -227,7 +381,7 @@ public class Main extends Application {
 	    
 	    // Account type dropdown
 	    ComboBox<String> accountTypeComboBox = createComboBox("Select Account Type *");
-	    accountTypeComboBox.getItems().addAll("Savings", "Current", "Fixed Deposit", "Student Account", "Business Account");
+	    accountTypeComboBox.getItems().addAll(RegistrationValidator.ACCOUNT_TYPES);
 	    
 	    PasswordField pinField = new PasswordField();
 	    pinField.setPromptText("Create 4-Digit PIN *");
@@ -292,29 +446,42 @@ public class Main extends Application {
 	        String confirmPin = confirmPinField.getText().trim();
 	        String accType = accountTypeComboBox.getValue(); // Get value from ComboBox
 	        
-	        if (validateRegistration(fname, lname, gender, dof, idNumber, phone, email, nationality, streetAddress, city, postalCode, country, occupation, employerName, monthlyIncome, messageLabel, pin, confirmPin)) {
-	            LocalDate dateOfBirth = LocalDate.parse(dof);
-	            int code = Integer.parseInt(postalCode);
-	            double income = Double.parseDouble(monthlyIncome);
+	        if (validateRegistration(fname, lname, gender, dof, idNumber, phone, email, nationality, streetAddress, city, postalCode, country, occupation, employerName, monthlyIncome, accType, messageLabel, pin, confirmPin)) {
+	            LocalDate dateOfBirth = RegistrationValidator.parseDate(dof);
+	            int code = RegistrationValidator.parsePostalCode(postalCode);
+	            double income = RegistrationValidator.parseIncome(monthlyIncome);
 	            
 	            // Create customer (email is optional)
 	            Customer customer = new Customer(fname, lname, gender, phone, idNumber, email.isEmpty() ? null : email, dateOfBirth, nationality, streetAddress, city, code, country, occupation, employerName, income);
-	            customers.add(customer);
 	            
-	            // Create bank account
-	            int accountNo = generateAccountNumber();
-	            BankAccount account = new BankAccount(accType, accountNo, customer.getFullName(), LocalDate.now(), true, pin);
-	            accounts.put(customer.getCustomerID(), account);
+	            // Create bank account off the JavaFX thread, registration waits for the load and for its snapshot to be written
+	            RegisterTask registerTask = new RegisterTask(loading, customer, accType, pin);
+	            createAccountBtn.setDisable(true);
+	            messageLabel.setText("Creating your account...");
+	            messageLabel.setStyle("-fx-text-fill: #666;");
+	            registerTask.setOnSucceeded(done -> {
+	                int accountNo = registerTask.getValue().getAccount().getAccountNumber();
+	                
+	                showSuccessDialog("Account Created Successfully!", 
+	                    "Welcome to BankForge!" +
+	                    "\n\nAccount Number: " + accountNo +
+	                    "\nAccount Type: " + accType + 
+	                    "\nCustomer ID: " + customer.getCustomerID() +
+	                    "\n\nPlease save these details for future reference. " +
+	                    "\nYou can now login using your Account Number and PIN.");
+	                
+	                registerStage.close();
+	            });
+	            registerTask.setOnFailed(done -> {
+	                EventLog.error("Registration failed", registerTask.getException());
+	                createAccountBtn.setDisable(false);
+	                showError(messageLabel, "Account could not be created: " + registerTask.getException().getMessage());
+	                scrollPane.setVvalue(1.0);
+	            });
 	            
-	            showSuccessDialog("Account Created Successfully!", 
-	                "Welcome to BankForge!" +
-	                "\n\nAccount Number: " + accountNo +
-	                "\nAccount Type: " + accType + 
-	                "\nCustomer ID: " + customer.getCustomerID() +
-	                "\n\nPlease save these details for future reference. " +
-	                "\nYou can now login using your Account Number and PIN.");
-	            
-	            registerStage.close();
+	            Thread registerThread = new Thread(registerTask, "registration");
+	            registerThread.setDaemon(true);
+	            registerThread.start();
 	        } else {
 	            // Scroll to the message label to show error
 	            scrollPane.setVvalue(1.0);
@@ -340,65 +507,57 @@ public class Main extends Application {
 	    return comboBox;
 	}
 
-	private boolean validateRegistration(String fName, String lName, String gender, String dof, String idNumber, String phone, String email, String nationality, String streetAddress, String city, String postalCode, String country, String occupation, String employerName, String monthlyIncome, Label messageLabel, String pin, String confirmPin) {
-	    if(fName.isEmpty() || lName.isEmpty() || gender == null || gender.isEmpty() || dof.isEmpty() || idNumber.isEmpty() || phone.isEmpty() || nationality.isEmpty() || streetAddress.isEmpty() || city.isEmpty() || postalCode.isEmpty() || country.isEmpty() || occupation.isEmpty() || employerName.isEmpty() || monthlyIncome.isEmpty() || pin.isEmpty() || confirmPin.isEmpty()) {
-	        showError(messageLabel, "Please fill in all required fields (marked with *).");
-	        return false;
-	    }
-	    
-	    //======== date of birth validation
-	    if(!dof.matches("^((19|20)\\d\\d)-(0?[1-9]|1[012])-(0?[1-9]|[12][0-9]|3[01])$")) {
-	        showError(messageLabel, "Date of birth must be of format yyyy-MM-dd.");
-	        return false;
-	    }
-	    
-	    //======== id number validation
-	    if(!idNumber.matches("\\d{13}")) {
-	        showError(messageLabel, "ID must be exactly 13 digits.");
-	        return false;
-	    }
-	    
-	    //======== phone number validation
-	    if(!phone.matches("^(\\+\\d{1,3}( )?)?((\\(\\d{3}\\))|\\d{3})[- .]?\\d{3}[- .]?\\d{4}$")) {
-	        showError(messageLabel, "Phone number must be exactly 10 digits.");
-	        return false;
-	    }
-	    
-	    //======== email validation (only if not empty)
-	    if(!email.isEmpty() && !email.matches("^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$")) {
-	        showError(messageLabel, "Please enter a valid email address.");
-	        return false;
-	    }
-	    
-	    if (pin.length() != 4 || !pin.matches("\\d{4}")) {
-	        showError(messageLabel, "PIN must be exactly 4 digits.");
-	        return false;
-	    }
-	    
-	    if (!pin.equals(confirmPin)) {
-	        showError(messageLabel, "PINs do not match. Please try again.");
+	private boolean validateRegistration(String fName, String lName, String gender, String dof, String idNumber, String phone, String email, String nationality, String streetAddress, String city, String postalCode, String country, String occupation, String employerName, String monthlyIncome, String accountType, Label messageLabel, String pin, String confirmPin) {
+	    //======== the rules live in RegistrationValidator so the bulk importer applies the same ones
+	    String error = RegistrationValidator.validate(fName, lName, gender, dof, idNumber, phone, email, nationality, streetAddress, city, postalCode, country, occupation, employerName, monthlyIncome, accountType, pin, confirmPin);
+	    if (error != null) {
+	        showError(messageLabel, error);
 	        return false;
 	    }
-	    
 	    return true;
 	}
 	
-	private int generateAccountNumber() {
-        return (int) ThreadLocalRandom.current().nextLong(100000000L, 999999999L);
+	private void showDashboard() {
+        showDashboard("Welcome, " + currentAccount.getAccountHolder(), currentAccount.getAccountNumber(), currentAccount.getBalance(), true);
     }
 	
-	private void showDashboard() {
+	// Dashboard from the account store while the bank loads, with its actions disabled; once the load is done the
+	// login is checked against the loaded account, which the store may be a little behind, and the full dashboard
+	// takes its place
+	private void showStoreDashboard(int accountNumber, String pin) {
+        int slot = accountStore.find(accountNumber);
+        Scene preview = showDashboard("Welcome", accountNumber, accountStore.getBalance(slot), false);
+        loading.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, loaded -> {
+            if (primaryStage.getScene() != preview) {
+                return; // logged out meanwhile
+            }
+            currentAccount = bank().authenticate(accountNumber, pin);
+            if (currentAccount != null) {
+                showDashboard();
+            } else {
+                showLandingPage();
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Login Error");
+                alert.setHeaderText("Your login could not be confirmed");
+                alert.setContentText("Please log in again.");
+                alert.initOwner(primaryStage);
+                alert.showAndWait();
+            }
+        });
+    }
+	
+	private Scene showDashboard(String welcome, int accountNumber, long balanceCents, boolean loaded) {
         VBox dashboardLayout = new VBox(25);
         dashboardLayout.setAlignment(Pos.CENTER);
         dashboardLayout.setPadding(new Insets(40));
         dashboardLayout.setStyle("-fx-background-color: linear-gradient(to bottom, #667eea 0%, #764ba2 100%);");
         
         // Welcome header
-        Label welcomeLabel = new Label("Welcome, " + currentAccount.getAccountHolder());
+        Label welcomeLabel = new Label(welcome);
         welcomeLabel.setFont(Font.font("Arial", FontWeight.BOLD, 26));
         welcomeLabel.setStyle("-fx-text-fill: white; -fx-effect: dropshadow(gaussian, rgba(0,0,0,0.3), 2, 0, 0, 1);");
         
-        Label accountLabel = new Label("Account: " + currentAccount.getAccountNumber());
+        Label accountLabel = new Label("Account: " + accountNumber);
         accountLabel.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
         accountLabel.setStyle("-fx-text-fill: #f0f0f0;");
         
@@ -411,7 +570,7 @@ public class Main extends Application {
         balanceTitle.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
         balanceTitle.setStyle("-fx-text-fill: #e0e0e0;");
         
-        Label balanceAmount = new Label("R" + String.format("%.2f", currentAccount.getBalance()));
+        Label balanceAmount = new Label(Money.formatRand(balanceCents));
         balanceAmount.setFont(Font.font("Arial", FontWeight.BOLD, 32));
         balanceAmount.setStyle("-fx-text-fill: white;");
         
@@ -443,8 +602,20 @@ public class Main extends Application {
         
         dashboardLayout.getChildren().addAll(welcomeLabel, accountLabel, balanceBox, buttonBox);
         
+        // Until the bank has loaded only logging out works
+        if (!loaded) {
+            for (Button action : List.of(depositBtn, withdrawBtn, viewDetailsBtn, viewTransferBtn, viewTransactionHistoryBtn)) {
+                action.setDisable(true);
+            }
+            Label loadingLabel = new Label("Loading your account...");
+            loadingLabel.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
+            loadingLabel.setStyle("-fx-text-fill: #f0f0f0;");
+            dashboardLayout.getChildren().add(3, loadingLabel);
+        }
+        
         Scene scene = new Scene(dashboardLayout, 600, 650);
         primaryStage.setScene(scene);
+        return scene;
     }
 
 	//======== transaction history methods
@@ -465,30 +636,43 @@ public class Main extends Application {
 	    titleLabel.setStyle("-fx-text-fill: #333;");
 	    
 	    // Account info
-	    Label accountInfoLabel = new Label("Account: " + currentAccount.getAccountNumber() + 
-	                                     " | Balance: R" + String.format("%.2f", currentAccount.getBalance()));
+	    HistoryRows allRows = new HistoryRows(bank().history(currentAccount), Long.MIN_VALUE, Long.MAX_VALUE);
+	    Label accountInfoLabel = new Label(getHistorySummary(allRows));
 	    accountInfoLabel.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
 	    accountInfoLabel.setStyle("-fx-text-fill: #666;");
 	    
-	    // Transaction display area
-	    TextArea transactionArea = new TextArea();
-	    transactionArea.setEditable(false);
-	    transactionArea.setPrefRowCount(15);
-	    transactionArea.setPrefColumnCount(50);
-	    transactionArea.setWrapText(true);
-	    transactionArea.setStyle(
+	    // Transaction list, newest first; only the rows on screen are ever rendered
+	    ListView<String> transactionList = new ListView<>();
+	    transactionList.setFixedCellSize(28);
+	    transactionList.setPrefHeight(400);
+	    transactionList.setStyle(
 	        "-fx-background-color: white;" +
 	        "-fx-border-color: #ddd;" +
 	        "-fx-border-radius: 5;" +
 	        "-fx-background-radius: 5;" +
 	        "-fx-font-family: 'Courier New';" +
-	        "-fx-font-size: 12px;" +
-	        "-fx-padding: 10;"
+	        "-fx-font-size: 12px;"
 	    );
-	    
-	    // Get transaction history using reflection to access private field
-	    String historyContent = getTransactionHistoryContent();
-	    transactionArea.setText(historyContent);
+	    Label emptyLabel = new Label("No transaction history available for this account.\n" +
+	                                 "Start by making a deposit or withdrawal to see it here.");
+	    emptyLabel.setStyle("-fx-text-fill: #666;");
+	    transactionList.setPlaceholder(emptyLabel);
+	    transactionList.setItems(FXCollections.observableList(allRows));
+	    
+	    // Optional date range, both days included; the ledger finds it by binary search, so only the entries in it are listed
+	    DatePicker fromPicker = new DatePicker();
+	    fromPicker.setPromptText("From");
+	    DatePicker toPicker = new DatePicker();
+	    toPicker.setPromptText("To");
+	    HBox rangeBox = new HBox(10, new Label("Show:"), fromPicker, toPicker);
+	    rangeBox.setAlignment(Pos.CENTER);
+	    Runnable showRange = () -> {
+	        HistoryRows rows = new HistoryRows(bank().history(currentAccount), rangeFrom(fromPicker), rangeTo(toPicker));
+	        transactionList.setItems(FXCollections.observableList(rows));
+	        accountInfoLabel.setText(getHistorySummary(rows));
+	    };
+	    fromPicker.setOnAction(e -> showRange.run());
+	    toPicker.setOnAction(e -> showRange.run());
 	    
 	    // Buttons
 	    HBox buttonBox = new HBox(15);
@@ -498,126 +682,171 @@ public class Main extends Application {
 	    Button exportBtn = createStyledButton("Export", "#4CAF50", 120, 40);
 	    Button closeBtn = createStyledButton("Close", "#9E9E9E", 120, 40);
 	    
-	    refreshBtn.setOnAction(e -> {
-	        transactionArea.setText(getTransactionHistoryContent());
-	        accountInfoLabel.setText("Account: " + currentAccount.getAccountNumber() + 
-	                                " | Balance: R" + String.format("%.2f", currentAccount.getBalance()));
-	    });
+	    refreshBtn.setOnAction(e -> showRange.run());
 	    
-	    exportBtn.setOnAction(e -> exportTransactionHistory());
+	    exportBtn.setOnAction(e -> exportTransactionHistory(rangeFrom(fromPicker), rangeTo(toPicker)));
 	    closeBtn.setOnAction(e -> historyStage.close());
 	    
 	    buttonBox.getChildren().addAll(refreshBtn, exportBtn, closeBtn);
 	    
-	    // Add scroll pane for transaction area
-	    ScrollPane scrollPane = new ScrollPane(transactionArea);
-	    scrollPane.setFitToWidth(true);
-	    scrollPane.setFitToHeight(true);
-	    scrollPane.setPrefHeight(400);
-	    scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
-	    scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
-	    
-	    layout.getChildren().addAll(titleLabel, accountInfoLabel, scrollPane, buttonBox);
+	    layout.getChildren().addAll(titleLabel, accountInfoLabel, rangeBox, transactionList, buttonBox);
 	    
-	    Scene scene = new Scene(layout, 600, 550);
+	    Scene scene = new Scene(layout, 600, 600);
 	    historyStage.setScene(scene);
 	    historyStage.show();
 	}
 
-	private String getTransactionHistoryContent() {
-	    try {
-	        // Use reflection to access the private transactionHistory field
-	        java.lang.reflect.Field field = BankAccount.class.getDeclaredField("transactionHistory");
-	        field.setAccessible(true);
-	        
-	        @SuppressWarnings("unchecked")
-	        List<String> transactionHistory = (List<String>) field.get(currentAccount);
-	        
-	        if (transactionHistory == null || transactionHistory.isEmpty()) {
-	            return "═══════════════════════════════════════════════════════════\n" +
-	                   "                    NO TRANSACTIONS FOUND\n" +
-	                   "═══════════════════════════════════════════════════════════\n\n" +
-	                   "🔍 No transaction history available for this account.\n" +
-	                   "💡 Start by making a deposit or withdrawal to see your\n" +
-	                   "   transaction history here.\n\n" +
-	                   "═══════════════════════════════════════════════════════════";
-	        }
-	        
-	        StringBuilder content = new StringBuilder();
-	        content.append("═══════════════════════════════════════════════════════════\n");
-	        content.append("                    TRANSACTION HISTORY\n");
-	        content.append("═══════════════════════════════════════════════════════════\n\n");
-	        content.append("Account Holder: ").append(currentAccount.getAccountHolder()).append("\n");
-	        content.append("Account Number: ").append(currentAccount.getAccountNumber()).append("\n");
-	        content.append("Account Type: ").append(currentAccount.getAccountType()).append("\n");
-	        content.append("Current Balance: R").append(String.format("%.2f", currentAccount.getBalance())).append("\n");
-	        content.append("Total Transactions: ").append(transactionHistory.size()).append("\n\n");
-	        content.append("───────────────────────────────────────────────────────────\n");
-	        content.append("                      TRANSACTIONS\n");
-	        content.append("───────────────────────────────────────────────────────────\n\n");
-	        
-	        // Display transactions in reverse order (newest first)
-	        for (int i = transactionHistory.size() - 1; i >= 0; i--) {
-	            String transaction = transactionHistory.get(i);
-	            content.append("• ").append(transaction).append("\n");
-	            
-	            // Add separator line between transactions
-	            if (i > 0) {
-	                content.append("  ─────────────────────────────────────────────────────\n");
-	            }
-	        }
-	        
-	        content.append("\n═══════════════════════════════════════════════════════════\n");
-	        content.append("                    END OF HISTORY\n");
-	        content.append("═══════════════════════════════════════════════════════════");
-	        
-	        return content.toString();
-	        
-	    } catch (Exception e) {
-	        return "❌ Error retrieving transaction history: " + e.getMessage();
+	private String getHistorySummary(HistoryRows rows) {
+	    return "Account: " + currentAccount.getAccountNumber() + 
+	           " (" + currentAccount.getAccountType() + ")" +
+	           " | Balance: " + Money.formatRand(currentAccount.getBalance()) +
+	           " | Transactions: " + rows.history.size();
+	}
+
+	// Start of the first day picked, or no lower bound
+	private static long rangeFrom(DatePicker picker) {
+	    LocalDate day = picker.getValue();
+	    return day == null ? Long.MIN_VALUE : day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+	
+	// Start of the day after the last day picked, or no upper bound
+	private static long rangeTo(DatePicker picker) {
+	    LocalDate day = picker.getValue();
+	    return day == null ? Long.MAX_VALUE : day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+	
+	// Read-only view of an account's history for the list view, rendered row by row on demand
+	// Only entries with fromMillis <= timestamp < toMillis are shown, the range is looked up once by binary search
+	// The rows come from a ledger view taken under the account's lock, so they don't shift while the dialog is open
+	private static class HistoryRows extends AbstractList<String> {
+	    private final TransactionLedger.View history;
+	    private final int end; // entries before the range's end, counted from the oldest
+	    private final int size;
+	    
+	    HistoryRows(TransactionLedger.View history, long fromMillis, long toMillis) {
+	        this.history = history;
+	        this.end = history.firstAtOrAfter(toMillis);
+	        this.size = Math.max(end - history.firstAtOrAfter(fromMillis), 0);
+	    }
+	    
+	    @Override
+	    public String get(int position) {
+	        return history.render(end - 1 - position);
+	    }
+	    
+	    @Override
+	    public int size() {
+	        return size;
 	    }
 	}
 
-	private void exportTransactionHistory() {
-	    try {
-	        // Create a file chooser
-	        javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
-	        fileChooser.setTitle("Export Transaction History");
-	        fileChooser.setInitialFileName("transaction_history_" + currentAccount.getAccountNumber() + "_" + 
-	                                     java.time.LocalDate.now().toString() + ".txt");
-	        
-	        // Set extension filter
-	        javafx.stage.FileChooser.ExtensionFilter extFilter = 
-	            new javafx.stage.FileChooser.ExtensionFilter("Text files (*.txt)", "*.txt");
-	        fileChooser.getExtensionFilters().add(extFilter);
-	        
-	        // Show save dialog
-	        java.io.File file = fileChooser.showSaveDialog(primaryStage);
-	        
-	        if (file != null) {
-	            // Write transaction history to file
-	            try (java.io.PrintWriter writer = new java.io.PrintWriter(file)) {
-	                writer.println("BANKFORGE - TRANSACTION HISTORY EXPORT");
-	                writer.println("Export Date: " + java.time.LocalDateTime.now());
-	                writer.println("======================================");
-	                writer.println();
-	                writer.println(getTransactionHistoryContent());
-	                writer.println();
-	                writer.println("======================================");
-	                writer.println("This document was automatically generated by BankForge Banking System");
-	            }
-	            
-	            showSuccessDialog("Export Successful", 
-	                "Transaction history has been exported to:\n" + file.getAbsolutePath());
-	        }
-	        
-	    } catch (Exception e) {
+	private void exportTransactionHistory(long fromMillis, long toMillis) {
+	    // Create a file chooser with one filter per export format
+	    javafx.stage.FileChooser fileChooser = new javafx.stage.FileChooser();
+	    fileChooser.setTitle("Export Transaction History");
+	    fileChooser.setInitialFileName("transaction_history_" + currentAccount.getAccountNumber() + "_" + 
+	                                 java.time.LocalDate.now().toString());
+	    for (TransactionExporter.Format format : TransactionExporter.Format.values()) {
+	        fileChooser.getExtensionFilters().add(
+	            new javafx.stage.FileChooser.ExtensionFilter(format.getDescription(), "*." + format.getExtension()));
+	    }
+	    
+	    // Show save dialog
+	    java.io.File file = fileChooser.showSaveDialog(primaryStage);
+	    if (file == null) {
+	        return;
+	    }
+	    
+	    int formatIndex = fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter());
+	    TransactionExporter.Format format = TransactionExporter.Format.values()[Math.max(formatIndex, 0)];
+	    if (!file.getName().contains(".")) {
+	        file = new java.io.File(file.getParentFile(), file.getName() + "." + format.getExtension());
+	    }
+	    
+	    // Stream the export on a background thread and show its progress
+	    ExportTask exportTask = new ExportTask(bank(), currentAccount, file, format, fromMillis, toMillis);
+	    
+	    Stage progressStage = new Stage();
+	    progressStage.setTitle("Exporting...");
+	    progressStage.initOwner(primaryStage);
+	    
+	    VBox layout = new VBox(15);
+	    layout.setPadding(new Insets(25));
+	    layout.setAlignment(Pos.CENTER);
+	    layout.setStyle("-fx-background-color: #f8f9fa;");
+	    
+	    ProgressBar progressBar = new ProgressBar();
+	    progressBar.setPrefWidth(300);
+	    progressBar.progressProperty().bind(exportTask.progressProperty());
+	    
+	    Label progressLabel = new Label();
+	    progressLabel.textProperty().bind(exportTask.messageProperty());
+	    progressLabel.setStyle("-fx-text-fill: #666;");
+	    
+	    Button cancelBtn = createStyledButton("Cancel", "#9E9E9E", 120, 40);
+	    cancelBtn.setOnAction(e -> exportTask.cancel());
+	    
+	    layout.getChildren().addAll(progressBar, progressLabel, cancelBtn);
+	    progressStage.setScene(new Scene(layout, 380, 180));
+	    
+	    java.io.File target = file;
+	    exportTask.setOnSucceeded(e -> {
+	        progressStage.close();
+	        showSuccessDialog("Export Successful", 
+	            "Exported " + exportTask.getValue() + " transactions to:\n" + target.getAbsolutePath());
+	    });
+	    exportTask.setOnCancelled(e -> {
+	        progressStage.close();
+	        target.delete();
+	    });
+	    exportTask.setOnFailed(e -> {
+	        progressStage.close();
 	        Alert alert = new Alert(Alert.AlertType.ERROR);
 	        alert.setTitle("Export Error");
 	        alert.setHeaderText("Failed to export transaction history");
-	        alert.setContentText("Error: " + e.getMessage());
+	        alert.setContentText("Error: " + exportTask.getException().getMessage());
 	        alert.initOwner(primaryStage);
 	        alert.showAndWait();
+	    });
+	    
+	    Thread exportThread = new Thread(exportTask, "history-export");
+	    exportThread.setDaemon(true);
+	    exportThread.start();
+	    progressStage.show();
+	}
+	
+	// Background export of one account's history, reports progress to the JavaFX thread
+	private static class ExportTask extends Task<Long> {
+	    private final BankService bank;
+	    private final BankAccount account;
+	    private final java.io.File file;
+	    private final TransactionExporter.Format format;
+	    private final long fromMillis;
+	    private final long toMillis;
+	    
+	    ExportTask(BankService bank, BankAccount account, java.io.File file, TransactionExporter.Format format, long fromMillis, long toMillis) {
+	        this.bank = bank;
+	        this.account = account;
+	        this.file = file;
+	        this.format = format;
+	        this.fromMillis = fromMillis;
+	        this.toMillis = toMillis;
+	    }
+	    
+	    @Override
+	    protected Long call() throws Exception {
+	        return bank.exportHistory(account, file.toPath(), format, fromMillis, toMillis, new TransactionExporter.ProgressListener() {
+	            @Override
+	            public void onProgress(long written, long total) {
+	                updateProgress(written, Math.max(total, 1));
+	                updateMessage(written + " of " + total + " transactions written");
+	            }
+	            
+	            @Override
+	            public boolean isCancelled() {
+	                return ExportTask.this.isCancelled();
+	            }
+	        });
 	    }
 	}
 	
@@ -639,7 +868,7 @@ public class Main extends Application {
 	    
 	    // Current account info
 	    Label currentAccountLabel = new Label("From: Account " + currentAccount.getAccountNumber() + 
-	                                        " | Balance: R" + String.format("%.2f", currentAccount.getBalance()));
+	                                        " | Balance: " + Money.formatRand(currentAccount.getBalance()));
 	    currentAccountLabel.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
 	    currentAccountLabel.setStyle("-fx-text-fill: #666; -fx-padding: 0 0 10 0;");
 	    
@@ -676,13 +905,16 @@ public class Main extends Application {
 	        
 	        try {
 	            int targetAccountNumber = Integer.parseInt(targetAccountStr);
-	            double amount = Double.parseDouble(amountStr);
+	            long amount = Money.parse(amountStr);
 	            
 	            // Perform transfer
-	            TransferResult result = transferMoney(currentAccount, targetAccountNumber, amount, description);
+	            OperationResult result = bank().transfer(currentAccount.getAccountNumber(), targetAccountNumber, amount, description);
 	            
 	            if (result.isSuccess()) {
-	                showSuccessDialog("Transfer Successful!", result.getMessage());
+	                showSuccessDialog("Transfer Successful!", 
+	                    "Successfully transferred " + Money.formatRand(amount) + 
+	                    " to Account " + targetAccountNumber + "\n" +
+	                    "Your new balance: " + Money.formatRand(result.getBalance()));
 	                transferStage.close();
 	                showDashboard(); // Refresh dashboard
 	            } else {
@@ -703,111 +935,6 @@ public class Main extends Application {
 	    transferStage.show();
 	}
 
-	// Enhanced transfer money method with comprehensive validation
-	private TransferResult transferMoney(BankAccount fromAccount, int targetAccountNumber, double amount, String description) {
-	    // Input validation
-	    if (amount <= 0) {
-	        return new TransferResult(false, "Transfer amount must be positive.");
-	    }
-	    
-	    if (amount > fromAccount.getBalance()) {
-	        return new TransferResult(false, "Insufficient funds. Current balance: R" + String.format("%.2f", fromAccount.getBalance()));
-	    }
-	    
-	    if (fromAccount.getAccountNumber() == targetAccountNumber) {
-	        return new TransferResult(false, "Cannot transfer money to the same account.");
-	    }
-	    
-	    // Find target account
-	    BankAccount targetAccount = findAccountByNumber(targetAccountNumber);
-	    if (targetAccount == null) {
-	        return new TransferResult(false, "Target account not found. Please check the account number.");
-	    }
-	    
-	    if (!targetAccount.isActive()) {
-	        return new TransferResult(false, "Target account is inactive. Transfer cannot be completed.");
-	    }
-	    
-	    // Perform the transfer
-	    try {
-	        // Deduct from source account
-	        fromAccount.withdrawMoney(amount);
-	        
-	        // Add to target account
-	        targetAccount.depositMoney(amount);
-	        
-	        // Create detailed transaction records
-	        String timestamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-	        String descriptionText = description.isEmpty() ? "" : " - " + description;
-	        
-	        // Add transaction to source account history
-	        addTransactionToHistory(fromAccount, "Transferred R" + String.format("%.2f", amount) + 
-	                              " to Account " + targetAccountNumber + descriptionText + " on " + timestamp);
-	        
-	        // Add transaction to target account history
-	        addTransactionToHistory(targetAccount, "Received R" + String.format("%.2f", amount) + 
-	                              " from Account " + fromAccount.getAccountNumber() + descriptionText + " on " + timestamp);
-	        
-	        // Save data after successful transfer
-	        DataManager.saveAllData(customers, accounts);
-	        
-	        String successMessage = "Successfully transferred R" + String.format("%.2f", amount) + 
-	                               " to Account " + targetAccountNumber + "\n" +
-	                               "Your new balance: R" + String.format("%.2f", fromAccount.getBalance());
-	        
-	        return new TransferResult(true, successMessage);
-	        
-	    } catch (Exception e) {
-	        return new TransferResult(false, "Transfer failed due to an unexpected error: " + e.getMessage());
-	    }
-	}
-
-	// Helper method to find account by account number
-	private BankAccount findAccountByNumber(int accountNumber) {
-	    for (BankAccount account : accounts.values()) {
-	        if (account.getAccountNumber() == accountNumber) {
-	            return account;
-	        }
-	    }
-	    return null;
-	}
-
-	// Helper method to add transaction to history using reflection
-	private void addTransactionToHistory(BankAccount account, String transaction) {
-	    try {
-	        java.lang.reflect.Field field = BankAccount.class.getDeclaredField("transactionHistory");
-	        field.setAccessible(true);
-	        
-	        @SuppressWarnings("unchecked")
-	        List<String> transactionHistory = (List<String>) field.get(account);
-	        
-	        if (transactionHistory != null) {
-	            transactionHistory.add(transaction);
-	        }
-	    } catch (Exception e) {
-	        System.err.println("Error adding transaction to history: " + e.getMessage());
-	    }
-	}
-
-	// Result class for transfer operations
-	public static class TransferResult {
-	    private final boolean success;
-	    private final String message;
-	    
-	    public TransferResult(boolean success, String message) {
-	        this.success = success;
-	        this.message = message;
-	    }
-	    
-	    public boolean isSuccess() {
-	        return success;
-	    }
-	    
-	    public String getMessage() {
-	        return message;
-	    }
-	}
-	
     private void showTransactionForm(String title, boolean isDeposit) {
         Stage transactionStage = new Stage();
         transactionStage.setTitle(title);
@@ -833,27 +960,19 @@ public class Main extends Application {
         
         processBtn.setOnAction(e -> {
             try {
-                double amount = Double.parseDouble(amountField.getText().trim());
-                if (amount <= 0) {
-                    showError(messageLabel, "Amount must be positive.");
-                    return;
-                }
-                
-                boolean success;
-                if (isDeposit) {
-                    success = currentAccount.depositMoney(amount);
-                } else {
-                    success = currentAccount.withdrawMoney(amount);
-                }
+                long amount = Money.parse(amountField.getText());
+                OperationResult result = isDeposit
+                        ? bank().deposit(currentAccount.getAccountNumber(), amount)
+                        : bank().withdraw(currentAccount.getAccountNumber(), amount);
                 
-                if (success) {
+                if (result.isSuccess()) {
                     showSuccessDialog("Transaction Successful!", 
-                        (isDeposit ? "Deposited: R" : "Withdrawn: R") + String.format("%.2f", amount) +
-                        "\nNew Balance: R" + String.format("%.2f", currentAccount.getBalance()));
+                        (isDeposit ? "Deposited: " : "Withdrawn: ") + Money.formatRand(amount) +
+                        "\nNew Balance: " + Money.formatRand(result.getBalance()));
                     transactionStage.close();
                     showDashboard(); // Refresh dashboard
                 } else {
-                    showError(messageLabel, "Transaction failed. Please try again.");
+                    showError(messageLabel, result.getMessage());
                 }
             } catch (NumberFormatException ex) {
                 showError(messageLabel, "Please enter a valid amount.");
@@ -907,7 +1026,7 @@ public class Main extends Application {
                 return;
             }
             
-            java.util.List<Customer> matches = findMatchingCustomers(name, phone);
+            java.util.List<Customer> matches = bank().findMatchingCustomers(name, phone);
             
             if (matches.isEmpty()) {
                 resultArea.setText("❌ No account found with the provided information.\n\nPlease check your details and try again.");
@@ -917,7 +1036,7 @@ public class Main extends Application {
                 result.append("═══════════════════════════════════\n");
                 
                 for (Customer customer : matches) {
-                    BankAccount account = accounts.get(customer.getCustomerID());
+                    BankAccount account = bank().findAccountForCustomer(customer.getCustomerID());
                     if (account != null) {
                         result.append("Name: ").append(customer.getFullName()).append("\n");
                         result.append("Account Number: ").append(account.getAccountNumber()).append("\n");
@@ -948,49 +1067,19 @@ public class Main extends Application {
         recoverStage.show();
     }
  
-    private boolean authenticateUser(int accountNumber, String pin) {
-        // Find the account by account number
-        for (BankAccount account : accounts.values()) {
-            if (account.getAccountNumber() == accountNumber) {
-                // Use the validatePin method from BankAccount class
-                if (account.validatePin(pin)) {
-                    currentAccount = account;
-                    return true;
-                }
-                return false; // Account found but PIN is incorrect
-            }
-        }
-        return false; // Account not found
-    }
-
-    private Customer findCustomerById(String customerID) {
-        for (Customer customer : customers) {
-            if (customer.getCustomerID().equals(customerID)) {
-                return customer;
-            }
-        }
-        return null;
-    }
-
     private void showAccountDetailsDialog() {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Account Details");
         alert.setHeaderText("Account Information");
         
-        // Find the customer by iterating through customers and matching account holder name
-        Customer customer = null;
-        for (Customer c : customers) {
-            if (c.getFullName().equals(currentAccount.getAccountHolder())) {
-                customer = c;
-                break;
-            }
-        }
+        Customer customer = bank().findCustomerForAccount(currentAccount);
         
         StringBuilder details = new StringBuilder();
         
         details.append("Account Number: ").append(currentAccount.getAccountNumber()).append("\n");
         details.append("Account Holder: ").append(currentAccount.getAccountHolder()).append("\n");
-        details.append("Current Balance: R").append(String.format("%.2f", currentAccount.getBalance())).append("\n");
+        details.append("Current Balance: R");
+        Money.appendTo(details, currentAccount.getBalance()).append("\n");
         
         if (customer != null) {
             details.append("Phone: ").append(customer.getPhoneNumber()).append("\n");
@@ -1004,21 +1093,6 @@ public class Main extends Application {
         alert.showAndWait();
     }
     
-    private java.util.List<Customer> findMatchingCustomers(String name, String phone) {
-        java.util.List<Customer> matches = new java.util.ArrayList<>();
-        
-        for (Customer customer : customers) {
-            boolean nameMatch = name.isEmpty() || customer.getFullName().toLowerCase().contains(name.toLowerCase());
-            boolean phoneMatch = phone.isEmpty() || customer.getPhoneNumber().equals(phone);
-            
-            if (nameMatch && phoneMatch) {
-                matches.add(customer);
-            }
-        }
-        
-        return matches;
-    }
-	
 	private TextField createTextField(String promptText) {
 		TextField textField = new TextField();
 		textField.setPromptText(promptText);
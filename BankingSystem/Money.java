@@ -0,0 +1,98 @@
+package BankingSystem;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+//======== money is held as a long count of cents everywhere, these helpers convert at the edges
+public final class Money {
+	public static final long CENTS_PER_RAND = 100;
+	//======== keeps units * 100 + cents well inside a long
+	private static final int MAX_UNIT_DIGITS = 15;
+
+	private Money() {
+	}
+
+	//======== parses user input such as "250", "250.5" or "250.50", at most two decimal places
+	public static long parse(String text) {
+		String value = text.trim();
+		if (value.startsWith("R")) {
+			value = value.substring(1);
+		}
+		int length = value.length();
+		int i = 0;
+		boolean negative = false;
+		if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+			negative = value.charAt(i) == '-';
+			i++;
+		}
+
+		long units = 0;
+		int unitDigits = 0;
+		while (i < length && value.charAt(i) != '.') {
+			if (++unitDigits > MAX_UNIT_DIGITS) {
+				throw new NumberFormatException("Amount is too large: " + text);
+			}
+			units = units * 10 + digit(value, i);
+			i++;
+		}
+
+		long fraction = 0;
+		int fractionDigits = 0;
+		if (i < length) {
+			i++; //===== skip the decimal point
+			while (i < length) {
+				if (++fractionDigits > 2) {
+					throw new NumberFormatException("Amounts can have at most two decimal places: " + text);
+				}
+				fraction = fraction * 10 + digit(value, i);
+				i++;
+			}
+		}
+		if (unitDigits == 0 && fractionDigits == 0) {
+			throw new NumberFormatException("Not an amount: " + text);
+		}
+		if (fractionDigits == 1) {
+			fraction *= 10;
+		}
+
+		long cents = units * CENTS_PER_RAND + fraction;
+		return negative ? -cents : cents;
+	}
+
+	private static int digit(String value, int index) {
+		char c = value.charAt(index);
+		if (c < '0' || c > '9') {
+			throw new NumberFormatException("Not an amount: " + value);
+		}
+		return c - '0';
+	}
+
+	//======== "1234.50", without a currency symbol, for exports
+	public static String format(long cents) {
+		return appendTo(new StringBuilder(24), cents).toString();
+	}
+
+	//======== "R1234.50", for the UI and reports
+	public static String formatRand(long cents) {
+		return appendTo(new StringBuilder(24).append('R'), cents).toString();
+	}
+
+	//======== appends "1234.50" without creating any intermediate objects
+	public static StringBuilder appendTo(StringBuilder out, long cents) {
+		long units = cents / CENTS_PER_RAND;
+		int fraction = (int) Math.abs(cents % CENTS_PER_RAND);
+		if (cents < 0 && units == 0) {
+			out.append('-');
+		}
+		out.append(units).append('.');
+		if (fraction < 10) {
+			out.append('0');
+		}
+		return out.append(fraction);
+	}
+
+	//======== only for reading amounts saved as doubles by older versions
+	public static long fromDouble(double amount) {
+		return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+	}
+}
@@ -0,0 +1,92 @@
+package BankingSystem;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+//======== SHA-256 PIN hashes kept as raw 32-byte arrays
+//======== verification reuses one digest and scratch buffers per thread, so a login allocates nothing
+public final class PinHash {
+	public static final int LENGTH = 32;
+
+	//======== PINs are four digits; longer input falls back to an allocating path
+	private static final int SCRATCH_SIZE = 64;
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	private static final class Scratch {
+		final MessageDigest digest = newDigest();
+		final byte[] input = new byte[SCRATCH_SIZE];
+		final byte[] output = new byte[LENGTH];
+	}
+
+	private PinHash() {
+	}
+
+	//======== new hash array, used when a PIN is set
+	public static byte[] hash(String pin) {
+		Scratch scratch = SCRATCH.get();
+		digestInto(scratch, pin);
+		return scratch.output.clone();
+	}
+
+	//======== constant-time comparison against a stored hash
+	public static boolean matches(String pin, byte[] expected) {
+		if (pin == null || expected == null) {
+			return false;
+		}
+		Scratch scratch = SCRATCH.get();
+		digestInto(scratch, pin);
+		return MessageDigest.isEqual(scratch.output, expected);
+	}
+
+	private static void digestInto(Scratch scratch, String pin) {
+		MessageDigest digest = scratch.digest;
+		int length = pin.length();
+		boolean ascii = length <= SCRATCH_SIZE;
+		for (int i = 0; i < length && ascii; i++) {
+			char c = pin.charAt(i);
+			if (c >= 0x80) {
+				ascii = false;
+			} else {
+				scratch.input[i] = (byte) c;
+			}
+		}
+		if (ascii) {
+			digest.update(scratch.input, 0, length);
+		} else {
+			digest.update(pin.getBytes(StandardCharsets.UTF_8));
+		}
+		try {
+			digest.digest(scratch.output, 0, LENGTH);
+		} catch (DigestException e) {
+			throw new IllegalStateException("SHA-256 digest failed", e);
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 algorithm not available", e);
+		}
+	}
+
+	//======== hex conversion for hashes saved as text by older versions
+	public static byte[] fromHex(String hex) {
+		if (hex == null || hex.length() != LENGTH * 2) {
+			throw new IllegalArgumentException("Not a SHA-256 hex hash: " + hex);
+		}
+		byte[] hash = new byte[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			int high = Character.digit(hex.charAt(2 * i), 16);
+			int low = Character.digit(hex.charAt(2 * i + 1), 16);
+			if (high < 0 || low < 0) {
+				throw new IllegalArgumentException("Not a SHA-256 hex hash: " + hex);
+			}
+			hash[i] = (byte) ((high << 4) | low);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,576 @@
+package BankingSystem;
+
+import BankingSystem.data.HistoryArchive;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+//======== typed transaction history of one account
+//======== entries live in parallel primitive arrays and are only turned into text when displayed
+//======== entries are never changed once appended and arrays are replaced rather than resized, which is what lets
+//======== a View read a frozen prefix without locking while appends carry on
+//======== the ledger itself is only read under the account's lock: adoptSealed swaps the blocks and arrays one field at
+//======== a time, so a reader on another thread takes a view under the lock (BankService.history) and reads that
+//======== a long history keeps only its recent entries in the arrays, the older ones are sealed into compressed blocks
+//======== on disk (HistoryArchive) and read back when asked for; indexes run over both, 0 is always the oldest entry
+//======== timestamps never go backwards, so a date range is found by binary search (firstAtOrAfter) rather than a scan
+public class TransactionLedger implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	//======= entry types
+	public static final byte LEGACY = 0;       //===== free-text entry carried over from the old string history
+	public static final byte DEPOSIT = 1;
+	public static final byte WITHDRAWAL = 2;
+	public static final byte TRANSFER_OUT = 3;
+	public static final byte TRANSFER_IN = 4;
+	public static final byte PIN_CHANGE = 5;
+	public static final byte INTEREST = 6;     //===== credited by the end-of-day batch
+	public static final byte FEE = 7;          //===== charged by the end-of-day batch
+	public static final byte OPENING = 8;      //===== balance from before the history begins, always the first entry
+
+	public static final int NO_DESCRIPTION = -1;
+
+	private static final int INITIAL_CAPACITY = 4;
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+	private byte[] types;
+	private long[] amounts; //===== cents
+	private int[] counterparties;
+	private long[] timestamps;
+	private int[] descriptionIds;
+	private int size; //===== entries in the arrays
+
+	//======= the entries before those in the arrays; null while the whole history is in memory
+	private transient HistoryArchive.Blocks blocks;
+
+	//======= descriptions are stored once per ledger and referenced by ID
+	private String[] descriptions = new String[INITIAL_CAPACITY];
+	private int descriptionCount;
+
+	public TransactionLedger() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public TransactionLedger(int capacity) {
+		capacity = Math.max(capacity, 1);
+		types = new byte[capacity];
+		amounts = new long[capacity];
+		counterparties = new int[capacity];
+		timestamps = new long[capacity];
+		descriptionIds = new int[capacity];
+	}
+
+	//======= appends one entry, amounts are in cents and the description may be null
+	public void append(byte type, long amount, int counterparty, long timestampMillis, String description) {
+		appendWithDescriptionId(type, amount, counterparty, timestampMillis, internDescription(description));
+	}
+
+	//======= used when loading a snapshot, where descriptions were already restored in order
+	//======= an entry stamped before the one ahead of it (the clock was set back) takes that entry's time instead
+	public void appendWithDescriptionId(byte type, long amount, int counterparty, long timestampMillis, int descriptionId) {
+		if (size > 0) {
+			timestampMillis = Math.max(timestampMillis, timestamps[size - 1]);
+		} else if (blocks != null) {
+			timestampMillis = Math.max(timestampMillis, blocks.getMaxTimestamp(blocks.getBlockCount() - 1));
+		}
+		if (size == types.length) {
+			grow();
+		}
+		types[size] = type;
+		amounts[size] = amount;
+		counterparties[size] = counterparty;
+		timestamps[size] = timestampMillis;
+		descriptionIds[size] = descriptionId;
+		size++;
+	}
+
+	//======= keeps an old free-text history line as-is, dated from its trailing " on <date>" when it has one
+	public void appendLegacy(String text, LocalDate fallbackDate) {
+		long timestamp = fallbackDate == null ? 0L : fallbackDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		int on = text.lastIndexOf(" on ");
+		if (on >= 0) {
+			String when = text.substring(on + 4).trim();
+			try {
+				timestamp = LocalDateTime.parse(when, TIMESTAMP_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+			} catch (DateTimeParseException e) {
+				try {
+					timestamp = LocalDate.parse(when).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+				} catch (DateTimeParseException ignored) {
+					//===== no usable date, keep the fallback
+				}
+			}
+		}
+		appendWithDescriptionId(LEGACY, 0, 0, timestamp, addDescription(text));
+	}
+
+	public int addDescription(String description) {
+		if (descriptionCount == descriptions.length) {
+			descriptions = Arrays.copyOf(descriptions, descriptionCount + (descriptionCount >> 1) + 1);
+		}
+		descriptions[descriptionCount] = description;
+		return descriptionCount++;
+	}
+
+	private int internDescription(String description) {
+		if (description == null || description.isEmpty()) {
+			return NO_DESCRIPTION;
+		}
+		//======= repeated descriptions (e.g. "rent") usually follow each other, so only check the last one
+		int last = descriptionCount - 1;
+		if (last >= 0 && descriptions[last].equals(description)) {
+			return last;
+		}
+		return addDescription(description);
+	}
+
+	//======= puts the balance the older entries do not explain in front of them; the amount may be negative
+	//======= only for history loaded from older versions, which has nothing sealed
+	public void prependOpening(long amount, long timestampMillis) {
+		if (blocks != null) {
+			throw new IllegalStateException("An opening balance cannot go in front of sealed history");
+		}
+		if (size > 0 && timestamps[0] < timestampMillis) {
+			timestampMillis = timestamps[0];
+		}
+		//======= new arrays, so views taken before still see the history they were given
+		int capacity = size + (size >> 1) + 1;
+		byte[] newTypes = new byte[capacity];
+		long[] newAmounts = new long[capacity];
+		int[] newCounterparties = new int[capacity];
+		long[] newTimestamps = new long[capacity];
+		int[] newDescriptionIds = new int[capacity];
+		System.arraycopy(types, 0, newTypes, 1, size);
+		System.arraycopy(amounts, 0, newAmounts, 1, size);
+		System.arraycopy(counterparties, 0, newCounterparties, 1, size);
+		System.arraycopy(timestamps, 0, newTimestamps, 1, size);
+		System.arraycopy(descriptionIds, 0, newDescriptionIds, 1, size);
+		newTypes[0] = OPENING;
+		newAmounts[0] = amount;
+		newTimestamps[0] = timestampMillis;
+		newDescriptionIds[0] = NO_DESCRIPTION;
+		types = newTypes;
+		amounts = newAmounts;
+		counterparties = newCounterparties;
+		timestamps = newTimestamps;
+		descriptionIds = newDescriptionIds;
+		size++;
+	}
+
+	//======= what the entries add up to in cents, which is the account's balance (see BankAccount.recordOpeningBalance)
+	public long balance() {
+		long balance = blocks == null ? 0 : blocks.getBalance();
+		for (int i = 0; i < size; i++) {
+			balance += balanceEffect(types[i], amounts[i]);
+		}
+		return balance;
+	}
+
+	private void grow() {
+		int capacity = types.length + (types.length >> 1) + 1;
+		types = Arrays.copyOf(types, capacity);
+		amounts = Arrays.copyOf(amounts, capacity);
+		counterparties = Arrays.copyOf(counterparties, capacity);
+		timestamps = Arrays.copyOf(timestamps, capacity);
+		descriptionIds = Arrays.copyOf(descriptionIds, capacity);
+	}
+
+	//======= used when loading a snapshot: the arrays already hold the entries that follow the blocks
+	public void restoreBlocks(HistoryArchive.Blocks sealed) {
+		if (blocks != null) {
+			throw new IllegalStateException("The ledger already has sealed blocks");
+		}
+		blocks = sealed;
+	}
+
+	//======= drops the oldest entries from the arrays once the snapshot writer has sealed them, from a view of this
+	//======= ledger, into blocks that follow on from its own; the history reads the same before and after
+	//======= returns false, changing nothing, when the blocks do not fit this ledger
+	public boolean adoptSealed(HistoryArchive.Blocks sealed) {
+		int dropped = sealed.getEntryCount() - getSealedCount();
+		if (!sealed.follows(blocks) || dropped <= 0 || dropped > size) {
+			return false;
+		}
+		int remaining = size - dropped;
+		int capacity = Math.max(remaining + (remaining >> 1) + 1, INITIAL_CAPACITY);
+		//======= new arrays, so views taken before still see the history they were given
+		byte[] newTypes = new byte[capacity];
+		long[] newAmounts = new long[capacity];
+		int[] newCounterparties = new int[capacity];
+		long[] newTimestamps = new long[capacity];
+		int[] newDescriptionIds = new int[capacity];
+		System.arraycopy(types, dropped, newTypes, 0, remaining);
+		System.arraycopy(amounts, dropped, newAmounts, 0, remaining);
+		System.arraycopy(counterparties, dropped, newCounterparties, 0, remaining);
+		System.arraycopy(timestamps, dropped, newTimestamps, 0, remaining);
+		System.arraycopy(descriptionIds, dropped, newDescriptionIds, 0, remaining);
+
+		//======= only the descriptions the remaining entries use are kept
+		String[] kept = new String[INITIAL_CAPACITY];
+		int keptCount = 0;
+		int[] renumbered = new int[descriptionCount];
+		Arrays.fill(renumbered, NO_DESCRIPTION);
+		for (int i = 0; i < remaining; i++) {
+			int id = newDescriptionIds[i];
+			if (id == NO_DESCRIPTION) {
+				continue;
+			}
+			if (renumbered[id] == NO_DESCRIPTION) {
+				if (keptCount == kept.length) {
+					kept = Arrays.copyOf(kept, keptCount + (keptCount >> 1) + 1);
+				}
+				kept[keptCount] = descriptions[id];
+				renumbered[id] = keptCount++;
+			}
+			newDescriptionIds[i] = renumbered[id];
+		}
+
+		types = newTypes;
+		amounts = newAmounts;
+		counterparties = newCounterparties;
+		timestamps = newTimestamps;
+		descriptionIds = newDescriptionIds;
+		descriptions = kept;
+		descriptionCount = keptCount;
+		blocks = sealed;
+		size = remaining;
+		return true;
+	}
+
+	//======= column accessors, index 0 is the oldest entry; sealed entries are read from their block
+	public int size() {
+		return getSealedCount() + size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	//======= entries 0 up to this are in blocks on disk
+	public int getSealedCount() {
+		return blocks == null ? 0 : blocks.getEntryCount();
+	}
+
+	public HistoryArchive.Blocks getBlocks() {
+		return blocks;
+	}
+
+	public byte getType(int index) {
+		int inMemory = inMemoryIndex(index);
+		return inMemory >= 0 ? types[inMemory] : blocks.getType(index);
+	}
+
+	public long getAmount(int index) {
+		int inMemory = inMemoryIndex(index);
+		return inMemory >= 0 ? amounts[inMemory] : blocks.getAmount(index);
+	}
+
+	public int getCounterparty(int index) {
+		int inMemory = inMemoryIndex(index);
+		return inMemory >= 0 ? counterparties[inMemory] : blocks.getCounterparty(index);
+	}
+
+	public long getTimestamp(int index) {
+		int inMemory = inMemoryIndex(index);
+		return inMemory >= 0 ? timestamps[inMemory] : blocks.getTimestamp(index);
+	}
+
+	//======= description IDs number getDescriptions() and only entries still in memory have one
+	public int getDescriptionId(int index) {
+		int inMemory = inMemoryIndex(index);
+		if (inMemory < 0) {
+			throw new IllegalArgumentException("Ledger entry " + index + " is sealed and has no description ID");
+		}
+		return descriptionIds[inMemory];
+	}
+
+	public String getDescription(int index) {
+		int inMemory = inMemoryIndex(index);
+		if (inMemory < 0) {
+			return blocks.getDescription(index);
+		}
+		int id = descriptionIds[inMemory];
+		return id == NO_DESCRIPTION ? null : descriptions[id];
+	}
+
+	//======= the index of the first entry stamped at or after the time, size() when there is none; the entries from
+	//======= firstAtOrAfter(from) up to firstAtOrAfter(to) are those with from <= timestamp < to
+	//======= O(log n): among sealed entries the block index picks the one block to search, and only that block is read
+	public int firstAtOrAfter(long timestampMillis) {
+		return firstAtOrAfter(blocks, timestamps, 0, size, timestampMillis);
+	}
+
+	//======= what the entries from 'from' up to 'to' did to the balance, in cents; sealed blocks that lie wholly inside
+	//======= count with the total kept in the block index, so at most the two blocks at the ends are read
+	public long effectBetween(int from, int to) {
+		return effectBetween(blocks, types, amounts, 0, size, from, to);
+	}
+
+	private static int firstAtOrAfter(HistoryArchive.Blocks blocks, long[] timestamps, int offset, int inMemoryCount, long timestampMillis) {
+		int sealed = blocks == null ? 0 : blocks.getEntryCount();
+		if (blocks != null && (inMemoryCount == 0 || timestamps[offset] >= timestampMillis)) {
+			return blocks.firstAtOrAfter(timestampMillis);
+		}
+		int low = offset;
+		int high = offset + inMemoryCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[middle] < timestampMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return sealed + low - offset;
+	}
+
+	private static long effectBetween(HistoryArchive.Blocks blocks, byte[] types, long[] amounts, int offset, int inMemoryCount, int from, int to) {
+		int sealed = blocks == null ? 0 : blocks.getEntryCount();
+		Objects.checkFromToIndex(from, to, sealed + inMemoryCount);
+		long effect = from < sealed ? blocks.effectBetween(from, Math.min(to, sealed)) : 0;
+		for (int i = Math.max(from, sealed); i < to; i++) {
+			effect += balanceEffect(types[offset + i - sealed], amounts[offset + i - sealed]);
+		}
+		return effect;
+	}
+
+	public List<String> getDescriptions() {
+		return Arrays.asList(descriptions).subList(0, descriptionCount);
+	}
+
+	//======= the entries appended so far, readable from another thread once the caller has synchronized with
+	//======= the appending thread (e.g. through the account's lock); later appends do not show up in it
+	public View view() {
+		return new View(blocks, types, amounts, counterparties, timestamps, descriptionIds, 0, size, descriptions, descriptionCount);
+	}
+
+	public static final class View {
+		private final HistoryArchive.Blocks blocks;
+		private final int sealedCount;
+		private final byte[] types;
+		private final long[] amounts;
+		private final int[] counterparties;
+		private final long[] timestamps;
+		private final int[] descriptionIds;
+		private final int offset; //===== where the view's in-memory entries start in the arrays
+		private final int inMemoryCount;
+		private final String[] descriptions;
+		private final int descriptionCount;
+
+		private View(HistoryArchive.Blocks blocks, byte[] types, long[] amounts, int[] counterparties, long[] timestamps, int[] descriptionIds, int offset, int inMemoryCount, String[] descriptions, int descriptionCount) {
+			this.blocks = blocks;
+			this.sealedCount = blocks == null ? 0 : blocks.getEntryCount();
+			this.types = types;
+			this.amounts = amounts;
+			this.counterparties = counterparties;
+			this.timestamps = timestamps;
+			this.descriptionIds = descriptionIds;
+			this.offset = offset;
+			this.inMemoryCount = inMemoryCount;
+			this.descriptions = descriptions;
+			this.descriptionCount = descriptionCount;
+		}
+
+		//======= the same entries with the oldest in-memory ones moved into the given blocks, which must follow on from
+		//======= this view's own (see HistoryArchive.seal)
+		public View sealedUpTo(HistoryArchive.Blocks sealed) {
+			int moved = sealed.getEntryCount() - sealedCount;
+			if (!sealed.follows(blocks) || moved <= 0 || moved > inMemoryCount) {
+				throw new IllegalArgumentException("The blocks do not follow on from this view");
+			}
+			return new View(sealed, types, amounts, counterparties, timestamps, descriptionIds, offset + moved, inMemoryCount - moved, descriptions, descriptionCount);
+		}
+
+		public int size() {
+			return sealedCount + inMemoryCount;
+		}
+
+		public int getSealedCount() {
+			return sealedCount;
+		}
+
+		public HistoryArchive.Blocks getBlocks() {
+			return blocks;
+		}
+
+		public byte getType(int index) {
+			int inMemory = inMemoryIndex(index);
+			return inMemory >= 0 ? types[inMemory] : blocks.getType(index);
+		}
+
+		public long getAmount(int index) {
+			int inMemory = inMemoryIndex(index);
+			return inMemory >= 0 ? amounts[inMemory] : blocks.getAmount(index);
+		}
+
+		public int getCounterparty(int index) {
+			int inMemory = inMemoryIndex(index);
+			return inMemory >= 0 ? counterparties[inMemory] : blocks.getCounterparty(index);
+		}
+
+		public long getTimestamp(int index) {
+			int inMemory = inMemoryIndex(index);
+			return inMemory >= 0 ? timestamps[inMemory] : blocks.getTimestamp(index);
+		}
+
+		//======= only for entries still in memory, see TransactionLedger.getDescriptionId
+		public int getDescriptionId(int index) {
+			int inMemory = inMemoryIndex(index);
+			if (inMemory < 0) {
+				throw new IllegalArgumentException("Ledger entry " + index + " is sealed and has no description ID");
+			}
+			return descriptionIds[inMemory];
+		}
+
+		public int getDescriptionCount() {
+			return descriptionCount;
+		}
+
+		public String getDescriptionById(int id) {
+			return descriptions[Objects.checkIndex(id, descriptionCount)];
+		}
+
+		public String getDescription(int index) {
+			int inMemory = inMemoryIndex(index);
+			if (inMemory < 0) {
+				return blocks.getDescription(index);
+			}
+			int id = descriptionIds[inMemory];
+			return id == NO_DESCRIPTION ? null : descriptions[id];
+		}
+
+		//======= see TransactionLedger.render
+		public String render(int index) {
+			return TransactionLedger.render(getType(index), getAmount(index), getCounterparty(index), getTimestamp(index), getDescription(index));
+		}
+
+		//======= renders at most 'limit' entries starting 'offset' entries back from the newest, newest first
+		public List<String> renderPage(int offset, int limit) {
+			int newest = size() - 1 - Math.max(offset, 0);
+			int oldest = Math.max(newest - limit + 1, 0);
+			List<String> page = new ArrayList<>(Math.max(newest - oldest + 1, 0));
+			for (int i = newest; i >= oldest; i--) {
+				page.add(render(i));
+			}
+			return page;
+		}
+
+		//======= newest-first entries with fromMillis <= timestamp < toMillis, at most 'limit' of them; the range is found
+		//======= by binary search, only the entries in it are rendered
+		public List<String> renderBetween(long fromMillis, long toMillis, int limit) {
+			int oldest = firstAtOrAfter(fromMillis);
+			int newest = Math.max(firstAtOrAfter(toMillis), oldest) - 1;
+			List<String> page = new ArrayList<>(Math.max(Math.min(newest - oldest + 1, limit), 0));
+			for (int i = newest; i >= oldest && page.size() < limit; i--) {
+				page.add(render(i));
+			}
+			return page;
+		}
+
+		//======= see TransactionLedger.firstAtOrAfter
+		public int firstAtOrAfter(long timestampMillis) {
+			return TransactionLedger.firstAtOrAfter(blocks, timestamps, offset, inMemoryCount, timestampMillis);
+		}
+
+		//======= see TransactionLedger.effectBetween
+		public long effectBetween(int from, int to) {
+			return TransactionLedger.effectBetween(blocks, types, amounts, offset, inMemoryCount, from, to);
+		}
+
+		//======= the position in the arrays, or -1 for a sealed entry
+		private int inMemoryIndex(int index) {
+			Objects.checkIndex(index, sealedCount + inMemoryCount);
+			return index < sealedCount ? -1 : offset + index - sealedCount;
+		}
+	}
+
+	//======= the position in the arrays, or -1 for a sealed entry
+	private int inMemoryIndex(int index) {
+		int sealed = getSealedCount();
+		if (index < 0 || index >= sealed + size) {
+			throw new IndexOutOfBoundsException("Ledger index " + index + " out of bounds for size " + (sealed + size));
+		}
+		return index < sealed ? -1 : index - sealed;
+	}
+
+	//======= what an entry did to the balance in cents: positive for money in, negative for money out, 0 for the rest
+	public static long balanceEffect(byte type, long amount) {
+		switch (type) {
+			case DEPOSIT:
+			case TRANSFER_IN:
+			case INTEREST:
+			case OPENING:
+				return amount;
+			case WITHDRAWAL:
+			case TRANSFER_OUT:
+			case FEE:
+				return -amount;
+			default:
+				return 0;
+		}
+	}
+
+	//======= stable name for exports
+	public static String typeName(byte type) {
+		switch (type) {
+			case DEPOSIT:
+				return "DEPOSIT";
+			case WITHDRAWAL:
+				return "WITHDRAWAL";
+			case TRANSFER_OUT:
+				return "TRANSFER_OUT";
+			case TRANSFER_IN:
+				return "TRANSFER_IN";
+			case PIN_CHANGE:
+				return "PIN_CHANGE";
+			case INTEREST:
+				return "INTEREST";
+			case FEE:
+				return "FEE";
+			case OPENING:
+				return "OPENING";
+			default:
+				return "LEGACY";
+		}
+	}
+
+	//======= builds the display text for one entry
+	public String render(int index) {
+		return render(getType(index), getAmount(index), getCounterparty(index), getTimestamp(index), getDescription(index));
+	}
+
+	private static String render(byte type, long amountCents, int counterparty, long timestampMillis, String description) {
+		String descriptionText = description == null ? "" : " - " + description;
+		String when = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timestampMillis));
+		String amount = Money.formatRand(amountCents);
+
+		switch (type) {
+			case DEPOSIT:
+				return "Deposited " + amount + " on " + when;
+			case WITHDRAWAL:
+				return "Withdrew " + amount + " on " + when;
+			case TRANSFER_OUT:
+				return "Transferred " + amount + " to Account " + counterparty + descriptionText + " on " + when;
+			case TRANSFER_IN:
+				return "Received " + amount + " from Account " + counterparty + descriptionText + " on " + when;
+			case PIN_CHANGE:
+				return "PIN changed on " + when;
+			case INTEREST:
+				return "Interest earned " + amount + descriptionText + " on " + when;
+			case FEE:
+				return "Fee charged " + amount + descriptionText + " on " + when;
+			case OPENING:
+				return "Opening balance " + amount + " on " + when;
+			default:
+				return description == null ? "" : description;
+		}
+	}
+}
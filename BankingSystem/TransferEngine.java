@@ -0,0 +1,327 @@
+package BankingSystem;
+
+import BankingSystem.data.AccountStore;
+import BankingSystem.data.CopyOnWriteSnapshot;
+import BankingSystem.data.HistoryArchive;
+import BankingSystem.data.TransactionJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+//======== applies balance changes under striped per-account locks
+//======== a transfer holds both accounts' stripes, so both legs, both ledger entries and the
+//======== journal record happen as one step as far as any other thread can tell
+//======== callers return only once their journal record is durable; the wait happens after the locks are
+//======== released, so with group commit every thread queued behind the same fsync shares it
+//======== while a background snapshot is running, each account's old state is handed to it before its first change
+//======== changed accounts are also queued once per epoch, so an incremental snapshot writes only those
+//======== with an account store attached, every new balance is written to it before the locks are released
+public class TransferEngine {
+	private final ReentrantLock[] stripes;
+	private final int mask;
+	private final TransactionJournal journal;
+	private volatile CopyOnWriteSnapshot snapshot;
+	//======== accounts start in epoch 0, so the first change to every account is noticed
+	private volatile long epoch = 1;
+	private volatile ConcurrentLinkedQueue<BankAccount> changed = new ConcurrentLinkedQueue<>();
+	private volatile AccountStore store;
+
+	public TransferEngine(TransactionJournal journal) {
+		this(journal, defaultStripeCount());
+	}
+
+	public TransferEngine(TransactionJournal journal, int stripeCount) {
+		int size = Integer.highestOneBit(Math.max(stripeCount, 1));
+		this.stripes = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+		this.journal = journal;
+	}
+
+	private static int defaultStripeCount() {
+		return Math.max(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 64);
+	}
+
+	//======== every operation reads the balance it reports under the lock, so a refusal carries the balance that caused it
+	//======== and a success the balance this operation left, whatever other threads do to the account afterwards
+	public Result deposit(BankAccount account, long amountCents) {
+		CompletableFuture<Void> durable = null;
+		long balanceCents;
+		ReentrantLock lock = stripeFor(account.getAccountNumber());
+		lock.lock();
+		try {
+			beforeChange(account);
+			if (!account.depositMoney(amountCents)) {
+				return new Result(Outcome.INVALID_AMOUNT, account.getBalance(), "Amount must be positive.");
+			}
+			balanceCents = account.getBalance();
+			afterChange(account);
+			if (journal != null) {
+				durable = journal.recordDeposit(account, amountCents);
+			}
+		} finally {
+			lock.unlock();
+		}
+		awaitDurable(durable);
+		return new Result(Outcome.DONE, balanceCents, null);
+	}
+
+	public Result withdraw(BankAccount account, long amountCents) {
+		CompletableFuture<Void> durable = null;
+		long balanceCents;
+		ReentrantLock lock = stripeFor(account.getAccountNumber());
+		lock.lock();
+		try {
+			beforeChange(account);
+			if (!account.withdrawMoney(amountCents)) {
+				Outcome outcome = amountCents <= 0 ? Outcome.INVALID_AMOUNT : Outcome.INSUFFICIENT_FUNDS;
+				return new Result(outcome, account.getBalance(), null);
+			}
+			balanceCents = account.getBalance();
+			afterChange(account);
+			if (journal != null) {
+				durable = journal.recordWithdrawal(account, amountCents);
+			}
+		} finally {
+			lock.unlock();
+		}
+		awaitDurable(durable);
+		return new Result(Outcome.DONE, balanceCents, null);
+	}
+
+	//======== the new hash is journalled and written to the account store like a balance change; INVALID_PIN when the
+	//======== old PIN does not match, changing nothing
+	public Result changePin(BankAccount account, String oldPin, String newPin) {
+		CompletableFuture<Void> durable = null;
+		long balanceCents;
+		ReentrantLock lock = stripeFor(account.getAccountNumber());
+		lock.lock();
+		try {
+			beforeChange(account);
+			if (!account.changePin(oldPin, newPin)) {
+				return new Result(Outcome.INVALID_PIN, account.getBalance(), null);
+			}
+			balanceCents = account.getBalance();
+			markChanged(account);
+			AccountStore attached = store;
+			if (attached != null) {
+				attached.updatePinHash(account);
+			}
+			if (journal != null) {
+				durable = journal.recordPinChange(account);
+			}
+		} finally {
+			lock.unlock();
+		}
+		awaitDurable(durable);
+		return new Result(Outcome.DONE, balanceCents, null);
+	}
+
+	//======== the balance reported is the source account's
+	public Result transfer(BankAccount from, BankAccount to, long amountCents, String description) {
+		if (from == null || to == null) {
+			return new Result(Outcome.FAILED, 0, "Target account is invalid.");
+		}
+		if (!TransactionJournal.fitsDescription(description)) {
+			return new Result(Outcome.INVALID_DESCRIPTION, 0, "Description is too long.");
+		}
+
+		//======== always take the lower stripe first so two opposite transfers can never deadlock;
+		//======== ordering by stripe rather than by account number keeps this true when accounts share stripes
+		int first = stripeIndex(from.getAccountNumber());
+		int second = stripeIndex(to.getAccountNumber());
+		if (first > second) {
+			int swap = first;
+			first = second;
+			second = swap;
+		}
+
+		Result result;
+		CompletableFuture<Void> durable = null;
+		stripes[first].lock();
+		try {
+			if (second != first) {
+				stripes[second].lock();
+			}
+			try {
+				beforeChange(from);
+				beforeChange(to);
+				BankAccount.TransferResult legs = from.transferMoneyTo(to, amountCents, description);
+				if (legs.isSuccess()) {
+					result = new Result(Outcome.DONE, from.getBalance(), legs.getMessage());
+					afterChange(from);
+					afterChange(to);
+					if (journal != null) {
+						durable = journal.recordTransfer(from, to, amountCents, description);
+					}
+				} else {
+					result = new Result(refusal(from, to, amountCents), from.getBalance(), legs.getMessage());
+				}
+			} finally {
+				if (second != first) {
+					stripes[second].unlock();
+				}
+			}
+		} finally {
+			stripes[first].unlock();
+		}
+		awaitDurable(durable);
+		return result;
+	}
+
+	//======== why transferMoneyTo refused, from the same state it saw; called with both stripes held
+	private static Outcome refusal(BankAccount from, BankAccount to, long amountCents) {
+		if (amountCents <= 0) {
+			return Outcome.INVALID_AMOUNT;
+		}
+		if (amountCents > from.getBalance()) {
+			return Outcome.INSUFFICIENT_FUNDS;
+		}
+		if (!to.isActive()) {
+			return Outcome.ACCOUNT_INACTIVE;
+		}
+		return Outcome.FAILED;
+	}
+
+	//======== a failed write has already been reported by the journal; the change stays applied in memory
+	//======== and reaches disk with the next snapshot
+	private static void awaitDurable(CompletableFuture<Void> durable) {
+		if (durable == null) {
+			return;
+		}
+		try {
+			durable.join();
+		} catch (CompletionException e) {
+			//======== already logged by the journal
+		}
+	}
+
+	//======== snapshots
+	//======== start and finish are called by the snapshot's owner, start while no operation is in flight
+	public void beginSnapshot(CopyOnWriteSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	public void endSnapshot() {
+		this.snapshot = null;
+	}
+
+	//======== called with the account's lock held, before a change that may still be refused
+	private void beforeChange(BankAccount account) {
+		CopyOnWriteSnapshot running = snapshot;
+		if (running != null) {
+			running.beforeChange(account);
+		}
+	}
+
+	//======== null detaches the store; call while no operation is in flight
+	public void setAccountStore(AccountStore store) {
+		this.store = store;
+	}
+
+	//======== called with the account's lock held, after a change; a refused operation never gets here, so it does not
+	//======== put an unchanged account into the next incremental snapshot
+	private void afterChange(BankAccount account) {
+		markChanged(account);
+		AccountStore attached = store;
+		if (attached != null) {
+			attached.updateBalance(account);
+		}
+	}
+
+	//======== queues the account for the next incremental snapshot, at most once per epoch; call it with the
+	//======== account's lock held, or for changes made outside the engine (registration, journal replay) while
+	//======== no operation is in flight
+	public void markChanged(BankAccount account) {
+		long current = epoch;
+		if (account.getChangedEpoch() != current) {
+			account.setChangedEpoch(current);
+			changed.add(account);
+		}
+	}
+
+	//======== starts a new epoch and returns the accounts changed in the one before; call while no operation is in flight
+	public List<BankAccount> nextEpoch() {
+		ConcurrentLinkedQueue<BankAccount> previous = changed;
+		changed = new ConcurrentLinkedQueue<>();
+		epoch++;
+		return new ArrayList<>(previous);
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	//======== lets the snapshot writer drop history it has sealed from memory; the entries read the same afterwards, so
+	//======== this is no change as far as snapshots and the journal are concerned
+	public boolean adoptSealedHistory(BankAccount account, HistoryArchive.Blocks blocks) {
+		return readLocked(account, () -> account.getLedger().adoptSealed(blocks));
+	}
+
+	//======== runs a read (balance, history page, snapshot of one account) without a write slipping in
+	public <T> T readLocked(BankAccount account, Supplier<T> read) {
+		ReentrantLock lock = stripeFor(account.getAccountNumber());
+		lock.lock();
+		try {
+			return read.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private ReentrantLock stripeFor(int accountNumber) {
+		return stripes[stripeIndex(accountNumber)];
+	}
+
+	private int stripeIndex(int accountNumber) {
+		int h = accountNumber * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	public enum Outcome {
+		DONE,
+		INVALID_AMOUNT,
+		INSUFFICIENT_FUNDS,
+		ACCOUNT_INACTIVE,
+		INVALID_DESCRIPTION,
+		INVALID_PIN,
+		FAILED
+	}
+
+	public static class Result {
+		private final Outcome outcome;
+		private final long balanceCents;
+		private final String message;
+
+		public Result(Outcome outcome, long balanceCents, String message) {
+			this.outcome = outcome;
+			this.balanceCents = balanceCents;
+			this.message = message;
+		}
+
+		public boolean isSuccess() {
+			return outcome == Outcome.DONE;
+		}
+
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		//======== the account's balance, read under its lock when the operation was applied or refused
+		public long getBalance() {
+			return balanceCents;
+		}
+
+		//======== why a transfer was refused as BankAccount put it, may be null
+		public String getMessage() {
+			return message;
+		}
+	}
+}
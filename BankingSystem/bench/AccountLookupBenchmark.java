@@ -0,0 +1,83 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.data.AccountIndex;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+//======== measures login and transfer lookups against books of growing size
+//======== run with a large heap for the bigger sizes, e.g. java -Xmx8g BankingSystem.bench.AccountLookupBenchmark
+public class AccountLookupBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final int OPERATIONS = 2_000_000;
+	private static final String PIN = "1234";
+
+	public static void main(String[] args) {
+		int[] sizes = {10_000, 100_000, 1_000_000, 10_000_000};
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.printf("%12s %18s %18s%n", "accounts", "login ns/op", "transfer ns/op");
+		for (int size : sizes) {
+			AccountIndex index = buildIndex(size);
+
+			//======== warm up both paths before measuring
+			login(index, size, OPERATIONS / 10);
+			resolveTransfer(index, size, OPERATIONS);
+
+			long start = System.nanoTime();
+			long logins = login(index, size, OPERATIONS / 10);
+			double loginNs = (System.nanoTime() - start) / (double) (OPERATIONS / 10);
+
+			start = System.nanoTime();
+			long transfers = resolveTransfer(index, size, OPERATIONS);
+			double transferNs = (System.nanoTime() - start) / (double) OPERATIONS;
+
+			System.out.printf("%12d %18.1f %18.1f%n", size, loginNs, transferNs);
+			if (logins + transfers == 0) {
+				System.out.println("No lookups succeeded.");
+			}
+		}
+	}
+
+	private static AccountIndex buildIndex(int size) {
+		AccountIndex index = new AccountIndex(size);
+		LocalDate opened = LocalDate.now();
+		for (int i = 0; i < size; i++) {
+			index.put(new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, "Holder " + i, opened, true, PIN));
+		}
+		return index;
+	}
+
+	//======== same steps as Main.authenticateUser: index lookup then PIN check
+	private static long login(AccountIndex index, int size, int operations) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long found = 0;
+		for (int i = 0; i < operations; i++) {
+			BankAccount account = index.get(FIRST_ACCOUNT_NUMBER + random.nextInt(size));
+			if (account != null && account.validatePin(PIN)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	//======== same lookups as Main.transferMoney: resolve the source and the target account
+	private static long resolveTransfer(AccountIndex index, int size, int operations) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long found = 0;
+		for (int i = 0; i < operations; i++) {
+			BankAccount from = index.get(FIRST_ACCOUNT_NUMBER + random.nextInt(size));
+			BankAccount to = index.get(FIRST_ACCOUNT_NUMBER + random.nextInt(size));
+			if (from != null && to != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
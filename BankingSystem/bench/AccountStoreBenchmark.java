@@ -0,0 +1,164 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.AccountStore;
+import BankingSystem.data.DataManager;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//======== how long until a login can be answered: loading the whole snapshot against mapping the account store, then
+//======== logins per second from the store; every slot is compared with the loaded accounts afterwards
+//======== the store is also left open without close(), as after a crash, which must make the next start distrust it
+//======== the files were just written, so they are in the page cache; after a reboot each first touch of a page adds a
+//======== disk read to the store's figures, and the whole file's worth to the snapshot load
+//======== usage: java -Xmx4g BankingSystem.bench.AccountStoreBenchmark [accounts] [entries per account] [logins]
+public class AccountStoreBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final String PIN = "1234";
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int entriesPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int logins = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-store");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		HashMap<String, BankAccount> accounts = buildBook(accountCount, entriesPerAccount);
+		BankService bank = new BankService(new ArrayList<Customer>(), accounts, journal, Integer.MAX_VALUE);
+		boolean allPassed = bank.checkpoint();
+		bank.close();
+		AccountStore store = AccountStore.openDefault();
+		long start = System.nanoTime();
+		int written = store.sync(accounts.values(), accounts.size());
+		double syncMillis = (System.nanoTime() - start) / 1e6;
+		store.close();
+		//======== let the book go before it is loaded again, large books do not fit twice
+		bank = null;
+		accounts = null;
+
+		console.printf("accounts %d, entries %d, store %d MB, snapshot %d MB%n", accountCount, (long) accountCount * entriesPerAccount,
+				Files.size(directory.resolve(AccountStore.DEFAULT_FILE)) >> 20, Files.size(directory.resolve("accounts.dat")) >> 20);
+		console.printf("%-28s %12s %8s%n", "step", "ms", "check");
+
+		start = System.nanoTime();
+		store = AccountStore.openDefault();
+		double openMillis = (System.nanoTime() - start) / 1e6;
+		boolean passed = store.isCurrent() && store.size() == accountCount;
+		allPassed &= passed;
+		console.printf("%-28s %12.3f %8s%n", "map account store", openMillis, passed ? "ok" : "FAIL");
+
+		start = System.nanoTime();
+		passed = store.authenticate(FIRST_ACCOUNT_NUMBER + accountCount / 2, PIN);
+		allPassed &= passed;
+		console.printf("%-28s %12.3f %8s%n", "first login from the store", (System.nanoTime() - start) / 1e6, passed ? "ok" : "FAIL");
+
+		ArrayList<Customer> customers = new ArrayList<>();
+		HashMap<String, BankAccount> loaded = new HashMap<>();
+		start = System.nanoTime();
+		DataManager.loadAllData(customers, loaded);
+		double loadMillis = (System.nanoTime() - start) / 1e6;
+		passed = loaded.size() == accountCount;
+		allPassed &= passed;
+		console.printf("%-28s %12.1f %8s%n", "load whole snapshot", loadMillis, passed ? "ok" : "FAIL");
+
+		start = System.nanoTime();
+		written = store.sync(loaded.values(), loaded.size());
+		passed = written == 0;
+		allPassed &= passed;
+		console.printf("%-28s %12.1f %8s%n", "check store against book", (System.nanoTime() - start) / 1e6, passed ? "ok" : "FAIL");
+		console.printf("%-28s %12.1f %8s%n", "first write of the store", syncMillis, "-");
+
+		//======== every account number in a fixed shuffled order, then a wrong PIN and an unknown account
+		int[] numbers = new int[accountCount];
+		for (int i = 0; i < accountCount; i++) {
+			numbers[i] = FIRST_ACCOUNT_NUMBER + (int) ((i * 0x9E3779B1L) % accountCount);
+		}
+		int accepted = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < logins; i++) {
+			if (store.authenticate(numbers[i % accountCount], PIN)) {
+				accepted++;
+			}
+		}
+		double loginNanos = (double) (System.nanoTime() - start) / logins;
+		int active = 0;
+		for (int i = 0; i < logins; i++) {
+			if (isActive(numbers[i % accountCount] - FIRST_ACCOUNT_NUMBER)) {
+				active++;
+			}
+		}
+		passed = accepted == active && !store.authenticate(FIRST_ACCOUNT_NUMBER + 1, "9999") && !store.authenticate(FIRST_ACCOUNT_NUMBER - 1, PIN);
+		allPassed &= passed;
+		console.printf("%nlogins from the store %d, %.0f ns each (SHA-256 included), check %s%n", logins, loginNanos, passed ? "ok" : "FAIL");
+
+		int mismatched = 0;
+		for (BankAccount account : loaded.values()) {
+			int slot = store.find(account.getAccountNumber());
+			if (slot < 0 || store.getBalance(slot) != account.getBalance() || !account.getAccountType().equals(store.getAccountType(slot))
+					|| store.isActive(slot) != account.isActive() || !account.getDateOpened().equals(store.getDateOpened(slot))
+					|| !Arrays.equals(store.getPinHash(slot), account.getPinHash())) {
+				mismatched++;
+			}
+		}
+		passed = mismatched == 0;
+		allPassed &= passed;
+		console.printf("slots compared with the loaded accounts, %d differ, check %s%n", mismatched, passed ? "ok" : "FAIL");
+
+		//======== no close(): the next open must not trust it, and checking it finds nothing to write
+		store = AccountStore.openDefault();
+		boolean trusted = store.isCurrent();
+		written = store.sync(loaded.values(), loaded.size());
+		passed = !trusted && written == 0 && store.isCurrent();
+		allPassed &= passed;
+		console.printf("reopened without close, trusted %b, %d slots rewritten, check %s%n", trusted, written, passed ? "ok" : "FAIL");
+		store.close();
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	//======== inactive accounts cannot log in
+	private static boolean isActive(int index) {
+		return index % 97 != 0;
+	}
+
+	//======== account types in turn, balances from zero to about R10,000 with a deposit for each in the history
+	private static HashMap<String, BankAccount> buildBook(int count, int entriesPerAccount) {
+		HashMap<String, BankAccount> accounts = new HashMap<>(count * 2);
+		String[] types = {"Savings", "Current", "Fixed Deposit", "Student Account", "Business Account"};
+		LocalDate opened = LocalDate.now().minusDays(entriesPerAccount);
+		long firstAt = System.currentTimeMillis() - entriesPerAccount * 24 * 60 * 60 * 1000L;
+		byte[] pinHash = PinHash.hash(PIN);
+		for (int i = 0; i < count; i++) {
+			TransactionLedger ledger = new TransactionLedger(entriesPerAccount);
+			long balance = 0;
+			for (int e = 0; e < entriesPerAccount; e++) {
+				long amount = (i * 7919L + e * 104729L) % 50_000L + 1;
+				ledger.append(TransactionLedger.DEPOSIT, amount, 0, firstAt + e * 24 * 60 * 60 * 1000L, null);
+				balance += amount;
+			}
+			BankAccount account = BankAccount.restore(types[i % types.length], FIRST_ACCOUNT_NUMBER + i, "Customer " + i,
+					opened.plusDays(i % 7), isActive(i), pinHash, balance, ledger);
+			accounts.put("C" + i, account);
+		}
+		return accounts;
+	}
+}
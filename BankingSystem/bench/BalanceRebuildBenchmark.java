@@ -0,0 +1,150 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.DataManager;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BalanceRebuild;
+import BankingSystem.service.BalanceRebuildResult;
+import BankingSystem.service.BankService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+//======== ledger entries per second through the balance rebuild, from one thread and from every core; before each run
+//======== a spread of balances is damaged, and exactly those must be corrected back to what their ledgers add up to
+//======== a smaller book is then saved, loaded back and rebuilt, which must find every balance already right
+//======== usage: java -Xmx4g BankingSystem.bench.BalanceRebuildBenchmark [accounts] [entries per account] [saved accounts]
+public class BalanceRebuildBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final int DAMAGED_EVERY = 997;
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int entriesPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int savedCount = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-rebuild");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		HashMap<String, BankAccount> accounts = buildBook(accountCount, entriesPerAccount);
+		long expected = totalBalance(accounts.values());
+		BankService bank = new BankService(new ArrayList<Customer>(), accounts, journal, Integer.MAX_VALUE);
+
+		boolean allPassed = true;
+		console.printf("accounts %d, entries %d%n", accountCount, (long) accountCount * entriesPerAccount);
+		console.printf("%-8s %8s %10s %16s %10s %8s%n", "run", "threads", "seconds", "entries/s", "corrected", "check");
+		for (int threads : cores == 1 ? new int[] {1} : new int[] {1, cores}) {
+			//======== the first run warms the JIT up, it is checked but not the one to go by
+			for (String run : new String[] {"warm-up", "timed"}) {
+				long damage = damage(accounts.values());
+				long start = System.nanoTime();
+				BalanceRebuildResult result = new BalanceRebuild(bank, threads).run();
+				double seconds = (System.nanoTime() - start) / 1e9;
+				boolean passed = result.getCorrected() == (accountCount + DAMAGED_EVERY - 1) / DAMAGED_EVERY
+						&& result.getAdjustmentCents() == -damage && totalBalance(accounts.values()) == expected;
+				allPassed &= passed;
+				console.printf("%-8s %8d %10.2f %16.0f %10d %8s%n", run, threads, seconds, result.getEntries() / seconds,
+						result.getCorrected(), passed ? "ok" : "FAIL");
+			}
+		}
+		bank.close();
+		//======== let the big book go before the saved one is built
+		bank = null;
+		accounts = null;
+
+		accounts = buildBook(savedCount, entriesPerAccount);
+		expected = totalBalance(accounts.values());
+		bank = new BankService(new ArrayList<Customer>(), accounts, journal, Integer.MAX_VALUE);
+		boolean saved = bank.checkpoint();
+		bank.close();
+		HashMap<String, BankAccount> loaded = new HashMap<>();
+		DataManager.loadAllData(new ArrayList<Customer>(), loaded);
+		journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		bank = new BankService(new ArrayList<Customer>(), loaded, journal, Integer.MAX_VALUE);
+		BalanceRebuildResult result = new BalanceRebuild(bank).run();
+		boolean passed = saved && result.getAccounts() == savedCount && result.getCorrected() == 0 && totalBalance(loaded.values()) == expected;
+		allPassed &= passed;
+		console.printf("%nsaved and loaded %d accounts, %d entries, %d corrected, check %s%n", result.getAccounts(), result.getEntries(),
+				result.getCorrected(), passed ? "ok" : "FAIL");
+		bank.close();
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	//======== moves every DAMAGED_EVERY-th balance by a few rand either way, returns the total it was moved by
+	private static long damage(Iterable<BankAccount> accounts) {
+		long damage = 0;
+		for (BankAccount account : accounts) {
+			int index = account.getAccountNumber() - FIRST_ACCOUNT_NUMBER;
+			if (index % DAMAGED_EVERY == 0) {
+				long by = (index & 1) == 0 ? 1_234 : -567;
+				account.restoreBalance(account.getBalance() + by);
+				damage += by;
+			}
+		}
+		return damage;
+	}
+
+	private static long totalBalance(Iterable<BankAccount> accounts) {
+		long total = 0;
+		for (BankAccount account : accounts) {
+			total += account.getBalance();
+		}
+		return total;
+	}
+
+	//======== every account starts with a deposit, then deposits, withdrawals and transfers both ways with now and then
+	//======== a PIN change; the balance stored is what the ledger adds up to, as a clean snapshot would have it
+	private static HashMap<String, BankAccount> buildBook(int count, int entriesPerAccount) {
+		HashMap<String, BankAccount> accounts = new HashMap<>(count * 2);
+		LocalDate opened = LocalDate.now().minusDays(entriesPerAccount);
+		long firstAt = System.currentTimeMillis() - entriesPerAccount * 24 * 60 * 60 * 1000L;
+		byte[] pinHash = PinHash.hash("1234");
+		long seed = 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < count; i++) {
+			TransactionLedger ledger = new TransactionLedger(entriesPerAccount);
+			long balance = 0;
+			for (int e = 0; e < entriesPerAccount; e++) {
+				seed ^= seed << 13;
+				seed ^= seed >>> 7;
+				seed ^= seed << 17;
+				long amount = 100 + ((seed >>> 1) & 0xFFFF);
+				int kind = (int) ((seed >>> 40) & 15);
+				byte type;
+				if (e == 0 || kind < 6) {
+					type = TransactionLedger.DEPOSIT;
+				} else if (kind < 9) {
+					type = TransactionLedger.TRANSFER_IN;
+				} else if (kind == 15) {
+					type = TransactionLedger.PIN_CHANGE;
+					amount = 0;
+				} else {
+					type = kind < 12 ? TransactionLedger.WITHDRAWAL : TransactionLedger.TRANSFER_OUT;
+					amount = Math.min(amount, balance);
+				}
+				int counterparty = type == TransactionLedger.TRANSFER_IN || type == TransactionLedger.TRANSFER_OUT
+						? FIRST_ACCOUNT_NUMBER + (int) ((seed >>> 20) % count) : 0;
+				ledger.append(type, amount, counterparty, firstAt + e * 24 * 60 * 60 * 1000L, null);
+				balance += TransactionLedger.balanceEffect(type, amount);
+			}
+			BankAccount account = BankAccount.restore("Savings", FIRST_ACCOUNT_NUMBER + i, "Customer " + i, opened, true, pinHash, balance, ledger);
+			accounts.put("C" + i, account);
+		}
+		return accounts;
+	}
+}
@@ -0,0 +1,62 @@
+package BankingSystem.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//======== compares two result files written by BenchmarkHarness and flags slowdowns
+//======== usage: java BankingSystem.bench.BenchmarkCompare <baseline.csv> <candidate.csv> [allowed slowdown %, default 10]
+//======== exits with status 1 when any benchmark lost more throughput than allowed and beyond its error bars
+public class BenchmarkCompare {
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: BenchmarkCompare <baseline.csv> <candidate.csv> [allowed slowdown %]");
+			System.exit(2);
+		}
+		double allowed = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+		Map<String, double[]> baseline = read(Path.of(args[0]));
+		Map<String, double[]> candidate = read(Path.of(args[1]));
+
+		int regressions = 0;
+		System.out.printf("%-44s %14s %14s %9s%n", "benchmark,accounts,history,threads", "baseline ops/s", "candidate", "change");
+		for (Map.Entry<String, double[]> entry : candidate.entrySet()) {
+			double[] before = baseline.get(entry.getKey());
+			if (before == null) {
+				System.out.printf("%-44s %14s %14.0f %9s%n", entry.getKey(), "-", entry.getValue()[0], "new");
+				continue;
+			}
+			double[] after = entry.getValue();
+			double change = (after[0] - before[0]) / before[0] * 100.0;
+			//======== only count it when the drop is outside both error bars
+			boolean regression = change < -allowed && after[0] + after[1] < before[0] - before[1];
+			if (regression) {
+				regressions++;
+			}
+			System.out.printf("%-44s %14.0f %14.0f %+8.1f%%%s%n", entry.getKey(), before[0], after[0], change, regression ? "  REGRESSION" : "");
+		}
+
+		System.out.println(regressions == 0 ? "No regressions." : regressions + " regression(s) beyond " + allowed + "%.");
+		if (regressions > 0) {
+			System.exit(1);
+		}
+	}
+
+	//======== key -> {ops/s, error}; when a file holds several runs of the same case, the last one wins
+	private static Map<String, double[]> read(Path csv) throws IOException {
+		List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+		Map<String, double[]> results = new LinkedHashMap<>();
+		for (String line : lines) {
+			if (line.isEmpty() || line.startsWith("benchmark,")) {
+				continue;
+			}
+			String[] fields = line.split(",");
+			String key = fields[0] + "," + fields[1] + "," + fields[2] + "," + fields[3];
+			results.put(key, new double[] {Double.parseDouble(fields[4]), Double.parseDouble(fields[5])});
+		}
+		return results;
+	}
+}
@@ -0,0 +1,238 @@
+package BankingSystem.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+//======== small timed-iteration benchmark runner: warm-up, measured iterations, one row per
+//======== benchmark x accounts x history x threads, results appended to a CSV for comparing releases
+//======== settings (system properties):
+//========   bench.accounts=1000,100000   bench.history=10,200   bench.threads=1,<cores>
+//========   bench.warmup=2   bench.iterations=5   bench.timeMillis=1000
+//========   bench.filter=<regex on benchmark name>   bench.label=<release name, names the CSV file>
+public class BenchmarkHarness {
+	//======== one benchmark; setUp runs once per parameter combination, resetIteration before every
+	//======== iteration (outside the timing) so mutating benchmarks do not grow state without bound
+	public abstract static class Benchmark {
+		private final String name;
+		private final boolean multiThreaded;
+
+		protected Benchmark(String name, boolean multiThreaded) {
+			this.name = name;
+			this.multiThreaded = multiThreaded;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		protected abstract void setUp(int accounts, int history) throws Exception;
+
+		protected void resetIteration() throws Exception {
+		}
+
+		//======== one operation; the result is folded into a sink so the JIT cannot drop the work
+		protected abstract long run(int threadIndex, int threads, ThreadLocalRandom random) throws Exception;
+
+		protected void tearDown() throws Exception {
+		}
+	}
+
+	public static class Result {
+		final String benchmark;
+		final int accounts;
+		final int history;
+		final int threads;
+		final double opsPerSecond;
+		final double error;
+		final int iterations;
+
+		Result(String benchmark, int accounts, int history, int threads, double opsPerSecond, double error, int iterations) {
+			this.benchmark = benchmark;
+			this.accounts = accounts;
+			this.history = history;
+			this.threads = threads;
+			this.opsPerSecond = opsPerSecond;
+			this.error = error;
+			this.iterations = iterations;
+		}
+
+		double nanosPerOp() {
+			return opsPerSecond == 0 ? 0 : 1e9 * threads / opsPerSecond;
+		}
+
+		String key() {
+			return benchmark + "," + accounts + "," + history + "," + threads;
+		}
+	}
+
+	static final String CSV_HEADER = "benchmark,accounts,history,threads,ops_per_sec,error_ops_per_sec,ns_per_op,iterations,java_version";
+
+	private final int[] accountCounts = intList("bench.accounts", "1000,100000");
+	private final int[] historyLengths = intList("bench.history", "10,200");
+	private final int[] threadCounts = intList("bench.threads", "1," + Runtime.getRuntime().availableProcessors());
+	private final int warmupIterations = Integer.getInteger("bench.warmup", 2);
+	private final int measuredIterations = Integer.getInteger("bench.iterations", 5);
+	private final long iterationNanos = Long.getLong("bench.timeMillis", 1000L) * 1_000_000L;
+	private final Pattern filter = Pattern.compile(System.getProperty("bench.filter", ".*"));
+	private final String label = System.getProperty("bench.label", "current");
+
+	private final List<Benchmark> benchmarks = new ArrayList<>();
+	//======== written once per iteration, keeps benchmark results observable
+	private volatile long sink;
+
+	public BenchmarkHarness add(Benchmark benchmark) {
+		benchmarks.add(benchmark);
+		return this;
+	}
+
+	public List<Result> runAll() throws Exception {
+		//======== keep the event log's console output out of the numbers
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		List<Result> results = new ArrayList<>();
+		try {
+			console.printf("%-22s %9s %8s %8s %16s %12s %12s%n", "benchmark", "accounts", "history", "threads", "ops/s", "error", "ns/op");
+			for (Benchmark benchmark : benchmarks) {
+				if (!filter.matcher(benchmark.getName()).matches()) {
+					continue;
+				}
+				for (int accounts : accountCounts) {
+					for (int history : historyLengths) {
+						benchmark.setUp(accounts, history);
+						try {
+							for (int threads : threadCounts) {
+								if (threads > 1 && !benchmark.multiThreaded) {
+									continue;
+								}
+								Result result = measure(benchmark, accounts, history, threads);
+								results.add(result);
+								console.printf("%-22s %9d %8d %8d %16.0f %12.0f %12.1f%n", result.benchmark, accounts, history, threads,
+										result.opsPerSecond, result.error, result.nanosPerOp());
+							}
+						} finally {
+							benchmark.tearDown();
+						}
+					}
+				}
+			}
+		} finally {
+			System.setOut(console);
+		}
+
+		Path csv = writeCsv(results);
+		console.println("Results appended to " + csv.toAbsolutePath());
+		return results;
+	}
+
+	private Result measure(Benchmark benchmark, int accounts, int history, int threads) throws Exception {
+		for (int i = 0; i < warmupIterations; i++) {
+			benchmark.resetIteration();
+			iteration(benchmark, threads);
+		}
+		double[] samples = new double[measuredIterations];
+		for (int i = 0; i < measuredIterations; i++) {
+			benchmark.resetIteration();
+			samples[i] = iteration(benchmark, threads);
+		}
+
+		double mean = 0;
+		for (double sample : samples) {
+			mean += sample;
+		}
+		mean /= samples.length;
+		double variance = 0;
+		for (double sample : samples) {
+			variance += (sample - mean) * (sample - mean);
+		}
+		//======== roughly a 95% interval around the mean
+		double error = samples.length > 1 ? 1.96 * Math.sqrt(variance / (samples.length - 1)) / Math.sqrt(samples.length) : 0;
+		return new Result(benchmark.getName(), accounts, history, threads, mean, error, samples.length);
+	}
+
+	//======== runs the benchmark on all threads for one iteration, returns total operations per second
+	private double iteration(Benchmark benchmark, int threads) throws Exception {
+		long[] counts = new long[threads];
+		long[] sinks = new long[threads];
+		Exception[] failures = new Exception[threads];
+		CyclicBarrier start = new CyclicBarrier(threads + 1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			int threadIndex = t;
+			workers[t] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				try {
+					start.await();
+					long deadline = System.nanoTime() + iterationNanos;
+					long ops = 0;
+					long local = 0;
+					do {
+						local += benchmark.run(threadIndex, threads, random);
+						ops++;
+					} while (System.nanoTime() < deadline);
+					counts[threadIndex] = ops;
+					sinks[threadIndex] = local;
+				} catch (Exception e) {
+					failures[threadIndex] = e;
+				}
+			}, "bench-" + benchmark.getName() + "-" + t);
+			workers[t].start();
+		}
+
+		start.await();
+		long begin = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long end = System.nanoTime();
+
+		long total = 0;
+		for (int t = 0; t < threads; t++) {
+			if (failures[t] != null) {
+				throw failures[t];
+			}
+			total += counts[t];
+			sink += sinks[t];
+		}
+		return total * 1e9 / (end - begin);
+	}
+
+	private Path writeCsv(List<Result> results) throws IOException {
+		Path directory = Path.of("bench-results");
+		Files.createDirectories(directory);
+		Path csv = directory.resolve(label + ".csv");
+		StringBuilder out = new StringBuilder();
+		if (!Files.exists(csv)) {
+			out.append(CSV_HEADER).append('\n');
+		}
+		String javaVersion = System.getProperty("java.version");
+		for (Result result : results) {
+			out.append(result.key()).append(',')
+					.append(String.format(Locale.ROOT, "%.1f,%.1f,%.2f", result.opsPerSecond, result.error, result.nanosPerOp())).append(',')
+					.append(result.iterations).append(',')
+					.append(javaVersion).append('\n');
+		}
+		Files.writeString(csv, out, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		return csv;
+	}
+
+	private static int[] intList(String property, String defaults) {
+		String[] parts = System.getProperty(property, defaults).split(",");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		return values;
+	}
+}
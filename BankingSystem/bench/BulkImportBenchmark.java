@@ -0,0 +1,89 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+import BankingSystem.service.CustomerImporter;
+import BankingSystem.service.ImportResult;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.stream.Stream;
+
+//======== customers imported per second by CustomerImporter from a generated CSV, one in a hundred rows invalid
+//======== the time includes the final snapshot; the run fails if any row is neither imported nor rejected
+//======== usage: java -Xmx4g BankingSystem.bench.BulkImportBenchmark [rows] [thread counts...]
+public class BulkImportBenchmark {
+	private static final int INVALID_EVERY = 100;
+
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+		if (args.length > 1) {
+			threadCounts = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				threadCounts[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path csv = Files.createTempFile("bankforge-import", ".csv");
+		writeCsv(csv, rows);
+
+		boolean allPassed = true;
+		console.printf("rows %d (%d invalid)%n", rows, rows / INVALID_EVERY);
+		console.printf("%8s %14s %12s %10s %10s %8s%n", "threads", "customers/s", "seconds", "imported", "rejected", "check");
+		for (int threads : threadCounts) {
+			Path directory = Files.createTempDirectory("bankforge-import");
+			System.setProperty("bankforge.data.dir", directory.toString());
+			TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+			BankService bank = new BankService(new ArrayList<Customer>(), new HashMap<String, BankAccount>(), journal, Integer.MAX_VALUE);
+			Path rejects = directory.resolve("rejects.csv");
+
+			long start = System.nanoTime();
+			ImportResult result = new CustomerImporter(bank, threads).importCsv(csv, rejects);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			bank.close();
+
+			long rejectLines;
+			try (Stream<String> lines = Files.lines(rejects)) {
+				rejectLines = lines.count() - 1;
+			}
+			boolean passed = result.isSaved() && result.getImported() + result.getRejected() == rows
+					&& result.getRejected() == rows / INVALID_EVERY && rejectLines == result.getRejected();
+			allPassed &= passed;
+			console.printf("%8d %14.0f %12.2f %10d %10d %8s%n", threads, result.getImported() / seconds, seconds,
+					result.getImported(), result.getRejected(), passed ? "ok" : "FAIL");
+		}
+
+		Files.deleteIfExists(csv);
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static void writeCsv(Path csv, int rows) throws Exception {
+		try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+			out.write(String.join(",", CustomerImporter.COLUMNS));
+			out.newLine();
+			for (int i = 0; i < rows; i++) {
+				//======== every hundredth row has a twelve-digit ID number
+				String idNumber = i % INVALID_EVERY == INVALID_EVERY - 1 ? "900101500908" : "9001015009087";
+				out.write("First" + i + ",Last" + i + ",Other,012 345 6789," + idNumber + ",first" + i + "@example.com,1990-01-15,"
+						+ "South African,\"" + i + " Main Road, Sea Point\",Cape Town,8001,South Africa,Engineer,BankForge,25000.00,Savings,"
+						+ String.format("%04d", i % 10000));
+				out.newLine();
+			}
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.TransferEngine;
+import BankingSystem.data.AccountIndex;
+import BankingSystem.data.DataManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+//======== the benchmark suite for the core banking operations and persistence
+//======== usage: java -Xmx4g -Dbench.label=<release> BankingSystem.bench.CoreBenchmarks
+//======== then BankingSystem.bench.BenchmarkCompare bench-results/<old>.csv bench-results/<new>.csv
+//======== single-threaded runs call BankAccount directly; multi-threaded runs go through TransferEngine,
+//======== the only safe way to share accounts between threads, so they show lock contention as well
+public class CoreBenchmarks {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final String PIN = "1234";
+	private static final long OPENING_BALANCE = 1_000_000_000_00L;
+	private static final int HISTORY_PAGE = 50;
+
+	public static void main(String[] args) throws Exception {
+		if (System.getProperty("bankforge.data.dir") == null) {
+			System.setProperty("bankforge.data.dir", Files.createTempDirectory("bankforge-bench").toString());
+		}
+
+		new BenchmarkHarness()
+				.add(new MoneyBenchmark("deposit") {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						BankAccount account = pick(random);
+						boolean done = threads == 1 ? account.depositMoney(100) : engine.deposit(account, 100).isSuccess();
+						return done ? 1 : 0;
+					}
+				})
+				.add(new MoneyBenchmark("withdraw") {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						BankAccount account = pick(random);
+						boolean done = threads == 1 ? account.withdrawMoney(1) : engine.withdraw(account, 1).isSuccess();
+						return done ? 1 : 0;
+					}
+				})
+				.add(new MoneyBenchmark("transfer") {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						BankAccount from = pick(random);
+						BankAccount to = pick(random);
+						boolean done = threads == 1
+								? from.transferMoneyTo(to, 100, "bench").isSuccess()
+								: engine.transfer(from, to, 100, "bench").isSuccess();
+						return done ? 1 : 0;
+					}
+				})
+				.add(new Fixture("validatePin", true) {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						return pick(random).validatePin(PIN) ? 1 : 0;
+					}
+				})
+				.add(new Fixture("accountLookup", true) {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						BankAccount account = index.get(FIRST_ACCOUNT_NUMBER + random.nextInt(accounts.length));
+						return account == null ? 0 : 1;
+					}
+				})
+				.add(new Fixture("historyPage", true) {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						return pick(random).getLedger().view().renderPage(0, HISTORY_PAGE).size();
+					}
+				})
+				.add(new Fixture("saveAllData", false) {
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						return DataManager.saveAllData(customers, accountMap) ? 1 : 0;
+					}
+				})
+				.add(new Fixture("loadAllData", false) {
+					private final ArrayList<Customer> loadedCustomers = new ArrayList<>();
+					private final HashMap<String, BankAccount> loadedAccounts = new HashMap<>();
+
+					@Override
+					protected void setUp(int accountCount, int history) throws Exception {
+						super.setUp(accountCount, history);
+						DataManager.saveAllData(customers, accountMap);
+					}
+
+					@Override
+					protected long run(int threadIndex, int threads, ThreadLocalRandom random) {
+						try {
+							DataManager.loadAllData(loadedCustomers, loadedAccounts);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+						return loadedAccounts.size();
+					}
+
+					@Override
+					protected void tearDown() {
+						loadedCustomers.clear();
+						loadedAccounts.clear();
+						super.tearDown();
+					}
+				})
+				.runAll();
+	}
+
+	//======== a book of accounts, each with 'history' ledger entries
+	private abstract static class Fixture extends BenchmarkHarness.Benchmark {
+		protected BankAccount[] accounts;
+		protected AccountIndex index;
+		protected ArrayList<Customer> customers;
+		protected HashMap<String, BankAccount> accountMap;
+		private int history;
+
+		Fixture(String name, boolean multiThreaded) {
+			super(name, multiThreaded);
+		}
+
+		@Override
+		protected void setUp(int accountCount, int history) throws Exception {
+			this.history = history;
+			build(accountCount);
+		}
+
+		protected void build(int accountCount) {
+			accounts = new BankAccount[accountCount];
+			index = new AccountIndex(accountCount);
+			customers = new ArrayList<>(accountCount);
+			accountMap = new HashMap<>(accountCount * 2);
+			LocalDate opened = LocalDate.now();
+			for (int i = 0; i < accountCount; i++) {
+				Customer customer = Customer.restore("C" + i, "First" + i, "Last" + i, "Other", "0123456789", "9001015009087",
+						null, LocalDate.of(1990, 1, 1), "South African", i + " Main Road", "Cape Town", 8001,
+						"South Africa", "Engineer", "BankForge", 25000.0);
+				BankAccount account = new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, customer.getFullName(), opened, true, PIN);
+				account.depositMoney(OPENING_BALANCE);
+				for (int h = 1; h < history; h++) {
+					account.depositMoney(100);
+				}
+				customer.addAccount(account);
+				accounts[i] = account;
+				index.put(account);
+				customers.add(customer);
+				accountMap.put(customer.getCustomerID(), account);
+			}
+		}
+
+		protected BankAccount pick(ThreadLocalRandom random) {
+			return accounts[random.nextInt(accounts.length)];
+		}
+
+		@Override
+		protected void tearDown() {
+			accounts = null;
+			index = null;
+			customers = null;
+			accountMap = null;
+		}
+	}
+
+	//======== benchmarks that append to ledgers start every iteration from a fresh book
+	private abstract static class MoneyBenchmark extends Fixture {
+		protected TransferEngine engine;
+
+		MoneyBenchmark(String name) {
+			super(name, true);
+		}
+
+		@Override
+		protected void setUp(int accountCount, int history) throws Exception {
+			super.setUp(accountCount, history);
+			engine = new TransferEngine(null);
+		}
+
+		@Override
+		protected void resetIteration() {
+			build(accounts.length);
+		}
+	}
+}
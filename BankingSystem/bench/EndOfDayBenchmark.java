@@ -0,0 +1,115 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.DataManager;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+import BankingSystem.service.EndOfDayBatch;
+import BankingSystem.service.EndOfDayResult;
+import BankingSystem.service.RegistrationValidator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+//======== accounts per second through the end-of-day batch with the default rules, the time includes the final snapshot
+//======== the run is then repeated for the same date, which must skip every account it already did, and the saved
+//======== files are loaded back; any difference in the money fails the run
+//======== usage: java -Xmx4g BankingSystem.bench.EndOfDayBenchmark [accounts] [threads]
+public class EndOfDayBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : EndOfDayBatch.DEFAULT_THREADS;
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-eod");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		ArrayList<Customer> customers = new ArrayList<>(accountCount);
+		HashMap<String, BankAccount> accounts = new HashMap<>(accountCount * 2);
+		buildBook(accountCount, customers, accounts);
+		BankService bank = new BankService(customers, accounts, journal, Integer.MAX_VALUE);
+		//======== the first snapshot is always full, take it now so the run below is timed like a nightly one
+		bank.checkpoint();
+		long before = totalBalance(accounts.values());
+
+		EndOfDayBatch batch = new EndOfDayBatch(bank, EndOfDayBatch.DEFAULT_RULES, threads);
+		LocalDate businessDate = LocalDate.now();
+		console.printf("accounts %d, threads %d%n", accountCount, threads);
+		console.printf("%-8s %12s %14s %12s %12s %12s%n", "run", "seconds", "accounts/s", "credited", "charged", "skipped");
+
+		long start = System.nanoTime();
+		EndOfDayResult first = batch.run(businessDate);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		console.printf("%-8s %12.2f %14.0f %12d %12d %12d%n", "first", seconds, accountCount / seconds, first.getCredited(), first.getCharged(), first.getAlreadyDone());
+		long after = totalBalance(accounts.values());
+
+		start = System.nanoTime();
+		EndOfDayResult rerun = batch.run(businessDate);
+		seconds = (System.nanoTime() - start) / 1e9;
+		console.printf("%-8s %12.2f %14.0f %12d %12d %12d%n", "rerun", seconds, accountCount / seconds, rerun.getCredited(), rerun.getCharged(), rerun.getAlreadyDone());
+
+		long afterRerun = totalBalance(accounts.values());
+		bank.close();
+		//======== let the book go before loading the saved copy, large books do not fit twice
+		bank = null;
+		customers = null;
+		accounts = null;
+		ArrayList<Customer> loadedCustomers = new ArrayList<>();
+		HashMap<String, BankAccount> loadedAccounts = new HashMap<>();
+		DataManager.loadAllData(loadedCustomers, loadedAccounts);
+		long loaded = totalBalance(loadedAccounts.values());
+
+		boolean passed = first.isSaved() && after == before + first.getInterestCents() - first.getFeeCents()
+				&& rerun.getCredited() == 0 && rerun.getCharged() == 0 && rerun.getAlreadyDone() >= Math.max(first.getCredited(), first.getCharged())
+				&& afterRerun == after && loaded == after;
+		console.printf("interest %d cents, fees %d cents, check %s%n", first.getInterestCents(), first.getFeeCents(), passed ? "ok" : "FAIL");
+
+		System.setOut(console);
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	private static long totalBalance(Iterable<BankAccount> accounts) {
+		long total = 0;
+		for (BankAccount account : accounts) {
+			total += account.getBalance();
+		}
+		return total;
+	}
+
+	//======== every account type in turn, balances from zero to about R10,000, one deposit two days back
+	private static void buildBook(int count, ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) {
+		List<String> types = RegistrationValidator.ACCOUNT_TYPES;
+		LocalDate opened = LocalDate.now().minusDays(2);
+		long depositedAt = System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L;
+		byte[] pinHash = PinHash.hash("1234");
+		for (int i = 0; i < count; i++) {
+			Customer customer = Customer.restore("C" + i, "First", "Last", "Other", "0123456789", "9001015009087",
+					null, LocalDate.of(1990, 1, 1), "South African", "1 Main Road", "Cape Town", 8001,
+					"South Africa", "Engineer", "BankForge", 25000.0);
+			long balance = (i * 7919L) % 1_000_000L;
+			TransactionLedger ledger = new TransactionLedger(2);
+			if (balance > 0) {
+				ledger.append(TransactionLedger.DEPOSIT, balance, 0, depositedAt, null);
+			}
+			BankAccount account = BankAccount.restore(types.get(i % types.size()), FIRST_ACCOUNT_NUMBER + i, customer.getFullName(), opened, true, pinHash, balance, ledger);
+			customer.addAccount(account);
+			customers.add(customer);
+			accounts.put(customer.getCustomerID(), account);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package BankingSystem.bench;
+
+import BankingSystem.Money;
+import BankingSystem.log.EventLog;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+//======== nanoseconds per logged operation for the old synchronous println of a concatenated message and for the event
+//======== log, both into a file, from one and from several threads; the event log is also timed until the file holds
+//======== everything, and every event is either found in the file or counted as dropped
+//======== back-to-back events outrun any writer, so the event log is run again with the threads spinning for 'pace'
+//======== nanoseconds before each event, about what a deposit costs; a DEBUG event below the level is timed last
+//======== usage: java BankingSystem.bench.EventLogBenchmark [events per thread] [pace ns] [thread counts...]
+public class EventLogBenchmark {
+	private static final String TEMPLATE = "Deposited {R} into account {}";
+
+	public static void main(String[] args) throws Exception {
+		int eventsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		long paceNanos = args.length > 1 ? Long.parseLong(args[1]) : 2_500;
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = {1, cores, Math.max(4, cores * 2)};
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		//======== the event log reads its settings once, before its first use
+		Path directory = Files.createTempDirectory("bankforge-log");
+		Path logFile = directory.resolve("events.log");
+		System.setProperty("bankforge.log.file", logFile.toString());
+		System.setProperty("bankforge.log.level", "INFO");
+
+		boolean allPassed = true;
+		console("%-10s %8s %8s %12s %12s %14s %10s %8s%n", "log", "pace ns", "threads", "events", "ns/event", "seconds to disk", "dropped", "check");
+		try (PrintStream println = new PrintStream(new BufferedOutputStream(new FileOutputStream(directory.resolve("println.log").toFile()), 8192), true)) {
+			for (int threads : threadCounts) {
+				long start = System.nanoTime();
+				run(threads, eventsPerThread, 0, (thread, i) -> println.println("Successfully deposited " + Money.formatRand(i) + " into account " + thread));
+				double nanos = (double) (System.nanoTime() - start) * Math.min(threads, cores) / ((long) threads * eventsPerThread);
+				console("%-10s %8d %8d %12d %12.1f %14.2f %10s %8s%n", "println", 0, threads, (long) threads * eventsPerThread, nanos,
+						(System.nanoTime() - start) / 1e9, "-", "-");
+			}
+		}
+
+		long[] found = new long[1];
+		for (long pace : new long[] {0, paceNanos}) {
+			for (int threads : threadCounts) {
+				allPassed &= runEventLog(logFile, threads, eventsPerThread, pace, cores, found);
+			}
+		}
+
+		//======== warmed up first, the check is compiled away once the JIT sees the level
+		for (int i = 0; i < eventsPerThread; i++) {
+			EventLog.debug(TEMPLATE, i, 0);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < eventsPerThread; i++) {
+			EventLog.debug(TEMPLATE, i, 0);
+		}
+		double nanos = (double) (System.nanoTime() - start) / eventsPerThread;
+		EventLog.flush(60_000);
+		boolean passed = countEvents(logFile) == found[0];
+		allPassed &= passed;
+		console("%-10s %8d %8d %12d %12.1f %14s %10s %8s%n", "below lvl", 0, 1, eventsPerThread, nanos, "-", "-", passed ? "ok" : "FAIL");
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	//======== the time per event leaves out a run with the same pacing and no logging; every event must be in the file or
+	//======== counted as dropped
+	private static boolean runEventLog(Path logFile, int threads, int events, long pace, int cores, long[] found) throws Exception {
+		long paced = 0;
+		if (pace > 0) {
+			long start = System.nanoTime();
+			run(threads, events, pace, (thread, i) -> {
+			});
+			paced = System.nanoTime() - start;
+		}
+		long droppedBefore = EventLog.getDropped();
+		long start = System.nanoTime();
+		run(threads, events, pace, (thread, i) -> EventLog.info(TEMPLATE, i, thread));
+		long elapsed = System.nanoTime() - start;
+		boolean flushed = EventLog.flush(60_000);
+		double toDisk = (System.nanoTime() - start) / 1e9;
+		long total = (long) threads * events;
+		double nanos = Math.max(0, (double) (elapsed - paced) * Math.min(threads, cores) / total);
+		long dropped = EventLog.getDropped() - droppedBefore;
+		long inFile = countEvents(logFile);
+		boolean passed = flushed && inFile - found[0] == total - dropped;
+		found[0] = inFile;
+		console("%-10s %8d %8d %12d %12.1f %14.2f %10d %8s%n", "event log", pace, threads, total, nanos, toDisk, dropped, passed ? "ok" : "FAIL");
+		return passed;
+	}
+
+	private interface Event {
+		void log(int thread, long i);
+	}
+
+	private static void run(int threads, int events, long pace, Event event) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			Thread worker = new Thread(() -> {
+				for (int i = 0; i < events; i++) {
+					if (pace > 0) {
+						long until = System.nanoTime() + pace;
+						while (System.nanoTime() - until < 0) {
+							Thread.onSpinWait();
+						}
+					}
+					event.log(thread, i);
+				}
+				done.countDown();
+			}, "log-" + t);
+			worker.start();
+		}
+		done.await();
+	}
+
+	private static long countEvents(Path logFile) throws Exception {
+		long count = 0;
+		try (BufferedReader in = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.contains("] Deposited R")) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static void console(String format, Object... values) {
+		System.out.printf(format, values);
+	}
+}
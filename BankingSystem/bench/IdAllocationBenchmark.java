@@ -0,0 +1,104 @@
+package BankingSystem.bench;
+
+import BankingSystem.data.IdAllocator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+//======== account numbers allocated per second from block-leased IdAllocator, for several thread counts
+//======== every run checks that no number was handed out twice, including after the allocator is reopened on the same file
+//======== usage: java BankingSystem.bench.IdAllocationBenchmark [allocations per thread] [block size] [thread counts...]
+public class IdAllocationBenchmark {
+	public static void main(String[] args) throws Exception {
+		int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int blockSize = args.length > 1 ? Integer.parseInt(args[1]) : IdAllocator.DEFAULT_BLOCK_SIZE;
+		int[] threadCounts = {1, 4, 16};
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		boolean allPassed = true;
+		console.printf("block size %d%n", blockSize);
+		console.printf("%8s %16s %14s %8s%n", "threads", "allocations/s", "ns/alloc", "check");
+		for (int threads : threadCounts) {
+			Path file = Files.createTempDirectory("bankforge-ids").resolve(IdAllocator.DEFAULT_FILE);
+			IdAllocator ids = new IdAllocator(file, blockSize);
+			int[][] issued = new int[threads + 1][];
+			long nanos = allocate(ids, threads, perThread, issued);
+
+			//======== a restart must carry on past everything leased before it
+			issued[threads] = new int[perThread];
+			IdAllocator reopened = new IdAllocator(file, blockSize);
+			for (int i = 0; i < perThread; i++) {
+				issued[threads][i] = reopened.nextAccountNumber();
+			}
+
+			boolean passed = allUnique(issued);
+			allPassed &= passed;
+			long total = (long) threads * perThread;
+			console.printf("%8d %16.0f %14.1f %8s%n", threads, total * 1e9 / nanos, nanos / (double) total * threads, passed ? "ok" : "FAIL");
+		}
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static long allocate(IdAllocator ids, int threads, int perThread, int[][] issued) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int[] numbers = new int[perThread];
+			issued[t] = numbers;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < numbers.length; i++) {
+						numbers[i] = ids.nextAccountNumber();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					done.countDown();
+				}
+			}, "id-bench-" + t);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		long startNanos = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - startNanos;
+	}
+
+	private static boolean allUnique(int[][] issued) {
+		int total = 0;
+		for (int[] numbers : issued) {
+			total += numbers.length;
+		}
+		int[] all = new int[total];
+		int offset = 0;
+		for (int[] numbers : issued) {
+			System.arraycopy(numbers, 0, all, offset, numbers.length);
+			offset += numbers.length;
+		}
+		Arrays.sort(all);
+		for (int i = 1; i < all.length; i++) {
+			if (all[i] == all[i - 1]) {
+				return false;
+			}
+		}
+		return all.length == 0 || all[0] >= IdAllocator.FIRST_ACCOUNT_NUMBER;
+	}
+}
@@ -0,0 +1,133 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.data.DataManager;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+//======== snapshot cost against the number of accounts changed since the previous snapshot: a full snapshot writes
+//======== the whole book, an incremental one only the changed accounts; merging the segments back into the base
+//======== and loading base plus segments are timed as well
+//======== usage: java -Xmx4g BankingSystem.bench.IncrementalSnapshotBenchmark [accounts] [history per account]
+public class IncrementalSnapshotBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final long OPENING_BALANCE = 1_000_000_00L;
+	private static final double[] CHANGED_FRACTIONS = {0.001, 0.01, 0.1, 0.4};
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int history = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-incremental");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		//======== merges are timed on their own below
+		System.setProperty("bankforge.snapshot.mergeSegments", String.valueOf(Integer.MAX_VALUE));
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		ArrayList<Customer> customers = new ArrayList<>(accountCount);
+		HashMap<String, BankAccount> accounts = new HashMap<>(accountCount * 2);
+		buildBook(accountCount, history, customers, accounts);
+		BankService bank = new BankService(customers, accounts, journal, Integer.MAX_VALUE);
+
+		console.printf("accounts %d, history %d%n", accountCount, history);
+		console.printf("%-24s %10s %12s %12s%n", "snapshot", "changed", "ms", "bytes");
+		long start = System.nanoTime();
+		bank.checkpoint();
+		console.printf("%-24s %10d %12.1f %12d%n", "full", accountCount, (System.nanoTime() - start) / 1e6, fileSize(directory, "accounts.dat"));
+
+		for (double fraction : CHANGED_FRACTIONS) {
+			int changed = Math.max(1, (int) (accountCount * fraction));
+			//======== each deposit touches one account, a random window keeps the changed set at the intended size
+			int first = ThreadLocalRandom.current().nextInt(accountCount - changed + 1);
+			for (int i = 0; i < changed; i++) {
+				bank.deposit(FIRST_ACCOUNT_NUMBER + first + i, 100);
+			}
+			long before = latestSegmentSize(directory);
+			start = System.nanoTime();
+			bank.checkpoint();
+			long took = System.nanoTime() - start;
+			long segmentBytes = latestSegmentSize(directory);
+			console.printf("%-24s %10d %12.1f %12d%n", "incremental", changed, took / 1e6, segmentBytes == before ? 0 : segmentBytes);
+		}
+
+		int segments = DataManager.getSnapshotSegmentCount();
+		start = System.nanoTime();
+		ArrayList<Customer> loadedCustomers = new ArrayList<>();
+		HashMap<String, BankAccount> loadedAccounts = new HashMap<>();
+		DataManager.loadAllData(loadedCustomers, loadedAccounts);
+		console.printf("%-24s %10s %12.1f%n", "load with " + segments + " segments", "", (System.nanoTime() - start) / 1e6);
+
+		start = System.nanoTime();
+		boolean merged = DataManager.mergeSnapshotSegments();
+		console.printf("%-24s %10s %12.1f %12s%n", "merge " + segments + " segments", "", (System.nanoTime() - start) / 1e6, merged ? "ok" : "FAILED");
+
+		loadedCustomers.clear();
+		loadedAccounts.clear();
+		start = System.nanoTime();
+		DataManager.loadAllData(loadedCustomers, loadedAccounts);
+		long loadNanos = System.nanoTime() - start;
+		long total = 0;
+		for (BankAccount account : loadedAccounts.values()) {
+			total += account.getBalance();
+		}
+		long expected = 0;
+		for (BankAccount account : accounts.values()) {
+			expected += account.getBalance();
+		}
+		console.printf("%-24s %10s %12.1f %12s%n", "load after merge", "", loadNanos / 1e6, total == expected ? "ok" : "MISMATCH");
+
+		bank.close();
+		System.setOut(console);
+		if (!merged || total != expected) {
+			System.exit(1);
+		}
+	}
+
+	private static long fileSize(Path directory, String name) {
+		return new File(directory.toFile(), name).length();
+	}
+
+	private static long latestSegmentSize(Path directory) {
+		File latest = null;
+		long latestSequence = -1;
+		File[] files = directory.toFile().listFiles((dir, name) -> name.matches("accounts\\.dat\\.\\d+"));
+		for (File file : files == null ? new File[0] : files) {
+			long sequence = Long.parseLong(file.getName().substring("accounts.dat.".length()));
+			if (sequence > latestSequence) {
+				latestSequence = sequence;
+				latest = file;
+			}
+		}
+		return latest == null ? 0 : latest.length();
+	}
+
+	private static void buildBook(int count, int history, ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) {
+		LocalDate opened = LocalDate.now();
+		for (int i = 0; i < count; i++) {
+			Customer customer = Customer.restore("C" + i, "First" + i, "Last" + i, "Other", "0123456789", "9001015009087",
+					null, LocalDate.of(1990, 1, 1), "South African", i + " Main Road", "Cape Town", 8001,
+					"South Africa", "Engineer", "BankForge", 25000.0);
+			BankAccount account = new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, customer.getFullName(), opened, true, "1234");
+			account.depositMoney(OPENING_BALANCE);
+			for (int h = 1; h < history; h++) {
+				account.depositMoney(100);
+			}
+			customer.addAccount(account);
+			customers.add(customer);
+			accounts.put(customer.getCustomerID(), account);
+		}
+	}
+}
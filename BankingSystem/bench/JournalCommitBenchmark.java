@@ -0,0 +1,112 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.TransferEngine;
+import BankingSystem.data.AccountIndex;
+import BankingSystem.data.TransactionJournal;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+//======== durable deposits per second with one fsync per record (ALWAYS) against group commit (GROUP)
+//======== every run reopens the journal afterwards and checks that each acknowledged deposit replays
+//======== usage: java BankingSystem.bench.JournalCommitBenchmark [seconds per run] [thread counts...]
+public class JournalCommitBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final int ACCOUNTS = 10_000;
+
+	public static void main(String[] args) throws Exception {
+		long runMillis = args.length > 0 ? Long.parseLong(args[0]) * 1000L : 3000L;
+		int[] threadCounts = {1, 4, 16, 64};
+		if (args.length > 1) {
+			threadCounts = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				threadCounts[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		//======== BankAccount still logs every operation to the console, keep that out of the numbers
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		boolean allPassed = true;
+		console.printf("%-8s %8s %14s %14s %8s%n", "policy", "threads", "deposits/s", "deposits", "check");
+		for (TransactionJournal.FsyncPolicy policy : new TransactionJournal.FsyncPolicy[] {TransactionJournal.FsyncPolicy.ALWAYS, TransactionJournal.FsyncPolicy.GROUP}) {
+			for (int threads : threadCounts) {
+				Path file = Files.createTempDirectory("bankforge-journal").resolve(TransactionJournal.DEFAULT_FILE);
+				BankAccount[] accounts = openAccounts();
+				TransactionJournal journal = TransactionJournal.open(file, policy, 0);
+				TransferEngine engine = new TransferEngine(journal);
+
+				AtomicLong deposits = new AtomicLong();
+				CountDownLatch start = new CountDownLatch(1);
+				CountDownLatch done = new CountDownLatch(threads);
+				long deadline = System.nanoTime() + runMillis * 1_000_000L;
+				for (int t = 0; t < threads; t++) {
+					Thread worker = new Thread(() -> {
+						try {
+							start.await();
+							ThreadLocalRandom random = ThreadLocalRandom.current();
+							long local = 0;
+							while (System.nanoTime() < deadline) {
+								if (engine.deposit(accounts[random.nextInt(accounts.length)], 100).isSuccess()) {
+									local++;
+								}
+							}
+							deposits.addAndGet(local);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						} finally {
+							done.countDown();
+						}
+					}, "journal-bench-" + t);
+					worker.setDaemon(true);
+					worker.start();
+				}
+
+				long startNanos = System.nanoTime();
+				start.countDown();
+				done.await();
+				double seconds = (System.nanoTime() - startNanos) / 1e9;
+				journal.close();
+
+				int replayed = replayCount(file);
+				boolean passed = replayed == deposits.get();
+				allPassed &= passed;
+				console.printf("%-8s %8d %14.0f %14d %8s%n", policy, threads, deposits.get() / seconds, deposits.get(),
+						passed ? "ok" : "FAIL (" + replayed + " replayed)");
+			}
+		}
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static BankAccount[] openAccounts() {
+		BankAccount[] accounts = new BankAccount[ACCOUNTS];
+		LocalDate opened = LocalDate.now();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			accounts[i] = new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, "Holder " + i, opened, true, "1234");
+		}
+		return accounts;
+	}
+
+	//======== replays the journal into a fresh set of accounts
+	private static int replayCount(Path file) throws Exception {
+		AccountIndex index = new AccountIndex(ACCOUNTS);
+		for (BankAccount account : openAccounts()) {
+			index.put(account);
+		}
+		try (TransactionJournal journal = TransactionJournal.open(file, TransactionJournal.FsyncPolicy.NEVER, 0)) {
+			return journal.replay(0, index);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+//======== login throughput and heap allocation per BankService.authenticate call
+//======== allocation is read from the JVM's per-thread allocated-bytes counter, so it includes everything the call touches
+//======== usage: java BankingSystem.bench.LoginAllocationBenchmark [accounts] [logins]
+public class LoginAllocationBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final String PIN = "1234";
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int logins = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-login");
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		BankService bank = new BankService(new ArrayList<>(), buildAccounts(accountCount), journal, Integer.MAX_VALUE);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			console.println("This JVM cannot report per-thread allocation.");
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		String storedHex = legacyHexHash(PIN);
+		console.printf("%-22s %14s %12s %14s%n", "login", "logins/s", "ns/login", "bytes/login");
+		for (int round = 0; round < 2; round++) {
+			//======== first round is warm-up
+			boolean report = round == 1;
+			measure(console, threads, "correct PIN", logins, report, random -> bank.authenticate(FIRST_ACCOUNT_NUMBER + random.nextInt(accountCount), PIN) != null);
+			measure(console, threads, "wrong PIN", logins, report, random -> bank.authenticate(FIRST_ACCOUNT_NUMBER + random.nextInt(accountCount), "9999") != null);
+			measure(console, threads, "hex string (before)", logins, report, random -> legacyHexHash(PIN).equals(storedHex));
+		}
+
+		journal.close();
+		System.setOut(console);
+	}
+
+	private interface Login {
+		boolean attempt(ThreadLocalRandom random);
+	}
+
+	private static void measure(PrintStream console, com.sun.management.ThreadMXBean threads, String name, int logins, boolean report, Login login) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long threadId = Thread.currentThread().getId();
+		long succeeded = 0;
+
+		long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for (int i = 0; i < logins; i++) {
+			if (login.attempt(random)) {
+				succeeded++;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		if (report) {
+			console.printf("%-22s %14.0f %12.1f %14.2f%n", name, logins * 1e9 / elapsed, elapsed / (double) logins, allocated / (double) logins);
+		}
+		if (succeeded < 0) {
+			console.println("unreachable");
+		}
+	}
+
+	private static HashMap<String, BankAccount> buildAccounts(int count) {
+		HashMap<String, BankAccount> accounts = new HashMap<>(count * 2);
+		LocalDate opened = LocalDate.now();
+		for (int i = 0; i < count; i++) {
+			Customer customer = Customer.restore("C" + i, "First" + i, "Last" + i, "Other", "0123456789", "9001015009087",
+					null, LocalDate.of(1990, 1, 1), "South African", "1 Main Road", "Cape Town", 8001,
+					"South Africa", "Engineer", "BankForge", 25000.0);
+			accounts.put(customer.getCustomerID(), new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, customer.getFullName(), opened, true, PIN));
+		}
+		return accounts;
+	}
+
+	//======== how PINs were hashed and compared before they were stored as raw bytes, kept for comparison
+	private static String legacyHexHash(String pin) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] encodedHash = digest.digest(pin.getBytes());
+			StringBuilder hexString = new StringBuilder();
+			for (byte b : encodedHash) {
+				String hex = Integer.toHexString(0xff & b);
+				if (hex.length() == 1) hexString.append('0');
+				hexString.append(hex);
+			}
+			return hexString.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("SHA-256 algorithm not available", e);
+		}
+	}
+}
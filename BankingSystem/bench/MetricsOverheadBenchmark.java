@@ -0,0 +1,146 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.metrics.LatencyHistogram;
+import BankingSystem.metrics.Metrics;
+import BankingSystem.service.BankService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+//======== what the metrics cost: nanoseconds per histogram record from one and from several threads, then deposits
+//======== through BankService timed end to end, with the record cost as a share of a deposit; finally the metrics file
+//======== is written and its deposit row checked against the deposits made
+//======== run it again with -Dbankforge.metrics=false to see the deposits without any timing at all
+//======== usage: java BankingSystem.bench.MetricsOverheadBenchmark [records per thread] [deposits] [thread counts...]
+public class MetricsOverheadBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final int ACCOUNTS = 10_000;
+
+	public static void main(String[] args) throws Exception {
+		int recordsPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+		int deposits = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = {1, cores, Math.max(4, cores * 2)};
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		boolean allPassed = true;
+		console.printf("metrics %s%n", Metrics.ENABLED ? "on" : "off");
+		console.printf("%-10s %8s %14s %12s %8s%n", "record", "threads", "records", "ns/record", "check");
+		double recordNanos = 0;
+		for (int threads : threadCounts) {
+			LatencyHistogram histogram = new LatencyHistogram();
+			long start = System.nanoTime();
+			recordFrom(histogram, threads, recordsPerThread);
+			double nanos = (double) (System.nanoTime() - start) * Math.min(threads, cores) / ((long) threads * recordsPerThread);
+			if (threads == 1) {
+				recordNanos = nanos;
+			}
+			boolean passed = histogram.snapshot().getCount() == (long) threads * recordsPerThread;
+			allPassed &= passed;
+			console.printf("%-10s %8d %14d %12.1f %8s%n", "", threads, (long) threads * recordsPerThread, nanos, passed ? "ok" : "FAIL");
+		}
+
+		Path directory = Files.createTempDirectory("bankforge-metrics");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		BankService bank = new BankService(new ArrayList<Customer>(), openAccounts(), journal, Integer.MAX_VALUE);
+		//======== warm up so the JIT has compiled the path before it is timed
+		depositInto(bank, deposits / 4);
+		long depositsBefore = Metrics.DEPOSIT.snapshot().getCount();
+		long start = System.nanoTime();
+		depositInto(bank, deposits);
+		double depositNanos = (double) (System.nanoTime() - start) / deposits;
+		long recorded = Metrics.DEPOSIT.snapshot().getCount() - depositsBefore;
+		console.printf("%n%-10s %14s %12s %12s %8s%n", "deposit", "deposits", "ns/deposit", "metrics %", "check");
+		boolean passed = recorded == (Metrics.ENABLED ? deposits : 0);
+		allPassed &= passed;
+		console.printf("%-10s %14d %12.1f %12.2f %8s%n", "", deposits, depositNanos,
+				Metrics.ENABLED ? 100 * (recordNanos + 2 * nanoTimeCost()) / depositNanos : 0.0, passed ? "ok" : "FAIL");
+
+		Path file = directory.resolve("metrics.txt");
+		Metrics.dump(file);
+		String depositRow = null;
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			if (line.startsWith("deposit ")) {
+				depositRow = line;
+			}
+		}
+		passed = depositRow != null && Long.parseLong(depositRow.trim().split("\\s+")[1]) == Metrics.DEPOSIT.snapshot().getCount();
+		allPassed &= passed;
+		console.printf("%ndump %s, check %s%n%s%n", file.getFileName(), passed ? "ok" : "FAIL", depositRow);
+		journal.close();
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static void recordFrom(LatencyHistogram histogram, int threads, int records) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			long seed = t * 0x9E3779B97F4A7C15L;
+			Thread worker = new Thread(() -> {
+				//======== latencies spread from about 100 ns to about 1 ms, as real operations would be
+				long value = seed;
+				for (int i = 0; i < records; i++) {
+					value ^= value << 13;
+					value ^= value >>> 7;
+					value ^= value << 17;
+					histogram.record(100 + ((value >>> 1) & 0xFFFFF));
+				}
+				done.countDown();
+			}, "record-" + t);
+			worker.start();
+		}
+		done.await();
+	}
+
+	private static void depositInto(BankService bank, int deposits) {
+		for (int i = 0; i < deposits; i++) {
+			bank.deposit(FIRST_ACCOUNT_NUMBER + i % ACCOUNTS, 100);
+		}
+	}
+
+	//======== a timed call reads the clock twice on top of recording
+	private static double nanoTimeCost() {
+		int reads = 10_000_000;
+		long sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < reads; i++) {
+			sink += System.nanoTime();
+		}
+		double nanos = (double) (System.nanoTime() - start) / reads;
+		return sink == 0 ? 0 : nanos;
+	}
+
+	private static HashMap<String, BankAccount> openAccounts() {
+		HashMap<String, BankAccount> accounts = new HashMap<>(ACCOUNTS * 2);
+		byte[] pinHash = PinHash.hash("1234");
+		for (int i = 0; i < ACCOUNTS; i++) {
+			BankAccount account = BankAccount.restore("Savings", FIRST_ACCOUNT_NUMBER + i, "Customer " + i, LocalDate.now(), true, pinHash, 0L, new TransactionLedger());
+			accounts.put("C" + i, account);
+		}
+		return accounts;
+	}
+}
@@ -0,0 +1,253 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.AccountIndex;
+import BankingSystem.data.OffHeapAccountTable;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+//======== heap, off-heap memory and collector time for the same book held as BankAccount objects (with the empty
+//======== ledger a registration gives them) and as an off-heap table: live heap after a full collection, how long a
+//======== full collection takes, then a few seconds of lookups and balance changes with some garbage per operation,
+//======== as requests make, counting collections and their time. Both books are compared field by field, and
+//======== transfers between cursors on several threads must keep the total; a large book is then built off-heap only
+//======== usage: java -Xmx4g BankingSystem.bench.OffHeapAccountBenchmark [accounts] [seconds] [large accounts] [threads]
+public class OffHeapAccountBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final String[] TYPES = {"Savings", "Current", "Fixed Deposit", "Student Account", "Business Account"};
+	private static final byte[] PIN_HASH = PinHash.hash("1234");
+
+	//======== holds on to the last few pieces of garbage, so they are really allocated
+	private static final byte[][] RECENT = new byte[64][];
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int largeCount = args.length > 2 ? Integer.parseInt(args[2]) : 20_000_000;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		boolean allPassed = true;
+		System.out.printf("accounts %d, %d s of operations per model%n", accountCount, seconds);
+		System.out.printf("%-9s %10s %10s %10s %12s %12s %10s %10s%n", "model", "heap MB", "direct MB", "full gc ms",
+				"ops/s", "collections", "gc ms", "ms/gc");
+
+		//======== off-heap first, while the heap holds nothing else
+		long baseline = liveHeap();
+		OffHeapAccountTable table = new OffHeapAccountTable(accountCount);
+		for (int i = 0; i < accountCount; i++) {
+			table.add(FIRST_ACCOUNT_NUMBER + i, TYPES[i % TYPES.length], holder(i), opened(i), true, PIN_HASH, balance(i));
+		}
+		long tableHeap = liveHeap() - baseline;
+		double fullGc = fullCollection();
+		GcCount before = new GcCount();
+		OffHeapAccountTable.Cursor at = table.cursor();
+		long ops = churn(seconds, (number, i) -> {
+			at.moveTo(number);
+			if ((i & 1) == 0) {
+				at.depositMoney(100);
+			} else {
+				at.withdrawMoney(100);
+			}
+		}, accountCount);
+		GcCount after = new GcCount();
+		print("off-heap", tableHeap, table.getOffHeapBytes(), fullGc, ops / (double) seconds, after.minus(before));
+
+		ArrayList<BankAccount> accounts = new ArrayList<>(accountCount);
+		AccountIndex index = new AccountIndex(accountCount);
+		for (int i = 0; i < accountCount; i++) {
+			BankAccount account = BankAccount.restore(TYPES[i % TYPES.length], FIRST_ACCOUNT_NUMBER + i, holder(i), opened(i), true,
+					PIN_HASH.clone(), balance(i), new TransactionLedger());
+			accounts.add(account);
+			index.put(account);
+		}
+		long heap = liveHeap() - baseline - tableHeap;
+		fullGc = fullCollection();
+		before = new GcCount();
+		ops = churn(seconds, (number, i) -> {
+			BankAccount account = index.get(number);
+			account.restoreBalance(account.getBalance() + ((i & 1) == 0 ? 100 : -100));
+		}, accountCount);
+		after = new GcCount();
+		print("heap", heap, 0, fullGc, ops / (double) seconds, after.minus(before));
+
+		//======== both churns left every balance where it started
+		int differ = 0;
+		OffHeapAccountTable.Cursor cursor = table.cursor();
+		for (BankAccount account : accounts) {
+			if (!cursor.moveTo(account.getAccountNumber()) || cursor.getBalance() != account.getBalance()
+					|| !cursor.getAccountType().equals(account.getAccountType()) || !cursor.getAccountHolder().equals(account.getAccountHolder())
+					|| !cursor.getDateOpened().equals(account.getDateOpened()) || cursor.isActive() != account.isActive()
+					|| !cursor.validatePin("1234") || cursor.validatePin("4321")) {
+				differ++;
+			}
+		}
+		boolean conserved = conserves(table, threads);
+		boolean passed = differ == 0 && conserved;
+		allPassed &= passed;
+		System.out.printf("%n%d accounts differ between the models, %d threads of transfers between cursors %s the total, check %s%n",
+				differ, threads, conserved ? "kept" : "did not keep", passed ? "ok" : "FAIL");
+		accounts = null;
+		index.clear();
+		table = null;
+
+		if (largeCount > 0) {
+			long start = System.nanoTime();
+			baseline = liveHeap();
+			OffHeapAccountTable large = new OffHeapAccountTable(largeCount);
+			for (int i = 0; i < largeCount; i++) {
+				large.add(FIRST_ACCOUNT_NUMBER + i, TYPES[i % TYPES.length], holder(i), opened(i), true, PIN_HASH, balance(i));
+			}
+			double buildSeconds = (System.nanoTime() - start) / 1e9;
+			heap = liveHeap() - baseline;
+			fullGc = fullCollection();
+			OffHeapAccountTable.Cursor last = large.cursor();
+			passed = large.size() == largeCount && last.moveTo(FIRST_ACCOUNT_NUMBER + largeCount - 1) && last.getBalance() == balance(largeCount - 1);
+			allPassed &= passed;
+			System.out.printf("%noff-heap only, %d accounts built in %.1f s: heap %.1f MB, direct %.0f MB, full gc %.1f ms, check %s%n",
+					largeCount, buildSeconds, heap / 1e6, large.getOffHeapBytes() / 1e6, fullGc, passed ? "ok" : "FAIL");
+		}
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private interface Operation {
+		void apply(int accountNumber, long i);
+	}
+
+	//======== every second operation puts back what the one before took, so balances end where they started
+	private static long churn(int seconds, Operation operation, int accountCount) {
+		long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+		long ops = 0;
+		long seed = 0x9E3779B97F4A7C15L;
+		int number = FIRST_ACCOUNT_NUMBER;
+		while ((ops & 1023) != 0 || System.nanoTime() < deadline) {
+			if ((ops & 1) == 0) {
+				seed ^= seed << 13;
+				seed ^= seed >>> 7;
+				seed ^= seed << 17;
+				number = FIRST_ACCOUNT_NUMBER + (int) ((seed >>> 1) % accountCount);
+			}
+			operation.apply(number, ops);
+			//======== about what parsing a request and building its reply leaves behind
+			RECENT[(int) (ops & 63)] = new byte[256];
+			ops++;
+		}
+		return ops;
+	}
+
+	//======== threads move money between random accounts with withdraw-then-deposit pairs; the total must not change
+	private static boolean conserves(OffHeapAccountTable table, int threads) throws InterruptedException {
+		long total = total(table);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			long seed = (t + 1) * 0x9E3779B97F4A7C15L;
+			Thread worker = new Thread(() -> {
+				OffHeapAccountTable.Cursor from = table.cursor();
+				OffHeapAccountTable.Cursor to = table.cursor();
+				long value = seed;
+				for (int i = 0; i < 1_000_000; i++) {
+					value ^= value << 13;
+					value ^= value >>> 7;
+					value ^= value << 17;
+					from.at((int) ((value >>> 1) % table.size()));
+					to.at((int) ((value >>> 33) % table.size()));
+					if (from.withdrawMoney(500)) {
+						to.depositMoney(500);
+					}
+				}
+				done.countDown();
+			}, "transfer-" + t);
+			worker.start();
+		}
+		done.await();
+		return total(table) == total;
+	}
+
+	private static long total(OffHeapAccountTable table) {
+		OffHeapAccountTable.Cursor cursor = table.cursor();
+		long total = 0;
+		for (int slot = 0; slot < table.size(); slot++) {
+			total += cursor.at(slot).getBalance();
+		}
+		return total;
+	}
+
+	private static String holder(int i) {
+		return "Customer " + i;
+	}
+
+	private static LocalDate opened(int i) {
+		return LocalDate.of(2020, 1, 1).plusDays(i % 2000);
+	}
+
+	private static long balance(int i) {
+		return (i * 7919L) % 1_000_000L;
+	}
+
+	private static void print(String model, long heap, long direct, double fullGc, double opsPerSecond, GcCount gc) {
+		System.out.printf("%-9s %10.1f %10.1f %10.1f %12.0f %12d %10d %10.2f%n", model, heap / 1e6, direct / 1e6, fullGc, opsPerSecond,
+				gc.count, gc.millis, gc.count == 0 ? 0.0 : (double) gc.millis / gc.count);
+	}
+
+	//======== the average of three full collections, which have to trace every live object
+	private static double fullCollection() {
+		long start = System.nanoTime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return (System.nanoTime() - start) / 3e6;
+	}
+
+	//======== the live heap as the last full collection left it
+	private static long liveHeap() {
+		System.gc();
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+			if (usage != null) {
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+
+	private static long directBytes() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	//======== collections and their time so far, over every collector
+	private static final class GcCount {
+		long count;
+		long millis;
+
+		GcCount() {
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				count += Math.max(0, collector.getCollectionCount());
+				millis += Math.max(0, collector.getCollectionTime());
+			}
+		}
+
+		GcCount minus(GcCount earlier) {
+			GcCount difference = new GcCount();
+			difference.count = count - earlier.count;
+			difference.millis = millis - earlier.millis;
+			return difference;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+//======== how long operations stall while snapshots are written: worker threads transfer through BankService
+//======== while another thread takes back-to-back snapshots, and the slowest transfers are compared with how
+//======== long each snapshot took to write
+//======== usage: java -Xmx4g BankingSystem.bench.SnapshotPauseBenchmark [accounts] [history per account] [seconds] [threads]
+public class SnapshotPauseBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final long OPENING_BALANCE = 1_000_000_00L;
+	private static final int MAX_SAMPLES_PER_THREAD = 4_000_000;
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+		int history = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		long runNanos = (args.length > 2 ? Long.parseLong(args[2]) : 10L) * 1_000_000_000L;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-snapshot");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		ArrayList<Customer> customers = new ArrayList<>(accountCount);
+		HashMap<String, BankAccount> accounts = new HashMap<>(accountCount * 2);
+		buildBook(accountCount, history, customers, accounts);
+		BankService bank = new BankService(customers, accounts, journal, Integer.MAX_VALUE);
+
+		long[][] latencies = new long[threads][MAX_SAMPLES_PER_THREAD];
+		int[] counts = new int[threads];
+		CountDownLatch done = new CountDownLatch(threads);
+		long deadline = System.nanoTime() + runNanos;
+		for (int t = 0; t < threads; t++) {
+			int threadIndex = t;
+			Thread worker = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long[] samples = latencies[threadIndex];
+				int n = 0;
+				long now;
+				while ((now = System.nanoTime()) < deadline && n < samples.length) {
+					bank.transfer(FIRST_ACCOUNT_NUMBER + random.nextInt(accountCount), FIRST_ACCOUNT_NUMBER + random.nextInt(accountCount), 100, null);
+					samples[n++] = System.nanoTime() - now;
+				}
+				counts[threadIndex] = n;
+				done.countDown();
+			}, "snapshot-bench-" + t);
+			worker.setDaemon(true);
+			worker.start();
+		}
+
+		//======== snapshots back to back for the whole run
+		int snapshots = 0;
+		long longestSnapshot = 0;
+		long totalSnapshot = 0;
+		while (System.nanoTime() < deadline) {
+			long start = System.nanoTime();
+			bank.checkpoint();
+			long took = System.nanoTime() - start;
+			longestSnapshot = Math.max(longestSnapshot, took);
+			totalSnapshot += took;
+			snapshots++;
+		}
+		done.await();
+		bank.close();
+		System.setOut(console);
+
+		int total = 0;
+		for (int count : counts) {
+			total += count;
+		}
+		long[] all = new long[total];
+		int offset = 0;
+		for (int t = 0; t < threads; t++) {
+			System.arraycopy(latencies[t], 0, all, offset, counts[t]);
+			offset += counts[t];
+		}
+		Arrays.sort(all);
+
+		console.printf("accounts %d, history %d, threads %d%n", accountCount, history, threads);
+		console.printf("snapshots written   %d, avg %.1f ms, longest %.1f ms%n", snapshots, totalSnapshot / 1e6 / Math.max(snapshots, 1), longestSnapshot / 1e6);
+		console.printf("transfers           %d (%.0f/s)%n", total, total / (runNanos / 1e9));
+		console.printf("transfer latency    p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f ms%n",
+				percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, percentile(all, 0.999) / 1e3, all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+	}
+
+	private static void buildBook(int count, int history, ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) {
+		LocalDate opened = LocalDate.now();
+		for (int i = 0; i < count; i++) {
+			Customer customer = Customer.restore("C" + i, "First" + i, "Last" + i, "Other", "0123456789", "9001015009087",
+					null, LocalDate.of(1990, 1, 1), "South African", i + " Main Road", "Cape Town", 8001,
+					"South Africa", "Engineer", "BankForge", 25000.0);
+			BankAccount account = new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, customer.getFullName(), opened, true, "1234");
+			account.depositMoney(OPENING_BALANCE);
+			for (int h = 1; h < history; h++) {
+				account.depositMoney(100);
+			}
+			customer.addAccount(account);
+			customers.add(customer);
+			accounts.put(customer.getCustomerID(), account);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+import BankingSystem.service.StatementGenerator;
+import BankingSystem.service.StatementResult;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+//======== statements per second for last month, into one archive and into one file per account, for several thread
+//======== counts; every account has history before, during and after the month
+//======== the memory column is the most the live heap (as left by each collection) grew above the book itself, which
+//======== stays flat however many accounts there are; the output is read back and the statements and entries counted
+//======== usage: java -Xmx4g BankingSystem.bench.StatementBenchmark [accounts] [accounts for the file run] [thread counts...]
+public class StatementBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final int ENTRIES_BEFORE = 8;
+	private static final int ENTRIES_IN_MONTH = 25;
+	private static final int ENTRIES_AFTER = 7;
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int fileAccounts = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+		int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		YearMonth month = YearMonth.now().minusMonths(1);
+		boolean allPassed = true;
+		console.printf("month %s, %d entries per account, %d in the month%n", month, ENTRIES_BEFORE + ENTRIES_IN_MONTH + ENTRIES_AFTER, ENTRIES_IN_MONTH);
+		console.printf("%-8s %10s %8s %14s %10s %12s %12s %8s%n", "output", "accounts", "threads", "statements/s", "seconds", "MB written", "MB live", "check");
+		allPassed &= run(console, month, accountCount, StatementGenerator.Output.ARCHIVE, threadCounts);
+		if (fileAccounts > 0) {
+			allPassed &= run(console, month, fileAccounts, StatementGenerator.Output.FILES, threadCounts);
+		}
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean run(PrintStream console, YearMonth month, int accountCount, StatementGenerator.Output output, int[] threadCounts) throws Exception {
+		Path directory = Files.createTempDirectory("bankforge-statements");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		HashMap<String, BankAccount> accounts = new HashMap<>(accountCount * 2);
+		buildBook(accountCount, month, accounts);
+		BankService bank = new BankService(new ArrayList<Customer>(), accounts, journal, Integer.MAX_VALUE);
+
+		boolean allPassed = true;
+		for (int threads : threadCounts) {
+			Path target = directory.resolve(output == StatementGenerator.Output.ARCHIVE ? "statements-" + threads + ".txt.gz" : "statements-" + threads);
+			LiveHeap live = new LiveHeap();
+			long start = System.nanoTime();
+			StatementResult result = new StatementGenerator(bank, threads).generate(month, target, output);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long liveBytes = live.stop();
+
+			long[] counted = output == StatementGenerator.Output.ARCHIVE ? countArchive(target) : countFiles(target);
+			boolean passed = result.getStatements() == accountCount && result.getEntries() == (long) accountCount * ENTRIES_IN_MONTH
+					&& counted[0] == accountCount && counted[1] == result.getEntries();
+			allPassed &= passed;
+			console.printf("%-8s %10d %8d %14.0f %10.2f %12.1f %12.1f %8s%n", output.name().toLowerCase(), accountCount, threads,
+					accountCount / seconds, seconds, result.getBytes() / 1e6, liveBytes / 1e6, passed ? "ok" : "FAIL");
+		}
+		journal.close();
+		return allPassed;
+	}
+
+	//======== statements and entry lines in the archive, read back through one GZIPInputStream
+	private static long[] countArchive(Path archive) throws Exception {
+		long[] counted = new long[2];
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				count(line, counted);
+			}
+		}
+		return counted;
+	}
+
+	private static long[] countFiles(Path directory) throws Exception {
+		long[] counted = new long[2];
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+					count(line, counted);
+				}
+				counted[0]++;
+			}
+		}
+		return counted;
+	}
+
+	private static void count(String line, long[] counted) {
+		if (line.equals("\f")) {
+			counted[0]++;
+		} else if (line.contains("  Balance R")) {
+			counted[1]++;
+		}
+	}
+
+	//======== deposits, withdrawals and described transfers spread over the month before, the month itself and the
+	//======== weeks after it
+	private static void buildBook(int count, YearMonth month, HashMap<String, BankAccount> accounts) {
+		ZoneId zone = ZoneId.systemDefault();
+		long monthStart = month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+		long monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+		long span = monthEnd - monthStart;
+		byte[] pinHash = PinHash.hash("1234");
+		String[] descriptions = {"rent", "groceries", "salary", "school fees", null};
+		for (int i = 0; i < count; i++) {
+			TransactionLedger ledger = new TransactionLedger(ENTRIES_BEFORE + ENTRIES_IN_MONTH + ENTRIES_AFTER);
+			long balance = 0;
+			int entries = 0;
+			for (int e = 0; e < ENTRIES_BEFORE + ENTRIES_IN_MONTH + ENTRIES_AFTER; e++) {
+				long timestamp;
+				if (e < ENTRIES_BEFORE) {
+					timestamp = monthStart - span + span * e / ENTRIES_BEFORE;
+				} else if (e < ENTRIES_BEFORE + ENTRIES_IN_MONTH) {
+					timestamp = monthStart + span * (e - ENTRIES_BEFORE) / ENTRIES_IN_MONTH;
+				} else {
+					timestamp = monthEnd + span / 2 * (e - ENTRIES_BEFORE - ENTRIES_IN_MONTH) / ENTRIES_AFTER;
+				}
+				long amount = 100 + (i * 31L + e * 977L) % 50_000;
+				int kind = entries++ % 4;
+				if (kind == 0 || balance < amount) {
+					ledger.append(TransactionLedger.DEPOSIT, amount, 0, timestamp, null);
+					balance += amount;
+				} else if (kind == 1) {
+					ledger.append(TransactionLedger.WITHDRAWAL, amount, 0, timestamp, null);
+					balance -= amount;
+				} else if (kind == 2) {
+					ledger.append(TransactionLedger.TRANSFER_OUT, amount, FIRST_ACCOUNT_NUMBER + (i + 1) % count, timestamp, descriptions[e % descriptions.length]);
+					balance -= amount;
+				} else {
+					ledger.append(TransactionLedger.TRANSFER_IN, amount, FIRST_ACCOUNT_NUMBER + (i + count - 1) % count, timestamp, descriptions[e % descriptions.length]);
+					balance += amount;
+				}
+			}
+			BankAccount account = BankAccount.restore("Savings", FIRST_ACCOUNT_NUMBER + i, "Customer " + i, month.minusMonths(1).atDay(1), true, pinHash, balance, ledger);
+			accounts.put("C" + i, account);
+		}
+	}
+
+	//======== samples the heap left after each collection on a background thread
+	private static final class LiveHeap {
+		private final long baseline;
+		private final Thread sampler;
+		private volatile boolean running = true;
+		private volatile long peak;
+
+		LiveHeap() {
+			System.gc();
+			baseline = afterCollection();
+			sampler = new Thread(() -> {
+				while (running) {
+					peak = Math.max(peak, afterCollection());
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}, "live-heap");
+			sampler.setDaemon(true);
+			sampler.start();
+		}
+
+		long stop() throws InterruptedException {
+			running = false;
+			sampler.join();
+			return Math.max(0, Math.max(peak, afterCollection()) - baseline);
+		}
+
+		private static long afterCollection() {
+			long used = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+				if (usage != null) {
+					used += usage.getUsed();
+				}
+			}
+			return used;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.DataManager;
+import BankingSystem.data.HistoryArchive;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.service.BankService;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Objects;
+
+//======== live heap and save time for a book of long histories held wholly in memory and after a checkpoint has
+//======== sealed their older entries into the history archive; then sequential and random reads of sealed entries,
+//======== every entry of every tenth account compared with what was appended, and the book saved, loaded back and
+//======== compared again
+//======== usage: java -Xmx4g BankingSystem.bench.TieredHistoryBenchmark [accounts] [entries per account]
+public class TieredHistoryBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final long FIRST_AT = 1_600_000_000_000L;
+	private static final String[] DESCRIPTIONS = {"rent", "groceries", "salary", "school fees", "electricity"};
+	private static final int RANDOM_READS = 200_000;
+
+	public static void main(String[] args) throws Exception {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int entriesPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		Path directory = Files.createTempDirectory("bankforge-history");
+		System.setProperty("bankforge.data.dir", directory.toString());
+		boolean allPassed = true;
+		console.printf("accounts %d, entries %d, %d kept in memory, %d per block%s%n", accountCount, (long) accountCount * entriesPerAccount,
+				HistoryArchive.HOT_ENTRIES, HistoryArchive.BLOCK_ENTRIES, HistoryArchive.ENABLED ? "" : ", sealing off");
+
+		long baseline = liveHeap();
+		HashMap<String, BankAccount> accounts = buildBook(accountCount, entriesPerAccount);
+		long allInMemory = liveHeap() - baseline;
+		long start = System.nanoTime();
+		DataManager.saveAccounts(accounts);
+		double saveBefore = (System.nanoTime() - start) / 1e9;
+		long fileBefore = DataManager.dataFile("accounts.dat").length();
+
+		//======== the first checkpoint is full and seals every long ledger on the way
+		TransactionJournal journal = TransactionJournal.open(directory.resolve(TransactionJournal.DEFAULT_FILE), TransactionJournal.FsyncPolicy.NEVER, 0);
+		BankService bank = new BankService(new ArrayList<Customer>(), accounts, journal, Integer.MAX_VALUE);
+		start = System.nanoTime();
+		boolean sealed = bank.checkpoint();
+		double sealSeconds = (System.nanoTime() - start) / 1e9;
+		long tiered = liveHeap() - baseline;
+		start = System.nanoTime();
+		DataManager.saveAccounts(accounts);
+		double saveAfter = (System.nanoTime() - start) / 1e9;
+		long fileAfter = DataManager.dataFile("accounts.dat").length();
+		long archiveBytes = DataManager.dataFile(HistoryArchive.DEFAULT_FILE).length();
+
+		console.printf("%n%-10s %10s %14s %10s %16s%n", "history", "heap MB", "bytes/account", "save s", "accounts.dat MB");
+		console.printf("%-10s %10.1f %14d %10.2f %16.1f%n", "in memory", allInMemory / 1e6, allInMemory / accountCount, saveBefore, fileBefore / 1e6);
+		console.printf("%-10s %10.1f %14d %10.2f %16.1f%n", "tiered", tiered / 1e6, tiered / accountCount, saveAfter, fileAfter / 1e6);
+		long sealedEntries = 0;
+		for (BankAccount account : accounts.values()) {
+			sealedEntries += account.getLedger().getSealedCount();
+		}
+		console.printf("%nsealing checkpoint %.2f s, %d entries sealed, archive %.1f MB, %.1f bytes per sealed entry%n", sealSeconds, sealedEntries,
+				archiveBytes / 1e6, sealedEntries == 0 ? 0.0 : (double) archiveBytes / sealedEntries);
+
+		//======== every sealed entry once, oldest first, then entries picked at random from the sealed range
+		long sum = 0;
+		start = System.nanoTime();
+		for (BankAccount account : accounts.values()) {
+			TransactionLedger ledger = account.getLedger();
+			for (int e = 0; e < ledger.getSealedCount(); e++) {
+				sum += ledger.getAmount(e);
+			}
+		}
+		double sequential = sealedEntries / ((System.nanoTime() - start) / 1e9);
+		BankAccount[] byIndex = accounts.values().toArray(new BankAccount[0]);
+		long seed = 0x9E3779B97F4A7C15L;
+		start = System.nanoTime();
+		int randomReads = sealedEntries == 0 ? 0 : RANDOM_READS;
+		for (int r = 0; r < randomReads; r++) {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			TransactionLedger ledger = byIndex[(int) ((seed >>> 1) % byIndex.length)].getLedger();
+			if (ledger.getSealedCount() > 0) {
+				sum += ledger.getTimestamp((int) ((seed >>> 17) % ledger.getSealedCount()));
+			}
+		}
+		double randomNanos = randomReads == 0 ? 0 : (double) (System.nanoTime() - start) / randomReads;
+		//======== the sum keeps the reads from being optimised away
+		console.printf("sealed reads: %.0f entries/s in order, %.1f us each at random%n", sum == 0 ? 0 : sequential, randomNanos / 1e3);
+
+		int differ = compare(accounts, entriesPerAccount);
+		boolean passed = sealed && differ == 0 && (!HistoryArchive.ENABLED || entriesPerAccount < HistoryArchive.HOT_ENTRIES + HistoryArchive.BLOCK_ENTRIES || sealedEntries > 0);
+		allPassed &= passed;
+		console.printf("%d accounts differ from what was appended, check %s%n", differ, passed ? "ok" : "FAIL");
+
+		bank.close();
+		bank = null;
+		accounts = null;
+		HashMap<String, BankAccount> loaded = new HashMap<>();
+		start = System.nanoTime();
+		DataManager.loadAllData(new ArrayList<Customer>(), loaded);
+		double loadSeconds = (System.nanoTime() - start) / 1e9;
+		long loadedHeap = liveHeap() - baseline;
+		differ = compare(loaded, entriesPerAccount);
+		passed = loaded.size() == accountCount && differ == 0;
+		allPassed &= passed;
+		console.printf("loaded back in %.2f s, heap %.1f MB, %d accounts differ, check %s%n", loadSeconds, loadedHeap / 1e6, differ, passed ? "ok" : "FAIL");
+
+		for (File file : directory.toFile().listFiles()) {
+			file.delete();
+		}
+		directory.toFile().delete();
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	//======== every account has all its entries, adds up to its balance, and every tenth is read entry by entry
+	private static int compare(HashMap<String, BankAccount> accounts, int entriesPerAccount) {
+		int differ = 0;
+		for (BankAccount account : accounts.values()) {
+			TransactionLedger ledger = account.getLedger();
+			int i = account.getAccountNumber() - FIRST_ACCOUNT_NUMBER;
+			boolean same = ledger.size() == entriesPerAccount && ledger.balance() == account.getBalance();
+			for (int e = 0; same && i % 10 == 0 && e < entriesPerAccount; e++) {
+				same = ledger.getType(e) == type(i, e) && ledger.getAmount(e) == amount(i, e) && ledger.getTimestamp(e) == FIRST_AT + e * 60_000L
+						&& ledger.getCounterparty(e) == counterparty(i, e) && Objects.equals(ledger.getDescription(e), description(i, e));
+			}
+			if (!same) {
+				differ++;
+			}
+		}
+		return differ;
+	}
+
+	//======== a minute apart, deposits and transfers in, payments out with a description now and then
+	private static HashMap<String, BankAccount> buildBook(int count, int entriesPerAccount) {
+		HashMap<String, BankAccount> accounts = new HashMap<>(count * 2);
+		byte[] pinHash = PinHash.hash("1234");
+		for (int i = 0; i < count; i++) {
+			TransactionLedger ledger = new TransactionLedger(entriesPerAccount);
+			long balance = 0;
+			for (int e = 0; e < entriesPerAccount; e++) {
+				ledger.append(type(i, e), amount(i, e), counterparty(i, e), FIRST_AT + e * 60_000L, description(i, e));
+				balance += TransactionLedger.balanceEffect(type(i, e), amount(i, e));
+			}
+			BankAccount account = BankAccount.restore("Savings", FIRST_ACCOUNT_NUMBER + i, "Customer " + i, LocalDate.of(2020, 9, 13), true, pinHash, balance, ledger);
+			accounts.put("C" + i, account);
+		}
+		return accounts;
+	}
+
+	private static byte type(int i, int e) {
+		switch ((i + e) % 4) {
+			case 0:
+				return TransactionLedger.DEPOSIT;
+			case 1:
+				return TransactionLedger.TRANSFER_IN;
+			case 2:
+				return TransactionLedger.WITHDRAWAL;
+			default:
+				return TransactionLedger.TRANSFER_OUT;
+		}
+	}
+
+	//======== money out is always smaller than the money in just before it
+	private static long amount(int i, int e) {
+		long base = 100 + (e * 7919L + i) % 50_000;
+		return (i + e) % 4 < 2 ? base * 2 : base;
+	}
+
+	private static int counterparty(int i, int e) {
+		byte type = type(i, e);
+		return type == TransactionLedger.TRANSFER_IN || type == TransactionLedger.TRANSFER_OUT ? FIRST_ACCOUNT_NUMBER + (i + e) % 1000 : 0;
+	}
+
+	private static String description(int i, int e) {
+		return type(i, e) == TransactionLedger.TRANSFER_OUT && e % 8 == 3 ? DESCRIPTIONS[(e / 8) % DESCRIPTIONS.length] : null;
+	}
+
+	private static long liveHeap() {
+		System.gc();
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+			if (usage != null) {
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+}
@@ -0,0 +1,214 @@
+package BankingSystem.bench;
+
+import BankingSystem.TransactionLedger;
+import BankingSystem.data.HistoryArchive;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+//======== time to answer "this account's transactions on one day" from its history: the old walk back from the newest
+//======== entry against the binary search on the ledger's timestamps, with the history all in memory and with its older
+//======== entries sealed into the history archive
+//======== 'range' finds the day and reads its entries, 'statement' also works out the balance before and after it
+//======== every query must give the same entries and balances both ways
+//======== usage: java -Xmx4g BankingSystem.bench.TimeRangeBenchmark [queries] [history sizes...]
+public class TimeRangeBenchmark {
+	private static final long FIRST_AT = 1_500_000_000_000L;
+	private static final long GAP_MILLIS = 5 * 60 * 1000L;
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+	private static final long MIN_SECONDS = 1;
+
+	public static void main(String[] args) throws Exception {
+		int queries = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		int[] sizes = {10_000, 1_000_000};
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		Path directory = Files.createTempDirectory("bankforge-range");
+		boolean allPassed = true;
+		System.out.printf("%d one-day ranges per history, an entry every 5 minutes or so%n", queries);
+		System.out.printf("%-9s %-8s %8s %11s %9s %11s %9s %6s%n", "entries", "history", "sealed", "range us", "speed-up", "stmt us", "speed-up", "check");
+		for (int size : sizes) {
+			TransactionLedger ledger = buildLedger(size);
+			long balance = ledger.balance();
+			long[][] windows = windows(ledger, queries, size);
+			long[][] expectedRanges = new long[queries][];
+			long[][] expectedStatements = new long[queries][];
+			double rangeNanos = time(() -> {
+				for (int q = 0; q < queries; q++) {
+					expectedRanges[q] = scanRange(ledger.view(), windows[q][0], windows[q][1]);
+				}
+			}) / queries;
+			double statementNanos = time(() -> {
+				for (int q = 0; q < queries; q++) {
+					expectedStatements[q] = scanStatement(ledger.view(), balance, windows[q][0], windows[q][1]);
+				}
+			}) / queries;
+			System.out.printf("%-9d %-8s %8d %11.2f %9s %11.2f %9s %6s%n", size, "scan", 0, rangeNanos / 1e3, "", statementNanos / 1e3, "", "");
+
+			allPassed &= report(size, "index", ledger, balance, windows, expectedRanges, expectedStatements, rangeNanos, statementNanos);
+
+			HistoryArchive archive = HistoryArchive.open(directory.resolve("history-" + size + ".blocks"));
+			TransactionLedger.View sealed = archive.seal(1, ledger.view());
+			boolean adopted = sealed == ledger.view() || ledger.adoptSealed(sealed.getBlocks());
+			allPassed &= adopted && report(size, "sealed", ledger, balance, windows, expectedRanges, expectedStatements, rangeNanos, statementNanos);
+			archive.close();
+		}
+
+		for (java.io.File file : directory.toFile().listFiles()) {
+			file.delete();
+		}
+		directory.toFile().delete();
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean report(int size, String history, TransactionLedger ledger, long balance, long[][] windows,
+			long[][] expectedRanges, long[][] expectedStatements, double scanRangeNanos, double scanStatementNanos) {
+		int[] wrong = new int[1];
+		double rangeNanos = time(() -> {
+			TransactionLedger.View view = ledger.view();
+			for (int q = 0; q < windows.length; q++) {
+				wrong[0] += Arrays.equals(indexedRange(view, windows[q][0], windows[q][1]), expectedRanges[q]) ? 0 : 1;
+			}
+		}) / windows.length;
+		double statementNanos = time(() -> {
+			TransactionLedger.View view = ledger.view();
+			for (int q = 0; q < windows.length; q++) {
+				wrong[0] += Arrays.equals(indexedStatement(view, balance, windows[q][0], windows[q][1]), expectedStatements[q]) ? 0 : 1;
+			}
+		}) / windows.length;
+		boolean passed = wrong[0] == 0;
+		System.out.printf("%-9d %-8s %8d %11.2f %8.1fx %11.2f %8.1fx %6s%n", size, history, ledger.getSealedCount(),
+				rangeNanos / 1e3, scanRangeNanos / rangeNanos, statementNanos / 1e3, scanStatementNanos / statementNanos, passed ? "ok" : "FAIL");
+		return passed;
+	}
+
+	//======== what the history dialog did before the index: walk back from the newest entry, keeping those in the range
+	//======== and stopping at the first one before it; returns the range and what its entries add up to
+	private static long[] scanRange(TransactionLedger.View ledger, long from, long to) {
+		int start = ledger.size();
+		int end = start;
+		long sum = 0;
+		for (int i = ledger.size() - 1; i >= 0; i--) {
+			long timestamp = ledger.getTimestamp(i);
+			if (timestamp < from) {
+				break;
+			}
+			if (timestamp < to) {
+				sum += ledger.getAmount(i);
+				start = i;
+			} else {
+				end = i;
+				start = i;
+			}
+		}
+		return new long[] {start, end, sum};
+	}
+
+	//======== the range found by binary search, then only its entries read
+	private static long[] indexedRange(TransactionLedger.View ledger, long from, long to) {
+		int start = ledger.firstAtOrAfter(from);
+		int end = Math.max(start, ledger.firstAtOrAfter(to));
+		long sum = 0;
+		for (int i = end - 1; i >= start; i--) {
+			sum += ledger.getAmount(i);
+		}
+		return new long[] {start, end, sum};
+	}
+
+	//======== what statements did before the index: undo entries from the newest back to the end of the range, then
+	//======== through the range to its start
+	private static long[] scanStatement(TransactionLedger.View ledger, long balance, long from, long to) {
+		int end = ledger.size();
+		long closing = balance;
+		while (end > 0 && ledger.getTimestamp(end - 1) >= to) {
+			end--;
+			closing -= TransactionLedger.balanceEffect(ledger.getType(end), ledger.getAmount(end));
+		}
+		int start = end;
+		long opening = closing;
+		while (start > 0 && ledger.getTimestamp(start - 1) >= from) {
+			start--;
+			opening -= TransactionLedger.balanceEffect(ledger.getType(start), ledger.getAmount(start));
+		}
+		return new long[] {start, end, opening, closing};
+	}
+
+	//======== what StatementGenerator does now
+	private static long[] indexedStatement(TransactionLedger.View ledger, long balance, long from, long to) {
+		int start = ledger.firstAtOrAfter(from);
+		long opening = balance - ledger.effectBetween(start, ledger.size());
+		int end = ledger.firstAtOrAfter(to);
+		long closing = balance - ledger.effectBetween(end, ledger.size());
+		return new long[] {start, end, opening, closing};
+	}
+
+	//======== repeats the run until it has taken a second, the first run warms up; returns nanoseconds per run
+	private static double time(Runnable run) {
+		run.run();
+		int runs = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			run.run();
+			runs++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < MIN_SECONDS * 1_000_000_000L);
+		return (double) elapsed / runs;
+	}
+
+	//======== one-day windows starting anywhere in the history, a few of them before it begins or after it ends
+	private static long[][] windows(TransactionLedger ledger, int queries, int size) {
+		long first = ledger.getTimestamp(0);
+		long span = ledger.getTimestamp(size - 1) - first + 2 * DAY_MILLIS;
+		long seed = 0x9E3779B97F4A7C15L;
+		long[][] windows = new long[queries][];
+		for (int q = 0; q < queries; q++) {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			long from = first - DAY_MILLIS + (seed >>> 1) % span;
+			windows[q] = new long[] {from, from + DAY_MILLIS};
+		}
+		return windows;
+	}
+
+	//======== deposits, withdrawals and transfers a few minutes apart, now and then two in the same millisecond
+	private static TransactionLedger buildLedger(int size) {
+		TransactionLedger ledger = new TransactionLedger(size);
+		long timestamp = FIRST_AT;
+		long balance = 0;
+		for (int e = 0; e < size; e++) {
+			long amount = 100 + (e * 7919L) % 50_000;
+			byte type;
+			switch (e % 4) {
+				case 0:
+					type = TransactionLedger.DEPOSIT;
+					amount *= 2;
+					break;
+				case 1:
+					type = TransactionLedger.TRANSFER_IN;
+					break;
+				case 2:
+					type = TransactionLedger.WITHDRAWAL;
+					amount = Math.min(amount, balance);
+					break;
+				default:
+					type = TransactionLedger.TRANSFER_OUT;
+					amount = Math.min(amount, balance);
+					break;
+			}
+			ledger.append(type, amount, type == TransactionLedger.TRANSFER_IN || type == TransactionLedger.TRANSFER_OUT ? 100000001 : 0, timestamp, null);
+			balance += TransactionLedger.balanceEffect(type, amount);
+			timestamp += e % 17 == 0 ? 0 : GAP_MILLIS / 2 + (e * 31L) % GAP_MILLIS;
+		}
+		return ledger;
+	}
+}
@@ -0,0 +1,143 @@
+package BankingSystem.bench;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Money;
+import BankingSystem.TransferEngine;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//======== hammers TransferEngine with random transfers from many threads and checks that
+//======== no money is created or lost, no ledger entry goes missing and no thread deadlocks
+//======== usage: java BankingSystem.bench.TransferStressBenchmark [accounts] [transfers per thread] [thread counts...]
+public class TransferStressBenchmark {
+	private static final int FIRST_ACCOUNT_NUMBER = 100000000;
+	private static final long OPENING_BALANCE = 10_000 * Money.CENTS_PER_RAND;
+	private static final long TIMEOUT_SECONDS = 120;
+
+	public static void main(String[] args) throws InterruptedException {
+		int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+		int transfersPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		int[] threadCounts = {1, 2, 4, cores, cores * 2};
+		if (args.length > 2) {
+			threadCounts = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				threadCounts[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		//======== keep the event log's console output out of the numbers
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		boolean allPassed = true;
+		console.printf("%8s %10s %14s %12s %8s%n", "threads", "accounts", "transfers/s", "rejected", "check");
+		for (int threads : threadCounts) {
+			BankAccount[] accounts = openAccounts(accountCount);
+			TransferEngine engine = new TransferEngine(null);
+			long before = totalBalance(accounts);
+			long entriesBefore = totalEntries(accounts);
+
+			AtomicLong succeeded = new AtomicLong();
+			AtomicLong rejected = new AtomicLong();
+			CountDownLatch start = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(threads);
+			for (int t = 0; t < threads; t++) {
+				Thread worker = new Thread(() -> {
+					try {
+						start.await();
+						runTransfers(engine, accounts, transfersPerThread, succeeded, rejected);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}, "transfer-stress-" + t);
+				worker.setDaemon(true);
+				worker.start();
+			}
+
+			long startNanos = System.nanoTime();
+			start.countDown();
+			if (!done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				long[] deadlocked = ManagementFactory.getThreadMXBean().findDeadlockedThreads();
+				console.println("Workers did not finish within " + TIMEOUT_SECONDS + "s, deadlocked threads: "
+						+ (deadlocked == null ? 0 : deadlocked.length));
+				System.exit(1);
+			}
+			double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+			//======== every successful transfer adds one entry to each side
+			long after = totalBalance(accounts);
+			long entriesAfter = totalEntries(accounts);
+			boolean conserved = after == before;
+			boolean ledgersComplete = entriesAfter - entriesBefore == 2 * succeeded.get();
+			boolean passed = conserved && ledgersComplete;
+			allPassed &= passed;
+
+			console.printf("%8d %10d %14.0f %12d %8s%n", threads, accountCount, succeeded.get() / seconds, rejected.get(), passed ? "ok" : "FAILED");
+			if (!conserved) {
+				console.printf("  balance total drifted from %s to %s%n", Money.formatRand(before), Money.formatRand(after));
+			}
+			if (!ledgersComplete) {
+				console.printf("  expected %d new ledger entries, found %d%n", 2 * succeeded.get(), entriesAfter - entriesBefore);
+			}
+		}
+
+		System.setOut(console);
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+
+	private static BankAccount[] openAccounts(int count) {
+		BankAccount[] accounts = new BankAccount[count];
+		LocalDate opened = LocalDate.now();
+		for (int i = 0; i < count; i++) {
+			accounts[i] = new BankAccount("Savings", FIRST_ACCOUNT_NUMBER + i, "Holder " + i, opened, true, "1234");
+			accounts[i].depositMoney(OPENING_BALANCE);
+		}
+		return accounts;
+	}
+
+	private static void runTransfers(TransferEngine engine, BankAccount[] accounts, int transfers, AtomicLong succeeded, AtomicLong rejected) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long ok = 0;
+		long failed = 0;
+		for (int i = 0; i < transfers; i++) {
+			BankAccount from = accounts[random.nextInt(accounts.length)];
+			BankAccount to = accounts[random.nextInt(accounts.length)];
+			long amount = 1 + random.nextInt(50_000);
+			if (engine.transfer(from, to, amount, null).isSuccess()) {
+				ok++;
+			} else {
+				failed++; //===== same account picked twice or not enough funds
+			}
+		}
+		succeeded.addAndGet(ok);
+		rejected.addAndGet(failed);
+	}
+
+	private static long totalBalance(BankAccount[] accounts) {
+		long total = 0;
+		for (BankAccount account : accounts) {
+			total += account.getBalance();
+		}
+		return total;
+	}
+
+	private static long totalEntries(BankAccount[] accounts) {
+		long total = 0;
+		for (BankAccount account : accounts) {
+			total += account.getLedger().size();
+		}
+		return total;
+	}
+}
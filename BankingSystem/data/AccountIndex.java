@@ -0,0 +1,137 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+
+import java.util.Arrays;
+
+//======== open-addressing index from account number to account
+//======== keys are kept in a plain int[] so lookups never box an Integer
+public class AccountIndex {
+	//======== account numbers are always positive, so 0 marks an empty slot
+	private static final int EMPTY = 0;
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private BankAccount[] values;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	public AccountIndex() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public AccountIndex(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	//======== returns the account with this number, or null if there is none
+	public BankAccount get(int accountNumber) {
+		if (accountNumber == EMPTY) {
+			return null;
+		}
+		int slot = mix(accountNumber) & mask;
+		while (true) {
+			int key = keys[slot];
+			if (key == accountNumber) {
+				return values[slot];
+			}
+			if (key == EMPTY) {
+				return null;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	public boolean contains(int accountNumber) {
+		return get(accountNumber) != null;
+	}
+
+	//======== adds or replaces the account under its own account number
+	public BankAccount put(BankAccount account) {
+		int accountNumber = account.getAccountNumber();
+		if (accountNumber <= EMPTY) {
+			throw new IllegalArgumentException("Account numbers must be positive: " + accountNumber);
+		}
+		int slot = mix(accountNumber) & mask;
+		while (true) {
+			int key = keys[slot];
+			if (key == accountNumber) {
+				BankAccount previous = values[slot];
+				values[slot] = account;
+				return previous;
+			}
+			if (key == EMPTY) {
+				keys[slot] = accountNumber;
+				values[slot] = account;
+				if (++size > resizeThreshold) {
+					resize(keys.length << 1);
+				}
+				return null;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	//======== rebuilds the whole index, e.g. after loading accounts from disk
+	public void rebuild(Iterable<BankAccount> accounts, int expectedSize) {
+		int capacity = tableSizeFor(expectedSize);
+		if (capacity != keys.length) {
+			allocate(capacity);
+		} else {
+			clear();
+		}
+		for (BankAccount account : accounts) {
+			put(account);
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void resize(int newCapacity) {
+		int[] oldKeys = keys;
+		BankAccount[] oldValues = values;
+		allocate(newCapacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = mix(oldKeys[i]) & mask;
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				size++;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new BankAccount[capacity];
+		mask = capacity - 1;
+		size = 0;
+		resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	//======== smallest power of two that keeps the table under the load factor
+	private static int tableSizeFor(int expectedSize) {
+		long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+		int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+		return capacity < needed ? Math.min(capacity << 1, 1 << 30) : capacity;
+	}
+
+	//======== account numbers are handed out in clusters, so spread the bits before masking
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
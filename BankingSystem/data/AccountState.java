@@ -0,0 +1,83 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.TransactionLedger;
+
+import java.time.LocalDate;
+
+//======== one account's fields frozen at a moment in time, so a snapshot can be written while the account keeps changing
+//======== capturing is cheap: the ledger is not copied, only a view of the entries it held at that moment
+public final class AccountState {
+	private final int accountNumber;
+	private final String accountType;
+	private final String accountHolder;
+	private final LocalDate dateOpened;
+	private final boolean active;
+	private final byte[] pinHash;
+	private final long balanceCents;
+	private final TransactionLedger.View ledger;
+
+	private AccountState(BankAccount account) {
+		this.accountNumber = account.getAccountNumber();
+		this.accountType = account.getAccountType();
+		this.accountHolder = account.getAccountHolder();
+		this.dateOpened = account.getDateOpened();
+		this.active = account.isActive();
+		this.pinHash = account.getPinHash();
+		this.balanceCents = account.getBalance();
+		this.ledger = account.getLedger().view();
+	}
+
+	private AccountState(AccountState state, TransactionLedger.View ledger) {
+		this.accountNumber = state.accountNumber;
+		this.accountType = state.accountType;
+		this.accountHolder = state.accountHolder;
+		this.dateOpened = state.dateOpened;
+		this.active = state.active;
+		this.pinHash = state.pinHash;
+		this.balanceCents = state.balanceCents;
+		this.ledger = ledger;
+	}
+
+	//======== call with the account's lock held, or while nothing else can change it
+	public static AccountState capture(BankAccount account) {
+		return new AccountState(account);
+	}
+
+	//======== the same state with the same history, part of which is now sealed (see HistoryArchive.seal)
+	AccountState withLedger(TransactionLedger.View sealed) {
+		return new AccountState(this, sealed);
+	}
+
+	public int getAccountNumber() {
+		return accountNumber;
+	}
+
+	public String getAccountType() {
+		return accountType;
+	}
+
+	public String getAccountHolder() {
+		return accountHolder;
+	}
+
+	public LocalDate getDateOpened() {
+		return dateOpened;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public byte[] getPinHash() {
+		return pinHash;
+	}
+
+	public long getBalance() {
+		return balanceCents;
+	}
+
+	public TransactionLedger.View getLedger() {
+		return ledger;
+	}
+}
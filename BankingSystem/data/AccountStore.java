@@ -0,0 +1,402 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.PinHash;
+import BankingSystem.log.EventLog;
+import BankingSystem.service.RegistrationValidator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+//======== what a login needs of every account, in fixed-width slots of a memory-mapped file: it is usable as soon as
+//======== the file is mapped, nothing is parsed up front and the OS reads pages in as lookups touch them
+//======== a slot holds the account number, type code, flags, balance, date opened and PIN hash; an open-addressing
+//======== index in the same file, with twice as many entries as slots, maps account numbers to slots, so a lookup
+//======== touches one index page and one slot page
+//======== the snapshot files and the journal stay the source of truth. The store is written through as accounts
+//======== change and checked against the loaded accounts at every start, and it only counts as current when it was
+//======== closed cleanly, since after a crash its slots may be behind the journal
+//======== file layout: header [magic, version, clean, capacity, size], then the index as [account number, slot + 1]
+//======== pairs, then the slots; little-endian throughout
+public final class AccountStore implements Closeable {
+	public static final String DEFAULT_FILE = "accounts.slots";
+	public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("bankforge.accountStore", "true"));
+	private static final int MAGIC = 0x42464153; //===== "BFAS"
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int CLEAN = 6;
+	private static final int CAPACITY = 8;
+	private static final int SIZE = 12;
+
+	private static final int INDEX_ENTRY_SIZE = 8;
+	//======== the slot layout, shared with OffHeapAccountTable
+	static final int SLOT_SIZE = 64;
+	static final int NUMBER = 0;
+	static final int TYPE = 4;
+	static final int FLAGS = 5;
+	static final int BALANCE = 8;
+	static final int OPENED = 16;
+	static final int PIN_HASH = 24;
+	static final byte ACTIVE = 1;
+
+	private static final int MIN_CAPACITY = 1024;
+	//======== one mapping is at most 2 GB: 2^24 slots of 64 bytes plus their index
+	private static final int MAX_CAPACITY = 1 << 24;
+	//======== balances are read while they are written, so they are read and written whole
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final Path path;
+	//======== replaced as a whole when the store grows, so a lookup never mixes an old table with a new file
+	private volatile Mapping mapping;
+	//======== only changed while no operation is in flight
+	private int size;
+	private volatile boolean current;
+
+	private AccountStore(Path path) {
+		this.path = path;
+	}
+
+	//======== one mapping of the file with the table sizes that go with it
+	private static final class Mapping {
+		final MappedByteBuffer buffer;
+		final int capacity;
+		final int indexMask;
+		final int slotsOffset;
+
+		Mapping(MappedByteBuffer buffer, int capacity) {
+			this.buffer = buffer;
+			this.capacity = capacity;
+			this.indexMask = 2 * capacity - 1;
+			this.slotsOffset = HEADER_SIZE + 2 * capacity * INDEX_ENTRY_SIZE;
+		}
+
+		int slotPosition(int slot) {
+			return slotsOffset + slot * SLOT_SIZE;
+		}
+
+		int find(int accountNumber) {
+			int entry = mix(accountNumber) & indexMask;
+			while (true) {
+				int position = HEADER_SIZE + entry * INDEX_ENTRY_SIZE;
+				int key = buffer.getInt(position);
+				if (key == accountNumber) {
+					return buffer.getInt(position + 4) - 1;
+				}
+				if (key == 0) {
+					return -1;
+				}
+				entry = (entry + 1) & indexMask;
+			}
+		}
+
+		//======== the slot number goes in before the key, a lookup that finds the key finds the slot with it
+		void insert(int accountNumber, int slot) {
+			int entry = mix(accountNumber) & indexMask;
+			while (buffer.getInt(HEADER_SIZE + entry * INDEX_ENTRY_SIZE) != 0) {
+				entry = (entry + 1) & indexMask;
+			}
+			buffer.putInt(HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 4, slot + 1);
+			buffer.putInt(HEADER_SIZE + entry * INDEX_ENTRY_SIZE, accountNumber);
+		}
+	}
+
+	//======== the store in the data directory, created empty if there is none
+	public static AccountStore openDefault() throws IOException {
+		return open(DataManager.dataFile(DEFAULT_FILE).toPath(), MIN_CAPACITY);
+	}
+
+	//======== maps the file, or starts a new one sized for the expected number of accounts if it is missing or not
+	//======== one of ours; the file stays marked as not closed cleanly until close()
+	public static AccountStore open(Path path, int expectedAccounts) throws IOException {
+		AccountStore store = new AccountStore(path);
+		if (Files.exists(path) && store.mapExisting()) {
+			store.current = store.mapping.buffer.get(CLEAN) == 1;
+		} else {
+			store.create(path, capacityFor(expectedAccounts), false);
+		}
+		MappedByteBuffer buffer = store.mapping.buffer;
+		buffer.put(CLEAN, (byte) 0);
+		buffer.force(0, HEADER_SIZE);
+		return store;
+	}
+
+	//======== true while every slot matches the loaded accounts: after a clean close, or once sync() has run
+	public boolean isCurrent() {
+		return current;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	//======== the account's slot, or -1 if the store has none for it
+	public int find(int accountNumber) {
+		return mapping.find(accountNumber);
+	}
+
+	//======== an active account whose PIN matches, compared in constant time like PinHash.matches
+	public boolean authenticate(int accountNumber, String pin) {
+		Mapping mapping = this.mapping;
+		int slot = mapping.find(accountNumber);
+		if (slot < 0 || (mapping.buffer.get(mapping.slotPosition(slot) + FLAGS) & ACTIVE) == 0) {
+			return false;
+		}
+		byte[] expected = PinHash.hash(pin);
+		int position = mapping.slotPosition(slot) + PIN_HASH;
+		int difference = 0;
+		for (int i = 0; i < PinHash.LENGTH; i++) {
+			difference |= mapping.buffer.get(position + i) ^ expected[i];
+		}
+		return difference == 0;
+	}
+
+	//======== the getters take a slot from find(), which stays valid as the store grows
+	public int getAccountNumber(int slot) {
+		Mapping mapping = this.mapping;
+		return mapping.buffer.getInt(mapping.slotPosition(slot) + NUMBER);
+	}
+
+	//======== null for a type the store has no code for
+	public String getAccountType(int slot) {
+		Mapping mapping = this.mapping;
+		return typeOf(mapping.buffer.get(mapping.slotPosition(slot) + TYPE));
+	}
+
+	public boolean isActive(int slot) {
+		Mapping mapping = this.mapping;
+		return (mapping.buffer.get(mapping.slotPosition(slot) + FLAGS) & ACTIVE) != 0;
+	}
+
+	//======== in cents
+	public long getBalance(int slot) {
+		Mapping mapping = this.mapping;
+		return (long) LONGS.getOpaque(mapping.buffer, mapping.slotPosition(slot) + BALANCE);
+	}
+
+	public LocalDate getDateOpened(int slot) {
+		Mapping mapping = this.mapping;
+		return LocalDate.ofEpochDay(mapping.buffer.getInt(mapping.slotPosition(slot) + OPENED));
+	}
+
+	public byte[] getPinHash(int slot) {
+		Mapping mapping = this.mapping;
+		byte[] pinHash = new byte[PinHash.LENGTH];
+		mapping.buffer.get(mapping.slotPosition(slot) + PIN_HASH, pinHash);
+		return pinHash;
+	}
+
+	//======== writes the account's balance; call it with the account's lock held so writes land in the same order as
+	//======== the changes, the account must already have a slot
+	public void updateBalance(BankAccount account) {
+		Mapping mapping = this.mapping;
+		int slot = mapping.find(account.getAccountNumber());
+		if (slot >= 0) {
+			LONGS.setOpaque(mapping.buffer, mapping.slotPosition(slot) + BALANCE, account.getBalance());
+		}
+	}
+
+	//======== writes the account's PIN hash after a PIN change; same rules as updateBalance
+	public void updatePinHash(BankAccount account) {
+		Mapping mapping = this.mapping;
+		int slot = mapping.find(account.getAccountNumber());
+		if (slot >= 0) {
+			mapping.buffer.put(mapping.slotPosition(slot) + PIN_HASH, account.getPinHash());
+		}
+	}
+
+	//======== writes the whole slot, adding one for a new account; adding may grow the file, so call it while no
+	//======== operation is in flight
+	public void put(BankAccount account) throws IOException {
+		int slot = find(account.getAccountNumber());
+		if (slot < 0) {
+			if (size == mapping.capacity) {
+				grow(mapping.capacity << 1);
+			}
+			slot = size++;
+			mapping.insert(account.getAccountNumber(), slot);
+			mapping.buffer.putInt(SIZE, size);
+		}
+		write(mapping, slot, account);
+	}
+
+	//======== brings every slot in line with the loaded accounts and marks the store current; slots that already match
+	//======== are only read. A store holding accounts the book does not have is started again from scratch
+	//======== call it while no operation is in flight; returns how many slots were written
+	public int sync(Iterable<BankAccount> accounts, int count) throws IOException {
+		if (count > mapping.capacity) {
+			grow(capacityFor(count));
+		}
+		int written = 0;
+		int matched = 0;
+		for (BankAccount account : accounts) {
+			int slot = find(account.getAccountNumber());
+			if (slot >= 0 && matches(slot, account)) {
+				matched++;
+				continue;
+			}
+			put(account);
+			written++;
+		}
+		if (matched + written != size) {
+			//======== the store holds accounts the book does not have, e.g. it belongs to other data files
+			EventLog.warn("Account store {} holds {} accounts the data files do not have, starting it again", path, size - matched - written);
+			create(path, capacityFor(count), false);
+			return sync(accounts, count);
+		}
+		current = true;
+		return written;
+	}
+
+	//======== flushes every slot to disk, then marks the file as closed cleanly
+	@Override
+	public void close() throws IOException {
+		MappedByteBuffer buffer = mapping.buffer;
+		buffer.force();
+		if (current) {
+			buffer.put(CLEAN, (byte) 1);
+			buffer.force(0, HEADER_SIZE);
+		}
+	}
+
+	private boolean matches(int slot, BankAccount account) {
+		MappedByteBuffer buffer = mapping.buffer;
+		int position = mapping.slotPosition(slot);
+		if (buffer.get(position + TYPE) != typeCode(account.getAccountType())
+				|| isActive(slot) != account.isActive()
+				|| getBalance(slot) != account.getBalance()
+				|| buffer.getInt(position + OPENED) != epochDay(account.getDateOpened())) {
+			return false;
+		}
+		byte[] pinHash = account.getPinHash();
+		for (int i = 0; i < PinHash.LENGTH; i++) {
+			if (buffer.get(position + PIN_HASH + i) != pinHash[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void write(Mapping mapping, int slot, BankAccount account) {
+		MappedByteBuffer buffer = mapping.buffer;
+		int position = mapping.slotPosition(slot);
+		buffer.putInt(position + NUMBER, account.getAccountNumber());
+		buffer.put(position + TYPE, typeCode(account.getAccountType()));
+		buffer.put(position + FLAGS, account.isActive() ? ACTIVE : 0);
+		buffer.putInt(position + OPENED, epochDay(account.getDateOpened()));
+		buffer.put(position + PIN_HASH, account.getPinHash());
+		LONGS.setOpaque(buffer, position + BALANCE, account.getBalance());
+	}
+
+	private boolean mapExisting() throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if (channel.size() < HEADER_SIZE) {
+				return false;
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != MAGIC) {
+				EventLog.warn("{} is not an account store, starting a new one", path);
+				return false;
+			}
+			if (header.getShort(4) > VERSION) {
+				throw new IOException("Unsupported account store version " + header.getShort(4) + " in " + path);
+			}
+			int fileCapacity = header.getInt(CAPACITY);
+			if (Integer.bitCount(fileCapacity) != 1 || fileCapacity > MAX_CAPACITY || channel.size() != fileSize(fileCapacity)) {
+				EventLog.warn("Account store {} is damaged, starting a new one", path);
+				return false;
+			}
+			mapping = map(channel, fileCapacity);
+			size = mapping.buffer.getInt(SIZE);
+			return true;
+		}
+	}
+
+	//======== a new file is written next to the old one and moved over it, so the old one stays whole until then;
+	//======== with 'copy' the slots come along, otherwise the store starts empty and not current
+	private void create(Path target, int newCapacity, boolean copy) throws IOException {
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		Files.deleteIfExists(temp);
+		Mapping previous = mapping;
+		Mapping created;
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			created = map(channel, newCapacity);
+			MappedByteBuffer buffer = created.buffer;
+			buffer.putInt(0, MAGIC);
+			buffer.putShort(4, VERSION);
+			buffer.putInt(CAPACITY, newCapacity);
+			int copied = copy && previous != null ? size : 0;
+			for (int slot = 0; slot < copied; slot++) {
+				int from = previous.slotPosition(slot);
+				buffer.put(created.slotPosition(slot), previous.buffer, from, SLOT_SIZE);
+				created.insert(previous.buffer.getInt(from + NUMBER), slot);
+			}
+			buffer.putInt(SIZE, copied);
+			buffer.force();
+			size = copied;
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (!copy) {
+			current = false;
+		}
+		mapping = created;
+	}
+
+	private void grow(int newCapacity) throws IOException {
+		if (newCapacity > MAX_CAPACITY) {
+			throw new IOException("The account store holds at most " + MAX_CAPACITY + " accounts");
+		}
+		EventLog.info("Growing account store {} to {} slots", path, newCapacity);
+		create(path, newCapacity, true);
+	}
+
+	private static Mapping map(FileChannel channel, int capacity) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return new Mapping(buffer, capacity);
+	}
+
+	private static long fileSize(int capacity) {
+		return HEADER_SIZE + (long) 2 * capacity * INDEX_ENTRY_SIZE + (long) capacity * SLOT_SIZE;
+	}
+
+	//======== smallest power of two that fits the accounts
+	private static int capacityFor(int accounts) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < accounts && capacity < MAX_CAPACITY) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	//======== account types are kept as their position in RegistrationValidator.ACCOUNT_TYPES plus one, 0 for any other
+	static String typeOf(byte code) {
+		List<String> types = RegistrationValidator.ACCOUNT_TYPES;
+		return code > 0 && code <= types.size() ? types.get(code - 1) : null;
+	}
+
+	static byte typeCode(String accountType) {
+		return (byte) (RegistrationValidator.ACCOUNT_TYPES.indexOf(accountType) + 1);
+	}
+
+	static int epochDay(LocalDate date) {
+		return date == null ? 0 : (int) date.toEpochDay();
+	}
+
+	//======== the same spread as AccountIndex, account numbers are handed out in clusters
+	static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,112 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//======== a point-in-time view of the bank that is written out in the background while operations carry on
+//======== accounts are versioned by snapshot epoch: the first change to an account after the snapshot began saves
+//======== its old state here (TransferEngine calls beforeChange under the account's lock), and the writer takes
+//======== either that saved state or, for accounts nobody touched, the live one
+//======== a full snapshot covers every account; an incremental one only the accounts changed in the previous epoch
+//======== and the customers registered since the last snapshot
+public final class CopyOnWriteSnapshot {
+	private final long epoch;
+	private final long journalSequence;
+	private final boolean full;
+	private final ArrayList<Customer> customers;
+	private final String[] customerIDs;
+	private final BankAccount[] accounts;
+	private final ConcurrentHashMap<Integer, AccountState> preserved = new ConcurrentHashMap<>();
+
+	private CopyOnWriteSnapshot(long epoch, long journalSequence, boolean full, List<Customer> customers, int accountCount) {
+		this.epoch = epoch;
+		this.journalSequence = journalSequence;
+		this.full = full;
+		this.customers = new ArrayList<>(customers);
+		this.customerIDs = new String[accountCount];
+		this.accounts = new BankAccount[accountCount];
+	}
+
+	//======== called while no operation is in flight, only the lists are copied here
+	public static CopyOnWriteSnapshot full(long epoch, long journalSequence, List<Customer> customers, Map<String, BankAccount> accounts) {
+		CopyOnWriteSnapshot snapshot = new CopyOnWriteSnapshot(epoch, journalSequence, true, customers, accounts.size());
+		int i = 0;
+		for (Map.Entry<String, BankAccount> entry : accounts.entrySet()) {
+			snapshot.customerIDs[i] = entry.getKey();
+			snapshot.accounts[i] = entry.getValue();
+			i++;
+		}
+		return snapshot;
+	}
+
+	//======== called while no operation is in flight with the accounts TransferEngine.nextEpoch returned; accounts of
+	//======== new customers are written with their customer ID, the others without it since the base already has it
+	public static CopyOnWriteSnapshot incremental(long epoch, long journalSequence, List<Customer> newCustomers, List<BankAccount> changedAccounts) {
+		Map<BankAccount, String> owners = new HashMap<>();
+		for (Customer customer : newCustomers) {
+			for (BankAccount account : customer.getAccounts()) {
+				owners.put(account, customer.getCustomerID());
+			}
+		}
+		CopyOnWriteSnapshot snapshot = new CopyOnWriteSnapshot(epoch, journalSequence, false, newCustomers, changedAccounts.size());
+		for (int i = 0; i < changedAccounts.size(); i++) {
+			snapshot.accounts[i] = changedAccounts.get(i);
+			snapshot.customerIDs[i] = owners.get(changedAccounts.get(i));
+		}
+		return snapshot;
+	}
+
+	//======== called with the account's lock held, just before the account changes
+	public void beforeChange(BankAccount account) {
+		//======== for an incremental snapshot, only accounts changed in the previous epoch are part of it
+		if (account.getSnapshotEpoch() < epoch && (full || account.getChangedEpoch() == epoch - 1)) {
+			account.setSnapshotEpoch(epoch);
+			preserved.put(account.getAccountNumber(), AccountState.capture(account));
+		}
+	}
+
+	//======== called with the account's lock held, returns the account as it was when the snapshot began
+	public AccountState take(BankAccount account) {
+		if (account.getSnapshotEpoch() < epoch) {
+			account.setSnapshotEpoch(epoch);
+			return AccountState.capture(account);
+		}
+		return preserved.remove(account.getAccountNumber());
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	//======== every journal record up to this sequence is reflected in the snapshot
+	public long getJournalSequence() {
+		return journalSequence;
+	}
+
+	public boolean isFull() {
+		return full;
+	}
+
+	public ArrayList<Customer> getCustomers() {
+		return customers;
+	}
+
+	public int getAccountCount() {
+		return accounts.length;
+	}
+
+	//======== null for an existing account in an incremental snapshot
+	public String getCustomerID(int index) {
+		return customerIDs[index];
+	}
+
+	public BankAccount getAccount(int index) {
+		return accounts[index];
+	}
+}
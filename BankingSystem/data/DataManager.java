@@ -2,154 +2,492 @@ package BankingSystem.data;
 
 import BankingSystem.BankAccount;
 import BankingSystem.Customer;
-import java.io.ObjectOutputStream;
+import BankingSystem.TransactionLedger;
+import BankingSystem.TransferEngine;
+import BankingSystem.log.EventLog;
 import java.io.ObjectInputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.EOFException;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DataManager {
-	private static final String CUSTOMER_FILE = "customer.ser";
-	private static final String ACCOUNTS_FILE = "accounts.ser";
-	
-	//======== save customers to file
-	public static void saveCustomers(ArrayList<Customer> customers) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(CUSTOMER_FILE))) {
-            oos.writeObject(customers);
-            System.out.println("Customer data saved successfully. Saved " + customers.size() + " customers.");
-        } catch (IOException e) {
-            System.out.println("Error saving customer data: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-	
+	static final String CUSTOMER_FILE = "customers.dat";
+	static final String ACCOUNTS_FILE = "accounts.dat";
+
+	//======== held while the base snapshot files are replaced, by full saves and by segment merges
+	static final Object BASE_LOCK = new Object();
+
+	//======== Java serialization files written by older versions, migrated on first load
+	private static final String LEGACY_CUSTOMER_FILE = "customer.ser";
+	private static final String LEGACY_ACCOUNTS_FILE = "accounts.ser";
+	private static final String MIGRATED_SUFFIX = ".migrated";
+
+	//======== the sealed history of the data directory, opened when a ledger first needs it
+	private static HistoryArchive historyArchive;
+	//======== the format version of the accounts base last loaded, 0 when there was none
+	private static volatile short loadedBaseVersion;
+
+	//======== snapshot files live in this directory, the working directory unless -Dbankforge.data.dir is set
+	public static File dataFile(String name) {
+		return new File(System.getProperty("bankforge.data.dir", "."), name);
+	}
+
+	//======== the archive of sealed history blocks in the data directory; benchmarks that switch directories get a new
+	//======== one, the old one stays open for the ledgers that still point at it
+	public static synchronized HistoryArchive historyArchive() throws IOException {
+		File file = dataFile(HistoryArchive.DEFAULT_FILE);
+		if (historyArchive == null || !historyArchive.getPath().equals(file.toPath())) {
+			historyArchive = HistoryArchive.open(file.toPath());
+		}
+		return historyArchive;
+	}
+
 	//======== save customers to file
-	public static void saveAccounts(HashMap<String, BankAccount> accounts) {
-		try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ACCOUNTS_FILE))){
-			oos.writeObject(accounts);
-			System.out.println("Account data saved successfully. Saved " + accounts.size() + " accounts.");
-		}catch(IOException e) {
-			System.out.println("Error saving accounts data: " + e.getMessage());
-			e.printStackTrace();
+	public static boolean saveCustomers(ArrayList<Customer> customers) {
+		return saveCustomers(dataFile(CUSTOMER_FILE), customers, 0L);
+	}
+
+	//======== the journal sequence tells segments already folded into this file from newer ones
+	static boolean saveCustomers(File target, List<Customer> customers, long journalSequence) {
+		File tempFile = new File(target.getPath() + ".tmp");
+		try (SnapshotWriter out = new SnapshotWriter(tempFile.toPath())) {
+			out.writeHeader(SnapshotFormat.CUSTOMERS, journalSequence, customers.size());
+			for (Customer customer : customers) {
+				SnapshotFormat.writeCustomer(out, customer);
+			}
+			out.finish();
+		} catch (IOException e) {
+			EventLog.error("Error saving customer data", e);
+			return false;
+		}
+		if (!replaceFile(tempFile, target)) {
+			return false;
+		}
+		EventLog.info("Saved {} customers to {}", customers.size(), target.getName());
+		return true;
+	}
+
+	//======== save accounts to file
+	public static boolean saveAccounts(HashMap<String, BankAccount> accounts) {
+		return saveAccounts(accounts, 0L);
+	}
+
+	//======== save accounts to file, remembering the last journal record they include
+	public static boolean saveAccounts(HashMap<String, BankAccount> accounts, long journalSequence) {
+		return saveAccounts(dataFile(ACCOUNTS_FILE), journalSequence, accounts.size(), out -> {
+			for (Map.Entry<String, BankAccount> entry : accounts.entrySet()) {
+				SnapshotFormat.writeAccount(out, entry.getKey(), entry.getValue());
+			}
+		});
+	}
+
+	//======== writes the records of one accounts file
+	private interface AccountRecords {
+		void writeTo(SnapshotWriter out) throws IOException;
+	}
+
+	private static boolean saveAccounts(File target, long journalSequence, int count, AccountRecords records) {
+		File tempFile = new File(target.getPath() + ".tmp");
+		try (SnapshotWriter out = new SnapshotWriter(tempFile.toPath())) {
+			out.writeHeader(SnapshotFormat.ACCOUNTS, journalSequence, count);
+			records.writeTo(out);
+			out.finish();
+		} catch (IOException e) {
+			EventLog.error("Error saving accounts data", e);
+			return false;
+		}
+		if (!replaceFile(tempFile, target)) {
+			return false;
 		}
+		EventLog.info("Saved {} accounts to {}", count, target.getName());
+		return true;
 	}
-	
+
+	//======== swap a fully written temp file into place so a crash never leaves half a snapshot
+	static boolean replaceFile(File tempFile, File target) {
+		try {
+			Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e) {
+			EventLog.error("Error replacing {}", target, e);
+			return false;
+		}
+	}
+
 	//======== load customers from file
-	@SuppressWarnings("unchecked")
-    public static ArrayList<Customer> loadCustomers() {
-        File file = new File(CUSTOMER_FILE);
-        if (!file.exists()) {
-            System.out.println("No existing customer data found. Starting fresh.");
-            return new ArrayList<>();
-        }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(CUSTOMER_FILE))) {
-            ArrayList<Customer> customers = (ArrayList<Customer>) ois.readObject();
-            System.out.println("Customer data loaded successfully. Found " + customers.size() + " customers.");
-            
-            // DEBUG: Print each customer
-            for (Customer c : customers) {
-                System.out.println("  - " + c.getFullName() + " (ID: " + c.getCustomerID() + ")");
-            }
-            
-            return customers;
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading customer data: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
-    }
-	
+	public static ArrayList<Customer> loadCustomers() throws IOException {
+		return loadCustomers(new ArrayList<>());
+	}
+
+	//======== load customers, collecting the account numbers each one is linked to
+	//======== a file that cannot be read is an error, not an empty book: the first snapshot would write the empty book
+	//======== over it and drop the journal that could rebuild it
+	private static ArrayList<Customer> loadCustomers(List<int[]> linkedAccountNumbers) throws IOException {
+		File file = dataFile(CUSTOMER_FILE);
+		if (!file.exists()) {
+			EventLog.info("No existing customer data found. Starting fresh.");
+			return new ArrayList<>();
+		}
+
+		try (SnapshotReader in = new SnapshotReader(file.toPath(), SnapshotFormat.CUSTOMERS)) {
+			int count = in.getRecordCount();
+			ArrayList<Customer> customers = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				customers.add(SnapshotFormat.readCustomer(in, linkedAccountNumbers));
+			}
+			EventLog.info("Loaded {} customers", customers.size());
+			//======== one line per customer only when asked for, a large book would flood the log
+			if (EventLog.isEnabled(EventLog.Level.DEBUG)) {
+				for (Customer c : customers) {
+					EventLog.debug("Loaded customer {} ({} {})", c.getCustomerID(), c.getFirstName(), c.getLastName());
+				}
+			}
+
+			return customers;
+		} catch (IOException e) {
+			EventLog.error("Error loading customer data", e);
+			throw e;
+		}
+	}
+
 	//======== load accounts from file
-	@SuppressWarnings("unchecked")
-	public static HashMap<String, BankAccount> loadAccounts(){
-		File file = new File(ACCOUNTS_FILE);
-		if(!file.exists()) {
-			System.out.println("No existing account data found. Starting fresh.");
-			return new HashMap<>();
-		}
-		
-		try(ObjectInputStream ois = new ObjectInputStream(new FileInputStream(ACCOUNTS_FILE))){
-			HashMap<String, BankAccount> accounts = (HashMap<String, BankAccount>) ois.readObject();
-			System.out.println("Account data loaded successfully. Found " + accounts.size() + " accounts.");
-            
-            // DEBUG: Print each account
-            for (String id : accounts.keySet()) {
-                BankAccount acc = accounts.get(id);
-                System.out.println("  - Account #" + acc.getAccountNumber() + " (Customer: " + acc.getAccountHolder() + ", Balance: R" + acc.getBalance() + ")");
-            }
-            
-            return accounts;
-		}catch(IOException | ClassNotFoundException e) {
-			System.out.println("Error loading account data: " + e.getMessage());
-            e.printStackTrace();
-            return new HashMap<>();
-		}
-	}
-	
+	public static HashMap<String, BankAccount> loadAccounts() throws IOException {
+		HashMap<String, BankAccount> accounts = new HashMap<>();
+		loadAccounts(accounts);
+		return accounts;
+	}
+
+	//======== load accounts into the given map, returns the last journal sequence the file covers; fails rather than
+	//======== starting empty, as loadCustomers does
+	private static long loadAccounts(HashMap<String, BankAccount> into) throws IOException {
+		File file = dataFile(ACCOUNTS_FILE);
+		loadedBaseVersion = 0;
+		if (!file.exists()) {
+			EventLog.info("No existing account data found. Starting fresh.");
+			return 0L;
+		}
+
+		try (SnapshotReader in = new SnapshotReader(file.toPath(), SnapshotFormat.ACCOUNTS)) {
+			int count = in.getRecordCount();
+			HashMap<String, BankAccount> accounts = new HashMap<>(Math.max(16, (int) (count / 0.75f) + 1));
+			String[] customerID = new String[1];
+			for (int i = 0; i < count; i++) {
+				BankAccount account = SnapshotFormat.readAccount(in, customerID);
+				accounts.put(customerID[0], account);
+			}
+			EventLog.info("Loaded {} accounts", accounts.size());
+			if (EventLog.isEnabled(EventLog.Level.DEBUG)) {
+				for (BankAccount acc : accounts.values()) {
+					EventLog.debug("Loaded account {} for {}, balance {R}", acc.getAccountNumber(), acc.getAccountHolder(), acc.getBalance());
+				}
+			}
+
+			into.putAll(accounts);
+			loadedBaseVersion = in.getVersion();
+			return in.getJournalSequence();
+		} catch (IOException e) {
+			EventLog.error("Error loading account data", e);
+			throw e;
+		}
+	}
+
 	//======== Save all data
-    public static void saveAllData(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) {
-        System.out.println("=== SAVING ALL DATA ===");
-        System.out.println("Customers to save: " + customers.size());
-        System.out.println("Accounts to save: " + accounts.size());
-        
-        saveCustomers(customers);
-        saveAccounts(accounts);
-        
-        System.out.println("All data saved successfully!");
-    }
-	
-	//======== load method
-    public static void loadAllData(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) {
-        System.out.println("=== LOADING ALL DATA ===");
-        
-        //======= Load fresh data
-        ArrayList<Customer> loadedCustomers = loadCustomers();
-        HashMap<String, BankAccount> loadedAccounts = loadAccounts();
-        
-        //======= Clear and repopulate
-        customers.clear();
-        accounts.clear();
-        customers.addAll(loadedCustomers);
-        accounts.putAll(loadedAccounts);
-        
-        System.out.println("Final counts after loading:");
-        System.out.println("  Customers: " + customers.size());
-        System.out.println("  Accounts: " + accounts.size());
-    }
-    
-    //======== Check if data files exist
-    public static boolean hasExistingData() {
-        File customersFile = new File(CUSTOMER_FILE);
-        File accountsFile = new File(ACCOUNTS_FILE);
-        boolean hasData = customersFile.exists() || accountsFile.exists();
-        
-        System.out.println("Checking for existing data:");
-        System.out.println("  customers.ser exists: " + customersFile.exists());
-        System.out.println("  accounts.ser exists: " + accountsFile.exists());
-        System.out.println("  Has existing data: " + hasData);
-        
-        return hasData;
-    }
-    
-    //======== Delete all data files (for testing purposes)
-    public static void clearAllData() {
-        File customersFile = new File(CUSTOMER_FILE);
-        File accountsFile = new File(ACCOUNTS_FILE);
-        
-        if (customersFile.exists()) {
-            customersFile.delete();
-            System.out.println("Customer data file deleted.");
-        }
-        
-        if (accountsFile.exists()) {
-            accountsFile.delete();
-            System.out.println("Account data file deleted.");
-        }
-        
-        System.out.println("All data cleared!");
-    }
+	public static boolean saveAllData(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) {
+		return saveAllData(customers, accounts, 0L);
+	}
+
+	//======== a full save replaces the base files and makes every incremental segment obsolete
+	public static boolean saveAllData(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts, long journalSequence) {
+		EventLog.info("Saving all data: {} customers, {} accounts", customers.size(), accounts.size());
+
+		boolean saved;
+		synchronized (BASE_LOCK) {
+			saved = saveCustomers(dataFile(CUSTOMER_FILE), customers, journalSequence) && saveAccounts(accounts, journalSequence);
+			if (saved) {
+				SnapshotSegments.deleteAll();
+			}
+		}
+
+		if (saved) {
+			EventLog.info("All data saved");
+		} else {
+			EventLog.error("Saving data failed");
+		}
+		return saved;
+	}
+
+	//======== snapshot everything, then drop the journal records the snapshot now contains
+	public static boolean checkpoint(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts, TransactionJournal journal) {
+		long journalSequence = journal.getLastSequence();
+		if (!saveAllData(customers, accounts, journalSequence)) {
+			return false;
+		}
+		journal.truncate(journalSequence);
+		return true;
+	}
+
+	//======== writes a snapshot captured earlier while operations keep running; each account is read under its
+	//======== lock in the engine, which hands over the state it had when the snapshot began
+	//======== a full snapshot replaces the base files, an incremental one is written as a new segment next to them
+	public static boolean saveSnapshot(CopyOnWriteSnapshot snapshot, TransferEngine engine) {
+		EventLog.info(snapshot.isFull() ? "Saving snapshot at journal sequence {}" : "Saving incremental snapshot at journal sequence {}", snapshot.getJournalSequence());
+		long journalSequence = snapshot.getJournalSequence();
+		boolean saved;
+		if (snapshot.isFull()) {
+			synchronized (BASE_LOCK) {
+				saved = saveCustomers(dataFile(CUSTOMER_FILE), snapshot.getCustomers(), journalSequence)
+						&& saveAccounts(dataFile(ACCOUNTS_FILE), snapshot, engine);
+				if (saved) {
+					SnapshotSegments.deleteAll();
+				}
+			}
+		} else {
+			//======== the accounts segment goes last, its presence marks the pair complete
+			saved = (snapshot.getCustomers().isEmpty() || saveCustomers(SnapshotSegments.segmentFile(CUSTOMER_FILE, journalSequence), snapshot.getCustomers(), journalSequence))
+					&& saveAccounts(SnapshotSegments.segmentFile(ACCOUNTS_FILE, journalSequence), snapshot, engine);
+		}
+
+		if (saved) {
+			EventLog.info("Snapshot saved");
+		} else {
+			EventLog.error("Saving snapshot failed");
+		}
+		return saved;
+	}
+
+	private static boolean saveAccounts(File target, CopyOnWriteSnapshot snapshot, TransferEngine engine) {
+		return saveAccounts(target, snapshot.getJournalSequence(), snapshot.getAccountCount(), out -> {
+			HistoryArchive archive = null;
+			for (int i = 0; i < snapshot.getAccountCount(); i++) {
+				BankAccount account = snapshot.getAccount(i);
+				AccountState state = engine.readLocked(account, () -> snapshot.take(account));
+				if (HistoryArchive.ENABLED && HistoryArchive.needsSealing(state.getLedger())) {
+					archive = historyArchive();
+					state = sealHistory(archive, account, state, engine);
+				}
+				SnapshotFormat.writeAccount(out, snapshot.getCustomerID(i), state);
+			}
+			//======== the snapshot may only point at blocks that are on disk
+			if (archive != null) {
+				archive.force();
+			}
+		});
+	}
+
+	//======== compression happens here, outside the account's lock; the lock is only taken to drop the sealed entries
+	private static AccountState sealHistory(HistoryArchive archive, BankAccount account, AccountState state, TransferEngine engine) throws IOException {
+		TransactionLedger.View sealed = archive.seal(account.getAccountNumber(), state.getLedger());
+		if (sealed == state.getLedger()) {
+			return state;
+		}
+		if (!engine.adoptSealedHistory(account, sealed.getBlocks())) {
+			EventLog.warn("History of account {} changed while it was being sealed, it stays in memory", account.getAccountNumber());
+		}
+		return state.withLedger(sealed);
+	}
+
+	//======== true once a full snapshot exists that incremental segments can build on
+	public static boolean hasBaseSnapshot() {
+		return dataFile(CUSTOMER_FILE).exists() && dataFile(ACCOUNTS_FILE).exists();
+	}
+
+	//======== true when the accounts base loaded last was written in the current format
+	public static boolean isBaseCurrent() {
+		return loadedBaseVersion == SnapshotFormat.VERSION;
+	}
+
+	public static int getSnapshotSegmentCount() {
+		try {
+			return SnapshotSegments.list().size();
+		} catch (IOException e) {
+			EventLog.error("Error listing snapshot segments", e);
+			return 0;
+		}
+	}
+
+	//======== folds the incremental segments into the base files, see SnapshotSegments
+	public static boolean mergeSnapshotSegments() {
+		return SnapshotSegments.merge();
+	}
+
+	//======== load method, returns the last journal sequence included in the snapshot
+	//======== throws when a snapshot file or segment is damaged, leaving the collections and every file untouched
+	public static long loadAllData(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts) throws IOException {
+		EventLog.info("Loading all data");
+		migrateLegacyData();
+
+		//======= Load fresh data
+		List<int[]> linkedAccountNumbers = new ArrayList<>();
+		ArrayList<Customer> loadedCustomers = loadCustomers(linkedAccountNumbers);
+		HashMap<String, BankAccount> loadedAccounts = new HashMap<>();
+		long journalSequence = loadAccounts(loadedAccounts);
+		try {
+			journalSequence = SnapshotSegments.apply(loadedCustomers, linkedAccountNumbers, loadedAccounts, journalSequence);
+		} catch (IOException e) {
+			EventLog.error("Error loading snapshot segments", e);
+			throw e;
+		}
+		relinkCustomerAccounts(loadedCustomers, linkedAccountNumbers, loadedAccounts);
+
+		//======= Clear and repopulate
+		customers.clear();
+		accounts.clear();
+		customers.addAll(loadedCustomers);
+		accounts.putAll(loadedAccounts);
+
+		EventLog.info("Loaded {} customers and {} accounts in total", customers.size(), accounts.size());
+		return journalSequence;
+	}
+
+	//======== customers store their linked accounts by number, point them back at the loaded objects
+	private static void relinkCustomerAccounts(List<Customer> customers, List<int[]> linkedAccountNumbers, HashMap<String, BankAccount> accounts) {
+		AccountIndex index = null;
+		for (int i = 0; i < linkedAccountNumbers.size(); i++) {
+			int[] numbers = linkedAccountNumbers.get(i);
+			if (numbers.length == 0) {
+				continue;
+			}
+			if (index == null) {
+				index = new AccountIndex(accounts.size());
+				index.rebuild(accounts.values(), accounts.size());
+			}
+			for (int number : numbers) {
+				BankAccount account = index.get(number);
+				if (account != null) {
+					customers.get(i).addAccount(account);
+				}
+			}
+		}
+	}
+
+	//======== one-time conversion of customer.ser / accounts.ser into the binary snapshot format
+	//======== throws when a legacy file cannot be read or the snapshot cannot be written, leaving the .ser files in place;
+	//======== carrying on would start an empty bank that the next snapshot then makes permanent
+	public static boolean migrateLegacyData() throws IOException {
+		File legacyCustomers = dataFile(LEGACY_CUSTOMER_FILE);
+		File legacyAccounts = dataFile(LEGACY_ACCOUNTS_FILE);
+		boolean hasLegacy = legacyCustomers.exists() || legacyAccounts.exists();
+		boolean hasBinary = dataFile(CUSTOMER_FILE).exists() || dataFile(ACCOUNTS_FILE).exists();
+		if (!hasLegacy || hasBinary) {
+			return false;
+		}
+
+		EventLog.info("Migrating Java-serialized data to the binary snapshot format");
+		ArrayList<Customer> customers = loadLegacyCustomers(legacyCustomers);
+		HashMap<String, BankAccount> accounts = new HashMap<>();
+		long journalSequence = loadLegacyAccounts(legacyAccounts, accounts);
+		if (!saveAllData(customers, accounts, journalSequence)) {
+			//======= there were no base files before, so a half-written pair is removed and the next start migrates again
+			dataFile(CUSTOMER_FILE).delete();
+			dataFile(ACCOUNTS_FILE).delete();
+			EventLog.error("Migration failed, the legacy files were left untouched");
+			throw new IOException("Could not write the migrated snapshot");
+		}
+
+		//======= keep the originals around under a new name instead of deleting them
+		legacyCustomers.renameTo(dataFile(LEGACY_CUSTOMER_FILE + MIGRATED_SUFFIX));
+		legacyAccounts.renameTo(dataFile(LEGACY_ACCOUNTS_FILE + MIGRATED_SUFFIX));
+		EventLog.info("Migration complete: {} customers, {} accounts", customers.size(), accounts.size());
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ArrayList<Customer> loadLegacyCustomers(File file) throws IOException {
+		if (!file.exists()) {
+			return new ArrayList<>();
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+			return (ArrayList<Customer>) ois.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			EventLog.error("Error loading legacy customer data", e);
+			throw e instanceof IOException ? (IOException) e : new IOException("Unreadable legacy customer data: " + file, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static long loadLegacyAccounts(File file, HashMap<String, BankAccount> into) throws IOException {
+		if (!file.exists()) {
+			return 0L;
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+			into.putAll((HashMap<String, BankAccount>) ois.readObject());
+
+			//======= files written before the journal existed have no sequence trailer
+			try {
+				return ois.readLong();
+			} catch (EOFException e) {
+				return 0L;
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			EventLog.error("Error loading legacy account data", e);
+			throw e instanceof IOException ? (IOException) e : new IOException("Unreadable legacy account data: " + file, e);
+		}
+	}
+
+	//======== Check if data files exist
+	public static boolean hasExistingData() {
+		File customersFile = dataFile(CUSTOMER_FILE);
+		File accountsFile = dataFile(ACCOUNTS_FILE);
+		boolean hasLegacy = dataFile(LEGACY_CUSTOMER_FILE).exists() || dataFile(LEGACY_ACCOUNTS_FILE).exists();
+		boolean hasData = customersFile.exists() || accountsFile.exists() || hasLegacy;
+
+		EventLog.debug("Existing data: " + CUSTOMER_FILE + " {}, " + ACCOUNTS_FILE + " {}, legacy .ser files {}", customersFile.exists(), accountsFile.exists(), hasLegacy);
+
+		return hasData;
+	}
+
+	//======== Delete all data files (for testing purposes)
+	public static void clearAllData() {
+		File customersFile = dataFile(CUSTOMER_FILE);
+		File accountsFile = dataFile(ACCOUNTS_FILE);
+
+		if (customersFile.exists()) {
+			customersFile.delete();
+			EventLog.info("Customer data file deleted");
+		}
+
+		if (accountsFile.exists()) {
+			accountsFile.delete();
+			EventLog.info("Account data file deleted");
+		}
+
+		//======== sealed history belongs to the deleted accounts too
+		synchronized (DataManager.class) {
+			if (historyArchive != null) {
+				try {
+					historyArchive.close();
+				} catch (IOException e) {
+					EventLog.error("Error closing the history archive", e);
+				}
+				historyArchive = null;
+			}
+		}
+		File historyFile = dataFile(HistoryArchive.DEFAULT_FILE);
+		if (historyFile.exists()) {
+			historyFile.delete();
+			EventLog.info("Sealed history deleted");
+		}
+
+		//======== the store describes the deleted accounts, so it goes with them
+		File storeFile = dataFile(AccountStore.DEFAULT_FILE);
+		if (storeFile.exists()) {
+			storeFile.delete();
+			EventLog.info("Account store deleted");
+		}
+
+		File endOfDayFile = dataFile(EndOfDayMarker.DEFAULT_FILE);
+		if (endOfDayFile.exists()) {
+			endOfDayFile.delete();
+			EventLog.info("End-of-day marker deleted");
+		}
+
+		EventLog.info("All data cleared");
+	}
 }
@@ -0,0 +1,70 @@
+package BankingSystem.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+//======== the last business date the end-of-day batch ran for, so a rerun for that date or an earlier one is refused
+//======== as a whole instead of being recognised account by account
+//======== the journal's end-of-day record carries the date until a snapshot covers it; the snapshot writer updates
+//======== this file before the journal segments holding that record are deleted
+//======== file layout: magic, version, date as an epoch day, CRC32 of the bytes before it
+public final class EndOfDayMarker {
+	public static final String DEFAULT_FILE = "endofday.dat";
+
+	private static final int MAGIC = 0x42464544; //===== "BFED"
+	private static final short VERSION = 1;
+	private static final int SIZE = 4 + 2 + 8 + 4;
+
+	private EndOfDayMarker() {
+	}
+
+	public static Path defaultPath() {
+		return DataManager.dataFile(DEFAULT_FILE).toPath();
+	}
+
+	//======== null when no run has been recorded yet; a damaged file is an error, guessing could charge a day twice
+	public static LocalDate read(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		if (buffer.remaining() != SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(SIZE - 4) != checksum(buffer)) {
+			throw new IOException("Damaged end-of-day marker: " + path);
+		}
+		if (buffer.getShort(4) > VERSION) {
+			throw new IOException("Unsupported end-of-day marker version " + buffer.getShort(4) + " in " + path);
+		}
+		return LocalDate.ofEpochDay(buffer.getLong(6));
+	}
+
+	//======== written next to the old file and moved over it, so a crash leaves one or the other whole
+	public static void write(Path path, LocalDate businessDate) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putLong(businessDate.toEpochDay());
+		buffer.putInt(checksum(buffer));
+		buffer.flip();
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, SIZE - 4);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,523 @@
+package BankingSystem.data;
+
+import BankingSystem.TransactionLedger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//======== cold transaction history: the oldest entries of long ledgers sealed into compressed, immutable blocks in one
+//======== append-only file, so an account keeps only its recent entries in memory however old it is
+//======== a ledger holds a small index of its blocks (Blocks) and reads a block back only when one of its entries is asked
+//======== for; the snapshot writer does the sealing (see DataManager) and forces the file before the snapshot that points
+//======== at the new blocks is in place, so a block no snapshot refers to, e.g. after a crash, is never read again
+//======== block: header (magic, account number, entries, raw length, compressed length, CRC32 of the compressed bytes),
+//======== then the entries column by column, deflated
+public final class HistoryArchive implements Closeable {
+	public static final String DEFAULT_FILE = "history.blocks";
+	public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("bankforge.history.tiered", "true"));
+	//======== entries a ledger always keeps in memory, and how many go into one block
+	public static final int HOT_ENTRIES = Math.max(1, Integer.getInteger("bankforge.history.hotEntries", 1024));
+	public static final int BLOCK_ENTRIES = Math.max(1, Integer.getInteger("bankforge.history.blockEntries", 1024));
+
+	private static final int MAGIC = 0x42464842; //===== "BFHB"
+	static final int HEADER_SIZE = 6 * 4;
+	//======== type, amount, counterparty, timestamp, description ID
+	private static final int ENTRY_SIZE = 1 + 8 + 4 + 8 + 4;
+
+	private final Path path;
+	private final FileChannel channel;
+	//======== appends are serialized by the archive's monitor, reads are positional and need no lock
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private long end;
+	private boolean unforced;
+
+	private HistoryArchive(Path path, FileChannel channel) throws IOException {
+		this.path = path;
+		this.channel = channel;
+		this.end = channel.size();
+	}
+
+	//======== a torn block at the end from a crash is left where it is, new blocks go after it
+	public static HistoryArchive open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		return new HistoryArchive(path, channel);
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public synchronized long getSize() {
+		return end;
+	}
+
+	//======== true when the view holds at least a whole block more than a ledger keeps in memory
+	public static boolean needsSealing(TransactionLedger.View view) {
+		return view.size() - view.getSealedCount() >= HOT_ENTRIES + BLOCK_ENTRIES;
+	}
+
+	//======== seals the view's oldest in-memory entries into blocks of BLOCK_ENTRIES while at least HOT_ENTRIES stay;
+	//======== returns the view with those entries sealed, or the view itself when there was nothing to seal
+	//======== the blocks are written but not forced, see force()
+	public TransactionLedger.View seal(int accountNumber, TransactionLedger.View view) throws IOException {
+		Blocks blocks = view.getBlocks();
+		int sealed = view.getSealedCount();
+		while (view.size() - sealed >= HOT_ENTRIES + BLOCK_ENTRIES) {
+			blocks = append(accountNumber, view, sealed, BLOCK_ENTRIES, blocks);
+			sealed += BLOCK_ENTRIES;
+		}
+		return sealed == view.getSealedCount() ? view : view.sealedUpTo(blocks);
+	}
+
+	private synchronized Blocks append(int accountNumber, TransactionLedger.View view, int from, int count, Blocks blocks) throws IOException {
+		byte[] raw = encode(view, from, count);
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		byte[] block = new byte[HEADER_SIZE + raw.length / 2 + 64];
+		int length = HEADER_SIZE;
+		while (!deflater.finished()) {
+			if (length == block.length) {
+				block = Arrays.copyOf(block, block.length + (block.length >> 1));
+			}
+			length += deflater.deflate(block, length, block.length - length);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(block, HEADER_SIZE, length - HEADER_SIZE);
+		ByteBuffer buffer = ByteBuffer.wrap(block, 0, length);
+		buffer.putInt(MAGIC).putInt(accountNumber).putInt(count).putInt(raw.length).putInt(length - HEADER_SIZE).putInt((int) crc.getValue());
+		buffer.rewind();
+		long offset = end;
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position());
+		}
+		end += length;
+		unforced = true;
+
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		long balance = 0;
+		for (int i = from; i < from + count; i++) {
+			long timestamp = view.getTimestamp(i);
+			min = Math.min(min, timestamp);
+			max = Math.max(max, timestamp);
+			balance += TransactionLedger.balanceEffect(view.getType(i), view.getAmount(i));
+		}
+		return Blocks.extend(blocks, this, offset, length, count, min, max, balance);
+	}
+
+	//======== every block appended so far is on disk once this returns
+	public synchronized void force() throws IOException {
+		if (unforced) {
+			channel.force(false);
+			unforced = false;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		force();
+		channel.close();
+		deflater.end();
+	}
+
+	//======== columns compress far better than rows; timestamps are stored as the gap to the previous entry and each
+	//======== description once per block
+	private static byte[] encode(TransactionLedger.View view, int from, int count) {
+		HashMap<String, Integer> ids = new HashMap<>();
+		byte[][] descriptions = new byte[count][];
+		int[] descriptionIds = new int[count];
+		int descriptionBytes = 0;
+		for (int i = 0; i < count; i++) {
+			String description = view.getDescription(from + i);
+			if (description == null) {
+				descriptionIds[i] = TransactionLedger.NO_DESCRIPTION;
+				continue;
+			}
+			Integer id = ids.get(description);
+			if (id == null) {
+				id = ids.size();
+				ids.put(description, id);
+				descriptions[id] = description.getBytes(StandardCharsets.UTF_8);
+				descriptionBytes += 4 + descriptions[id].length;
+			}
+			descriptionIds[i] = id;
+		}
+		ByteBuffer out = ByteBuffer.allocate(4 + descriptionBytes + count * ENTRY_SIZE);
+		out.putInt(ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			out.putInt(descriptions[i].length).put(descriptions[i]);
+		}
+		for (int i = from; i < from + count; i++) {
+			out.put(view.getType(i));
+		}
+		for (int i = from; i < from + count; i++) {
+			out.putLong(view.getAmount(i));
+		}
+		for (int i = from; i < from + count; i++) {
+			out.putInt(view.getCounterparty(i));
+		}
+		long previous = 0;
+		for (int i = from; i < from + count; i++) {
+			long timestamp = view.getTimestamp(i);
+			out.putLong(timestamp - previous);
+			previous = timestamp;
+		}
+		for (int id : descriptionIds) {
+			out.putInt(id);
+		}
+		return out.array();
+	}
+
+	Block read(long offset, int length, int firstIndex) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new EOFException("History block at " + offset + " runs past the end of " + path);
+			}
+		}
+		buffer.flip();
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("No history block at " + offset + " in " + path);
+		}
+		buffer.getInt();
+		int count = buffer.getInt();
+		int rawLength = buffer.getInt();
+		int compressedLength = buffer.getInt();
+		int expectedCrc = buffer.getInt();
+		if (compressedLength != length - HEADER_SIZE) {
+			throw new IOException("History block at " + offset + " in " + path + " is not the length its index gives");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), HEADER_SIZE, compressedLength);
+		if ((int) crc.getValue() != expectedCrc) {
+			throw new IOException("Damaged history block at " + offset + " in " + path);
+		}
+
+		byte[] raw = new byte[rawLength];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(buffer.array(), HEADER_SIZE, compressedLength);
+			int inflated = 0;
+			while (inflated < rawLength && !inflater.finished()) {
+				int n = inflater.inflate(raw, inflated, rawLength - inflated);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				inflated += n;
+			}
+			if (inflated != rawLength) {
+				throw new IOException("History block at " + offset + " in " + path + " is shorter than its header says");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Damaged history block at " + offset + " in " + path, e);
+		} finally {
+			inflater.end();
+		}
+		return decode(raw, count, firstIndex);
+	}
+
+	private static Block decode(byte[] raw, int count, int firstIndex) throws IOException {
+		try {
+			ByteBuffer in = ByteBuffer.wrap(raw);
+			String[] descriptions = new String[in.getInt()];
+			for (int i = 0; i < descriptions.length; i++) {
+				int length = in.getInt();
+				descriptions[i] = new String(raw, in.position(), length, StandardCharsets.UTF_8);
+				in.position(in.position() + length);
+			}
+			byte[] types = new byte[count];
+			in.get(types);
+			long[] amounts = new long[count];
+			in.asLongBuffer().get(amounts);
+			in.position(in.position() + count * 8);
+			int[] counterparties = new int[count];
+			in.asIntBuffer().get(counterparties);
+			in.position(in.position() + count * 4);
+			long[] timestamps = new long[count];
+			in.asLongBuffer().get(timestamps);
+			in.position(in.position() + count * 8);
+			for (int i = 1; i < count; i++) {
+				timestamps[i] += timestamps[i - 1];
+			}
+			int[] descriptionIds = new int[count];
+			in.asIntBuffer().get(descriptionIds);
+			return new Block(firstIndex, types, amounts, counterparties, timestamps, descriptionIds, descriptions);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("History block does not hold the " + count + " entries its header says", e);
+		}
+	}
+
+	//======== one block read back, immutable
+	public static final class Block {
+		private final int firstIndex;
+		private final byte[] types;
+		private final long[] amounts;
+		private final int[] counterparties;
+		private final long[] timestamps;
+		private final int[] descriptionIds;
+		private final String[] descriptions;
+
+		private Block(int firstIndex, byte[] types, long[] amounts, int[] counterparties, long[] timestamps, int[] descriptionIds, String[] descriptions) {
+			this.firstIndex = firstIndex;
+			this.types = types;
+			this.amounts = amounts;
+			this.counterparties = counterparties;
+			this.timestamps = timestamps;
+			this.descriptionIds = descriptionIds;
+			this.descriptions = descriptions;
+		}
+
+		//======== the ledger index of the block's first entry
+		public int getFirstIndex() {
+			return firstIndex;
+		}
+
+		public int size() {
+			return types.length;
+		}
+
+		//======== entries are looked up by their index in the whole ledger
+		public byte getType(int index) {
+			return types[index - firstIndex];
+		}
+
+		public long getAmount(int index) {
+			return amounts[index - firstIndex];
+		}
+
+		public int getCounterparty(int index) {
+			return counterparties[index - firstIndex];
+		}
+
+		public long getTimestamp(int index) {
+			return timestamps[index - firstIndex];
+		}
+
+		public String getDescription(int index) {
+			int id = descriptionIds[index - firstIndex];
+			return id == TransactionLedger.NO_DESCRIPTION ? null : descriptions[id];
+		}
+
+		//======== the index of the block's first entry stamped at or after the time, the end of the block for none
+		public int firstAtOrAfter(long timestampMillis) {
+			int low = 0;
+			int high = timestamps.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (timestamps[middle] < timestampMillis) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return firstIndex + low;
+		}
+	}
+
+	//======== the index of one ledger's sealed blocks, oldest first: where each block is, how many entries it holds, the
+	//======== range of their timestamps and what they add to the balance; immutable, sealing more makes a new one
+	public static final class Blocks {
+		private final HistoryArchive archive;
+		private final long[] offsets;
+		private final int[] lengths;
+		private final int[] ends; //===== entries sealed up to and including each block
+		private final long[] minTimestamps;
+		private final long[] maxTimestamps;
+		private final long[] balances;
+		private final long balance;
+		//======== the block read last, entries are mostly read in runs; a block is immutable, so losing a race on this
+		//======== field only costs another read
+		private volatile Block recent;
+
+		private Blocks(HistoryArchive archive, long[] offsets, int[] lengths, int[] ends, long[] minTimestamps, long[] maxTimestamps, long[] balances) {
+			this.archive = archive;
+			this.offsets = offsets;
+			this.lengths = lengths;
+			this.ends = ends;
+			this.minTimestamps = minTimestamps;
+			this.maxTimestamps = maxTimestamps;
+			this.balances = balances;
+			long sum = 0;
+			for (long blockBalance : balances) {
+				sum += blockBalance;
+			}
+			this.balance = sum;
+		}
+
+		//======== used when loading a snapshot, one value per block in each array
+		static Blocks restore(HistoryArchive archive, long[] offsets, int[] lengths, int[] counts, long[] minTimestamps, long[] maxTimestamps, long[] balances) {
+			int[] ends = new int[counts.length];
+			int sealed = 0;
+			for (int i = 0; i < counts.length; i++) {
+				sealed += counts[i];
+				ends[i] = sealed;
+			}
+			return new Blocks(archive, offsets, lengths, ends, minTimestamps, maxTimestamps, balances);
+		}
+
+		private static Blocks extend(Blocks blocks, HistoryArchive archive, long offset, int length, int count, long min, long max, long balance) {
+			int n = blocks == null ? 0 : blocks.getBlockCount();
+			long[] offsets = blocks == null ? new long[1] : Arrays.copyOf(blocks.offsets, n + 1);
+			int[] lengths = blocks == null ? new int[1] : Arrays.copyOf(blocks.lengths, n + 1);
+			int[] ends = blocks == null ? new int[1] : Arrays.copyOf(blocks.ends, n + 1);
+			long[] minTimestamps = blocks == null ? new long[1] : Arrays.copyOf(blocks.minTimestamps, n + 1);
+			long[] maxTimestamps = blocks == null ? new long[1] : Arrays.copyOf(blocks.maxTimestamps, n + 1);
+			long[] balances = blocks == null ? new long[1] : Arrays.copyOf(blocks.balances, n + 1);
+			offsets[n] = offset;
+			lengths[n] = length;
+			ends[n] = (n == 0 ? 0 : ends[n - 1]) + count;
+			minTimestamps[n] = min;
+			maxTimestamps[n] = max;
+			balances[n] = balance;
+			return new Blocks(archive, offsets, lengths, ends, minTimestamps, maxTimestamps, balances);
+		}
+
+		//======== true when these blocks start with all of 'earlier' (null for none) and add at least one more
+		public boolean follows(Blocks earlier) {
+			int n = earlier == null ? 0 : earlier.getBlockCount();
+			return getBlockCount() > n && (n == 0 || (offsets[n - 1] == earlier.offsets[n - 1] && ends[n - 1] == earlier.ends[n - 1]));
+		}
+
+		public int getBlockCount() {
+			return offsets.length;
+		}
+
+		public int getEntryCount() {
+			return ends[ends.length - 1];
+		}
+
+		//======== what all sealed entries add to the balance, in cents
+		public long getBalance() {
+			return balance;
+		}
+
+		public int getFirstIndex(int block) {
+			return block == 0 ? 0 : ends[block - 1];
+		}
+
+		public int getEndIndex(int block) {
+			return ends[block];
+		}
+
+		public long getMinTimestamp(int block) {
+			return minTimestamps[block];
+		}
+
+		public long getMaxTimestamp(int block) {
+			return maxTimestamps[block];
+		}
+
+		public long getBalance(int block) {
+			return balances[block];
+		}
+
+		long getOffset(int block) {
+			return offsets[block];
+		}
+
+		int getLength(int block) {
+			return lengths[block];
+		}
+
+		//======== which block holds the entry
+		public int blockIndexOf(int index) {
+			int b = Arrays.binarySearch(ends, index + 1);
+			return b >= 0 ? b : -b - 1;
+		}
+
+		//======== the block holding the entry, read from the file unless it was the last one read
+		public Block blockOf(int index) {
+			Block block = recent;
+			if (block != null && index >= block.getFirstIndex() && index < block.getFirstIndex() + block.size()) {
+				return block;
+			}
+			int b = blockIndexOf(index);
+			try {
+				block = archive.read(offsets[b], lengths[b], getFirstIndex(b));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			recent = block;
+			return block;
+		}
+
+		//======== the index of the first sealed entry stamped at or after the time, getEntryCount() for none; the
+		//======== timestamp range of each block picks the one block to search, which is not even read when the range
+		//======== shows the answer is its first entry
+		public int firstAtOrAfter(long timestampMillis) {
+			int low = 0;
+			int high = getBlockCount();
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (maxTimestamps[middle] < timestampMillis) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			if (low == getBlockCount()) {
+				return getEntryCount();
+			}
+			if (minTimestamps[low] >= timestampMillis) {
+				return getFirstIndex(low);
+			}
+			return blockOf(getFirstIndex(low)).firstAtOrAfter(timestampMillis);
+		}
+
+		//======== what the sealed entries from 'from' up to 'to' add to the balance; whole blocks count with their
+		//======== stored total, only a block cut by either end is read
+		public long effectBetween(int from, int to) {
+			long effect = 0;
+			int index = from;
+			while (index < to) {
+				int b = blockIndexOf(index);
+				if (index == getFirstIndex(b) && to >= ends[b]) {
+					effect += balances[b];
+					index = ends[b];
+					continue;
+				}
+				Block block = blockOf(index);
+				int stop = Math.min(to, ends[b]);
+				for (; index < stop; index++) {
+					effect += TransactionLedger.balanceEffect(block.getType(index), block.getAmount(index));
+				}
+			}
+			return effect;
+		}
+
+		public byte getType(int index) {
+			return blockOf(index).getType(index);
+		}
+
+		public long getAmount(int index) {
+			return blockOf(index).getAmount(index);
+		}
+
+		public int getCounterparty(int index) {
+			return blockOf(index).getCounterparty(index);
+		}
+
+		public long getTimestamp(int index) {
+			return blockOf(index).getTimestamp(index);
+		}
+
+		public String getDescription(int index) {
+			return blockOf(index).getDescription(index);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package BankingSystem.data;
+
+import BankingSystem.log.EventLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+//======== hands out account numbers and customer IDs that are never issued twice, also across restarts
+//======== each thread draws from its own block of numbers, so allocating is a thread-local increment; only when a block
+//======== runs out does the thread lease the next one, and the lease is on disk before any number from it is used
+//======== numbers left in a block when the program stops are skipped, never reissued
+//======== file layout: two slots of [magic, version, generation, next account number, next customer number, CRC32];
+//======== leases overwrite the older slot, so a torn write still leaves the previous lease readable
+public final class IdAllocator {
+	public static final String DEFAULT_FILE = "ids.dat";
+	public static final int DEFAULT_BLOCK_SIZE = Integer.getInteger("bankforge.ids.blockSize", 1000);
+
+	//======== account numbers are nine digits, customer IDs are "C" and at least six digits
+	public static final long FIRST_ACCOUNT_NUMBER = 100000000L;
+	public static final long LAST_ACCOUNT_NUMBER = 999999999L;
+	public static final long FIRST_CUSTOMER_NUMBER = 100000L;
+
+	private static final int MAGIC = 0x42464944; //===== "BFID"
+	private static final short VERSION = 1;
+	private static final int SLOT_SIZE = 4 + 2 + 8 + 8 + 8 + 8;
+
+	private static final int ACCOUNTS = 0;
+	private static final int CUSTOMERS = 1;
+
+	private final Path path;
+	private final int blockSize;
+	private final ThreadLocal<long[]> accountBlock = ThreadLocal.withInitial(() -> new long[2]);
+	private final ThreadLocal<long[]> customerBlock = ThreadLocal.withInitial(() -> new long[2]);
+
+	//======== guarded by this; the first number of the next block for each sequence
+	private final long[] unleased = {FIRST_ACCOUNT_NUMBER, FIRST_CUSTOMER_NUMBER};
+	private long generation;
+	private boolean loaded;
+
+	public IdAllocator(Path path, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.path = path;
+		this.blockSize = blockSize;
+	}
+
+	//======== the allocator for the data directory, the file is only read once the first block is leased
+	public static IdAllocator openDefault() {
+		return new IdAllocator(DataManager.dataFile(DEFAULT_FILE).toPath(), DEFAULT_BLOCK_SIZE);
+	}
+
+	public int nextAccountNumber() {
+		long[] block = accountBlock.get();
+		if (block[0] == block[1]) {
+			lease(ACCOUNTS, block);
+		}
+		return (int) block[0]++;
+	}
+
+	public String nextCustomerID() {
+		long[] block = customerBlock.get();
+		if (block[0] == block[1]) {
+			lease(CUSTOMERS, block);
+		}
+		return "C" + block[0]++;
+	}
+
+	//======== block is {next, end} for the calling thread
+	private synchronized void lease(int sequence, long[] block) {
+		try {
+			if (!loaded) {
+				load();
+			}
+			long start = unleased[sequence];
+			long end = start + blockSize;
+			if (sequence == ACCOUNTS) {
+				if (start > LAST_ACCOUNT_NUMBER) {
+					throw new IllegalStateException("All account numbers have been issued.");
+				}
+				end = Math.min(end, LAST_ACCOUNT_NUMBER + 1);
+			}
+			unleased[sequence] = end;
+			try {
+				store();
+			} catch (IOException e) {
+				unleased[sequence] = start;
+				throw e;
+			}
+			block[0] = start;
+			block[1] = end;
+		} catch (IOException e) {
+			EventLog.error("Error leasing IDs from {}", path, e);
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void load() throws IOException {
+		if (path.toFile().exists()) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				ByteBuffer slots = ByteBuffer.allocate(2 * SLOT_SIZE);
+				while (slots.hasRemaining()) {
+					if (channel.read(slots) < 0) {
+						break;
+					}
+				}
+				slots.flip();
+				boolean found = false;
+				for (int slot = 0; slot < 2 && slots.remaining() >= SLOT_SIZE; slot++) {
+					ByteBuffer record = slots.slice(slot * SLOT_SIZE, SLOT_SIZE);
+					if (record.getInt(0) != MAGIC || record.getLong(SLOT_SIZE - 8) != checksum(record)) {
+						continue;
+					}
+					if (record.getShort(4) > VERSION) {
+						throw new IOException("Unsupported ID file version " + record.getShort(4) + " in " + path);
+					}
+					long slotGeneration = record.getLong(6);
+					if (!found || slotGeneration > generation) {
+						generation = slotGeneration;
+						unleased[ACCOUNTS] = record.getLong(14);
+						unleased[CUSTOMERS] = record.getLong(22);
+						found = true;
+					}
+				}
+				if (!found) {
+					//======== guessing could reissue IDs, so refuse to allocate instead
+					throw new IOException("No valid lease found in " + path);
+				}
+			}
+		}
+		loaded = true;
+	}
+
+	private void store() throws IOException {
+		generation++;
+		ByteBuffer record = ByteBuffer.allocate(SLOT_SIZE);
+		record.putInt(MAGIC);
+		record.putShort(VERSION);
+		record.putLong(generation);
+		record.putLong(unleased[ACCOUNTS]);
+		record.putLong(unleased[CUSTOMERS]);
+		record.putLong(checksum(record));
+		record.flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long position = (generation & 1) * SLOT_SIZE;
+			while (record.hasRemaining()) {
+				position += channel.write(record, position);
+			}
+			channel.force(false);
+		}
+	}
+
+	private static long checksum(ByteBuffer record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), record.arrayOffset(), SLOT_SIZE - 8);
+		return crc.getValue();
+	}
+}
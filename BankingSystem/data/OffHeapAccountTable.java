@@ -0,0 +1,309 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.PinHash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static BankingSystem.data.AccountStore.ACTIVE;
+import static BankingSystem.data.AccountStore.BALANCE;
+import static BankingSystem.data.AccountStore.FLAGS;
+import static BankingSystem.data.AccountStore.NUMBER;
+import static BankingSystem.data.AccountStore.OPENED;
+import static BankingSystem.data.AccountStore.PIN_HASH;
+import static BankingSystem.data.AccountStore.SLOT_SIZE;
+import static BankingSystem.data.AccountStore.TYPE;
+
+//======== account state for books too big to keep as BankAccount objects: each account is a 64-byte slot in direct
+//======== buffers outside the Java heap, so the collector has nothing to trace however many accounts there are
+//======== slots use AccountStore's layout, with the holder's name kept as UTF-8 in an off-heap byte pool; an off-heap
+//======== open-addressing index maps account numbers to slots
+//======== code reads and changes accounts through a Cursor, a flyweight with BankAccount's method names that moves from
+//======== slot to slot without allocating; balances change by compare-and-set, so cursors on different threads need no
+//======== locks. Adding accounts is synchronized, lookups run alongside it
+//======== only an account's state is kept here, its history stays in its ledger and the journal
+public final class OffHeapAccountTable {
+	//======== 4 MB of slots per buffer, names in 1 MB buffers
+	private static final int CHUNK_SHIFT = 16;
+	private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+	private static final int NAME_CHUNK_BYTES = 1 << 20;
+	//======== the slot bytes AccountStore leaves free: the name's length and where it starts in the pool
+	private static final int HOLDER_LENGTH = 6;
+	private static final int HOLDER = 56;
+	//======== one index buffer is at most 1 GB of [account number, slot + 1] pairs, at most half of them in use
+	private static final int MAX_ACCOUNTS = 1 << 26;
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	//======== both arrays are replaced, never changed in place, when a buffer is added
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+	private volatile ByteBuffer[] nameChunks = new ByteBuffer[0];
+	private volatile Index index;
+	private volatile int size;
+	//======== guarded by this
+	private int nameChunkUsed = NAME_CHUNK_BYTES;
+
+	public OffHeapAccountTable(int expectedAccounts) {
+		this.index = new Index(entriesFor(expectedAccounts));
+	}
+
+	//======== a table with the accounts' current state; call while they are not changing
+	public static OffHeapAccountTable copyOf(Collection<BankAccount> accounts) {
+		OffHeapAccountTable table = new OffHeapAccountTable(accounts.size());
+		for (BankAccount account : accounts) {
+			table.add(account);
+		}
+		return table;
+	}
+
+	//======== the open-addressing index; the slot number goes in before the key and the key is published last, so a
+	//======== lookup that finds the key finds the slot with it
+	private static final class Index {
+		final ByteBuffer buffer;
+		final int mask;
+
+		Index(int entries) {
+			this.buffer = ByteBuffer.allocateDirect(entries * 8).order(ByteOrder.LITTLE_ENDIAN);
+			this.mask = entries - 1;
+		}
+
+		int find(int accountNumber) {
+			int entry = AccountStore.mix(accountNumber) & mask;
+			while (true) {
+				int key = (int) INTS.getAcquire(buffer, entry * 8);
+				if (key == accountNumber) {
+					return buffer.getInt(entry * 8 + 4) - 1;
+				}
+				if (key == 0) {
+					return -1;
+				}
+				entry = (entry + 1) & mask;
+			}
+		}
+
+		void insert(int accountNumber, int slot) {
+			int entry = AccountStore.mix(accountNumber) & mask;
+			while (buffer.getInt(entry * 8) != 0) {
+				entry = (entry + 1) & mask;
+			}
+			buffer.putInt(entry * 8 + 4, slot + 1);
+			INTS.setRelease(buffer, entry * 8, accountNumber);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	//======== the account's slot, or -1 if there is none
+	public int find(int accountNumber) {
+		return index.find(accountNumber);
+	}
+
+	//======== what the slots, names and index take outside the heap
+	public long getOffHeapBytes() {
+		return (long) chunks.length * CHUNK_SLOTS * SLOT_SIZE + (long) nameChunks.length * NAME_CHUNK_BYTES + index.buffer.capacity();
+	}
+
+	//======== a new flyweight, not positioned on any account yet; keep one per thread and move it around
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	public int add(BankAccount account) {
+		return add(account.getAccountNumber(), account.getAccountType(), account.getAccountHolder(), account.getDateOpened(),
+				account.isActive(), account.getPinHash(), account.getBalance());
+	}
+
+	//======== returns the new account's slot
+	public synchronized int add(int accountNumber, String accountType, String accountHolder, LocalDate dateOpened, boolean active, byte[] pinHash, long balanceCents) {
+		if (accountNumber <= 0) {
+			throw new IllegalArgumentException("Account numbers must be positive: " + accountNumber);
+		}
+		if (pinHash.length != PinHash.LENGTH) {
+			throw new IllegalArgumentException("A PIN hash is " + PinHash.LENGTH + " bytes, not " + pinHash.length);
+		}
+		if (index.find(accountNumber) >= 0) {
+			throw new IllegalArgumentException("Account " + accountNumber + " is already in the table");
+		}
+		if (size == MAX_ACCOUNTS) {
+			throw new IllegalStateException("The table holds at most " + MAX_ACCOUNTS + " accounts");
+		}
+		int slot = size;
+		if ((slot & (CHUNK_SLOTS - 1)) == 0) {
+			ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+			grown[chunks.length] = ByteBuffer.allocateDirect(CHUNK_SLOTS * SLOT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			chunks = grown;
+		}
+		ByteBuffer chunk = chunks[slot >>> CHUNK_SHIFT];
+		int position = (slot & (CHUNK_SLOTS - 1)) * SLOT_SIZE;
+		chunk.putInt(position + NUMBER, accountNumber);
+		chunk.put(position + TYPE, AccountStore.typeCode(accountType));
+		chunk.put(position + FLAGS, active ? ACTIVE : 0);
+		chunk.putInt(position + OPENED, AccountStore.epochDay(dateOpened));
+		chunk.put(position + PIN_HASH, pinHash);
+		chunk.putLong(position + BALANCE, balanceCents);
+		byte[] name = accountHolder == null ? new byte[0] : accountHolder.getBytes(StandardCharsets.UTF_8);
+		chunk.putShort(position + HOLDER_LENGTH, (short) name.length);
+		chunk.putLong(position + HOLDER, putName(name));
+
+		if ((long) (size + 1) * 2 > index.mask + 1) {
+			rehash();
+		}
+		index.insert(accountNumber, slot);
+		size = slot + 1;
+		return slot;
+	}
+
+	//======== names never span two buffers; returns where the name starts in the pool
+	private long putName(byte[] name) {
+		if (name.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Account holder names are at most " + Short.MAX_VALUE + " bytes");
+		}
+		if (nameChunkUsed + name.length > NAME_CHUNK_BYTES) {
+			ByteBuffer[] grown = Arrays.copyOf(nameChunks, nameChunks.length + 1);
+			grown[nameChunks.length] = ByteBuffer.allocateDirect(NAME_CHUNK_BYTES);
+			nameChunks = grown;
+			nameChunkUsed = 0;
+		}
+		long start = (long) (nameChunks.length - 1) * NAME_CHUNK_BYTES + nameChunkUsed;
+		nameChunks[nameChunks.length - 1].put(nameChunkUsed, name);
+		nameChunkUsed += name.length;
+		return start;
+	}
+
+	//======== lookups keep using the old index until the new one is complete
+	private void rehash() {
+		Index grown = new Index((index.mask + 1) << 1);
+		for (int slot = 0; slot < size; slot++) {
+			grown.insert(chunks[slot >>> CHUNK_SHIFT].getInt((slot & (CHUNK_SLOTS - 1)) * SLOT_SIZE + NUMBER), slot);
+		}
+		index = grown;
+	}
+
+	//======== smallest power of two that keeps the index at most half full
+	private static int entriesFor(int accounts) {
+		int entries = 1024;
+		while (entries < 2L * accounts && entries < 2 * MAX_ACCOUNTS) {
+			entries <<= 1;
+		}
+		return entries;
+	}
+
+	//======== one account at a time, read and changed in place
+	public final class Cursor {
+		private ByteBuffer chunk;
+		private int position;
+		private int slot = -1;
+
+		private Cursor() {
+		}
+
+		//======== returns false, and stays where it was, if there is no such account
+		public boolean moveTo(int accountNumber) {
+			int found = find(accountNumber);
+			if (found < 0) {
+				return false;
+			}
+			at(found);
+			return true;
+		}
+
+		public Cursor at(int slot) {
+			if (slot < 0 || slot >= size) {
+				throw new IndexOutOfBoundsException("No slot " + slot + " in a table of " + size);
+			}
+			this.chunk = chunks[slot >>> CHUNK_SHIFT];
+			this.position = (slot & (CHUNK_SLOTS - 1)) * SLOT_SIZE;
+			this.slot = slot;
+			return this;
+		}
+
+		public int getSlot() {
+			return slot;
+		}
+
+		public int getAccountNumber() {
+			return chunk.getInt(position + NUMBER);
+		}
+
+		public String getAccountType() {
+			return AccountStore.typeOf(chunk.get(position + TYPE));
+		}
+
+		public String getAccountHolder() {
+			long start = chunk.getLong(position + HOLDER);
+			byte[] name = new byte[chunk.getShort(position + HOLDER_LENGTH)];
+			nameChunks[(int) (start / NAME_CHUNK_BYTES)].get((int) (start % NAME_CHUNK_BYTES), name);
+			return new String(name, StandardCharsets.UTF_8);
+		}
+
+		public LocalDate getDateOpened() {
+			return LocalDate.ofEpochDay(chunk.getInt(position + OPENED));
+		}
+
+		public boolean isActive() {
+			return (chunk.get(position + FLAGS) & ACTIVE) != 0;
+		}
+
+		public void setActive(boolean active) {
+			chunk.put(position + FLAGS, active ? ACTIVE : 0);
+		}
+
+		public byte[] getPinHash() {
+			byte[] pinHash = new byte[PinHash.LENGTH];
+			chunk.get(position + PIN_HASH, pinHash);
+			return pinHash;
+		}
+
+		//======== constant-time, like BankAccount.validatePin
+		public boolean validatePin(String pin) {
+			byte[] expected = PinHash.hash(pin);
+			int difference = 0;
+			for (int i = 0; i < PinHash.LENGTH; i++) {
+				difference |= chunk.get(position + PIN_HASH + i) ^ expected[i];
+			}
+			return difference == 0;
+		}
+
+		//======== in cents
+		public long getBalance() {
+			return (long) LONGS.getVolatile(chunk, position + BALANCE);
+		}
+
+		//======== the same rules as BankAccount, without a ledger entry
+		public boolean depositMoney(long amountCents) {
+			if (amountCents <= 0) {
+				return false;
+			}
+			while (true) {
+				long balance = getBalance();
+				if (LONGS.compareAndSet(chunk, position + BALANCE, balance, Math.addExact(balance, amountCents))) {
+					return true;
+				}
+			}
+		}
+
+		public boolean withdrawMoney(long amountCents) {
+			if (amountCents <= 0) {
+				return false;
+			}
+			while (true) {
+				long balance = getBalance();
+				if (amountCents > balance) {
+					return false;
+				}
+				if (LONGS.compareAndSet(chunk, position + BALANCE, balance, balance - amountCents)) {
+					return true;
+				}
+			}
+		}
+	}
+}
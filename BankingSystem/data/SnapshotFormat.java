@@ -0,0 +1,227 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.Money;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//======== binary snapshot layout
+//======== header: magic, schema version, record kind, journal sequence, record count
+//======== then one length-prefixed record per entity; readers skip fields newer than they understand
+public final class SnapshotFormat {
+	public static final int MAGIC = 0x42465331; //===== "BFS1"
+	//======== version 1 stored history as text lines, version 2 stores the typed ledger,
+	//======== version 3 stores the balance and ledger amounts as varint cents instead of doubles,
+	//======== version 4 stores the PIN hash as 32 raw bytes instead of a hex string,
+	//======== version 5 guarantees every ledger adds up to its account's balance, with an OPENING entry where needed,
+	//======== version 6 keeps only a ledger's in-memory entries and the index of its sealed blocks (HistoryArchive)
+	public static final short VERSION = 6;
+	public static final int HEADER_SIZE = 4 + 2 + 1 + 8 + 4;
+
+	public static final byte CUSTOMERS = 1;
+	public static final byte ACCOUNTS = 2;
+
+	static final int NULL_DATE = Integer.MIN_VALUE;
+
+	private SnapshotFormat() {
+	}
+
+	//======== customer record
+	public static void writeCustomer(SnapshotWriter out, Customer customer) throws IOException {
+		List<BankAccount> linked = customer.getAccounts();
+		int[] linkedAccountNumbers = new int[linked.size()];
+		for (int i = 0; i < linkedAccountNumbers.length; i++) {
+			linkedAccountNumbers[i] = linked.get(i).getAccountNumber();
+		}
+		writeCustomer(out, customer, linkedAccountNumbers);
+	}
+
+	//======== linked accounts are stored by number and re-linked after the accounts load
+	public static void writeCustomer(SnapshotWriter out, Customer customer, int[] linkedAccountNumbers) throws IOException {
+		out.beginRecord();
+		out.putString(customer.getCustomerID());
+		out.putString(customer.getFirstName());
+		out.putString(customer.getLastName());
+		out.putString(customer.getGender());
+		out.putString(customer.getPhoneNumber());
+		out.putString(customer.getIdNumber());
+		out.putString(customer.getEmail());
+		out.putDate(customer.getDateOfBirth());
+		out.putString(customer.getNationality());
+		out.putString(customer.getStreetAddress());
+		out.putString(customer.getCity());
+		out.putInt(customer.getPostalCode());
+		out.putString(customer.getCountry());
+		out.putString(customer.getOccupation());
+		out.putString(customer.getEmployerName());
+		out.putDouble(customer.getMonthlyIncome());
+
+		out.putInt(linkedAccountNumbers.length);
+		for (int accountNumber : linkedAccountNumbers) {
+			out.putInt(accountNumber);
+		}
+		out.endRecord();
+	}
+
+	public static Customer readCustomer(SnapshotReader in, List<int[]> linkedAccountNumbers) throws IOException {
+		in.nextRecord();
+		Customer customer = Customer.restore(in.getString(), in.getString(), in.getString(), in.getString(),
+				in.getString(), in.getString(), in.getString(), in.getDate(), in.getString(), in.getString(),
+				in.getString(), in.getInt(), in.getString(), in.getString(), in.getString(), in.getDouble());
+
+		int[] linked = new int[in.getInt()];
+		for (int i = 0; i < linked.length; i++) {
+			linked[i] = in.getInt();
+		}
+		linkedAccountNumbers.add(linked);
+		return customer;
+	}
+
+	//======== account record, keyed by the owning customer's ID like the in-memory map
+	//======== (null in incremental segments for accounts the base already holds)
+	public static void writeAccount(SnapshotWriter out, String customerID, BankAccount account) throws IOException {
+		writeAccount(out, customerID, AccountState.capture(account));
+	}
+
+	public static void writeAccount(SnapshotWriter out, String customerID, AccountState account) throws IOException {
+		out.beginRecord();
+		out.putString(customerID);
+		out.putInt(account.getAccountNumber());
+		out.putString(account.getAccountType());
+		out.putString(account.getAccountHolder());
+		out.putDate(account.getDateOpened());
+		out.putBoolean(account.isActive());
+		byte[] pinHash = account.getPinHash();
+		out.putBytes(pinHash, 0, pinHash.length);
+		out.putVarLong(account.getBalance());
+
+		writeLedger(out, account.getLedger());
+		out.endRecord();
+	}
+
+	//======== returns the account, the ID of the customer it belongs to goes into customerID[0]
+	public static BankAccount readAccount(SnapshotReader in, String[] customerID) throws IOException {
+		in.nextRecord();
+		customerID[0] = in.getString();
+		int accountNumber = in.getInt();
+		String accountType = in.getString();
+		String accountHolder = in.getString();
+		LocalDate dateOpened = in.getDate();
+		boolean active = in.getBoolean();
+		byte[] pinHash;
+		if (in.getVersion() >= 4) {
+			pinHash = new byte[PinHash.LENGTH];
+			in.getBytes(pinHash, 0, PinHash.LENGTH);
+		} else {
+			pinHash = PinHash.fromHex(in.getString());
+		}
+		long balanceCents = in.getVersion() >= 3 ? in.getVarLong() : Money.fromDouble(in.getDouble());
+
+		TransactionLedger ledger = in.getVersion() >= 2 ? readLedger(in) : readLegacyHistory(in, dateOpened);
+		BankAccount account = BankAccount.restore(accountType, accountNumber, accountHolder, dateOpened, active, pinHash, balanceCents, ledger);
+		if (in.getVersion() < 5) {
+			account.recordOpeningBalance();
+		}
+		return account;
+	}
+
+	//======== descriptions first, then one entry per transaction still in memory, then the index of the sealed blocks
+	//======== that come before them; only the descriptions those entries use are written
+	private static void writeLedger(SnapshotWriter out, TransactionLedger.View ledger) throws IOException {
+		int from = ledger.getSealedCount();
+		int size = ledger.size();
+		int[] renumbered = new int[ledger.getDescriptionCount()];
+		Arrays.fill(renumbered, TransactionLedger.NO_DESCRIPTION);
+		int[] used = new int[Math.min(renumbered.length, size - from)];
+		int usedCount = 0;
+		for (int i = from; i < size; i++) {
+			int id = ledger.getDescriptionId(i);
+			if (id != TransactionLedger.NO_DESCRIPTION && renumbered[id] == TransactionLedger.NO_DESCRIPTION) {
+				renumbered[id] = usedCount;
+				used[usedCount++] = id;
+			}
+		}
+		out.putInt(usedCount);
+		for (int i = 0; i < usedCount; i++) {
+			out.putString(ledger.getDescriptionById(used[i]));
+		}
+
+		out.putInt(size - from);
+		for (int i = from; i < size; i++) {
+			out.putByte(ledger.getType(i));
+			out.putVarLong(ledger.getAmount(i));
+			out.putInt(ledger.getCounterparty(i));
+			out.putLong(ledger.getTimestamp(i));
+			int id = ledger.getDescriptionId(i);
+			out.putInt(id == TransactionLedger.NO_DESCRIPTION ? id : renumbered[id]);
+		}
+
+		HistoryArchive.Blocks blocks = ledger.getBlocks();
+		int blockCount = blocks == null ? 0 : blocks.getBlockCount();
+		out.putInt(blockCount);
+		for (int b = 0; b < blockCount; b++) {
+			out.putLong(blocks.getOffset(b));
+			out.putInt(blocks.getLength(b));
+			out.putInt(blocks.getEndIndex(b) - blocks.getFirstIndex(b));
+			out.putLong(blocks.getMinTimestamp(b));
+			out.putLong(blocks.getMaxTimestamp(b));
+			out.putVarLong(blocks.getBalance(b));
+		}
+	}
+
+	private static TransactionLedger readLedger(SnapshotReader in) throws IOException {
+		int descriptionCount = in.getInt();
+		List<String> descriptions = new ArrayList<>(descriptionCount);
+		for (int i = 0; i < descriptionCount; i++) {
+			descriptions.add(in.getString());
+		}
+
+		int size = in.getInt();
+		TransactionLedger ledger = new TransactionLedger(size);
+		for (String description : descriptions) {
+			ledger.addDescription(description);
+		}
+		boolean centAmounts = in.getVersion() >= 3;
+		for (int i = 0; i < size; i++) {
+			byte type = in.getByte();
+			long amountCents = centAmounts ? in.getVarLong() : Money.fromDouble(in.getDouble());
+			ledger.appendWithDescriptionId(type, amountCents, in.getInt(), in.getLong(), in.getInt());
+		}
+
+		int blockCount = in.getVersion() >= 6 ? in.getInt() : 0;
+		if (blockCount > 0) {
+			long[] offsets = new long[blockCount];
+			int[] lengths = new int[blockCount];
+			int[] counts = new int[blockCount];
+			long[] minTimestamps = new long[blockCount];
+			long[] maxTimestamps = new long[blockCount];
+			long[] balances = new long[blockCount];
+			for (int b = 0; b < blockCount; b++) {
+				offsets[b] = in.getLong();
+				lengths[b] = in.getInt();
+				counts[b] = in.getInt();
+				minTimestamps[b] = in.getLong();
+				maxTimestamps[b] = in.getLong();
+				balances[b] = in.getVarLong();
+			}
+			ledger.restoreBlocks(HistoryArchive.Blocks.restore(DataManager.historyArchive(), offsets, lengths, counts, minTimestamps, maxTimestamps, balances));
+		}
+		return ledger;
+	}
+
+	private static TransactionLedger readLegacyHistory(SnapshotReader in, LocalDate dateOpened) {
+		int historySize = in.getInt();
+		TransactionLedger ledger = new TransactionLedger(historySize);
+		for (int i = 0; i < historySize; i++) {
+			ledger.appendLegacy(in.getString(), dateOpened);
+		}
+		return ledger;
+	}
+}
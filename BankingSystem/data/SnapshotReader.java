@@ -0,0 +1,170 @@
+package BankingSystem.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+//======== buffered reader for the binary snapshot format described in SnapshotFormat
+public class SnapshotReader implements AutoCloseable {
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private final Path path;
+	private final FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private int recordStart;
+	private int recordEnd;
+
+	private short version;
+	private long journalSequence;
+	private int recordCount;
+
+	public SnapshotReader(Path path, byte expectedKind) throws IOException {
+		this.path = path;
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		buffer.flip();
+		try {
+			fill(SnapshotFormat.HEADER_SIZE);
+			if (buffer.getInt() != SnapshotFormat.MAGIC) {
+				throw new IOException("Not a BankForge snapshot: " + path);
+			}
+			version = buffer.getShort();
+			if (version < 1 || version > SnapshotFormat.VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + " in " + path);
+			}
+			byte kind = buffer.get();
+			if (kind != expectedKind) {
+				throw new IOException("Snapshot " + path + " holds record kind " + kind + ", expected " + expectedKind);
+			}
+			journalSequence = buffer.getLong();
+			recordCount = buffer.getInt();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public short getVersion() {
+		return version;
+	}
+
+	public long getJournalSequence() {
+		return journalSequence;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	//======== loads the next length-prefixed record into the buffer
+	public void nextRecord() throws IOException {
+		if (recordEnd > 0) {
+			//======== skip any trailing fields this version does not know about
+			buffer.position(recordEnd);
+		}
+		fill(4);
+		int length = buffer.getInt();
+		if (length < 0) {
+			throw new IOException("Corrupt record length " + length + " in " + path);
+		}
+		fill(length);
+		recordStart = buffer.position();
+		recordEnd = recordStart + length;
+	}
+
+	//======== the current record exactly as stored, for moving records between files of the same version
+	public byte[] getRecordBytes() {
+		return Arrays.copyOfRange(buffer.array(), recordStart, recordEnd);
+	}
+
+	public void copyRecordTo(SnapshotWriter out) throws IOException {
+		out.putRecord(buffer.array(), recordStart, recordEnd - recordStart);
+	}
+
+	//======== true while the current record still has unread fields, used for optional trailing fields
+	public boolean hasMoreFields() {
+		return buffer.position() < recordEnd;
+	}
+
+	public byte getByte() {
+		return buffer.get();
+	}
+
+	public boolean getBoolean() {
+		return buffer.get() != 0;
+	}
+
+	public int getInt() {
+		return buffer.getInt();
+	}
+
+	public long getLong() {
+		return buffer.getLong();
+	}
+
+	public long getVarLong() {
+		long bits = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			bits |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0 && shift < 64);
+		return (bits >>> 1) ^ -(bits & 1);
+	}
+
+	public double getDouble() {
+		return buffer.getDouble();
+	}
+
+	public void getBytes(byte[] into, int offset, int length) {
+		buffer.get(into, offset, length);
+	}
+
+	public String getString() {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	public LocalDate getDate() {
+		int epochDay = buffer.getInt();
+		return epochDay == SnapshotFormat.NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//======== makes sure at least n unread bytes are buffered
+	private void fill(int n) throws IOException {
+		if (buffer.remaining() >= n) {
+			return;
+		}
+		if (buffer.capacity() < n) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, n));
+			larger.put(buffer);
+			buffer = larger;
+		} else {
+			buffer.compact();
+		}
+		recordEnd = 0;
+		while (buffer.position() < n) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("Snapshot " + path + " ends in the middle of a record");
+			}
+		}
+		buffer.flip();
+	}
+}
@@ -0,0 +1,282 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.log.EventLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//======== incremental snapshots are written as segments next to the base files: accounts.dat.<sequence> holds the
+//======== accounts changed since the previous snapshot and customers.dat.<sequence> the customers registered since
+//======== the accounts segment is written last, so a segment only counts once it exists
+//======== loading applies the segments newer than the base in order; merging folds them into the base files
+final class SnapshotSegments {
+	private SnapshotSegments() {
+	}
+
+	static File segmentFile(String name, long journalSequence) {
+		return DataManager.dataFile(name + "." + journalSequence);
+	}
+
+	//======== journal sequences of the complete segments, oldest first
+	static List<Long> list() throws IOException {
+		return TransactionJournal.listSegments(DataManager.dataFile(DataManager.ACCOUNTS_FILE).toPath());
+	}
+
+	//======== applies the segments newer than the base to what was loaded from it, returns the sequence they cover
+	static long apply(List<Customer> customers, List<int[]> linkedAccountNumbers, HashMap<String, BankAccount> accounts, long baseSequence) throws IOException {
+		List<Long> segments = newerThan(list(), baseSequence);
+		if (segments.isEmpty()) {
+			return baseSequence;
+		}
+
+		Map<String, Integer> customerPositions = new HashMap<>();
+		for (int i = 0; i < customers.size(); i++) {
+			customerPositions.put(customers.get(i).getCustomerID(), i);
+		}
+		Map<Integer, String> keyByAccountNumber = new HashMap<>();
+		for (Map.Entry<String, BankAccount> entry : accounts.entrySet()) {
+			keyByAccountNumber.put(entry.getValue().getAccountNumber(), entry.getKey());
+		}
+
+		long covered = baseSequence;
+		for (long segment : segments) {
+			//======== customers are only written when they register, replacing by ID makes applying a segment twice harmless
+			File customerFile = segmentFile(DataManager.CUSTOMER_FILE, segment);
+			if (customerFile.exists()) {
+				try (SnapshotReader in = new SnapshotReader(customerFile.toPath(), SnapshotFormat.CUSTOMERS)) {
+					List<int[]> linked = new ArrayList<>(1);
+					for (int i = 0; i < in.getRecordCount(); i++) {
+						linked.clear();
+						Customer customer = SnapshotFormat.readCustomer(in, linked);
+						Integer position = customerPositions.get(customer.getCustomerID());
+						if (position == null) {
+							customerPositions.put(customer.getCustomerID(), customers.size());
+							customers.add(customer);
+							linkedAccountNumbers.add(linked.get(0));
+						} else {
+							customers.set(position, customer);
+							linkedAccountNumbers.set(position, linked.get(0));
+						}
+					}
+				}
+			}
+
+			try (SnapshotReader in = new SnapshotReader(segmentFile(DataManager.ACCOUNTS_FILE, segment).toPath(), SnapshotFormat.ACCOUNTS)) {
+				String[] customerID = new String[1];
+				for (int i = 0; i < in.getRecordCount(); i++) {
+					BankAccount account = SnapshotFormat.readAccount(in, customerID);
+					String key = customerID[0] != null ? customerID[0] : keyByAccountNumber.get(account.getAccountNumber());
+					if (key == null) {
+						key = findOwner(customers, linkedAccountNumbers, account.getAccountNumber());
+					}
+					if (key == null) {
+						EventLog.warn("Snapshot segment {} holds account {} without an owner, skipping it", segment, account.getAccountNumber());
+						continue;
+					}
+					accounts.put(key, account);
+					keyByAccountNumber.put(account.getAccountNumber(), key);
+				}
+			}
+			covered = segment;
+		}
+		EventLog.info("Applied {} snapshot segments up to journal sequence {}", segments.size(), covered);
+		return covered;
+	}
+
+	private static String findOwner(List<Customer> customers, List<int[]> linkedAccountNumbers, int accountNumber) {
+		for (int i = 0; i < linkedAccountNumbers.size(); i++) {
+			for (int number : linkedAccountNumbers.get(i)) {
+				if (number == accountNumber) {
+					return customers.get(i).getCustomerID();
+				}
+			}
+		}
+		return null;
+	}
+
+	//======== rewrites the base files with the segments folded in, then deletes the segments
+	//======== base records are copied as stored unless a segment replaces them, so the cost is one sequential pass;
+	//======== a crash part way leaves either the old base with its segments or the new base, both load the same state
+	static boolean merge() {
+		synchronized (DataManager.BASE_LOCK) {
+			File customersBase = DataManager.dataFile(DataManager.CUSTOMER_FILE);
+			File accountsBase = DataManager.dataFile(DataManager.ACCOUNTS_FILE);
+			if (!customersBase.exists() || !accountsBase.exists()) {
+				return false;
+			}
+			try {
+				long baseSequence;
+				try (SnapshotReader in = new SnapshotReader(accountsBase.toPath(), SnapshotFormat.ACCOUNTS)) {
+					baseSequence = in.getJournalSequence();
+				}
+				List<Long> segments = newerThan(list(), baseSequence);
+				if (segments.isEmpty()) {
+					deleteUpTo(baseSequence);
+					return true;
+				}
+				long folded = segments.get(segments.size() - 1);
+
+				//======== the newest record of every customer and account the segments hold
+				LinkedHashMap<String, byte[]> newCustomers = new LinkedHashMap<>();
+				LinkedHashMap<Integer, byte[]> changedAccounts = new LinkedHashMap<>();
+				for (long segment : segments) {
+					File customerFile = segmentFile(DataManager.CUSTOMER_FILE, segment);
+					if (customerFile.exists()) {
+						try (SnapshotReader in = new SnapshotReader(customerFile.toPath(), SnapshotFormat.CUSTOMERS)) {
+							for (int i = 0; i < in.getRecordCount(); i++) {
+								in.nextRecord();
+								newCustomers.put(in.getString(), in.getRecordBytes());
+							}
+						}
+					}
+					try (SnapshotReader in = new SnapshotReader(segmentFile(DataManager.ACCOUNTS_FILE, segment).toPath(), SnapshotFormat.ACCOUNTS)) {
+						for (int i = 0; i < in.getRecordCount(); i++) {
+							in.nextRecord();
+							String key = in.getString();
+							int accountNumber = in.getInt();
+							byte[] record = in.getRecordBytes();
+							byte[] previous = changedAccounts.remove(accountNumber);
+							if (key == null && previous != null && !hasNullKey(previous)) {
+								//======== keep the owner an earlier segment recorded
+								record = withKey(record, readKey(previous));
+							}
+							changedAccounts.put(accountNumber, record);
+						}
+					}
+				}
+
+				File customersTemp = new File(customersBase.getPath() + ".merge");
+				try (SnapshotReader in = new SnapshotReader(customersBase.toPath(), SnapshotFormat.CUSTOMERS);
+						SnapshotWriter out = new SnapshotWriter(customersTemp.toPath())) {
+					out.writeHeader(SnapshotFormat.CUSTOMERS, folded, 0);
+					int count = 0;
+					for (int i = 0; i < in.getRecordCount(); i++) {
+						in.nextRecord();
+						byte[] replacement = newCustomers.remove(in.getString());
+						if (replacement != null) {
+							out.putRecord(replacement, 0, replacement.length);
+						} else {
+							in.copyRecordTo(out);
+						}
+						count++;
+					}
+					for (byte[] record : newCustomers.values()) {
+						out.putRecord(record, 0, record.length);
+						count++;
+					}
+					out.finish(count);
+				}
+
+				File accountsTemp = new File(accountsBase.getPath() + ".merge");
+				try (SnapshotReader in = new SnapshotReader(accountsBase.toPath(), SnapshotFormat.ACCOUNTS);
+						SnapshotWriter out = new SnapshotWriter(accountsTemp.toPath())) {
+					out.writeHeader(SnapshotFormat.ACCOUNTS, folded, 0);
+					boolean sameVersion = in.getVersion() == SnapshotFormat.VERSION;
+					String[] customerID = new String[1];
+					int count = 0;
+					for (int i = 0; i < in.getRecordCount(); i++) {
+						//======== older bases are decoded and written again in the current format
+						BankAccount account = null;
+						int accountNumber;
+						if (sameVersion) {
+							in.nextRecord();
+							customerID[0] = in.getString();
+							accountNumber = in.getInt();
+						} else {
+							account = SnapshotFormat.readAccount(in, customerID);
+							accountNumber = account.getAccountNumber();
+						}
+						byte[] replacement = changedAccounts.remove(accountNumber);
+						if (replacement != null) {
+							byte[] record = hasNullKey(replacement) ? withKey(replacement, customerID[0]) : replacement;
+							out.putRecord(record, 0, record.length);
+						} else if (sameVersion) {
+							in.copyRecordTo(out);
+						} else {
+							SnapshotFormat.writeAccount(out, customerID[0], account);
+						}
+						count++;
+					}
+					for (byte[] record : changedAccounts.values()) {
+						out.putRecord(record, 0, record.length);
+						count++;
+					}
+					out.finish(count);
+				}
+
+				//======== customers first: until the accounts base is replaced, loading still applies the segments
+				if (!DataManager.replaceFile(customersTemp, customersBase) || !DataManager.replaceFile(accountsTemp, accountsBase)) {
+					return false;
+				}
+				deleteUpTo(folded);
+				EventLog.info("Merged {} snapshot segments up to journal sequence {}", segments.size(), folded);
+				return true;
+			} catch (IOException e) {
+				EventLog.error("Error merging snapshot segments", e);
+				return false;
+			}
+		}
+	}
+
+	//======== after a full snapshot none of the segments are needed
+	static void deleteAll() {
+		deleteUpTo(Long.MAX_VALUE);
+	}
+
+	private static void deleteUpTo(long journalSequence) {
+		for (String name : new String[] {DataManager.ACCOUNTS_FILE, DataManager.CUSTOMER_FILE}) {
+			try {
+				for (long segment : TransactionJournal.listSegments(DataManager.dataFile(name).toPath())) {
+					if (segment <= journalSequence) {
+						Files.deleteIfExists(segmentFile(name, segment).toPath());
+					}
+				}
+			} catch (IOException e) {
+				EventLog.error("Error deleting snapshot segments", e);
+			}
+		}
+	}
+
+	private static List<Long> newerThan(List<Long> segments, long journalSequence) {
+		List<Long> newer = new ArrayList<>();
+		for (long segment : segments) {
+			if (segment > journalSequence) {
+				newer.add(segment);
+			}
+		}
+		return newer;
+	}
+
+	//======== account records start with the owner's customer ID as a length-prefixed string, -1 when absent
+	private static boolean hasNullKey(byte[] record) {
+		return ByteBuffer.wrap(record).getInt() < 0;
+	}
+
+	private static String readKey(byte[] record) {
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		int length = buffer.getInt();
+		return new String(record, 4, length, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] withKey(byte[] record, String key) {
+		if (key == null) {
+			return record;
+		}
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer spliced = ByteBuffer.allocate(record.length + keyBytes.length);
+		spliced.putInt(keyBytes.length);
+		spliced.put(keyBytes);
+		spliced.put(record, 4, record.length - 4);
+		return spliced.array();
+	}
+}
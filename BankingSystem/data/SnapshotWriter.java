@@ -0,0 +1,157 @@
+package BankingSystem.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+//======== buffered writer for the binary snapshot format described in SnapshotFormat
+public class SnapshotWriter implements AutoCloseable {
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private final FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private int recordStart = -1;
+
+	public SnapshotWriter(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	public void writeHeader(byte kind, long journalSequence, int recordCount) throws IOException {
+		ensure(SnapshotFormat.HEADER_SIZE);
+		buffer.putInt(SnapshotFormat.MAGIC);
+		buffer.putShort(SnapshotFormat.VERSION);
+		buffer.put(kind);
+		buffer.putLong(journalSequence);
+		buffer.putInt(recordCount);
+	}
+
+	//======== every record is prefixed with its length, patched in once the record is complete
+	public void beginRecord() throws IOException {
+		ensure(4);
+		recordStart = buffer.position();
+		buffer.putInt(0);
+	}
+
+	public void endRecord() {
+		buffer.putInt(recordStart, buffer.position() - recordStart - 4);
+		recordStart = -1;
+	}
+
+	//======== a whole record copied from a file of the same version
+	public void putRecord(byte[] record, int offset, int length) throws IOException {
+		beginRecord();
+		putBytes(record, offset, length);
+		endRecord();
+	}
+
+	public void putByte(byte value) throws IOException {
+		ensure(1);
+		buffer.put(value);
+	}
+
+	public void putBoolean(boolean value) throws IOException {
+		putByte(value ? (byte) 1 : (byte) 0);
+	}
+
+	public void putInt(int value) throws IOException {
+		ensure(4);
+		buffer.putInt(value);
+	}
+
+	public void putLong(long value) throws IOException {
+		ensure(8);
+		buffer.putLong(value);
+	}
+
+	//======== zig-zag varint, 1 to 10 bytes; small amounts in cents usually take 2 or 3
+	public void putVarLong(long value) throws IOException {
+		ensure(10);
+		long bits = (value << 1) ^ (value >> 63);
+		while ((bits & ~0x7FL) != 0) {
+			buffer.put((byte) ((bits & 0x7F) | 0x80));
+			bits >>>= 7;
+		}
+		buffer.put((byte) bits);
+	}
+
+	public void putDouble(double value) throws IOException {
+		ensure(8);
+		buffer.putDouble(value);
+	}
+
+	public void putBytes(byte[] value, int offset, int length) throws IOException {
+		ensure(length);
+		buffer.put(value, offset, length);
+	}
+
+	//======== UTF-8 bytes with an int length prefix, -1 for null
+	public void putString(String value) throws IOException {
+		if (value == null) {
+			putInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		putInt(bytes.length);
+		putBytes(bytes, 0, bytes.length);
+	}
+
+	//======== dates are stored as epoch days
+	public void putDate(LocalDate value) throws IOException {
+		putInt(value == null ? SnapshotFormat.NULL_DATE : (int) value.toEpochDay());
+	}
+
+	//======== writes out whatever is buffered and forces it to disk
+	public void finish() throws IOException {
+		drain(buffer.position());
+		channel.force(false);
+	}
+
+	//======== for files whose record count is only known at the end: patches it into the header, then finishes
+	public void finish(int recordCount) throws IOException {
+		drain(buffer.position());
+		ByteBuffer count = ByteBuffer.allocate(4);
+		count.putInt(recordCount).flip();
+		channel.write(count, SnapshotFormat.HEADER_SIZE - 4);
+		channel.force(false);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	//======== makes room for n more bytes without ever splitting an open record
+	private void ensure(int n) throws IOException {
+		if (buffer.remaining() >= n) {
+			return;
+		}
+		if (recordStart < 0) {
+			drain(buffer.position());
+		} else if (recordStart > 0) {
+			drain(recordStart);
+			recordStart = 0;
+		}
+		if (buffer.remaining() < n) {
+			//======== a single record larger than the buffer, grow it
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + n));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+	}
+
+	//======== writes the first 'upTo' bytes and keeps the rest at the start of the buffer
+	private void drain(int upTo) throws IOException {
+		int end = buffer.position();
+		buffer.position(0).limit(upTo);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.limit(end).position(upTo);
+		buffer.compact();
+	}
+}
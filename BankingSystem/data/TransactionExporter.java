@@ -0,0 +1,291 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Money;
+import BankingSystem.TransactionLedger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+//======== streams an account's ledger straight to a file, one entry at a time
+//======== memory use does not depend on how long the history is
+//======== the entries are read from a ledger view taken together with the balance under the account's lock (see
+//======== BankService.exportHistory), so appends and the snapshot writer sealing history cannot move them mid-export
+public class TransactionExporter {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int PROGRESS_EVERY = 4096;
+	private static final int BINARY_MAGIC = 0x42465832; //===== "BFX2", amounts in cents
+	private static final DateTimeFormatter ISO_TIMESTAMP = DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
+
+	public enum Format {
+		TEXT("Text report (*.txt)", "txt"),
+		CSV("CSV (*.csv)", "csv"),
+		JSON_LINES("JSON Lines (*.jsonl)", "jsonl"),
+		BINARY("BankForge binary (*.bfx)", "bfx");
+
+		private final String description;
+		private final String extension;
+
+		Format(String description, String extension) {
+			this.description = description;
+			this.extension = extension;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public String getExtension() {
+			return extension;
+		}
+	}
+
+	//======== reports progress and lets the caller stop the export early
+	public interface ProgressListener {
+		void onProgress(long written, long total);
+
+		default boolean isCancelled() {
+			return false;
+		}
+	}
+
+	//======== the account with its balance and ledger as they were at one moment
+	public static final class History {
+		private final BankAccount account;
+		private final long balanceCents;
+		private final TransactionLedger.View ledger;
+
+		public History(BankAccount account, long balanceCents, TransactionLedger.View ledger) {
+			this.account = account;
+			this.balanceCents = balanceCents;
+			this.ledger = ledger;
+		}
+	}
+
+	//======== exports every entry in the history, returns how many were written
+	public static long export(History history, Path target, Format format, ProgressListener listener) throws IOException {
+		return export(history, target, format, Long.MIN_VALUE, Long.MAX_VALUE, listener);
+	}
+
+	//======== exports the entries with fromMillis <= timestamp < toMillis; the range is found by binary search on the
+	//======== ledger's timestamps, so only those entries are read
+	public static long export(History history, Path target, Format format, long fromMillis, long toMillis, ProgressListener listener) throws IOException {
+		TransactionLedger.View ledger = history.ledger;
+		int end = ledger.firstAtOrAfter(toMillis);
+		int start = Math.min(ledger.firstAtOrAfter(fromMillis), end);
+		StringBuilder scratch = new StringBuilder(32);
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long written;
+			if (format == Format.BINARY) {
+				written = writeBinary(history.account, ledger, start, end, channel, listener);
+			} else {
+				Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+				written = writeText(history, start, end, format, fromMillis, toMillis, writer, scratch, listener);
+				writer.flush();
+			}
+			channel.force(false);
+			return written;
+		}
+	}
+
+	private static long writeText(History history, int start, int end, Format format, long fromMillis, long toMillis,
+			Writer out, StringBuilder scratch, ProgressListener listener) throws IOException {
+		BankAccount account = history.account;
+		TransactionLedger.View ledger = history.ledger;
+		int total = end - start;
+		switch (format) {
+			case TEXT:
+				out.write("BANKFORGE - TRANSACTION HISTORY EXPORT\n");
+				out.write("Export Date: " + LocalDateTime.now() + "\n");
+				out.write("======================================\n\n");
+				out.write("Account Holder: " + account.getAccountHolder() + "\n");
+				out.write("Account Number: " + account.getAccountNumber() + "\n");
+				out.write("Account Type: " + account.getAccountType() + "\n");
+				out.write("Current Balance: " + Money.formatRand(history.balanceCents) + "\n");
+				if (fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE) {
+					out.write("Period: " + describeBound(fromMillis, Long.MIN_VALUE) + " to " + describeBound(toMillis, Long.MAX_VALUE) + "\n");
+				}
+				out.write("Total Transactions: " + total + "\n\n");
+				break;
+			case CSV:
+				out.write("timestamp,type,amount,counterparty,description\n");
+				break;
+			default:
+				break;
+		}
+
+		long written = 0;
+		//======== newest first, like the history dialog
+		for (int i = end - 1; i >= start; i--) {
+			switch (format) {
+				case TEXT:
+					out.write("- ");
+					out.write(ledger.render(i));
+					out.write('\n');
+					break;
+				case CSV:
+					writeCsvRow(out, ledger, i, scratch);
+					break;
+				case JSON_LINES:
+					writeJsonLine(out, ledger, i, scratch);
+					break;
+				default:
+					throw new IllegalArgumentException("Not a text format: " + format);
+			}
+			if (++written % PROGRESS_EVERY == 0 && report(listener, written, total)) {
+				return written;
+			}
+		}
+
+		if (format == Format.TEXT) {
+			out.write("\n======================================\n");
+			out.write("This document was automatically generated by BankForge Banking System\n");
+		}
+		report(listener, written, total);
+		return written;
+	}
+
+	//======== an open end of the period reads as such, a set one as the time it falls on
+	private static String describeBound(long millis, long open) {
+		return millis == open ? (open == Long.MIN_VALUE ? "the first transaction" : "now") : ISO_TIMESTAMP.format(Instant.ofEpochMilli(millis));
+	}
+
+	private static void writeCsvRow(Writer out, TransactionLedger.View ledger, int i, StringBuilder scratch) throws IOException {
+		out.write(ISO_TIMESTAMP.format(Instant.ofEpochMilli(ledger.getTimestamp(i))));
+		out.write(',');
+		out.write(TransactionLedger.typeName(ledger.getType(i)));
+		out.write(',');
+		writeAmount(out, ledger.getAmount(i), scratch);
+		out.write(',');
+		int counterparty = ledger.getCounterparty(i);
+		if (counterparty != 0) {
+			out.write(Integer.toString(counterparty));
+		}
+		out.write(',');
+		String description = ledger.getDescription(i);
+		if (description != null) {
+			out.write('"');
+			out.write(description.replace("\"", "\"\""));
+			out.write('"');
+		}
+		out.write('\n');
+	}
+
+	private static void writeJsonLine(Writer out, TransactionLedger.View ledger, int i, StringBuilder scratch) throws IOException {
+		out.write("{\"timestamp\":\"");
+		out.write(ISO_TIMESTAMP.format(Instant.ofEpochMilli(ledger.getTimestamp(i))));
+		out.write("\",\"type\":\"");
+		out.write(TransactionLedger.typeName(ledger.getType(i)));
+		out.write("\",\"amount\":");
+		writeAmount(out, ledger.getAmount(i), scratch);
+		int counterparty = ledger.getCounterparty(i);
+		if (counterparty != 0) {
+			out.write(",\"counterparty\":");
+			out.write(Integer.toString(counterparty));
+		}
+		String description = ledger.getDescription(i);
+		if (description != null) {
+			out.write(",\"description\":\"");
+			writeJsonEscaped(out, description);
+			out.write('"');
+		}
+		out.write("}\n");
+	}
+
+	private static void writeAmount(Writer out, long amountCents, StringBuilder scratch) throws IOException {
+		scratch.setLength(0);
+		Money.appendTo(scratch, amountCents);
+		out.append(scratch);
+	}
+
+	private static void writeJsonEscaped(Writer out, String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					out.write("\\\"");
+					break;
+				case '\\':
+					out.write("\\\\");
+					break;
+				case '\n':
+					out.write("\\n");
+					break;
+				case '\r':
+					out.write("\\r");
+					break;
+				case '\t':
+					out.write("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						out.write(String.format("\\u%04x", (int) c));
+					} else {
+						out.write(c);
+					}
+			}
+		}
+	}
+
+	//======== header: magic, account number, entry count
+	//======== entry: type, amount in cents, counterparty, timestamp, description length + UTF-8 bytes
+	private static long writeBinary(BankAccount account, TransactionLedger.View ledger, int start, int end, FileChannel channel, ProgressListener listener) throws IOException {
+		int total = end - start;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.putInt(BINARY_MAGIC);
+		buffer.putInt(account.getAccountNumber());
+		buffer.putInt(total);
+
+		long written = 0;
+		for (int i = end - 1; i >= start; i--) {
+			String description = ledger.getDescription(i);
+			byte[] descriptionBytes = description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+			int length = descriptionBytes == null ? 0 : Math.min(descriptionBytes.length, Short.MAX_VALUE);
+			if (buffer.remaining() < 1 + 8 + 4 + 8 + 2 + length) {
+				drain(buffer, channel);
+			}
+			buffer.put(ledger.getType(i));
+			buffer.putLong(ledger.getAmount(i));
+			buffer.putInt(ledger.getCounterparty(i));
+			buffer.putLong(ledger.getTimestamp(i));
+			buffer.putShort((short) length);
+			if (length > 0) {
+				buffer.put(descriptionBytes, 0, length);
+			}
+			if (++written % PROGRESS_EVERY == 0 && report(listener, written, total)) {
+				break;
+			}
+		}
+		drain(buffer, channel);
+		report(listener, written, total);
+		return written;
+	}
+
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	//======== returns true when the listener asked to stop
+	private static boolean report(ProgressListener listener, long written, long total) {
+		if (listener == null) {
+			return false;
+		}
+		listener.onProgress(written, total);
+		return listener.isCancelled();
+	}
+}
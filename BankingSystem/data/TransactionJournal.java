@@ -0,0 +1,707 @@
+package BankingSystem.data;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Money;
+import BankingSystem.PinHash;
+import BankingSystem.log.EventLog;
+import BankingSystem.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//======== append-only journal of every balance-changing operation
+//======== a snapshot plus the journal records after it rebuild the exact state
+//======== rotate() closes the current file as a segment named after its last sequence (transactions.journal.<sequence>);
+//======== segments are replayed before the current file and deleted once a snapshot covers them
+public class TransactionJournal implements AutoCloseable {
+	public static final String DEFAULT_FILE = "transactions.journal";
+
+	private static final int MAGIC = 0x42464A32; //===== "BFJ2", amounts in cents
+	private static final int LEGACY_MAGIC = 0x42464A31; //===== "BFJ1", amounts as doubles
+	private static final int HEADER_SIZE = 4;
+	//======== sequence, type, timestamp, account, counterparty, amount in cents, extra length
+	private static final int FIXED_PAYLOAD_SIZE = 8 + 1 + 8 + 4 + 4 + 8 + 2;
+	private static final int MAX_EXTRA_SIZE = 1024;
+	//======== longest transfer description a record holds, in UTF-8 bytes; longer ones are refused before any money moves
+	public static final int MAX_DESCRIPTION_BYTES = MAX_EXTRA_SIZE;
+	private static final int MAX_RECORD_SIZE = 4 + FIXED_PAYLOAD_SIZE + MAX_EXTRA_SIZE + 4;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final int DEFAULT_GROUP_COMMIT_RECORDS = 1024;
+
+	public static final byte DEPOSIT = 1;
+	public static final byte WITHDRAWAL = 2;
+	public static final byte TRANSFER = 3;
+	public static final byte PIN_CHANGE = 4;
+	public static final byte END_OF_DAY = 5; //===== the business date as an epoch day in the amount, no account
+
+	//======== told about every end-of-day record while the journal is replayed; 'redo' is false for the records the
+	//======== snapshot already covers, whose date still counts as done
+	public interface EndOfDayReplay {
+		void endOfDay(LocalDate businessDate, long timestampMillis, boolean redo);
+	}
+
+	//======== when appended records are forced to disk
+	public enum FsyncPolicy {
+		ALWAYS,   //===== every record is durable before the call returns
+		INTERVAL, //===== at most one fsync per interval, the tail may be lost on a crash
+		NEVER,    //===== leave it to the operating system
+		GROUP     //===== a writer thread batches concurrent records into one write and fsync, each caller waits for its batch
+	}
+
+	//======== handed out by the record methods, completes once the record is on disk
+	private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+
+	private final Path path;
+	private FileChannel channel;
+	private final FsyncPolicy fsyncPolicy;
+	private final long fsyncIntervalNanos;
+	private final ByteBuffer writeBuffer = ByteBuffer.allocate(MAX_RECORD_SIZE);
+	private final CRC32 crc = new CRC32();
+
+	private long lastSequence;
+	private long lastFsyncNanos = System.nanoTime();
+	private int recordsSinceCheckpoint;
+
+	//======== group commit: records collect in 'pending' until the writer thread swaps it with the buffer it just wrote
+	private final int groupCommitRecords;
+	private ByteBuffer pending;
+	private ByteBuffer spare;
+	private int pendingRecords;
+	private long firstPendingNanos;
+	private CompletableFuture<Void> pendingBatch = new CompletableFuture<>();
+	private boolean writing;
+	private boolean closing;
+	private Thread writer;
+	//======== set when a failed batch could not be cut off again; nothing more is written to this file, since replay
+	//======== stops at the torn bytes and would drop every record after them
+	private IOException broken;
+
+	private TransactionJournal(Path path, FileChannel channel, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int groupCommitRecords) {
+		this.path = path;
+		this.channel = channel;
+		this.fsyncPolicy = fsyncPolicy;
+		this.fsyncIntervalNanos = fsyncIntervalMillis * 1_000_000L;
+		this.groupCommitRecords = Math.max(groupCommitRecords, 1);
+	}
+
+	//======== opens (or creates) the journal and cuts off any torn record left by a crash
+	public static TransactionJournal open(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+		return open(path, fsyncPolicy, fsyncIntervalMillis, DEFAULT_GROUP_COMMIT_RECORDS);
+	}
+
+	//======== for GROUP the interval is how long a batch may wait to fill up (0: whatever queued during the last fsync)
+	//======== and groupCommitRecords caps the records written per batch
+	public static TransactionJournal open(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int groupCommitRecords) throws IOException {
+		if (hasLegacyHeader(path)) {
+			upgradeLegacy(path);
+		}
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		TransactionJournal journal = new TransactionJournal(path, channel, fsyncPolicy, fsyncIntervalMillis, groupCommitRecords);
+		if (channel.size() < HEADER_SIZE) {
+			journal.writeHeader();
+		} else {
+			long validEnd = journal.scan(null);
+			if (validEnd < channel.size()) {
+				EventLog.warn("Journal {} has a torn tail, truncating {} bytes", path, channel.size() - validEnd);
+				channel.truncate(validEnd);
+				channel.force(false);
+			}
+			channel.position(validEnd);
+		}
+		List<Long> segments = listSegments(path);
+		if (!segments.isEmpty()) {
+			journal.advanceSequence(segments.get(segments.size() - 1));
+		}
+		if (fsyncPolicy == FsyncPolicy.GROUP) {
+			journal.startWriter();
+		}
+		return journal;
+	}
+
+	//======== opens the default journal with the fsync policy from system properties
+	public static TransactionJournal openDefault() throws IOException {
+		FsyncPolicy policy = FsyncPolicy.valueOf(System.getProperty("bankforge.journal.fsync", "GROUP").toUpperCase());
+		long interval = Long.getLong("bankforge.journal.fsyncIntervalMillis", policy == FsyncPolicy.GROUP ? 0L : 100L);
+		int groupCommitRecords = Integer.getInteger("bankforge.journal.groupCommitRecords", DEFAULT_GROUP_COMMIT_RECORDS);
+		return open(DataManager.dataFile(DEFAULT_FILE).toPath(), policy, interval, groupCommitRecords);
+	}
+
+	//======== record methods, called after the operation succeeded in memory, amounts are in cents
+	//======== the returned future completes once the record is durable under the fsync policy; callers should
+	//======== wait on it only after releasing their locks, so other records can join the same batch
+	public CompletableFuture<Void> recordDeposit(BankAccount account, long amountCents) {
+		return append(DEPOSIT, account.getAccountNumber(), 0, amountCents, null);
+	}
+
+	public CompletableFuture<Void> recordWithdrawal(BankAccount account, long amountCents) {
+		return append(WITHDRAWAL, account.getAccountNumber(), 0, amountCents, null);
+	}
+
+	public CompletableFuture<Void> recordTransfer(BankAccount from, BankAccount to, long amountCents, String description) {
+		byte[] extra = description == null || description.isEmpty() ? null : description.getBytes(StandardCharsets.UTF_8);
+		return append(TRANSFER, from.getAccountNumber(), to.getAccountNumber(), amountCents, extra);
+	}
+
+	//======== a char never takes more than 3 UTF-8 bytes, so most descriptions pass without being encoded
+	public static boolean fitsDescription(String description) {
+		return description == null || description.length() * 3 <= MAX_DESCRIPTION_BYTES
+				|| description.getBytes(StandardCharsets.UTF_8).length <= MAX_DESCRIPTION_BYTES;
+	}
+
+	public CompletableFuture<Void> recordPinChange(BankAccount account) {
+		return append(PIN_CHANGE, account.getAccountNumber(), 0, 0, account.getPinHash());
+	}
+
+	//======== written before the batch changes any account, stamped with the time its entries carry, so replay can
+	//======== run it again at the same point and get the same entries
+	public CompletableFuture<Void> recordEndOfDay(LocalDate businessDate, long timestampMillis) {
+		return append(END_OF_DAY, timestampMillis, 0, 0, businessDate.toEpochDay(), null);
+	}
+
+	private CompletableFuture<Void> append(byte type, int account, int counterparty, long amountCents, byte[] extra) {
+		return append(type, System.currentTimeMillis(), account, counterparty, amountCents, extra);
+	}
+
+	private synchronized CompletableFuture<Void> append(byte type, long timestamp, int account, int counterparty, long amountCents, byte[] extra) {
+		if (fsyncPolicy == FsyncPolicy.GROUP) {
+			return enqueue(type, timestamp, account, counterparty, amountCents, extra);
+		}
+		if (broken != null) {
+			return CompletableFuture.failedFuture(new IOException("Journal " + path + " is not accepting records after a failed write", broken));
+		}
+		long start = Metrics.start();
+		long recordSequence = lastSequence + 1;
+		long recordStart = -1;
+		try {
+			recordStart = channel.position();
+			write(recordSequence, type, timestamp, account, counterparty, amountCents, extra);
+			maybeForce();
+			Metrics.JOURNAL_FLUSH.recordSince(start);
+			return DURABLE;
+		} catch (IOException e) {
+			Metrics.JOURNAL_FLUSH.recordSince(start, false);
+			EventLog.error("Error writing journal record", e);
+			//======== a record that was written whole but not forced is left alone, only torn bytes are cut off
+			if (lastSequence < recordSequence) {
+				cutOff(channel, recordStart, e);
+			}
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private void write(long sequence, byte type, long timestamp, int account, int counterparty, long amountCents, byte[] extra) throws IOException {
+		writeBuffer.clear();
+		encode(writeBuffer, sequence, type, timestamp, account, counterparty, amountCents, extra);
+		writeBuffer.flip();
+
+		while (writeBuffer.hasRemaining()) {
+			channel.write(writeBuffer);
+		}
+		lastSequence = sequence;
+		recordsSinceCheckpoint++;
+	}
+
+	//======== puts one framed, checksummed record at the buffer's position
+	private void encode(ByteBuffer buffer, long sequence, byte type, long timestamp, int account, int counterparty, long amountCents, byte[] extra) {
+		int extraLength = extra == null ? 0 : extra.length;
+		if (extraLength > MAX_EXTRA_SIZE) {
+			//======== a cut description would replay as something the customer never wrote
+			throw new IllegalArgumentException("Journal record extra of " + extraLength + " bytes exceeds " + MAX_EXTRA_SIZE);
+		}
+		int start = buffer.position();
+
+		buffer.putInt(FIXED_PAYLOAD_SIZE + extraLength);
+		buffer.putLong(sequence);
+		buffer.put(type);
+		buffer.putLong(timestamp);
+		buffer.putInt(account);
+		buffer.putInt(counterparty);
+		buffer.putLong(amountCents);
+		buffer.putShort((short) extraLength);
+		if (extraLength > 0) {
+			buffer.put(extra, 0, extraLength);
+		}
+		crc.reset();
+		crc.update(buffer.array(), start + 4, FIXED_PAYLOAD_SIZE + extraLength);
+		buffer.putInt((int) crc.getValue());
+	}
+
+	//======== group commit
+	//======== adds the record to the pending batch, called with the monitor held
+	private CompletableFuture<Void> enqueue(byte type, long timestamp, int account, int counterparty, long amountCents, byte[] extra) {
+		if (closing) {
+			return CompletableFuture.failedFuture(new IOException("Journal " + path + " is closed"));
+		}
+		if (broken != null) {
+			return CompletableFuture.failedFuture(new IOException("Journal " + path + " is not accepting records after a failed write", broken));
+		}
+		//======== back-pressure: a full batch has to be handed to the writer before more records pile up
+		while (pendingRecords >= groupCommitRecords && !closing) {
+			waitForWriter();
+		}
+		if (pending.remaining() < MAX_RECORD_SIZE) {
+			ByteBuffer grown = ByteBuffer.allocate(pending.capacity() * 2);
+			pending.flip();
+			grown.put(pending);
+			pending = grown;
+		}
+		long sequence = lastSequence + 1;
+		encode(pending, sequence, type, timestamp, account, counterparty, amountCents, extra);
+		lastSequence = sequence;
+		recordsSinceCheckpoint++;
+		if (pendingRecords++ == 0) {
+			firstPendingNanos = System.nanoTime();
+		}
+		if (pendingRecords == 1 || pendingRecords >= groupCommitRecords) {
+			notifyAll();
+		}
+		return pendingBatch;
+	}
+
+	private void startWriter() {
+		pending = ByteBuffer.allocate(MAX_RECORD_SIZE * 16);
+		spare = ByteBuffer.allocate(MAX_RECORD_SIZE * 16);
+		writer = new Thread(this::runWriter, "journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	//======== one write and one fsync per batch, then every caller in the batch is released together
+	//======== a batch that fails is cut off the file again, so the next one follows on from the last good record
+	private void runWriter() {
+		while (true) {
+			FileChannel out;
+			ByteBuffer batch;
+			CompletableFuture<Void> batchDone;
+			IOException failure;
+			synchronized (this) {
+				while (pendingRecords == 0 && !closing) {
+					waitForWriter();
+				}
+				if (pendingRecords == 0) {
+					return;
+				}
+				//======== give other threads the rest of the window to join this batch
+				long waitNanos;
+				while (pendingRecords < groupCommitRecords && !closing
+						&& (waitNanos = fsyncIntervalNanos - (System.nanoTime() - firstPendingNanos)) > 0) {
+					try {
+						wait(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				out = channel;
+				batch = pending;
+				batchDone = pendingBatch;
+				pending = spare;
+				pendingBatch = new CompletableFuture<>();
+				pendingRecords = 0;
+				writing = true;
+				failure = broken;
+				//======== the batch is out of the way, let back-pressured callers in
+				notifyAll();
+			}
+
+			long start = Metrics.start();
+			if (failure == null) {
+				long batchStart = -1;
+				try {
+					batchStart = out.position();
+					batch.flip();
+					while (batch.hasRemaining()) {
+						out.write(batch);
+					}
+					out.force(false);
+				} catch (IOException e) {
+					EventLog.error("Error writing journal batch", e);
+					failure = e;
+					cutOff(out, batchStart, e);
+				}
+			}
+			Metrics.JOURNAL_FLUSH.recordSince(start, failure == null);
+
+			synchronized (this) {
+				batch.clear();
+				spare = batch;
+				writing = false;
+				notifyAll();
+			}
+			if (failure == null) {
+				batchDone.complete(null);
+			} else {
+				batchDone.completeExceptionally(failure);
+			}
+		}
+	}
+
+	//======== drops whatever part of a failed batch or record reached the file; when that fails too the journal stops taking
+	//======== records until the next rotation starts a new file
+	private void cutOff(FileChannel out, long batchStart, IOException failure) {
+		try {
+			if (batchStart < 0) {
+				throw failure;
+			}
+			out.truncate(batchStart);
+			out.position(batchStart);
+			out.force(false);
+		} catch (IOException e) {
+			EventLog.error("Could not cut a failed batch off journal {}, refusing further records", path, e);
+			synchronized (this) {
+				broken = failure;
+			}
+		}
+	}
+
+	//======== waits until everything queued so far is on disk, called with the monitor held
+	private void awaitWritten() {
+		while ((pendingRecords > 0 || writing) && writer != null && writer.isAlive()) {
+			waitForWriter();
+		}
+	}
+
+	private void waitForWriter() {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the journal writer", e);
+		}
+	}
+
+	private void maybeForce() throws IOException {
+		switch (fsyncPolicy) {
+			case ALWAYS:
+				channel.force(false);
+				break;
+			case INTERVAL:
+				long now = System.nanoTime();
+				if (now - lastFsyncNanos >= fsyncIntervalNanos) {
+					channel.force(false);
+					lastFsyncNanos = now;
+				}
+				break;
+			case NEVER:
+				break;
+		}
+	}
+
+	//======== called for every intact record while the file is scanned
+	private interface RecordVisitor {
+		void visit(long sequence, byte type, long timestamp, int account, int counterparty, long amountCents, byte[] extra) throws IOException;
+	}
+
+	//======== re-applies every record newer than the snapshot, segments first, returns how many were applied
+	public int replay(long afterSequence, AccountIndex index) throws IOException {
+		return replay(afterSequence, index, account -> {
+		});
+	}
+
+	//======== 'changed' is told about every account a replayed record touched
+	public int replay(long afterSequence, AccountIndex index, Consumer<BankAccount> changed) throws IOException {
+		return replay(afterSequence, index, changed, (businessDate, timestamp, redo) -> {
+			if (redo) {
+				EventLog.warn("Skipping end-of-day record for {}, nothing to run it with", businessDate);
+			}
+		});
+	}
+
+	//======== end-of-day records are handed to 'endOfDay', which runs the batch again for those the snapshot missed
+	public synchronized int replay(long afterSequence, AccountIndex index, Consumer<BankAccount> changed, EndOfDayReplay endOfDay) throws IOException {
+		int[] applied = {0};
+		RecordVisitor visitor = (sequence, type, timestamp, account, counterparty, amountCents, extra) -> {
+			if (type == END_OF_DAY) {
+				endOfDay.endOfDay(LocalDate.ofEpochDay(amountCents), timestamp, sequence > afterSequence);
+				if (sequence > afterSequence) {
+					applied[0]++;
+				}
+			} else if (sequence > afterSequence && apply(type, timestamp, account, counterparty, amountCents, extra, index, changed)) {
+				applied[0]++;
+			}
+		};
+		for (long segmentEnd : listSegments(path)) {
+			if (segmentEnd <= afterSequence) {
+				continue;
+			}
+			Path segment = segmentPath(path, segmentEnd);
+			try (TransactionJournal closed = new TransactionJournal(segment, FileChannel.open(segment, StandardOpenOption.READ), FsyncPolicy.NEVER, 0, 1)) {
+				closed.scan(visitor);
+			}
+		}
+		scan(visitor);
+		recordsSinceCheckpoint = applied[0];
+		EventLog.info("Journal replay applied {} records after sequence {}", applied[0], afterSequence);
+		return applied[0];
+	}
+
+	//======== walks the file, returns the offset just past the last intact record
+	private long scan(RecordVisitor visitor) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		long position = HEADER_SIZE;
+		long validEnd = HEADER_SIZE;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		header.flip();
+		int magic = header.remaining() < HEADER_SIZE ? 0 : header.getInt();
+		if (magic != MAGIC && magic != LEGACY_MAGIC) {
+			throw new IOException("Not a BankForge journal: " + path);
+		}
+		boolean legacyAmounts = magic == LEGACY_MAGIC;
+
+		buffer.flip();
+		while (true) {
+			if (buffer.remaining() < 4 + FIXED_PAYLOAD_SIZE + 4) {
+				buffer.compact();
+				int read = channel.read(buffer, position);
+				buffer.flip();
+				if (read > 0) {
+					position += read;
+				}
+				if (buffer.remaining() < 4) {
+					break;
+				}
+			}
+			int payloadLength = buffer.getInt(buffer.position());
+			if (payloadLength < FIXED_PAYLOAD_SIZE || payloadLength > FIXED_PAYLOAD_SIZE + MAX_EXTRA_SIZE) {
+				break;
+			}
+			if (buffer.remaining() < 4 + payloadLength + 4) {
+				buffer.compact();
+				int read = channel.read(buffer, position);
+				buffer.flip();
+				if (read > 0) {
+					position += read;
+				}
+				if (buffer.remaining() < 4 + payloadLength + 4) {
+					break;
+				}
+			}
+
+			int start = buffer.position() + 4;
+			crc.reset();
+			crc.update(buffer.array(), start, payloadLength);
+			if ((int) crc.getValue() != buffer.getInt(start + payloadLength)) {
+				break;
+			}
+
+			buffer.getInt();
+			long sequence = buffer.getLong();
+			byte type = buffer.get();
+			long timestamp = buffer.getLong();
+			int account = buffer.getInt();
+			int counterparty = buffer.getInt();
+			long amountCents = legacyAmounts ? Money.fromDouble(buffer.getDouble()) : buffer.getLong();
+			int extraLength = buffer.getShort();
+			byte[] extra = new byte[extraLength];
+			buffer.get(extra);
+			buffer.getInt();
+
+			lastSequence = sequence;
+			validEnd += 4 + payloadLength + 4;
+			if (visitor != null) {
+				visitor.visit(sequence, type, timestamp, account, counterparty, amountCents, extra);
+			}
+		}
+		return validEnd;
+	}
+
+	private boolean apply(byte type, long timestamp, int accountNumber, int counterparty, long amountCents, byte[] extra, AccountIndex index, Consumer<BankAccount> changed) {
+		BankAccount account = index.get(accountNumber);
+		if (account == null) {
+			EventLog.warn("Skipping journal record for unknown account {}", accountNumber);
+			return false;
+		}
+		changed.accept(account);
+		switch (type) {
+			case DEPOSIT:
+				return account.depositMoney(amountCents, timestamp);
+			case WITHDRAWAL:
+				return account.withdrawMoney(amountCents, timestamp);
+			case TRANSFER:
+				BankAccount target = index.get(counterparty);
+				if (target == null) {
+					EventLog.warn("Skipping journal transfer to unknown account {}", counterparty);
+					return false;
+				}
+				changed.accept(target);
+				return account.transferMoneyTo(target, amountCents, new String(extra, StandardCharsets.UTF_8), timestamp).isSuccess();
+			case PIN_CHANGE:
+				//======== older journals stored the hash as 64 hex characters
+				byte[] pinHash = extra.length == PinHash.LENGTH ? extra : PinHash.fromHex(new String(extra, StandardCharsets.US_ASCII));
+				account.restorePinHash(pinHash, timestamp);
+				return true;
+			default:
+				EventLog.warn("Skipping unknown journal record type {}", type);
+				return false;
+		}
+	}
+
+	//======== starts a new file so a snapshot can be taken while records keep arriving, returns the last sequence
+	//======== in the closed segment; call it while no operation is in flight so the snapshot and the cut agree
+	//======== every call returns a sequence no earlier call returned, so snapshots can be ordered by it
+	public synchronized long rotate() throws IOException {
+		awaitWritten();
+		if (channel.size() <= HEADER_SIZE) {
+			//======== nothing journalled since the last rotation, skip a sequence number instead
+			return ++lastSequence;
+		}
+		channel.force(true);
+		channel.close();
+		try {
+			Files.move(path, segmentPath(path, lastSequence), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			//======== keep appending to the old file, the next rotation tries again
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+			throw e;
+		}
+		channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		writeHeader();
+		recordsSinceCheckpoint = 0;
+		//======== the new file has no torn bytes in it, records can be taken again
+		broken = null;
+		return lastSequence;
+	}
+
+	//======== deletes the segments a snapshot on disk now covers
+	public synchronized void discardSegments(long coveredSequence) {
+		try {
+			for (long segmentEnd : listSegments(path)) {
+				if (segmentEnd <= coveredSequence) {
+					Files.deleteIfExists(segmentPath(path, segmentEnd));
+				}
+			}
+		} catch (IOException e) {
+			EventLog.error("Error deleting journal segments", e);
+		}
+	}
+
+	private static Path segmentPath(Path path, long lastSequence) {
+		return path.resolveSibling(path.getFileName() + "." + lastSequence);
+	}
+
+	//======== the numeric suffixes of the files named <path>.<number> next to it, in ascending order
+	static List<Long> listSegments(Path path) throws IOException {
+		List<Long> segments = new ArrayList<>();
+		Path directory = path.toAbsolutePath().getParent();
+		String prefix = path.getFileName() + ".";
+		try (Stream<Path> files = Files.list(directory)) {
+			files.forEach(file -> {
+				String name = file.getFileName().toString();
+				if (name.startsWith(prefix) && name.length() > prefix.length() && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+					segments.add(Long.parseLong(name.substring(prefix.length())));
+				}
+			});
+		}
+		segments.sort(null);
+		return segments;
+	}
+
+	//======== called once a snapshot covering everything up to this sequence is safely on disk
+	public synchronized void truncate(long coveredSequence) {
+		discardSegments(coveredSequence);
+		if (coveredSequence < lastSequence) {
+			//======== newer records are still needed; replay skips the covered ones by sequence
+			return;
+		}
+		try {
+			awaitWritten();
+			channel.truncate(0);
+			writeHeader();
+			recordsSinceCheckpoint = 0;
+		} catch (IOException e) {
+			EventLog.error("Error truncating journal", e);
+		}
+	}
+
+	private static boolean hasLegacyHeader(Path path) throws IOException {
+		if (!Files.exists(path) || Files.size(path) < HEADER_SIZE) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			channel.read(header, 0);
+			header.flip();
+			return header.getInt() == LEGACY_MAGIC;
+		}
+	}
+
+	//======== rewrites a journal from before amounts were kept in cents, keeping sequences and timestamps
+	private static void upgradeLegacy(Path path) throws IOException {
+		Path upgraded = path.resolveSibling(path.getFileName() + ".upgrade");
+		Files.deleteIfExists(upgraded);
+		try (TransactionJournal legacy = new TransactionJournal(path, FileChannel.open(path, StandardOpenOption.READ), FsyncPolicy.NEVER, 0, 1);
+				TransactionJournal current = new TransactionJournal(upgraded, FileChannel.open(upgraded, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE), FsyncPolicy.NEVER, 0, 1)) {
+			current.writeHeader();
+			legacy.scan(current::write);
+			current.channel.force(true);
+		}
+		Files.move(upgraded, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		EventLog.info("Upgraded journal {} to amounts in cents", path);
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.flip();
+		channel.write(header, 0);
+		channel.position(HEADER_SIZE);
+		channel.force(true);
+	}
+
+	public synchronized long getLastSequence() {
+		return lastSequence;
+	}
+
+	//======== lets a snapshot taken with a higher sequence move the counter forward
+	public synchronized void advanceSequence(long sequence) {
+		if (sequence > lastSequence) {
+			lastSequence = sequence;
+		}
+	}
+
+	public synchronized int getRecordsSinceCheckpoint() {
+		return recordsSinceCheckpoint;
+	}
+
+	//======== the writer drains what is still queued before it stops
+	@Override
+	public void close() {
+		Thread stopping;
+		synchronized (this) {
+			closing = true;
+			notifyAll();
+			stopping = writer;
+		}
+		if (stopping != null) {
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this) {
+			try {
+				channel.force(false);
+				channel.close();
+			} catch (IOException e) {
+				EventLog.error("Error closing journal", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,418 @@
+package BankingSystem.log;
+
+import BankingSystem.Money;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//======== asynchronous application log: callers drop an event into a bounded ring buffer and return, one daemon thread
+//======== formats the events and writes them to the console or to -Dbankforge.log.file
+//======== a message is a constant template whose {} are filled with the arguments, and {R} with an amount in cents as
+//======== rands; the arguments are kept as they are and only formatted on the writer thread, so logging a number costs
+//======== no allocation; events below -Dbankforge.log.level (default INFO) cost one comparison
+//======== nothing ever waits for the writer: when the buffer is full the event is dropped and counted, and the writer
+//======== logs how many were lost once it catches up
+public final class EventLog {
+	public enum Level {
+		DEBUG("DEBUG"), INFO("INFO "), WARN("WARN "), ERROR("ERROR");
+
+		private final String label;
+
+		Level(String label) {
+			this.label = label;
+		}
+	}
+
+	//======== OFF turns everything off
+	private static final int THRESHOLD = threshold(System.getProperty("bankforge.log.level", "INFO"));
+	public static final int DEFAULT_BUFFER_EVENTS = Integer.getInteger("bankforge.log.bufferEvents", 8192);
+	private static final int FLUSH_CHARS = 64 * 1024;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+	//======== how long the writer sleeps once it has caught up; a producer wakes it early when the buffer is half full
+	private static final long MIN_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.", Locale.ROOT);
+
+	private static final Slot[] slots;
+	private static final int mask;
+	//======== next sequence to hand out, and next one the writer will take
+	private static final AtomicLong claimed = new AtomicLong();
+	private static final AtomicLong consumed = new AtomicLong();
+	private static final LongAdder dropped = new LongAdder();
+	//======== everything before this sequence has been handed to the console or file
+	private static volatile long written;
+	private static final OutputStream file;
+	private static final Thread writer;
+	//======== the writer's timestamp text up to the second, reused while the second does not change
+	private static long cachedSecond = Long.MIN_VALUE;
+	private static String cachedSecondText;
+
+	static {
+		int size = Integer.highestOneBit(Math.max(2, DEFAULT_BUFFER_EVENTS) * 2 - 1);
+		slots = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+		}
+		mask = size - 1;
+		file = openFile(System.getProperty("bankforge.log.file"));
+		writer = new Thread(EventLog::drain, "event-log");
+		writer.setDaemon(true);
+		writer.start();
+		//======== give queued events a moment to reach the console or file when the JVM stops
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(2000), "event-log-flush"));
+	}
+
+	private EventLog() {
+	}
+
+	//======== one event; the writer owns a slot from its sequence being published until it clears it
+	private static final class Slot {
+		private volatile long sequence = -1;
+		private Level level;
+		private long timeMillis;
+		private String thread;
+		private String template;
+		private int arity;
+		private boolean numbers;
+		private long n0, n1, n2;
+		private Object o0, o1, o2;
+		private Throwable error;
+
+		void clear() {
+			template = null;
+			thread = null;
+			o0 = o1 = o2 = null;
+			error = null;
+		}
+	}
+
+	public static boolean isEnabled(Level level) {
+		return level.ordinal() >= THRESHOLD;
+	}
+
+	public static void debug(String template) {
+		log(Level.DEBUG, template, 0, true, 0, 0, 0, null, null, null, null);
+	}
+
+	public static void debug(String template, long a) {
+		log(Level.DEBUG, template, 1, true, a, 0, 0, null, null, null, null);
+	}
+
+	public static void debug(String template, long a, long b) {
+		log(Level.DEBUG, template, 2, true, a, b, 0, null, null, null, null);
+	}
+
+	public static void debug(String template, long a, long b, long c) {
+		log(Level.DEBUG, template, 3, true, a, b, c, null, null, null, null);
+	}
+
+	public static void debug(String template, Object a) {
+		log(Level.DEBUG, template, 1, false, 0, 0, 0, a, null, null, null);
+	}
+
+	public static void debug(String template, Object a, Object b) {
+		log(Level.DEBUG, template, 2, false, 0, 0, 0, a, b, null, null);
+	}
+
+	public static void debug(String template, Object a, Object b, Object c) {
+		log(Level.DEBUG, template, 3, false, 0, 0, 0, a, b, c, null);
+	}
+
+	public static void info(String template) {
+		log(Level.INFO, template, 0, true, 0, 0, 0, null, null, null, null);
+	}
+
+	public static void info(String template, long a) {
+		log(Level.INFO, template, 1, true, a, 0, 0, null, null, null, null);
+	}
+
+	public static void info(String template, long a, long b) {
+		log(Level.INFO, template, 2, true, a, b, 0, null, null, null, null);
+	}
+
+	public static void info(String template, long a, long b, long c) {
+		log(Level.INFO, template, 3, true, a, b, c, null, null, null, null);
+	}
+
+	public static void info(String template, Object a) {
+		log(Level.INFO, template, 1, false, 0, 0, 0, a, null, null, null);
+	}
+
+	public static void info(String template, Object a, Object b) {
+		log(Level.INFO, template, 2, false, 0, 0, 0, a, b, null, null);
+	}
+
+	public static void info(String template, Object a, Object b, Object c) {
+		log(Level.INFO, template, 3, false, 0, 0, 0, a, b, c, null);
+	}
+
+	public static void warn(String template) {
+		log(Level.WARN, template, 0, true, 0, 0, 0, null, null, null, null);
+	}
+
+	public static void warn(String template, long a) {
+		log(Level.WARN, template, 1, true, a, 0, 0, null, null, null, null);
+	}
+
+	public static void warn(String template, long a, long b) {
+		log(Level.WARN, template, 2, true, a, b, 0, null, null, null, null);
+	}
+
+	public static void warn(String template, long a, long b, long c) {
+		log(Level.WARN, template, 3, true, a, b, c, null, null, null, null);
+	}
+
+	public static void warn(String template, Object a) {
+		log(Level.WARN, template, 1, false, 0, 0, 0, a, null, null, null);
+	}
+
+	public static void warn(String template, Object a, Object b) {
+		log(Level.WARN, template, 2, false, 0, 0, 0, a, b, null, null);
+	}
+
+	public static void warn(String template, Object a, Object b, Object c) {
+		log(Level.WARN, template, 3, false, 0, 0, 0, a, b, c, null);
+	}
+
+	public static void error(String template) {
+		log(Level.ERROR, template, 0, true, 0, 0, 0, null, null, null, null);
+	}
+
+	public static void error(String template, long a) {
+		log(Level.ERROR, template, 1, true, a, 0, 0, null, null, null, null);
+	}
+
+	public static void error(String template, long a, long b) {
+		log(Level.ERROR, template, 2, true, a, b, 0, null, null, null, null);
+	}
+
+	public static void error(String template, long a, long b, long c) {
+		log(Level.ERROR, template, 3, true, a, b, c, null, null, null, null);
+	}
+
+	public static void error(String template, Object a) {
+		log(Level.ERROR, template, 1, false, 0, 0, 0, a, null, null, null);
+	}
+
+	public static void error(String template, Object a, Object b) {
+		log(Level.ERROR, template, 2, false, 0, 0, 0, a, b, null, null);
+	}
+
+	public static void error(String template, Object a, Object b, Object c) {
+		log(Level.ERROR, template, 3, false, 0, 0, 0, a, b, c, null);
+	}
+
+	//======== the stack trace follows the message
+	public static void error(String template, Throwable error) {
+		log(Level.ERROR, template, 0, true, 0, 0, 0, null, null, null, error);
+	}
+
+	public static void error(String template, Object a, Throwable error) {
+		log(Level.ERROR, template, 1, false, 0, 0, 0, a, null, null, error);
+	}
+
+	//======== events lost to a full buffer since start
+	public static long getDropped() {
+		return dropped.sum();
+	}
+
+	//======== waits up to timeoutMillis for everything logged before the call to be written; false if it was not
+	public static boolean flush(long timeoutMillis) {
+		long target = claimed.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (written < target) {
+			if (System.nanoTime() - deadline >= 0 || !writer.isAlive()) {
+				return false;
+			}
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(100_000);
+		}
+		return true;
+	}
+
+	private static void log(Level level, String template, int arity, boolean numbers, long n0, long n1, long n2,
+			Object o0, Object o1, Object o2, Throwable error) {
+		if (level.ordinal() < THRESHOLD) {
+			return;
+		}
+		long sequence;
+		long queued;
+		do {
+			sequence = claimed.get();
+			queued = sequence - consumed.get();
+			if (queued >= slots.length) {
+				dropped.increment();
+				return;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+
+		Slot slot = slots[(int) sequence & mask];
+		slot.level = level;
+		slot.timeMillis = System.currentTimeMillis();
+		slot.thread = Thread.currentThread().getName();
+		slot.template = template;
+		slot.arity = arity;
+		slot.numbers = numbers;
+		slot.n0 = n0;
+		slot.n1 = n1;
+		slot.n2 = n2;
+		slot.o0 = o0;
+		slot.o1 = o1;
+		slot.o2 = o2;
+		slot.error = error;
+		//======== the volatile write publishes the fields above to the writer
+		slot.sequence = sequence;
+		//======== a writer dozing between quiet spells is woken before a burst fills the buffer
+		if (queued == slots.length >> 1) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	//======== the writer thread: takes events in sequence order, batching the text until the buffer runs dry, then
+	//======== sleeps a little longer each time it finds nothing new
+	private static void drain() {
+		StringBuilder batch = new StringBuilder(FLUSH_CHARS + 1024);
+		long reportedDrops = 0;
+		long idleNanos = 0;
+		while (true) {
+			long next = consumed.get();
+			Slot slot = slots[(int) next & mask];
+			if (slot.sequence == next) {
+				append(slot, batch);
+				slot.clear();
+				consumed.lazySet(next + 1);
+				idleNanos = 0;
+				if (batch.length() >= FLUSH_CHARS) {
+					write(batch);
+				}
+				continue;
+			}
+			long drops = dropped.sum();
+			if (drops != reportedDrops) {
+				appendPrefix(batch, Level.WARN, System.currentTimeMillis(), writer.getName());
+				batch.append(drops - reportedDrops).append(" events dropped, the log buffer was full").append(LINE_SEPARATOR);
+				reportedDrops = drops;
+			}
+			if (batch.length() > 0) {
+				write(batch);
+			}
+			written = next;
+			idleNanos = Math.min(MAX_IDLE_NANOS, Math.max(MIN_IDLE_NANOS, idleNanos * 2));
+			LockSupport.parkNanos(idleNanos);
+		}
+	}
+
+	private static void append(Slot slot, StringBuilder out) {
+		appendPrefix(out, slot.level, slot.timeMillis, slot.thread);
+		String template = slot.template;
+		int argument = 0;
+		int copied = 0;
+		int brace = template.indexOf('{');
+		while (brace >= 0 && argument < slot.arity) {
+			boolean rands = template.startsWith("{R}", brace);
+			if (rands || template.startsWith("{}", brace)) {
+				out.append(template, copied, brace);
+				appendArgument(slot, argument++, rands, out);
+				copied = brace + (rands ? 3 : 2);
+			}
+			brace = template.indexOf('{', brace + 1);
+		}
+		out.append(template, copied, template.length()).append(LINE_SEPARATOR);
+		if (slot.error != null) {
+			StringWriter trace = new StringWriter();
+			slot.error.printStackTrace(new PrintWriter(trace));
+			out.append(trace);
+		}
+	}
+
+	//======== "2026-01-31 14:05:09.123 INFO  [thread] "
+	private static void appendPrefix(StringBuilder out, Level level, long timeMillis, String thread) {
+		long seconds = Math.floorDiv(timeMillis, 1000);
+		if (seconds != cachedSecond) {
+			cachedSecond = seconds;
+			cachedSecondText = SECONDS.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneId.systemDefault()));
+		}
+		int millis = Math.floorMod(timeMillis, 1000);
+		out.append(cachedSecondText);
+		if (millis < 100) {
+			out.append('0');
+		}
+		if (millis < 10) {
+			out.append('0');
+		}
+		out.append(millis).append(' ').append(level.label).append(" [").append(thread).append("] ");
+	}
+
+	private static void appendArgument(Slot slot, int argument, boolean rands, StringBuilder out) {
+		if (slot.numbers) {
+			long value = argument == 0 ? slot.n0 : argument == 1 ? slot.n1 : slot.n2;
+			if (rands) {
+				Money.appendTo(out.append('R'), value);
+			} else {
+				out.append(value);
+			}
+			return;
+		}
+		Object value = argument == 0 ? slot.o0 : argument == 1 ? slot.o1 : slot.o2;
+		if (rands && value instanceof Number) {
+			Money.appendTo(out.append('R'), ((Number) value).longValue());
+		} else {
+			out.append(value);
+		}
+	}
+
+	private static void write(StringBuilder batch) {
+		try {
+			byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+			if (file != null) {
+				file.write(bytes);
+			} else {
+				//======== looked up each time, so a redirected System.out is honoured
+				System.out.write(bytes, 0, bytes.length);
+				System.out.flush();
+			}
+		} catch (IOException e) {
+			System.err.println("Error writing the event log: " + e.getMessage());
+		}
+		batch.setLength(0);
+	}
+
+	private static OutputStream openFile(String path) {
+		if (path == null || path.isEmpty()) {
+			return null;
+		}
+		try {
+			return Files.newOutputStream(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			System.err.println("Error opening the event log " + path + ", logging to the console: " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static int threshold(String level) {
+		if (level.equalsIgnoreCase("OFF")) {
+			return Integer.MAX_VALUE;
+		}
+		for (Level candidate : Level.values()) {
+			if (candidate.name().equalsIgnoreCase(level)) {
+				return candidate.ordinal();
+			}
+		}
+		return Level.INFO.ordinal();
+	}
+}
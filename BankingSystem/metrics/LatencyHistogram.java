@@ -0,0 +1,130 @@
+package BankingSystem.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//======== lock-free latency histogram in nanoseconds with log-linear buckets, like HdrHistogram's: every power of two
+//======== is split into 16 equal sub-buckets, so any value is known to within 6.25% from 16 ns to 2^62 ns in 960 buckets
+//======== recording is one atomic increment on the caller's stripe; threads are spread over the stripes by thread ID so
+//======== busy threads rarely hit the same counter, and a stripe's copy of a bucket is a whole stripe away from the next
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS - SUB_BUCKETS;
+	private static final int MAX_STRIPES = 16;
+
+	private final AtomicLongArray counts;
+	private final int stripeMask;
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		int stripes = Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+		this.counts = new AtomicLongArray(stripes * BUCKETS);
+		this.stripeMask = stripes - 1;
+	}
+
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		int stripe = (int) Thread.currentThread().getId() & stripeMask;
+		counts.incrementAndGet(stripe * BUCKETS + bucketOf(value));
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	//======== the counts so far; taken without stopping recorders, so it may be a few records behind its own total
+	public Snapshot snapshot() {
+		long[] buckets = new long[BUCKETS];
+		int stripes = stripeMask + 1;
+		for (int stripe = 0; stripe < stripes; stripe++) {
+			int offset = stripe * BUCKETS;
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] += counts.get(offset + i);
+			}
+		}
+		long count = 0;
+		for (long bucket : buckets) {
+			count += bucket;
+		}
+		return new Snapshot(buckets, count, sum.sum(), max.get());
+	}
+
+	//======== values below 16 get a bucket each; above that the top bit picks the power of two and the next four bits
+	//======== the sub-bucket
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+	}
+
+	//======== the largest value that lands in the bucket
+	static long highestIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	//======== a point-in-time copy that percentiles are read from
+	public static final class Snapshot {
+		private final long[] buckets;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(long[] buckets, long count, long sum, long max) {
+			this.buckets = buckets;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		//======== the value at or below which this percentage of the records fall, e.g. 99.0 for p99; reported as the
+		//======== top of its bucket but never above the largest value recorded
+		public long valueAtPercentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank) {
+					return Math.min(highestIn(i), max);
+				}
+			}
+			return max;
+		}
+
+		//======== what was recorded since 'earlier', a snapshot of the same histogram; the maximum is taken from the
+		//======== highest bucket that gained records, since the exact one is not kept per interval
+		public Snapshot minus(Snapshot earlier) {
+			long[] difference = new long[buckets.length];
+			long intervalMax = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				difference[i] = buckets[i] - earlier.buckets[i];
+				if (difference[i] > 0) {
+					intervalMax = Math.min(highestIn(i), max);
+				}
+			}
+			return new Snapshot(difference, count - earlier.count, sum - earlier.sum, intervalMax);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package BankingSystem.metrics;
+
+import BankingSystem.log.EventLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//======== process-wide latency histograms and failure counters for the operations worth watching
+//======== timing a call costs two System.nanoTime() reads and a few uncontended atomic adds; with
+//======== -Dbankforge.metrics=false both start() and the timers do nothing and the JIT drops them
+//======== dump() writes every timer to a text file; a reporter can do that periodically, adding the last interval's
+//======== figures next to the totals since start so a spike is not averaged away
+public final class Metrics {
+	public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("bankforge.metrics", "true"));
+
+	public static final Timer DEPOSIT = new Timer("deposit");
+	public static final Timer WITHDRAW = new Timer("withdraw");
+	public static final Timer TRANSFER = new Timer("transfer");
+	public static final Timer LOGIN = new Timer("login");
+	public static final Timer REGISTRATION = new Timer("registration");
+	//======== operations are held off while a snapshot is captured, the write itself runs in the background
+	public static final Timer SNAPSHOT_CAPTURE = new Timer("snapshot.capture");
+	public static final Timer SNAPSHOT_SAVE = new Timer("snapshot.save");
+	public static final Timer SNAPSHOT_LOAD = new Timer("snapshot.load");
+	public static final Timer JOURNAL_REPLAY = new Timer("journal.replay");
+	//======== a rebuild that had to correct a balance counts as failed
+	public static final Timer LEDGER_REBUILD = new Timer("ledger.rebuild");
+	//======== one write and fsync of a group-commit batch, or one record's write when there is no writer thread
+	public static final Timer JOURNAL_FLUSH = new Timer("journal.flush");
+
+	public static final List<Timer> ALL = List.of(DEPOSIT, WITHDRAW, TRANSFER, LOGIN, REGISTRATION,
+			SNAPSHOT_CAPTURE, SNAPSHOT_SAVE, SNAPSHOT_LOAD, JOURNAL_REPLAY, LEDGER_REBUILD, JOURNAL_FLUSH);
+
+	private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+	private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+
+	private static ScheduledExecutorService reporter;
+	//======== what the reporter saw last time, for the interval figures
+	private static Map<Timer, LatencyHistogram.Snapshot> previous = new HashMap<>();
+	private static Map<Timer, Long> previousFailures = new HashMap<>();
+
+	private Metrics() {
+	}
+
+	//======== a call's histogram plus how many calls did not succeed
+	public static final class Timer {
+		private final String name;
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final LongAdder failures = new LongAdder();
+
+		private Timer(String name) {
+			this.name = name;
+		}
+
+		public void recordSince(long startNanos) {
+			if (ENABLED) {
+				histogram.record(System.nanoTime() - startNanos);
+			}
+		}
+
+		//======== failed calls are timed too, a slow rejection is still a slow call
+		public void recordSince(long startNanos, boolean succeeded) {
+			if (ENABLED) {
+				histogram.record(System.nanoTime() - startNanos);
+				if (!succeeded) {
+					failures.increment();
+				}
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getFailures() {
+			return failures.sum();
+		}
+
+		public LatencyHistogram.Snapshot snapshot() {
+			return histogram.snapshot();
+		}
+	}
+
+	//======== pass the result to a timer's recordSince
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0L;
+	}
+
+	//======== writes every timer's totals since start to the file, replacing it in one step
+	public static void dump(Path file) throws IOException {
+		write(file, report(false));
+	}
+
+	//======== dumps to the file every 'seconds' seconds on a daemon thread, with the interval figures included;
+	//======== replaces a reporter already running
+	public static synchronized void startReporter(Path file, long seconds) {
+		stopReporter();
+		reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "metrics-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(() -> {
+			try {
+				write(file, report(true));
+			} catch (IOException | RuntimeException e) {
+				EventLog.error("Error writing metrics", e);
+			}
+		}, seconds, seconds, TimeUnit.SECONDS);
+	}
+
+	public static synchronized void stopReporter() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+	}
+
+	private static synchronized String report(boolean withInterval) {
+		StringBuilder out = new StringBuilder(4096);
+		out.append("# BankForge metrics at ").append(LocalDateTime.now()).append(", latencies in microseconds\n");
+		appendHeading(out);
+		Map<Timer, LatencyHistogram.Snapshot> current = new HashMap<>();
+		Map<Timer, Long> currentFailures = new HashMap<>();
+		for (Timer timer : ALL) {
+			LatencyHistogram.Snapshot snapshot = timer.snapshot();
+			long failures = timer.getFailures();
+			current.put(timer, snapshot);
+			currentFailures.put(timer, failures);
+			appendRow(out, timer.getName(), snapshot, failures);
+		}
+		if (withInterval) {
+			out.append("\n# since the previous report\n");
+			appendHeading(out);
+			for (Timer timer : ALL) {
+				LatencyHistogram.Snapshot earlier = previous.get(timer);
+				LatencyHistogram.Snapshot snapshot = current.get(timer);
+				appendRow(out, timer.getName(), earlier == null ? snapshot : snapshot.minus(earlier),
+						currentFailures.get(timer) - previousFailures.getOrDefault(timer, 0L));
+			}
+			previous = current;
+			previousFailures = currentFailures;
+		}
+		return out.toString();
+	}
+
+	private static void appendHeading(StringBuilder out) {
+		out.append(String.format("%-18s %12s %10s %12s", "operation", "count", "failed", "mean"));
+		for (String name : PERCENTILE_NAMES) {
+			out.append(String.format(" %12s", name));
+		}
+		out.append(String.format(" %12s%n", "max"));
+	}
+
+	private static void appendRow(StringBuilder out, String name, LatencyHistogram.Snapshot snapshot, long failures) {
+		out.append(String.format("%-18s %12d %10d %12.1f", name, snapshot.getCount(), failures, snapshot.getMean() / 1e3));
+		for (double percentile : PERCENTILES) {
+			out.append(String.format(" %12.1f", snapshot.valueAtPercentile(percentile) / 1e3));
+		}
+		out.append(String.format(" %12.1f%n", snapshot.getMax() / 1e3));
+	}
+
+	private static void write(Path file, String report) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(temp, report.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,144 @@
+package BankingSystem.service;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Money;
+import BankingSystem.TransactionLedger;
+import BankingSystem.log.EventLog;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//======== works every balance out again from its account's ledger, the source of truth; the stored balance is only a
+//======== cached copy of what the entries add up to. Since snapshot version 5 every ledger starts with whatever
+//======== balance its history does not explain (TransactionLedger.OPENING), so the two agree unless one was damaged
+//======== the accounts are taken in account-number order and split into ranges on a fork/join pool, each ledger is
+//======== summed on its own; where a sum disagrees the ledger wins and the account goes into the next snapshot
+//======== with -Dbankforge.balances=ledger BankService.open() runs this before it replays the journal
+public final class BalanceRebuild {
+	public static final boolean ENABLED = "ledger".equals(System.getProperty("bankforge.balances", "snapshot"));
+	public static final int DEFAULT_THREADS = Integer.getInteger("bankforge.rebuild.threads", Runtime.getRuntime().availableProcessors());
+
+	private static final int SLICE_ACCOUNTS = 4096;
+	//======== a damaged snapshot can disagree everywhere, only the first few corrections are logged one by one
+	private static final int LOGGED_CORRECTIONS = 20;
+
+	//======== what one slice did, added up as the slices join
+	static final class Totals {
+		long accounts;
+		long entries;
+		int corrected;
+		long adjustmentCents;
+
+		Totals add(Totals other) {
+			accounts += other.accounts;
+			entries += other.entries;
+			corrected += other.corrected;
+			adjustmentCents += other.adjustmentCents;
+			return this;
+		}
+	}
+
+	private final BankService bank;
+	private final int threads;
+
+	public BalanceRebuild(BankService bank) {
+		this(bank, DEFAULT_THREADS);
+	}
+
+	public BalanceRebuild(BankService bank, int threads) {
+		this.bank = bank;
+		this.threads = Math.max(1, threads);
+	}
+
+	//======== usage: java BankingSystem.service.BalanceRebuild, saves a snapshot when a balance was corrected
+	public static void main(String[] args) throws IOException {
+		try (BankService bank = BankService.open()) {
+			BalanceRebuildResult result = new BalanceRebuild(bank).run();
+			boolean saved = result.getCorrected() == 0 || bank.checkpoint();
+			System.out.println("Rebuilt " + result.getAccounts() + " balances from " + result.getEntries() + " ledger entries in "
+					+ result.getElapsedMillis() + " ms, " + result.getCorrected() + " corrected by " + Money.formatRand(result.getAdjustmentCents())
+					+ (saved ? "." : ", saving failed."));
+		}
+	}
+
+	public BalanceRebuildResult run() {
+		return bank.rebuildBalances(this);
+	}
+
+	//======== called by BankService while no other operation is in flight, with the accounts in account-number order;
+	//======== sets changed[i] for every balance it corrected
+	Totals apply(BankAccount[] accounts, boolean[] changed) {
+		Pass pass = new Pass(accounts, changed);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new Slice(pass, 0, accounts.length));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	//======== what every slice of one run shares
+	private static final class Pass {
+		final BankAccount[] accounts;
+		final boolean[] changed;
+		final AtomicInteger logged = new AtomicInteger();
+
+		Pass(BankAccount[] accounts, boolean[] changed) {
+			this.accounts = accounts;
+			this.changed = changed;
+		}
+	}
+
+	private static final class Slice extends RecursiveTask<Totals> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Pass pass;
+		private final int from;
+		private final int to;
+
+		Slice(Pass pass, int from, int to) {
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Totals compute() {
+			if (to - from > SLICE_ACCOUNTS) {
+				int middle = (from + to) >>> 1;
+				Slice left = new Slice(pass, from, middle);
+				left.fork();
+				Totals right = new Slice(pass, middle, to).compute();
+				return right.add(left.join());
+			}
+			Totals totals = new Totals();
+			for (int i = from; i < to; i++) {
+				if (rebuild(pass.accounts[i], pass, totals)) {
+					pass.changed[i] = true;
+				}
+			}
+			return totals;
+		}
+	}
+
+	//======== returns whether the balance was corrected
+	private static boolean rebuild(BankAccount account, Pass pass, Totals totals) {
+		TransactionLedger ledger = account.getLedger();
+		long balance = ledger.balance();
+		totals.accounts++;
+		totals.entries += ledger.size();
+		long stored = account.getBalance();
+		if (balance == stored) {
+			return false;
+		}
+		account.restoreBalance(balance);
+		totals.corrected++;
+		totals.adjustmentCents += balance - stored;
+		if (pass.logged.getAndIncrement() < LOGGED_CORRECTIONS) {
+			EventLog.warn("Balance of account {} was {R}, its ledger adds up to {R}", account.getAccountNumber(), stored, balance);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,39 @@
+package BankingSystem.service;
+
+//======== how a balance rebuild went: accounts and ledger entries gone through, balances that disagreed with their
+//======== ledger and were corrected, what the corrections added up to in cents, and how long it took
+public class BalanceRebuildResult {
+	private final long accounts;
+	private final long entries;
+	private final int corrected;
+	private final long adjustmentCents;
+	private final long elapsedMillis;
+
+	BalanceRebuildResult(long accounts, long entries, int corrected, long adjustmentCents, long elapsedMillis) {
+		this.accounts = accounts;
+		this.entries = entries;
+		this.corrected = corrected;
+		this.adjustmentCents = adjustmentCents;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public long getAccounts() {
+		return accounts;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	public int getCorrected() {
+		return corrected;
+	}
+
+	public long getAdjustmentCents() {
+		return adjustmentCents;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+}
@@ -0,0 +1,789 @@
+package BankingSystem.service;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+import BankingSystem.Money;
+import BankingSystem.PinHash;
+import BankingSystem.TransactionLedger;
+import BankingSystem.TransferEngine;
+import BankingSystem.data.AccountIndex;
+import BankingSystem.data.AccountStore;
+import BankingSystem.data.CopyOnWriteSnapshot;
+import BankingSystem.data.DataManager;
+import BankingSystem.data.EndOfDayMarker;
+import BankingSystem.data.IdAllocator;
+import BankingSystem.data.TransactionExporter;
+import BankingSystem.data.TransactionJournal;
+import BankingSystem.log.EventLog;
+import BankingSystem.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+//======== the bank without a UI: owns the customer and account stores, the journal and the transfer engine
+//======== safe to call from any number of threads; money moves under per-account locks in TransferEngine,
+//======== while registrations and snapshot captures take the store lock exclusively so they see a quiet, consistent state;
+//======== the snapshot itself is written on a background thread as a copy-on-write view, see CopyOnWriteSnapshot;
+//======== after the first full one, snapshots only hold the accounts changed since the previous one (SnapshotSegments)
+public class BankService implements AutoCloseable {
+	//======== take a snapshot after this many journalled operations
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = Integer.getInteger("bankforge.snapshot.records", 1000);
+	//======== fold the incremental snapshot segments into the base files once this many have piled up
+	public static final int DEFAULT_MERGE_SEGMENTS = Integer.getInteger("bankforge.snapshot.mergeSegments", 8);
+	//======== write the metrics file this often, 0 writes it only on close
+	public static final long METRICS_INTERVAL_SECONDS = Long.getLong("bankforge.metrics.intervalSeconds", 0L);
+	public static final String METRICS_FILE = "metrics.txt";
+
+	private final ArrayList<Customer> customers;
+	private final HashMap<String, BankAccount> accounts;
+	private final AccountIndex accountIndex;
+	private final TransactionJournal journal;
+	private final TransferEngine engine;
+	private final IdAllocator ids;
+	private final int snapshotInterval;
+
+	private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+	private final AtomicBoolean checkpointRunning = new AtomicBoolean();
+	private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "snapshot-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ExecutorService snapshotMerger = Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "snapshot-merger");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+	//======== customers registered since the last snapshot, only used with the write lock held
+	private final ArrayList<Customer> newCustomers = new ArrayList<>();
+	//======== set until a full snapshot exists and whenever an incremental one could not be written
+	private volatile boolean fullSnapshotNeeded = true;
+	private volatile CompletableFuture<Boolean> runningSnapshot = CompletableFuture.completedFuture(true);
+	//======== null when there is none or it could not be written
+	private volatile AccountStore accountStore;
+	//======== the last business date the end-of-day batch ran for, null for none; changed with the write lock held
+	private volatile LocalDate lastBusinessDate;
+	//======== what EndOfDayMarker holds, only used by the snapshot thread once open() returned
+	private LocalDate storedBusinessDate;
+
+	public BankService(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts, TransactionJournal journal, int snapshotInterval) {
+		this(customers, accounts, journal, IdAllocator.openDefault(), snapshotInterval);
+	}
+
+	public BankService(ArrayList<Customer> customers, HashMap<String, BankAccount> accounts, TransactionJournal journal, IdAllocator ids, int snapshotInterval) {
+		this.customers = customers;
+		this.accounts = accounts;
+		this.accountIndex = new AccountIndex(accounts.size());
+		this.accountIndex.rebuild(accounts.values(), accounts.size());
+		this.journal = journal;
+		this.engine = new TransferEngine(journal);
+		this.ids = ids;
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	//======== loads the last snapshot and replays the journal written since
+	public static BankService open() throws IOException {
+		return open(openAccountStore());
+	}
+
+	//======== the account store in the data directory, or null when it is switched off or cannot be opened; the bank
+	//======== works without it
+	public static AccountStore openAccountStore() {
+		if (!AccountStore.ENABLED) {
+			return null;
+		}
+		try {
+			return AccountStore.openDefault();
+		} catch (IOException e) {
+			EventLog.error("Error opening the account store", e);
+			return null;
+		}
+	}
+
+	//======== as open(), then brings the store in line with the loaded accounts and keeps it so; the store can answer
+	//======== logins while this runs (see Main), the caller hands it over and close() closes it
+	public static BankService open(AccountStore store) throws IOException {
+		ArrayList<Customer> customers = new ArrayList<>();
+		HashMap<String, BankAccount> accounts = new HashMap<>();
+		long start = Metrics.start();
+		long snapshotSequence = DataManager.loadAllData(customers, accounts);
+		Metrics.SNAPSHOT_LOAD.recordSince(start);
+
+		TransactionJournal journal = TransactionJournal.openDefault();
+		journal.advanceSequence(snapshotSequence);
+		BankService service = new BankService(customers, accounts, journal, DEFAULT_SNAPSHOT_INTERVAL);
+		service.storedBusinessDate = EndOfDayMarker.read(EndOfDayMarker.defaultPath());
+		service.lastBusinessDate = service.storedBusinessDate;
+		//======== a base from before sealed history is written out in full once, which seals every long ledger
+		service.fullSnapshotNeeded = !DataManager.hasBaseSnapshot() || !DataManager.isBaseCurrent();
+		//======== the journal's operations were applied to the balances the snapshot had, so those are put right first
+		if (BalanceRebuild.ENABLED) {
+			BalanceRebuildResult rebuilt = new BalanceRebuild(service).run();
+			EventLog.info("Rebuilt {} balances from {} ledger entries, {} corrected", rebuilt.getAccounts(), rebuilt.getEntries(), rebuilt.getCorrected());
+		}
+		//======== replayed accounts go into the next incremental snapshot
+		start = Metrics.start();
+		journal.replay(snapshotSequence, service.accountIndex, service.engine::markChanged, service::replayEndOfDay);
+		Metrics.JOURNAL_REPLAY.recordSince(start);
+		if (store != null) {
+			service.attachAccountStore(store);
+		}
+		if (Metrics.ENABLED && METRICS_INTERVAL_SECONDS > 0) {
+			Metrics.startReporter(metricsFile(), METRICS_INTERVAL_SECONDS);
+		}
+		return service;
+	}
+
+	//======== registration
+	public RegistrationResult register(Customer customer, String accountType, String pin) {
+		long start = Metrics.start();
+		//======== hashing needs no lock
+		byte[] pinHash = PinHash.hash(pin);
+		RegistrationResult result;
+		CompletableFuture<Boolean> saved;
+		storeLock.writeLock().lock();
+		try {
+			BankAccount account = addCustomer(customer, accountType, pinHash, LocalDate.now());
+
+			//======== registrations are not journalled, so snapshot straight away
+			saved = startSnapshot();
+			result = new RegistrationResult(customer, account);
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+		//======== the new customer waits for the snapshot, everyone else only waited for its capture
+		Metrics.REGISTRATION.recordSince(start, saved.join());
+		return result;
+	}
+
+	//======== adds validated rows from CustomerImporter under one write lock; nothing is saved until the next
+	//======== snapshot, the importer takes one once the whole file is in
+	void registerBatch(List<CustomerImporter.Row> rows) {
+		if (rows.isEmpty()) {
+			return;
+		}
+		LocalDate opened = LocalDate.now();
+		storeLock.writeLock().lock();
+		try {
+			customers.ensureCapacity(customers.size() + rows.size());
+			for (CustomerImporter.Row row : rows) {
+				addCustomer(row.customer, row.accountType, row.pinHash, opened);
+			}
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+	}
+
+	//======== called with the write lock held
+	private BankAccount addCustomer(Customer customer, String accountType, byte[] pinHash, LocalDate opened) {
+		if (customer.getCustomerID() == null) {
+			customer.assignCustomerID(nextCustomerID());
+		}
+		BankAccount account = BankAccount.restore(accountType, nextAccountNumber(), customer.getFullName(), opened, true, pinHash, 0L, new TransactionLedger());
+		customer.addAccount(account);
+		customers.add(customer);
+		accounts.put(customer.getCustomerID(), account);
+		accountIndex.put(account);
+		putInStore(account);
+		newCustomers.add(customer);
+		engine.markChanged(account);
+		return account;
+	}
+
+	//======== the allocator never repeats a number; the checks only skip numbers that accounts and customers
+	//======== created before it, with random numbers, already hold; called with the write lock held
+	private int nextAccountNumber() {
+		int accountNumber;
+		do {
+			accountNumber = ids.nextAccountNumber();
+		} while (accountIndex.contains(accountNumber));
+		return accountNumber;
+	}
+
+	private String nextCustomerID() {
+		String customerID;
+		do {
+			customerID = ids.nextCustomerID();
+		} while (accounts.containsKey(customerID));
+		return customerID;
+	}
+
+	//======== runs the end-of-day batch for every account and saves it, unless the date is not after the last one done
+	//======== the run's journal record goes first, so a crash before the snapshot is written redoes it on replay, ahead
+	//======== of the operations journalled after it; that is why other operations only wait for the run and the
+	//======== snapshot's capture, not for the snapshot to be written
+	EndOfDayResult endOfDay(EndOfDayBatch batch, LocalDate businessDate) {
+		EndOfDayBatch.Totals totals;
+		CompletableFuture<Void> recorded;
+		CompletableFuture<Boolean> saved;
+		storeLock.writeLock().lock();
+		try {
+			//======== a snapshot still being written reads the accounts, and the batch changes them outside TransferEngine
+			runningSnapshot.join();
+			BankAccount[] all = accounts.values().toArray(new BankAccount[0]);
+			if (lastBusinessDate != null && !businessDate.isAfter(lastBusinessDate)) {
+				return new EndOfDayResult(0, 0, 0, 0, all.length, true);
+			}
+			long timestamp = System.currentTimeMillis();
+			recorded = journal.recordEndOfDay(businessDate, timestamp);
+			//======== the record stands for the whole run, also when the batch fails part way
+			lastBusinessDate = businessDate;
+			boolean[] changed = new boolean[all.length];
+			try {
+				totals = batch.apply(all, businessDate, timestamp, changed);
+			} finally {
+				//======== whatever was done goes into the next snapshot
+				noteBulkChanges(all, changed);
+			}
+			saved = totals.changed == 0 ? CompletableFuture.completedFuture(true) : startSnapshot();
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+		boolean written = saved.join() && isDurable(recorded);
+		return new EndOfDayResult(totals.credited, totals.interestCents, totals.charged, totals.feeCents, 0, written);
+	}
+
+	//======== journal replay, before any operation runs: a run the snapshot missed is done again with the time it was
+	//======== recorded at, and every recorded date counts as done
+	private void replayEndOfDay(LocalDate businessDate, long timestamp, boolean redo) {
+		if (redo) {
+			BankAccount[] all = accounts.values().toArray(new BankAccount[0]);
+			boolean[] changed = new boolean[all.length];
+			try {
+				new EndOfDayBatch(this).apply(all, businessDate, timestamp, changed);
+			} finally {
+				noteBulkChanges(all, changed);
+			}
+		}
+		if (lastBusinessDate == null || businessDate.isAfter(lastBusinessDate)) {
+			lastBusinessDate = businessDate;
+		}
+	}
+
+	//======== a failed write has already been reported by the journal
+	private static boolean isDurable(CompletableFuture<Void> durable) {
+		try {
+			durable.join();
+			return true;
+		} catch (CompletionException e) {
+			return false;
+		}
+	}
+
+	//======== replaces every balance that disagrees with its ledger; corrected accounts go into the next snapshot, which
+	//======== is not waited for, a rerun after a crash finds the same differences again
+	BalanceRebuildResult rebuildBalances(BalanceRebuild rebuild) {
+		long start = Metrics.start();
+		long started = System.nanoTime();
+		storeLock.writeLock().lock();
+		try {
+			//======== a snapshot still being written reads the balances
+			runningSnapshot.join();
+			BankAccount[] all = accounts.values().toArray(new BankAccount[0]);
+			Arrays.sort(all, Comparator.comparingInt(BankAccount::getAccountNumber));
+			boolean[] changed = new boolean[all.length];
+			BalanceRebuild.Totals totals;
+			try {
+				totals = rebuild.apply(all, changed);
+			} finally {
+				noteBulkChanges(all, changed);
+			}
+			Metrics.LEDGER_REBUILD.recordSince(start, totals.corrected == 0);
+			return new BalanceRebuildResult(totals.accounts, totals.entries, totals.corrected, totals.adjustmentCents,
+					(System.nanoTime() - started) / 1_000_000);
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+	}
+
+	//======== for batches that change accounts outside TransferEngine, called with the write lock held: the changed
+	//======== accounts go into the next snapshot, which is a full one when they are most of the book, and into the store
+	private void noteBulkChanges(BankAccount[] all, boolean[] changed) {
+		int count = 0;
+		for (boolean accountChanged : changed) {
+			if (accountChanged) {
+				count++;
+			}
+		}
+		if (count > all.length / 2) {
+			fullSnapshotNeeded = true;
+		} else {
+			for (int i = 0; i < all.length; i++) {
+				if (changed[i]) {
+					engine.markChanged(all[i]);
+				}
+			}
+		}
+		putInStore(all, changed);
+	}
+
+	//======== account store
+	//======== writes every slot that differs from the loaded accounts, then keeps the store up to date; called from open()
+	//======== before any operation runs
+	private void attachAccountStore(AccountStore store) {
+		storeLock.writeLock().lock();
+		try {
+			int written = store.sync(accounts.values(), accounts.size());
+			EventLog.info("Account store checked, {} of {} slots written", written, accounts.size());
+			accountStore = store;
+			engine.setAccountStore(store);
+		} catch (IOException e) {
+			EventLog.error("Error writing the account store, carrying on without it", e);
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+	}
+
+	//======== called with the write lock held
+	private void putInStore(BankAccount[] all, boolean[] changed) {
+		for (int i = 0; i < all.length && accountStore != null; i++) {
+			if (changed[i]) {
+				putInStore(all[i]);
+			}
+		}
+	}
+
+	//======== called with the write lock held; a store that cannot be written is dropped, it is not marked as closed
+	//======== cleanly, so the next start writes it again from the loaded accounts
+	private void putInStore(BankAccount account) {
+		AccountStore store = accountStore;
+		if (store == null) {
+			return;
+		}
+		try {
+			store.put(account);
+		} catch (IOException e) {
+			EventLog.error("Error writing the account store, carrying on without it", e);
+			accountStore = null;
+			engine.setAccountStore(null);
+		}
+	}
+
+	//======== returns the account when the PIN matches, otherwise null
+	public BankAccount authenticate(int accountNumber, String pin) {
+		long start = Metrics.start();
+		BankAccount account = findAccount(accountNumber);
+		boolean matched = account != null && account.validatePin(pin);
+		Metrics.LOGIN.recordSince(start, matched);
+		return matched ? account : null;
+	}
+
+	//======== money movement, timed from the call to the return, waits for locks, the journal and snapshots included
+	public OperationResult deposit(int accountNumber, long amountCents) {
+		long start = Metrics.start();
+		OperationResult result = applyDeposit(accountNumber, amountCents);
+		Metrics.DEPOSIT.recordSince(start, result.isSuccess());
+		return result;
+	}
+
+	public OperationResult withdraw(int accountNumber, long amountCents) {
+		long start = Metrics.start();
+		OperationResult result = applyWithdrawal(accountNumber, amountCents);
+		Metrics.WITHDRAW.recordSince(start, result.isSuccess());
+		return result;
+	}
+
+	public OperationResult transfer(int fromAccountNumber, int toAccountNumber, long amountCents, String description) {
+		long start = Metrics.start();
+		OperationResult result = applyTransfer(fromAccountNumber, toAccountNumber, amountCents, description);
+		Metrics.TRANSFER.recordSince(start, result.isSuccess());
+		return result;
+	}
+
+	//======== journalled like the money operations, so a PIN change survives a restart without waiting for a snapshot
+	public OperationResult changePin(int accountNumber, String oldPin, String newPin) {
+		if (!RegistrationValidator.isValidPin(newPin)) {
+			return OperationResult.failed(OperationResult.Status.INVALID_PIN, "PIN must be exactly 4 digits.");
+		}
+		OperationResult result;
+		storeLock.readLock().lock();
+		try {
+			BankAccount account = accountIndex.get(accountNumber);
+			if (account == null) {
+				return OperationResult.failed(OperationResult.Status.ACCOUNT_NOT_FOUND, "Account " + accountNumber + " was not found.");
+			}
+			result = toOperationResult(engine.changePin(account, oldPin, newPin));
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		checkpointIfDue();
+		return result;
+	}
+
+	private OperationResult applyDeposit(int accountNumber, long amountCents) {
+		if (amountCents <= 0) {
+			return OperationResult.failed(OperationResult.Status.INVALID_AMOUNT, "Amount must be positive.");
+		}
+		OperationResult result;
+		storeLock.readLock().lock();
+		try {
+			BankAccount account = accountIndex.get(accountNumber);
+			if (account == null) {
+				return OperationResult.failed(OperationResult.Status.ACCOUNT_NOT_FOUND, "Account " + accountNumber + " was not found.");
+			}
+			result = toOperationResult(engine.deposit(account, amountCents));
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		checkpointIfDue();
+		return result;
+	}
+
+	private OperationResult applyWithdrawal(int accountNumber, long amountCents) {
+		if (amountCents <= 0) {
+			return OperationResult.failed(OperationResult.Status.INVALID_AMOUNT, "Amount must be positive.");
+		}
+		OperationResult result;
+		storeLock.readLock().lock();
+		try {
+			BankAccount account = accountIndex.get(accountNumber);
+			if (account == null) {
+				return OperationResult.failed(OperationResult.Status.ACCOUNT_NOT_FOUND, "Account " + accountNumber + " was not found.");
+			}
+			result = toOperationResult(engine.withdraw(account, amountCents));
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		checkpointIfDue();
+		return result;
+	}
+
+	private OperationResult applyTransfer(int fromAccountNumber, int toAccountNumber, long amountCents, String description) {
+		if (amountCents <= 0) {
+			return OperationResult.failed(OperationResult.Status.INVALID_AMOUNT, "Transfer amount must be positive.");
+		}
+		if (fromAccountNumber == toAccountNumber) {
+			return OperationResult.failed(OperationResult.Status.SAME_ACCOUNT, "Cannot transfer money to the same account.");
+		}
+
+		OperationResult result;
+		storeLock.readLock().lock();
+		try {
+			BankAccount fromAccount = accountIndex.get(fromAccountNumber);
+			if (fromAccount == null) {
+				return OperationResult.failed(OperationResult.Status.ACCOUNT_NOT_FOUND, "Account " + fromAccountNumber + " was not found.");
+			}
+			BankAccount targetAccount = accountIndex.get(toAccountNumber);
+			if (targetAccount == null) {
+				return OperationResult.failed(OperationResult.Status.ACCOUNT_NOT_FOUND, "Target account not found. Please check the account number.");
+			}
+
+			//======== funds and the target's status are checked by the engine under both accounts' locks
+			result = toOperationResult(engine.transfer(fromAccount, targetAccount, amountCents, description));
+		} catch (RuntimeException e) {
+			return OperationResult.failed(OperationResult.Status.FAILED, "Transfer failed due to an unexpected error: " + e.getMessage());
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		checkpointIfDue();
+		return result;
+	}
+
+	//======== the engine's outcome as the caller sees it; the balance comes from under the account's lock
+	private static OperationResult toOperationResult(TransferEngine.Result done) {
+		switch (done.getOutcome()) {
+			case DONE:
+				return OperationResult.ok(done.getBalance());
+			case INVALID_AMOUNT:
+				return OperationResult.failed(OperationResult.Status.INVALID_AMOUNT, "Amount must be positive.");
+			case INSUFFICIENT_FUNDS:
+				return OperationResult.failed(OperationResult.Status.INSUFFICIENT_FUNDS, "Insufficient funds. Current balance: " + Money.formatRand(done.getBalance()));
+			case ACCOUNT_INACTIVE:
+				return OperationResult.failed(OperationResult.Status.ACCOUNT_INACTIVE, "Target account is inactive. Transfer cannot be completed.");
+			case INVALID_DESCRIPTION:
+				return OperationResult.failed(OperationResult.Status.INVALID_DESCRIPTION,
+						"Description is too long (at most " + TransactionJournal.MAX_DESCRIPTION_BYTES + " bytes).");
+			case INVALID_PIN:
+				return OperationResult.failed(OperationResult.Status.INVALID_PIN, "The current PIN is incorrect.");
+			default:
+				return OperationResult.failed(OperationResult.Status.FAILED,
+						done.getMessage() != null ? done.getMessage() : "Transaction failed. Please try again.");
+		}
+	}
+
+	//======== lookups
+	public BankAccount findAccount(int accountNumber) {
+		storeLock.readLock().lock();
+		try {
+			return accountIndex.get(accountNumber);
+		} finally {
+			storeLock.readLock().unlock();
+		}
+	}
+
+	public BankAccount findAccountForCustomer(String customerID) {
+		storeLock.readLock().lock();
+		try {
+			return accounts.get(customerID);
+		} finally {
+			storeLock.readLock().unlock();
+		}
+	}
+
+	public Customer findCustomerById(String customerID) {
+		storeLock.readLock().lock();
+		try {
+			for (Customer customer : customers) {
+				if (customer.getCustomerID().equals(customerID)) {
+					return customer;
+				}
+			}
+			return null;
+		} finally {
+			storeLock.readLock().unlock();
+		}
+	}
+
+	//======== the customer who owns this account, or null
+	public Customer findCustomerForAccount(BankAccount account) {
+		storeLock.readLock().lock();
+		try {
+			for (Customer customer : customers) {
+				if (accounts.get(customer.getCustomerID()) == account) {
+					return customer;
+				}
+			}
+			return null;
+		} finally {
+			storeLock.readLock().unlock();
+		}
+	}
+
+	//======== case-insensitive name fragment and/or exact phone number, empty criteria match everyone
+	public List<Customer> findMatchingCustomers(String name, String phone) {
+		List<Customer> matches = new ArrayList<>();
+		String nameLower = name.toLowerCase();
+		storeLock.readLock().lock();
+		try {
+			for (Customer customer : customers) {
+				boolean nameMatch = name.isEmpty() || customer.getFullName().toLowerCase().contains(nameLower);
+				boolean phoneMatch = phone.isEmpty() || customer.getPhoneNumber().equals(phone);
+
+				if (nameMatch && phoneMatch) {
+					matches.add(customer);
+				}
+			}
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		return matches;
+	}
+
+	//======== the account's history as it is now, for the history dialog; the view stays the same while operations and the
+	//======== snapshot writer carry on
+	public TransactionLedger.View history(BankAccount account) {
+		return readLocked(account, () -> account.getLedger().view());
+	}
+
+	//======== writes the account's history to a file from a view taken with the balance under the account's lock, so the
+	//======== export is consistent while operations carry on; returns how many entries were written
+	public long exportHistory(BankAccount account, Path target, TransactionExporter.Format format, long fromMillis, long toMillis,
+			TransactionExporter.ProgressListener listener) throws IOException {
+		TransactionExporter.History history = readLocked(account,
+				() -> new TransactionExporter.History(account, account.getBalance(), account.getLedger().view()));
+		return TransactionExporter.export(history, target, format, fromMillis, toMillis, listener);
+	}
+
+	//======== every account in account-number order, for the batch readers in this package; read each one with readLocked
+	BankAccount[] accountsByNumber() {
+		BankAccount[] all;
+		storeLock.readLock().lock();
+		try {
+			all = accounts.values().toArray(new BankAccount[0]);
+		} finally {
+			storeLock.readLock().unlock();
+		}
+		Arrays.sort(all, Comparator.comparingInt(BankAccount::getAccountNumber));
+		return all;
+	}
+
+	//======== reads one account without a write slipping in, e.g. its balance together with a view of its ledger
+	<T> T readLocked(BankAccount account, Supplier<T> read) {
+		return engine.readLocked(account, read);
+	}
+
+	public int getAccountCount() {
+		storeLock.readLock().lock();
+		try {
+			return accountIndex.size();
+		} finally {
+			storeLock.readLock().unlock();
+		}
+	}
+
+	//======== persistence
+	//======== takes a full snapshot and waits until it is on disk
+	public boolean checkpoint() {
+		CompletableFuture<Boolean> saved;
+		storeLock.writeLock().lock();
+		try {
+			saved = startSnapshot();
+		} finally {
+			storeLock.writeLock().unlock();
+		}
+		return saved.join();
+	}
+
+	//======== snapshot once enough journal records have piled up since the last one; only one thread starts it
+	//======== and nobody waits for it to be written
+	private void checkpointIfDue() {
+		if (journal.getRecordsSinceCheckpoint() < snapshotInterval || !runningSnapshot.isDone() || !checkpointRunning.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			storeLock.writeLock().lock();
+			try {
+				if (journal.getRecordsSinceCheckpoint() >= snapshotInterval && runningSnapshot.isDone()) {
+					startSnapshot();
+				}
+			} finally {
+				storeLock.writeLock().unlock();
+			}
+		} finally {
+			checkpointRunning.set(false);
+		}
+	}
+
+	//======== called with the write lock held: rotates the journal and copies the customer and account lists, which
+	//======== is all operations wait for; the snapshot thread then writes the accounts as they were at this point
+	//======== only the accounts changed since the last snapshot are copied, unless a full snapshot is due
+	private CompletableFuture<Boolean> startSnapshot() {
+		long start = Metrics.start();
+		//======== one snapshot at a time, they share the files and the accounts' epochs
+		runningSnapshot.join();
+
+		long journalSequence;
+		try {
+			journalSequence = journal.rotate();
+		} catch (IOException e) {
+			//======== still a valid snapshot, replay skips the records it covers by sequence; but the sequence may
+			//======== already name a segment, so this one has to be full
+			EventLog.error("Error rotating journal", e);
+			journalSequence = journal.getLastSequence();
+			fullSnapshotNeeded = true;
+		}
+		List<BankAccount> changed = engine.nextEpoch();
+		//======== once most accounts changed, rewriting the base is cheaper than a segment plus a merge
+		boolean full = fullSnapshotNeeded || changed.size() > accounts.size() / 2;
+		CopyOnWriteSnapshot snapshot = full
+				? CopyOnWriteSnapshot.full(engine.getEpoch(), journalSequence, customers, accounts)
+				: CopyOnWriteSnapshot.incremental(engine.getEpoch(), journalSequence, newCustomers, changed);
+		newCustomers.clear();
+		fullSnapshotNeeded = false;
+		engine.beginSnapshot(snapshot);
+		LocalDate businessDate = lastBusinessDate;
+		runningSnapshot = CompletableFuture.supplyAsync(() -> writeSnapshot(snapshot, businessDate), snapshotWriter);
+		Metrics.SNAPSHOT_CAPTURE.recordSince(start);
+		return runningSnapshot;
+	}
+
+	//======== 'businessDate' is the last end-of-day run the snapshot contains
+	private boolean writeSnapshot(CopyOnWriteSnapshot snapshot, LocalDate businessDate) {
+		long start = Metrics.start();
+		boolean saved = false;
+		try {
+			saved = DataManager.saveSnapshot(snapshot, engine) && storeBusinessDate(businessDate);
+			if (!saved) {
+				return false;
+			}
+			journal.discardSegments(snapshot.getJournalSequence());
+			if (!snapshot.isFull()) {
+				mergeIfDue();
+			}
+			return true;
+		} catch (RuntimeException e) {
+			EventLog.error("Error writing snapshot", e);
+			return false;
+		} finally {
+			engine.endSnapshot();
+			Metrics.SNAPSHOT_SAVE.recordSince(start, saved);
+			if (!saved) {
+				//======== the changes it held are in no segment, only a full snapshot brings the files up to date again
+				fullSnapshotNeeded = true;
+			}
+		}
+	}
+
+	//======== the marker has to name the date before the journal segment holding its record is deleted
+	private boolean storeBusinessDate(LocalDate businessDate) {
+		if (businessDate == null || businessDate.equals(storedBusinessDate)) {
+			return true;
+		}
+		try {
+			EndOfDayMarker.write(EndOfDayMarker.defaultPath(), businessDate);
+			storedBusinessDate = businessDate;
+			return true;
+		} catch (IOException e) {
+			EventLog.error("Error writing the end-of-day marker", e);
+			return false;
+		}
+	}
+
+	//======== merges run on their own thread so snapshots carry on meanwhile
+	private void mergeIfDue() {
+		if (DataManager.getSnapshotSegmentCount() >= DEFAULT_MERGE_SEGMENTS && mergeScheduled.compareAndSet(false, true)) {
+			snapshotMerger.execute(() -> {
+				try {
+					DataManager.mergeSnapshotSegments();
+				} finally {
+					mergeScheduled.set(false);
+				}
+			});
+		}
+	}
+
+	@Override
+	public void close() {
+		checkpoint();
+		snapshotWriter.shutdown();
+		snapshotMerger.shutdown();
+		try {
+			snapshotMerger.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		journal.close();
+		AccountStore store = accountStore;
+		if (store != null) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				EventLog.error("Error closing the account store", e);
+			}
+		}
+		if (Metrics.ENABLED) {
+			Metrics.stopReporter();
+			dumpMetrics();
+		}
+	}
+
+	//======== writes the metrics file now, e.g. while chasing a slow operation
+	public static boolean dumpMetrics() {
+		try {
+			Metrics.dump(metricsFile());
+			return true;
+		} catch (IOException e) {
+			EventLog.error("Error writing metrics", e);
+			return false;
+		}
+	}
+
+	private static Path metricsFile() {
+		return DataManager.dataFile(METRICS_FILE).toPath();
+	}
+}
@@ -0,0 +1,272 @@
+package BankingSystem.service;
+
+import BankingSystem.Customer;
+import BankingSystem.PinHash;
+import BankingSystem.log.EventLog;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//======== registers customers in bulk from a CSV file, one account each
+//======== the file is read in chunks; worker threads parse and validate the rows (RegistrationValidator) and hash the
+//======== PINs, then the chunks are added to BankService in file order, each under one write lock; a single snapshot
+//======== saves everything at the end. Rows that fail are written with their line number and reason to a rejects file
+//======== columns are those in COLUMNS, an optional header row with the same names is skipped; fields may be quoted
+//======== but not span lines
+public final class CustomerImporter {
+	public static final String[] COLUMNS = {"firstName", "lastName", "gender", "phone", "idNumber", "email", "dateOfBirth",
+			"nationality", "streetAddress", "city", "postalCode", "country", "occupation", "employerName", "monthlyIncome",
+			"accountType", "pin"};
+	public static final int DEFAULT_THREADS = Integer.getInteger("bankforge.import.threads", Runtime.getRuntime().availableProcessors());
+
+	private static final int CHUNK_ROWS = 4096;
+	//======== columns with few distinct values; rows in a chunk share one String per value, which keeps a large
+	//======== import from holding millions of copies of "South Africa" and keeps garbage collection short
+	private static final int[] SHARED_COLUMNS = {2, 7, 9, 11, 12, 13, 15};
+
+	//======== a row that passed validation, ready to be added to the stores
+	static final class Row {
+		final Customer customer;
+		final String accountType;
+		final byte[] pinHash;
+
+		Row(Customer customer, String accountType, byte[] pinHash) {
+			this.customer = customer;
+			this.accountType = accountType;
+			this.pinHash = pinHash;
+		}
+	}
+
+	//======== what the workers made of one chunk of lines
+	private static final class Chunk {
+		final List<Row> rows = new ArrayList<>();
+		final StringBuilder rejects = new StringBuilder();
+		int rejected;
+	}
+
+	private final BankService bank;
+	private final int threads;
+
+	public CustomerImporter(BankService bank) {
+		this(bank, DEFAULT_THREADS);
+	}
+
+	public CustomerImporter(BankService bank, int threads) {
+		this.bank = bank;
+		this.threads = Math.max(1, threads);
+	}
+
+	//======== usage: java BankingSystem.service.CustomerImporter customers.csv [rejects.csv]
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: CustomerImporter <customers.csv> [rejects.csv]");
+			return;
+		}
+		Path csv = Paths.get(args[0]);
+		Path rejects = args.length > 1 ? Paths.get(args[1]) : Paths.get(args[0] + ".rejects.csv");
+		try (BankService bank = BankService.open()) {
+			ImportResult result = new CustomerImporter(bank).importCsv(csv, rejects);
+			System.out.println("Imported " + result.getImported() + " customers, rejected " + result.getRejected() + " rows (see " + rejects + ").");
+		}
+	}
+
+	public ImportResult importCsv(Path csv, Path rejectsFile) throws IOException {
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "customer-import-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		int imported = 0;
+		int rejected = 0;
+		try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+				BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+			rejects.write("line,reason,row");
+			rejects.newLine();
+
+			//======== at most two chunks per worker in flight, so memory stays bounded however large the file is
+			ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+			long lineNumber = 0;
+			String line = in.readLine();
+			if (line != null && isHeader(line)) {
+				lineNumber++;
+				line = in.readLine();
+			}
+			while (line != null) {
+				List<String> lines = new ArrayList<>(CHUNK_ROWS);
+				long firstLine = lineNumber + 1;
+				while (line != null && lines.size() < CHUNK_ROWS) {
+					lines.add(line);
+					lineNumber++;
+					line = in.readLine();
+				}
+				inFlight.add(workers.submit(() -> validate(firstLine, lines)));
+				if (inFlight.size() >= threads * 2) {
+					Chunk chunk = await(inFlight.poll());
+					imported += add(chunk, rejects);
+					rejected += chunk.rejected;
+				}
+			}
+			while (!inFlight.isEmpty()) {
+				Chunk chunk = await(inFlight.poll());
+				imported += add(chunk, rejects);
+				rejected += chunk.rejected;
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+
+		//======== registrations are not journalled, this snapshot is what makes the import durable
+		boolean saved = imported == 0 || bank.checkpoint();
+		if (saved) {
+			EventLog.info("Customer import: {} imported, {} rejected", imported, rejected);
+		} else {
+			EventLog.error("Customer import: {} imported, {} rejected, saving failed", imported, rejected);
+		}
+		return new ImportResult(imported, rejected, saved);
+	}
+
+	private int add(Chunk chunk, BufferedWriter rejects) throws IOException {
+		bank.registerBatch(chunk.rows);
+		rejects.append(chunk.rejects);
+		return chunk.rows.size();
+	}
+
+	private static Chunk await(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Customer import interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException("Customer import failed: " + e.getCause(), e.getCause());
+		}
+	}
+
+	//======== runs on a worker thread
+	private static Chunk validate(long firstLine, List<String> lines) {
+		Chunk chunk = new Chunk();
+		List<String> fields = new ArrayList<>(COLUMNS.length);
+		HashMap<String, String> shared = new HashMap<>();
+		for (int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i);
+			if (line.isBlank()) {
+				continue;
+			}
+			String error = parse(line, fields);
+			if (error == null && fields.size() != COLUMNS.length) {
+				error = "Expected " + COLUMNS.length + " columns, found " + fields.size() + ".";
+			}
+			if (error == null) {
+				error = RegistrationValidator.validate(fields.get(0), fields.get(1), fields.get(2), fields.get(6), fields.get(4),
+						fields.get(3), fields.get(5), fields.get(7), fields.get(8), fields.get(9), fields.get(10), fields.get(11),
+						fields.get(12), fields.get(13), fields.get(14), fields.get(15), fields.get(16), fields.get(16));
+			}
+			if (error != null) {
+				chunk.rejected++;
+				chunk.rejects.append(firstLine + i).append(',');
+				appendQuoted(chunk.rejects, error);
+				chunk.rejects.append(',').append(line).append(System.lineSeparator());
+				continue;
+			}
+			for (int column : SHARED_COLUMNS) {
+				String value = fields.get(column);
+				String existing = shared.putIfAbsent(value, value);
+				if (existing != null) {
+					fields.set(column, existing);
+				}
+			}
+			String email = fields.get(5);
+			Customer customer = new Customer(fields.get(0), fields.get(1), fields.get(2), fields.get(3), fields.get(4),
+					email.isEmpty() ? null : email, RegistrationValidator.parseDate(fields.get(6)), fields.get(7), fields.get(8),
+					fields.get(9), RegistrationValidator.parsePostalCode(fields.get(10)), fields.get(11), fields.get(12),
+					fields.get(13), RegistrationValidator.parseIncome(fields.get(14)));
+			chunk.rows.add(new Row(customer, fields.get(15), PinHash.hash(fields.get(16))));
+		}
+		return chunk;
+	}
+
+	//======== splits one CSV line into trimmed fields, returns an error message for a malformed line
+	static String parse(String line, List<String> fields) {
+		fields.clear();
+		StringBuilder field = new StringBuilder();
+		int i = 0;
+		int length = line.length();
+		while (true) {
+			field.setLength(0);
+			//======== skip spaces before a quoted field
+			int start = i;
+			while (i < length && line.charAt(i) == ' ') {
+				i++;
+			}
+			if (i < length && line.charAt(i) == '"') {
+				i++;
+				while (true) {
+					if (i >= length) {
+						return "Unterminated quoted field.";
+					}
+					char c = line.charAt(i++);
+					if (c == '"') {
+						if (i < length && line.charAt(i) == '"') {
+							field.append('"');
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						field.append(c);
+					}
+				}
+				while (i < length && line.charAt(i) != ',') {
+					if (line.charAt(i++) != ' ') {
+						return "Unexpected text after a quoted field.";
+					}
+				}
+				fields.add(field.toString().trim());
+			} else {
+				i = start;
+				int comma = line.indexOf(',', i);
+				int end = comma < 0 ? length : comma;
+				fields.add(line.substring(i, end).trim());
+				i = end;
+			}
+			if (i >= length) {
+				return null;
+			}
+			//======== on the comma
+			i++;
+		}
+	}
+
+	private static boolean isHeader(String line) {
+		List<String> fields = new ArrayList<>(COLUMNS.length);
+		return parse(line, fields) == null && !fields.isEmpty() && fields.get(0).equalsIgnoreCase(COLUMNS[0]);
+	}
+
+	private static void appendQuoted(StringBuilder out, String value) {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				out.append('"');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+}
@@ -0,0 +1,163 @@
+package BankingSystem.service;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Money;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//======== end-of-day interest and fees for every account, by account type (EndOfDayRule)
+//======== the accounts are split into slices on a fork/join pool; entries go straight into the ledgers without a
+//======== journal record each, and one snapshot saves the whole run at the end
+//======== a single journal record for the run comes first, so after a crash replay runs it again at the same point,
+//======== with the same timestamp and the default rules; the business date it carries is then kept in EndOfDayMarker
+//======== a run for a date that is not after the last one done changes nothing
+public final class EndOfDayBatch {
+	public static final int DEFAULT_THREADS = Integer.getInteger("bankforge.endOfDay.threads", Runtime.getRuntime().availableProcessors());
+	public static final Map<String, EndOfDayRule> DEFAULT_RULES = Map.of(
+			"Savings", EndOfDayRule.interest(350),
+			"Current", EndOfDayRule.fee(15),
+			"Fixed Deposit", EndOfDayRule.interest(750),
+			"Student Account", EndOfDayRule.interest(100),
+			"Business Account", EndOfDayRule.of(150, 50));
+
+	private static final int SLICE_ACCOUNTS = 4096;
+
+	//======== what one slice did, added up as the slices join
+	static final class Totals {
+		long credited;
+		long interestCents;
+		long charged;
+		long feeCents;
+		int changed;
+
+		Totals add(Totals other) {
+			credited += other.credited;
+			interestCents += other.interestCents;
+			charged += other.charged;
+			feeCents += other.feeCents;
+			changed += other.changed;
+			return this;
+		}
+	}
+
+	private final BankService bank;
+	private final Map<String, EndOfDayRule> rules;
+	private final int threads;
+
+	public EndOfDayBatch(BankService bank) {
+		this(bank, DEFAULT_RULES, DEFAULT_THREADS);
+	}
+
+	//======== account types without a rule are left alone
+	public EndOfDayBatch(BankService bank, Map<String, EndOfDayRule> rules, int threads) {
+		this.bank = bank;
+		this.rules = Map.copyOf(rules);
+		this.threads = Math.max(1, threads);
+	}
+
+	//======== usage: java BankingSystem.service.EndOfDayBatch [yyyy-MM-dd], the date defaults to today
+	public static void main(String[] args) throws IOException {
+		LocalDate businessDate = args.length > 0 ? LocalDate.parse(args[0]) : LocalDate.now();
+		try (BankService bank = BankService.open()) {
+			EndOfDayResult result = new EndOfDayBatch(bank).run(businessDate);
+			System.out.println("End of day " + businessDate + ": interest " + Money.formatRand(result.getInterestCents()) + " to "
+					+ result.getCredited() + " accounts, fees " + Money.formatRand(result.getFeeCents()) + " from " + result.getCharged()
+					+ " accounts, " + result.getAlreadyDone() + " already done" + (result.isSaved() ? "." : ", saving failed."));
+		}
+	}
+
+	//======== safe to call again for the same date, after a failure or a crash; a date already done is skipped
+	public EndOfDayResult run(LocalDate businessDate) {
+		if (businessDate.isAfter(LocalDate.now())) {
+			throw new IllegalArgumentException("The business date " + businessDate + " has not started yet.");
+		}
+		return bank.endOfDay(this, businessDate);
+	}
+
+	//======== called by BankService while no other operation is in flight, live or from journal replay; every entry is
+	//======== stamped with 'timestamp'; sets changed[i] for every account it touched, also for the slices that
+	//======== finished when another one throws
+	Totals apply(BankAccount[] accounts, LocalDate businessDate, long timestamp, boolean[] changed) {
+		Pass pass = new Pass(accounts, changed, "End of day " + businessDate, timestamp);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.invoke(new Slice(pass, 0, accounts.length));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	//======== what every slice of one run shares
+	private static final class Pass {
+		final BankAccount[] accounts;
+		final boolean[] changed;
+		final String description;
+		final long timestamp;
+
+		Pass(BankAccount[] accounts, boolean[] changed, String description, long timestamp) {
+			this.accounts = accounts;
+			this.changed = changed;
+			this.description = description;
+			this.timestamp = timestamp;
+		}
+	}
+
+	private final class Slice extends RecursiveTask<Totals> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient Pass pass;
+		private final int from;
+		private final int to;
+
+		Slice(Pass pass, int from, int to) {
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Totals compute() {
+			if (to - from > SLICE_ACCOUNTS) {
+				int middle = (from + to) >>> 1;
+				Slice left = new Slice(pass, from, middle);
+				left.fork();
+				Totals right = new Slice(pass, middle, to).compute();
+				return right.add(left.join());
+			}
+			Totals totals = new Totals();
+			for (int i = from; i < to; i++) {
+				if (apply(pass.accounts[i], pass, totals)) {
+					pass.changed[i] = true;
+					totals.changed++;
+				}
+			}
+			return totals;
+		}
+	}
+
+	//======== returns whether the account changed
+	private boolean apply(BankAccount account, Pass pass, Totals totals) {
+		EndOfDayRule rule = rules.get(account.getAccountType());
+		if (rule == null || !account.isActive()) {
+			return false;
+		}
+		boolean changed = false;
+		long interest = rule.interestFor(account.getBalance());
+		if (account.creditInterest(interest, pass.timestamp, pass.description)) {
+			totals.credited++;
+			totals.interestCents += interest;
+			changed = true;
+		}
+		long fee = account.chargeFee(rule.getDailyFeeCents(), pass.timestamp, pass.description);
+		if (fee > 0) {
+			totals.charged++;
+			totals.feeCents += fee;
+			changed = true;
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,45 @@
+package BankingSystem.service;
+
+//======== how an end-of-day run went: accounts credited and charged with their totals in cents, accounts skipped
+//======== because an earlier run already did that date, and whether the run is on disk
+public class EndOfDayResult {
+	private final long credited;
+	private final long interestCents;
+	private final long charged;
+	private final long feeCents;
+	private final long alreadyDone;
+	private final boolean saved;
+
+	EndOfDayResult(long credited, long interestCents, long charged, long feeCents, long alreadyDone, boolean saved) {
+		this.credited = credited;
+		this.interestCents = interestCents;
+		this.charged = charged;
+		this.feeCents = feeCents;
+		this.alreadyDone = alreadyDone;
+		this.saved = saved;
+	}
+
+	public long getCredited() {
+		return credited;
+	}
+
+	public long getInterestCents() {
+		return interestCents;
+	}
+
+	public long getCharged() {
+		return charged;
+	}
+
+	public long getFeeCents() {
+		return feeCents;
+	}
+
+	public long getAlreadyDone() {
+		return alreadyDone;
+	}
+
+	public boolean isSaved() {
+		return saved;
+	}
+}
@@ -0,0 +1,56 @@
+package BankingSystem.service;
+
+//======== what the end-of-day batch does to one account type: daily interest at an annual rate, a daily fee, or both
+//======== interest is worked out on the balance at the end of the day and the fee is charged after it
+public final class EndOfDayRule {
+	private static final long BASIS_POINTS = 10_000;
+	private static final long DAYS_PER_YEAR = 365;
+	private static final long DIVISOR = BASIS_POINTS * DAYS_PER_YEAR;
+
+	private final int annualRateBasisPoints;
+	private final long dailyFeeCents;
+
+	private EndOfDayRule(int annualRateBasisPoints, long dailyFeeCents) {
+		if (annualRateBasisPoints < 0 || dailyFeeCents < 0) {
+			throw new IllegalArgumentException("Rates and fees cannot be negative.");
+		}
+		this.annualRateBasisPoints = annualRateBasisPoints;
+		this.dailyFeeCents = dailyFeeCents;
+	}
+
+	//======== 350 basis points is 3.5% a year
+	public static EndOfDayRule interest(int annualRateBasisPoints) {
+		return new EndOfDayRule(annualRateBasisPoints, 0);
+	}
+
+	public static EndOfDayRule fee(long dailyFeeCents) {
+		return new EndOfDayRule(0, dailyFeeCents);
+	}
+
+	public static EndOfDayRule of(int annualRateBasisPoints, long dailyFeeCents) {
+		return new EndOfDayRule(annualRateBasisPoints, dailyFeeCents);
+	}
+
+	//======== one day's interest on a balance in cents, rounded half up to the cent; split so it cannot overflow
+	public long interestFor(long balanceCents) {
+		if (balanceCents <= 0 || annualRateBasisPoints == 0) {
+			return 0;
+		}
+		long whole = balanceCents / DIVISOR;
+		long rest = balanceCents % DIVISOR;
+		return whole * annualRateBasisPoints + (rest * annualRateBasisPoints + DIVISOR / 2) / DIVISOR;
+	}
+
+	public int getAnnualRateBasisPoints() {
+		return annualRateBasisPoints;
+	}
+
+	public long getDailyFeeCents() {
+		return dailyFeeCents;
+	}
+
+	@Override
+	public String toString() {
+		return annualRateBasisPoints + " bp a year, " + dailyFeeCents + " cents a day";
+	}
+}
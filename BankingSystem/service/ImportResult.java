@@ -0,0 +1,26 @@
+package BankingSystem.service;
+
+//======== how a bulk import went: rows added, rows written to the rejects file, and whether the final snapshot was saved
+public class ImportResult {
+	private final int imported;
+	private final int rejected;
+	private final boolean saved;
+
+	ImportResult(int imported, int rejected, boolean saved) {
+		this.imported = imported;
+		this.rejected = rejected;
+		this.saved = saved;
+	}
+
+	public int getImported() {
+		return imported;
+	}
+
+	public int getRejected() {
+		return rejected;
+	}
+
+	public boolean isSaved() {
+		return saved;
+	}
+}
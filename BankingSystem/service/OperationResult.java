@@ -0,0 +1,52 @@
+package BankingSystem.service;
+
+//======== outcome of a deposit, withdrawal or transfer
+public class OperationResult {
+	public enum Status {
+		OK,
+		INVALID_AMOUNT,
+		INSUFFICIENT_FUNDS,
+		ACCOUNT_NOT_FOUND,
+		ACCOUNT_INACTIVE,
+		SAME_ACCOUNT,
+		INVALID_DESCRIPTION,
+		INVALID_PIN,
+		FAILED
+	}
+
+	private final Status status;
+	private final String message;
+	private final long balanceCents;
+
+	private OperationResult(Status status, String message, long balanceCents) {
+		this.status = status;
+		this.message = message;
+		this.balanceCents = balanceCents;
+	}
+
+	static OperationResult ok(long balanceCents) {
+		return new OperationResult(Status.OK, null, balanceCents);
+	}
+
+	static OperationResult failed(Status status, String message) {
+		return new OperationResult(status, message, 0);
+	}
+
+	public boolean isSuccess() {
+		return status == Status.OK;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	//======== user-facing reason, null on success
+	public String getMessage() {
+		return message;
+	}
+
+	//======== balance of the account the operation was made from, right after it was applied
+	public long getBalance() {
+		return balanceCents;
+	}
+}
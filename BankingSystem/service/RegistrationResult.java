@@ -0,0 +1,23 @@
+package BankingSystem.service;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Customer;
+
+//======== the customer and the account created for them
+public class RegistrationResult {
+	private final Customer customer;
+	private final BankAccount account;
+
+	RegistrationResult(Customer customer, BankAccount account) {
+		this.customer = customer;
+		this.account = account;
+	}
+
+	public Customer getCustomer() {
+		return customer;
+	}
+
+	public BankAccount getAccount() {
+		return account;
+	}
+}
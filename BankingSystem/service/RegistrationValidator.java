@@ -0,0 +1,191 @@
+package BankingSystem.service;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Pattern;
+
+//======== the rules a new customer's details must meet, shared by the registration form and the bulk importer
+//======== stateless and thread-safe; the simple formats are checked by hand, which is several times faster than the
+//======== equivalent regular expressions (kept next to each check) and matters when a bulk import validates millions of rows
+public final class RegistrationValidator {
+	//======== AccountStore keeps a type as its position here, so new types are only ever appended
+	public static final List<String> ACCOUNT_TYPES = List.of("Savings", "Current", "Fixed Deposit", "Student Account", "Business Account");
+
+	private static final Pattern PHONE = Pattern.compile("^(\\+\\d{1,3}( )?)?((\\(\\d{3}\\))|\\d{3})[- .]?\\d{3}[- .]?\\d{4}$");
+
+	private RegistrationValidator() {
+	}
+
+	//======== returns null when the details are valid, otherwise the message to show the user
+	//======== email is optional, pass an empty string when it was left out
+	public static String validate(String fName, String lName, String gender, String dof, String idNumber, String phone, String email, String nationality, String streetAddress, String city, String postalCode, String country, String occupation, String employerName, String monthlyIncome, String accountType, String pin, String confirmPin) {
+		if (isEmpty(fName) || isEmpty(lName) || isEmpty(gender) || isEmpty(dof) || isEmpty(idNumber) || isEmpty(phone) || isEmpty(nationality) || isEmpty(streetAddress) || isEmpty(city) || isEmpty(postalCode) || isEmpty(country) || isEmpty(occupation) || isEmpty(employerName) || isEmpty(monthlyIncome) || isEmpty(accountType) || isEmpty(pin) || isEmpty(confirmPin)) {
+			return "Please fill in all required fields (marked with *).";
+		}
+
+		//======== date of birth validation, the pattern alone lets through dates like 1990-02-30
+		if (parseDate(dof) == null) {
+			return "Date of birth must be of format yyyy-MM-dd.";
+		}
+
+		//======== id number validation
+		if (!isDigits(idNumber, 13)) {
+			return "ID must be exactly 13 digits.";
+		}
+
+		//======== phone number validation
+		if (!PHONE.matcher(phone).matches()) {
+			return "Phone number must be exactly 10 digits.";
+		}
+
+		//======== email validation (only if not empty)
+		if (email != null && !email.isEmpty() && !isEmail(email)) {
+			return "Please enter a valid email address.";
+		}
+
+		if (parsePostalCode(postalCode) < 0) {
+			return "Postal code must be a number.";
+		}
+
+		if (Double.isNaN(parseIncome(monthlyIncome))) {
+			return "Monthly income must be a number of zero or more.";
+		}
+
+		if (!ACCOUNT_TYPES.contains(accountType)) {
+			return "Account type must be one of " + String.join(", ", ACCOUNT_TYPES) + ".";
+		}
+
+		if (!isValidPin(pin)) {
+			return "PIN must be exactly 4 digits.";
+		}
+
+		if (!pin.equals(confirmPin)) {
+			return "PINs do not match. Please try again.";
+		}
+
+		return null;
+	}
+
+	//======== the date of birth as entered (single-digit months and days allowed), or null when it is not a valid date
+	//======== same as ^((19|20)\d\d)-(0?[1-9]|1[012])-(0?[1-9]|[12][0-9]|3[01])$ followed by a calendar check
+	public static LocalDate parseDate(String dof) {
+		if (dof == null || dof.length() < 8 || dof.length() > 10 || dof.charAt(4) != '-') {
+			return null;
+		}
+		int second = dof.indexOf('-', 5);
+		if (second < 6 || second > 7 || dof.length() - second - 1 < 1 || dof.length() - second - 1 > 2) {
+			return null;
+		}
+		int year = parseDigits(dof, 0, 4);
+		int month = parseDigits(dof, 5, second);
+		int day = parseDigits(dof, second + 1, dof.length());
+		if (year < 1900 || year > 2099 || month < 1 || month > 12 || day < 1 || day > 31) {
+			return null;
+		}
+		try {
+			return LocalDate.of(year, month, day);
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	//======== -1 when it is not a non-negative whole number
+	public static int parsePostalCode(String postalCode) {
+		try {
+			int code = Integer.parseInt(postalCode);
+			return code < 0 ? -1 : code;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	//======== NaN when it is not a non-negative number
+	public static double parseIncome(String monthlyIncome) {
+		try {
+			double income = Double.parseDouble(monthlyIncome);
+			return income >= 0 && !Double.isInfinite(income) ? income : Double.NaN;
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	public static boolean isValidPin(String pin) {
+		return pin != null && isDigits(pin, 4);
+	}
+
+	private static boolean isEmpty(String value) {
+		return value == null || value.isEmpty();
+	}
+
+	//======== \d{length}
+	private static boolean isDigits(String value, int length) {
+		if (value.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//======== the value of the ASCII digits in [from, to), -1 if any other character is there; for short runs only
+	private static int parseDigits(String value, int from, int to) {
+		int result = 0;
+		for (int i = from; i < to; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	//======== same as ^[a-zA-Z0-9_+&*-]+(?:\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\.)+[a-zA-Z]{2,7}$
+	//======== a local part of dot-separated words, one @, then at least one domain label and a 2 to 7 letter top-level domain
+	private static boolean isEmail(String email) {
+		int at = email.indexOf('@');
+		if (at <= 0 || email.charAt(at - 1) == '.') {
+			return false;
+		}
+		char previous = '.';
+		for (int i = 0; i < at; i++) {
+			char c = email.charAt(i);
+			if (c == '.' ? previous == '.' : !(isAsciiLetterOrDigit(c) || c == '_' || c == '+' || c == '&' || c == '*' || c == '-')) {
+				return false;
+			}
+			previous = c;
+		}
+		int lastDot = email.lastIndexOf('.');
+		int topLevel = email.length() - lastDot - 1;
+		if (lastDot <= at + 1 || topLevel < 2 || topLevel > 7) {
+			return false;
+		}
+		previous = '.';
+		for (int i = at + 1; i < lastDot; i++) {
+			char c = email.charAt(i);
+			if (c == '.' ? previous == '.' : !(isAsciiLetterOrDigit(c) || c == '-')) {
+				return false;
+			}
+			previous = c;
+		}
+		if (previous == '.') {
+			return false;
+		}
+		for (int i = lastDot + 1; i < email.length(); i++) {
+			char c = email.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isAsciiLetterOrDigit(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+}
@@ -0,0 +1,325 @@
+package BankingSystem.service;
+
+import BankingSystem.BankAccount;
+import BankingSystem.Money;
+import BankingSystem.TransactionLedger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+//======== monthly statements for every account, rendered on worker threads
+//======== accounts are handed out in chunks in account-number order; each statement is read from a ledger view taken
+//======== together with the balance under the account's lock, so it is consistent while operations carry on
+//======== statements go to one text file per account, or into one gzip archive: each worker compresses its chunk as a
+//======== gzip member of its own and the members are appended in order (concatenated members are one valid gzip
+//======== file), so compression runs in parallel too. At most two chunks per worker are in flight, which bounds memory
+public final class StatementGenerator {
+	public static final int DEFAULT_THREADS = Integer.getInteger("bankforge.statements.threads", Runtime.getRuntime().availableProcessors());
+
+	private static final int CHUNK_ACCOUNTS = 256;
+	private static final int ACCOUNTS_PER_DIRECTORY = 1000;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public enum Output {
+		FILES,   //===== <target>/<account number / 1000>/<account number>-<yyyy-MM>.txt
+		ARCHIVE  //===== every statement in the gzip file <target>, each one ending with a form feed
+	}
+
+	//======== the month being reported, shared by every chunk
+	private static final class Period {
+		final ZoneId zone;
+		final long from;
+		final long to;
+		final String heading;
+		final String fileSuffix;
+
+		Period(YearMonth month, ZoneId zone) {
+			this.zone = zone;
+			this.from = month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+			this.to = month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+			this.heading = "Period: " + month.atDay(1) + " to " + month.atEndOfMonth();
+			this.fileSuffix = "-" + month + ".txt";
+		}
+	}
+
+	//======== the balance and the ledger as they were at one moment
+	private static final class Captured {
+		final long balance;
+		final TransactionLedger.View ledger;
+
+		Captured(long balance, TransactionLedger.View ledger) {
+			this.balance = balance;
+			this.ledger = ledger;
+		}
+	}
+
+	//======== statements are repetitive text, the fastest level compresses them nearly as well as the default at a few
+	//======== times the speed
+	private static final class FastGzip extends GZIPOutputStream {
+		FastGzip(OutputStream out) throws IOException {
+			super(out, BUFFER_SIZE);
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+	}
+
+	//======== what a worker made of one chunk of accounts
+	private static final class Chunk {
+		long statements;
+		long entries;
+		long bytes;
+		byte[] archived;
+	}
+
+	private final BankService bank;
+	private final int threads;
+
+	public StatementGenerator(BankService bank) {
+		this(bank, DEFAULT_THREADS);
+	}
+
+	public StatementGenerator(BankService bank, int threads) {
+		this.bank = bank;
+		this.threads = Math.max(1, threads);
+	}
+
+	//======== usage: java BankingSystem.service.StatementGenerator <yyyy-MM> <target> [files|archive]
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: StatementGenerator <yyyy-MM> <target directory or .gz file> [files|archive]");
+			return;
+		}
+		YearMonth month = YearMonth.parse(args[0]);
+		Path target = Paths.get(args[1]);
+		Output output = args.length > 2 ? Output.valueOf(args[2].toUpperCase()) : Output.FILES;
+		try (BankService bank = BankService.open()) {
+			StatementResult result = new StatementGenerator(bank).generate(month, target, output);
+			System.out.println("Wrote " + result.getStatements() + " statements with " + result.getEntries() + " entries for " + month + " to " + target + ".");
+		}
+	}
+
+	public StatementResult generate(YearMonth month, Path target, Output output) throws IOException {
+		Period period = new Period(month, ZoneId.systemDefault());
+		BankAccount[] accounts = bank.accountsByNumber();
+		AtomicInteger threadNumber = new AtomicInteger();
+		ExecutorService workers = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "statement-writer-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		Chunk totals = new Chunk();
+		if (output == Output.FILES) {
+			Files.createDirectories(target);
+		}
+		try (FileChannel archive = output == Output.ARCHIVE
+				? FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+				: null) {
+			ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+			for (int first = 0; first < accounts.length; first += CHUNK_ACCOUNTS) {
+				int from = first;
+				int to = Math.min(first + CHUNK_ACCOUNTS, accounts.length);
+				inFlight.add(workers.submit(() -> render(accounts, from, to, period, target, output)));
+				if (inFlight.size() >= threads * 2) {
+					add(totals, await(inFlight.poll()), archive);
+				}
+			}
+			while (!inFlight.isEmpty()) {
+				add(totals, await(inFlight.poll()), archive);
+			}
+			if (archive != null) {
+				archive.force(false);
+			}
+		} finally {
+			workers.shutdownNow();
+		}
+		return new StatementResult(totals.statements, totals.entries, totals.bytes);
+	}
+
+	//======== chunks arrive in account order, archive members are appended as they come
+	private static void add(Chunk totals, Chunk chunk, FileChannel archive) throws IOException {
+		if (archive != null) {
+			ByteBuffer member = ByteBuffer.wrap(chunk.archived);
+			while (member.hasRemaining()) {
+				archive.write(member);
+			}
+		}
+		totals.statements += chunk.statements;
+		totals.entries += chunk.entries;
+		totals.bytes += chunk.bytes;
+	}
+
+	private static Chunk await(Future<Chunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Statement run interrupted");
+		} catch (ExecutionException e) {
+			throw new IOException("Statement run failed: " + e.getCause(), e.getCause());
+		}
+	}
+
+	//======== runs on a worker thread
+	private Chunk render(BankAccount[] accounts, int from, int to, Period period, Path target, Output output) throws IOException {
+		Chunk chunk = new Chunk();
+		StringBuilder text = new StringBuilder(4096);
+		ByteArrayOutputStream compressed = null;
+		OutputStream archive = null;
+		if (output == Output.ARCHIVE) {
+			compressed = new ByteArrayOutputStream(BUFFER_SIZE * 2);
+			archive = new FastGzip(compressed);
+		}
+		Path directory = null;
+		int directoryNumber = -1;
+		for (int i = from; i < to; i++) {
+			BankAccount account = accounts[i];
+			Captured captured = bank.readLocked(account, () -> new Captured(account.getBalance(), account.getLedger().view()));
+			text.setLength(0);
+			chunk.entries += appendStatement(text, account, captured, period);
+			chunk.statements++;
+			if (archive != null) {
+				archive.write(text.append("\f\n").toString().getBytes(StandardCharsets.UTF_8));
+				continue;
+			}
+			//======== accounts arrive in number order, so each directory is only looked up once per chunk
+			int number = account.getAccountNumber() / ACCOUNTS_PER_DIRECTORY;
+			if (number != directoryNumber) {
+				directory = Files.createDirectories(target.resolve(Integer.toString(number)));
+				directoryNumber = number;
+			}
+			byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+			Files.write(directory.resolve(account.getAccountNumber() + period.fileSuffix), bytes);
+			chunk.bytes += bytes.length;
+		}
+		if (archive != null) {
+			archive.close();
+			chunk.archived = compressed.toByteArray();
+			chunk.bytes = chunk.archived.length;
+		}
+		return chunk;
+	}
+
+	//======== returns how many entries it listed
+	private static int appendStatement(StringBuilder out, BankAccount account, Captured captured, Period period) {
+		TransactionLedger.View ledger = captured.ledger;
+		//======== each end of the period is found by binary search, and undoing everything from there on gives the
+		//======== balance at that point; sealed blocks count with their stored totals, so the only block read is the one
+		//======== the search just read
+		int start = ledger.firstAtOrAfter(period.from);
+		long opening = captured.balance - ledger.effectBetween(start, ledger.size());
+		int end = ledger.firstAtOrAfter(period.to);
+		long closing = captured.balance - ledger.effectBetween(end, ledger.size());
+
+		out.append("BANKFORGE - MONTHLY STATEMENT\n");
+		out.append(period.heading).append('\n');
+		out.append("======================================\n\n");
+		out.append("Account Holder: ").append(account.getAccountHolder()).append('\n');
+		out.append("Account Number: ").append(account.getAccountNumber()).append('\n');
+		out.append("Account Type: ").append(account.getAccountType()).append("\n\n");
+		Money.appendTo(out.append("Opening Balance: R"), opening).append("\n\n");
+
+		long balance = opening;
+		long moneyIn = 0;
+		long moneyOut = 0;
+		int listed = 0;
+		for (int i = start; i < end; i++) {
+			byte type = ledger.getType(i);
+			if (type == TransactionLedger.PIN_CHANGE) {
+				continue;
+			}
+			long effect = TransactionLedger.balanceEffect(type, ledger.getAmount(i));
+			balance += effect;
+			if (effect > 0) {
+				moneyIn += effect;
+			} else {
+				moneyOut -= effect;
+			}
+			appendTimestamp(out, ledger.getTimestamp(i), period.zone);
+			out.append("  ");
+			appendDescription(out, ledger, i, type);
+			if (effect != 0) {
+				Money.appendTo(out.append(effect > 0 ? "  +R" : "  -R"), Math.abs(effect));
+				Money.appendTo(out.append("  Balance R"), balance);
+			}
+			out.append('\n');
+			listed++;
+		}
+		if (listed == 0) {
+			out.append("No transactions in this period.\n");
+		}
+
+		Money.appendTo(out.append("\nMoney In: R"), moneyIn).append('\n');
+		Money.appendTo(out.append("Money Out: R"), moneyOut).append('\n');
+		Money.appendTo(out.append("Closing Balance: R"), closing).append('\n');
+		return listed;
+	}
+
+	private static void appendDescription(StringBuilder out, TransactionLedger.View ledger, int i, byte type) {
+		String description = ledger.getDescription(i);
+		switch (type) {
+			case TransactionLedger.DEPOSIT:
+				out.append("Deposit");
+				break;
+			case TransactionLedger.WITHDRAWAL:
+				out.append("Withdrawal");
+				break;
+			case TransactionLedger.TRANSFER_OUT:
+				out.append("Transfer to Account ").append(ledger.getCounterparty(i));
+				break;
+			case TransactionLedger.TRANSFER_IN:
+				out.append("Transfer from Account ").append(ledger.getCounterparty(i));
+				break;
+			case TransactionLedger.INTEREST:
+				out.append("Interest");
+				break;
+			case TransactionLedger.FEE:
+				out.append("Fee");
+				break;
+			case TransactionLedger.OPENING:
+				out.append("Opening balance");
+				break;
+			default:
+				//======== legacy entries are free text with no amount of their own
+				out.append(description == null ? "" : description);
+				return;
+		}
+		if (description != null) {
+			out.append(" - ").append(description);
+		}
+	}
+
+	//======== "yyyy-MM-dd HH:mm:ss" without a formatter, this runs once per entry
+	private static void appendTimestamp(StringBuilder out, long millis, ZoneId zone) {
+		LocalDateTime when = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+		out.append(when.getYear()).append('-');
+		appendTwoDigits(out, when.getMonthValue()).append('-');
+		appendTwoDigits(out, when.getDayOfMonth()).append(' ');
+		appendTwoDigits(out, when.getHour()).append(':');
+		appendTwoDigits(out, when.getMinute()).append(':');
+		appendTwoDigits(out, when.getSecond());
+	}
+
+	private static StringBuilder appendTwoDigits(StringBuilder out, int value) {
+		return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+}
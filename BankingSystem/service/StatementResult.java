@@ -0,0 +1,26 @@
+package BankingSystem.service;
+
+//======== how a statement run went: statements written, ledger entries listed in them and bytes put on disk
+public class StatementResult {
+	private final long statements;
+	private final long entries;
+	private final long bytes;
+
+	StatementResult(long statements, long entries, long bytes) {
+		this.statements = statements;
+		this.entries = entries;
+		this.bytes = bytes;
+	}
+
+	public long getStatements() {
+		return statements;
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+}